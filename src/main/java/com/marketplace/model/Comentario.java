@@ -1,8 +1,9 @@
 package com.marketplace.model;
 
+import java.io.Serializable;
 import java.time.LocalDateTime;
 
-public class Comentario {
+public class Comentario implements Serializable {
     private String id;
     private Vendedor autor;
     private LocalDateTime fechaPublicacion;
@@ -0,0 +1,6 @@
+package com.marketplace.model;
+
+// Entidades que se referencian entre sí por ID (vendedores y productos)
+public interface Identificable {
+    String getId();
+}
@@ -2,6 +2,8 @@ package com.marketplace.model;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
 
 import com.marketplace.util.Utilidades;
 
@@ -15,16 +17,18 @@ public class MarketPlace implements Serializable{
     public MarketPlace() {
         this.administrador = new Admin("1", "Juana", "Arias", "123", "direccion", "contraseña");
         this.utilidades = Utilidades.getInstance();
-        this.vendedores = utilidades.leerVendedoresDesdeArchivo();
-        this.solicitudes = utilidades.leerSolicitudesDesdeArchivo();
+        leerVendedores();
+        leerSolicitudes();
     }
 
     public List<Vendedor> getVendedores() {
         return vendedores;
     }
 
+    // Las listas del modelo son copy-on-write para que varios hilos de usuario puedan recorrerlas y
+    // modificarlas a la vez
     public void setVendedores(List<Vendedor> vendedores) {
-        this.vendedores = vendedores;
+        this.vendedores = new CopyOnWriteArrayList<>(vendedores);
     }
 
     public Admin getAdministrador() {
@@ -40,7 +44,7 @@ public class MarketPlace implements Serializable{
     }
 
     public void setSolicitudes(List<Solicitud> solicitudes){
-        this.solicitudes = solicitudes;
+        this.solicitudes = new CopyOnWriteArrayList<>(solicitudes);
     }
 
     public List<Solicitud> getSolicitudes(){
@@ -48,46 +52,75 @@ public class MarketPlace implements Serializable{
     }
 
     public Vendedor buscarVendedor(String id) {
-        for (Vendedor vendedor : vendedores) {
-            if (vendedor.getId().equals(id)) {
-                utilidades.logInfo("Vendedor identificado con"+ id + "encontrado: " + vendedor.getNombre());
-                return vendedor;
-            }
+        Vendedor vendedor = utilidades.buscarVendedorPorId(id);
+        if (vendedor != null) {
+            utilidades.logInfo(() -> "Vendedor identificado con"+ id + "encontrado: " + vendedor.getNombre());
+            return vendedor;
         }
-        utilidades.logWarning("No se encontro el vendedor identificado con: " + id);
+        utilidades.logWarning(() -> "No se encontro el vendedor identificado con: " + id);
         return null; // Retorna null si no se encuentra el vendedor
     }
 
     //CRUD VENDEDOR
 
     public void crearVendedor(Vendedor vendedor){
-        utilidades.guardarVendedorEnArchivo(vendedor);
+        Lock bloqueo = utilidades.bloqueoVendedor(vendedor.getId());
+        bloqueo.lock();
+        try {
+            if (utilidades.guardarVendedorEnArchivo(vendedor)) {
+                vendedores.add(vendedor);
+            }
+        } finally {
+            bloqueo.unlock();
+        }
         utilidades.actualizarSerializacionVendedores();
     }
 
     public void eliminarVendedor(String id){
-        utilidades.eliminarVendedor(id);
+        Lock bloqueo = utilidades.bloqueoVendedor(id);
+        bloqueo.lock();
+        try {
+            if (utilidades.eliminarVendedor(id)) {
+                vendedores.removeIf(v -> v.getId().equals(id));
+            }
+        } finally {
+            bloqueo.unlock();
+        }
         utilidades.actualizarSerializacionVendedores();
     }
 
     public void actualizarVendedor(Vendedor vendedor){
-        utilidades.modificarVendedor(vendedor);
+        Lock bloqueo = utilidades.bloqueoVendedor(vendedor.getId());
+        bloqueo.lock();
+        try {
+            if (utilidades.modificarVendedor(vendedor)) {
+                vendedores.replaceAll(v -> v.getId().equals(vendedor.getId()) ? vendedor : v);
+            }
+        } finally {
+            bloqueo.unlock();
+        }
         utilidades.actualizarSerializacionVendedores();
     }
 
     public void leerVendedores(){
-        utilidades.leerVendedoresDesdeArchivo();
+        setVendedores(utilidades.listarVendedores());
     }
 
     //CRUD SOLICITUDES
     public void crearSolicitud(Solicitud solicitud){
-        utilidades.guardarSolicitudEnArchivo(solicitud);
+        boolean guardada = utilidades.guardarSolicitudEnArchivo(solicitud);
         utilidades.actualizarSerializacionSolicitudes();
+        if (guardada) {
+            solicitudes.add(solicitud);
+        }
     }
 
     public void eliminarSolicitud(String id){
-        utilidades.eliminarSolicitud(id);
+        boolean eliminada = utilidades.eliminarSolicitud(id);
         utilidades.actualizarSerializacionSolicitudes();
+        if (eliminada) {
+            solicitudes.removeIf(s -> s.getId().equals(id));
+        }
     }
 
     public void actualizarSolicitud(String id, EstadoSolicitud estado ){
@@ -96,7 +129,7 @@ public class MarketPlace implements Serializable{
     }
     
     public void leerSolicitudes(){
-        utilidades.leerSolicitudesDesdeArchivo();
+        setSolicitudes(utilidades.listarSolicitudes());
     }
 
     //Reputacion 
@@ -1,8 +1,9 @@
 package com.marketplace.model;
 
+import java.io.Serializable;
 import java.time.LocalDateTime;
 
-public class Mensaje {
+public class Mensaje implements Serializable {
     private String contenido;
     private Vendedor emisor;
     private LocalDateTime horaDeEnvio;
@@ -3,7 +3,7 @@ package com.marketplace.model;
 import java.io.Serializable;
 
 // Clase base para Usuario y Administrador
-abstract class Persona implements Serializable {
+abstract class Persona implements Serializable, Identificable {
     protected String id;
     protected String nombre;
     protected String apellido;
@@ -3,10 +3,10 @@ package com.marketplace.model;
 import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
-public class Producto implements Serializable{
+public class Producto implements Serializable, Identificable {
     private String id;
     private String nombre;
     private String descripcion;
@@ -17,10 +17,27 @@ public class Producto implements Serializable{
     private List<Comentario> comentarios; 
     private Estado estado;
     private Categoria categoria;
+    // Sello de concurrencia optimista: avanza con cada modificación aceptada por el repositorio
+    private volatile long version;
 
     public Producto(){
 
     }
+
+    // Copia para modificar sin tocar la instancia publicada; conserva la versión de la que parte
+    public Producto(Producto otro) {
+        this.id = otro.id;
+        this.nombre = otro.nombre;
+        this.descripcion = otro.descripcion;
+        this.fechaPublicacion = otro.fechaPublicacion;
+        this.imagenRuta = otro.imagenRuta;
+        this.precio = otro.precio;
+        this.meGustas = otro.meGustas;
+        this.comentarios = otro.comentarios == null ? null : new CopyOnWriteArrayList<>(otro.comentarios);
+        this.estado = otro.estado;
+        this.categoria = otro.categoria;
+        this.version = otro.version;
+    }
     // Constructor
     public Producto(String id, String nombre, String descripcion, String fechaPublicacion, String imagenRuta, int precio, int meGustas, Estado estado, Categoria categoria) {
         this.id = id;
@@ -30,7 +47,7 @@ public class Producto implements Serializable{
         this.imagenRuta = imagenRuta;
         this.precio = precio;
         this.meGustas = meGustas;
-        this.comentarios = new ArrayList<>();
+        this.comentarios = new CopyOnWriteArrayList<>();
         this.estado = estado;
         this.categoria = categoria;
     }
@@ -110,8 +127,9 @@ public class Producto implements Serializable{
     }
 
 
+    // Copy-on-write: las instantáneas recorren los comentarios mientras otros hilos los editan
     public void setComentarios(List<Comentario> comentarios) {
-        this.comentarios = comentarios;
+        this.comentarios = comentarios == null ? null : new CopyOnWriteArrayList<>(comentarios);
     }
     public Estado getEstado() {
         return estado;
@@ -129,6 +147,14 @@ public class Producto implements Serializable{
         this.categoria = categoria;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
         @Override
     public String toString() {
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
@@ -148,10 +174,13 @@ public class Producto implements Serializable{
     public boolean eliminarComentario(String comentarioId) {
         return comentarios.removeIf(comentario -> comentario.getId().equals(comentarioId));
     }
+    // Reemplaza el comentario por uno nuevo: las copias del producto comparten las instancias
     public boolean actualizarComentario(String comentarioId, String nuevoTexto) {
-        for (Comentario comentario : comentarios) {
+        for (int i = 0; i < comentarios.size(); i++) {
+            Comentario comentario = comentarios.get(i);
             if (comentario.getId().equals(comentarioId)) {
-                comentario.setTexto(nuevoTexto); // Asumiendo que Comentario tiene un método setTexto
+                comentarios.set(i, new Comentario(comentario.getId(), comentario.getAutor(),
+                        comentario.getFechaPublicacion(), nuevoTexto));
                 return true; // Actualización exitosa
             }
         }
@@ -1,15 +1,22 @@
 package com.marketplace.model;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+import java.util.logging.Level;
 
+import com.marketplace.util.ListaPerezosa;
 import com.marketplace.util.Utilidades;
 
 public class Vendedor extends Persona {
-    private List<Producto> publicaciones;
-    private List<Vendedor> redDeContactos;
+    private ListaPerezosa<Producto> publicaciones;
+    private ListaPerezosa<Vendedor> redDeContactos;
     private Utilidades utilidades;
+    // Sello de concurrencia optimista: avanza con cada modificación aceptada por el repositorio
+    private volatile long version;
 
     public Vendedor() {
         super();
@@ -18,17 +25,30 @@ public class Vendedor extends Persona {
     public Vendedor(String id, String nombre, String apellido, String cedula, String direccion, String contraseña,
             List<Producto> publicaciones, List<Vendedor> redDeContactos) {
         super(id, nombre, apellido, cedula, direccion, contraseña);
-        this.publicaciones = publicaciones;
-        this.redDeContactos = redDeContactos;
+        setPublicaciones(publicaciones);
+        setRedDeContactos(redDeContactos);
         this.utilidades = Utilidades.getInstance();
     }
 
+    // Copia para modificar sin tocar la instancia publicada; conserva la versión de la que parte.
+    // Las listas se copian como IDs, sin resolverlas
+    public Vendedor(Vendedor otro) {
+        super(otro.id, otro.nombre, otro.apellido, otro.cedula, otro.direccion, otro.contraseña);
+        this.publicaciones = otro.publicaciones == null ? null : new ListaPerezosa<>(otro.publicaciones);
+        this.redDeContactos = otro.redDeContactos == null ? null : new ListaPerezosa<>(otro.redDeContactos);
+        this.utilidades = otro.utilidades != null ? otro.utilidades : Utilidades.getInstance();
+        this.version = otro.version;
+    }
+
     public List<Producto> getPublicaciones() {
         return publicaciones;
     }
 
+    // Las listas son copy-on-write: el hilo de instantáneas y los puntos de control las recorren
+    // sin bloqueo mientras otro hilo publica o elimina productos. Guardan los IDs y resuelven los
+    // objetos en el primer acceso (ver ListaPerezosa)
     public void setPublicaciones(List<Producto> publicaciones) {
-        this.publicaciones = publicaciones;
+        this.publicaciones = publicaciones == null ? null : new ListaPerezosa<>(publicaciones);
     }
 
     public List<Vendedor> getRedDeContactos() {
@@ -36,20 +56,115 @@ public class Vendedor extends Persona {
     }
 
     public void setRedDeContactos(List<Vendedor> redDeContactos) {
-        this.redDeContactos = redDeContactos;
+        this.redDeContactos = redDeContactos == null ? null : new ListaPerezosa<>(redDeContactos);
+    }
+
+    // Solo los IDs; cada lista se resuelve con su resolutor cuando se la recorre por primera vez
+    public void setIdsPublicaciones(String[] ids, Function<String, Producto> resolutor) {
+        this.publicaciones = new ListaPerezosa<>(ids, resolutor);
+    }
+
+    public void setIdsRedDeContactos(String[] ids, Function<String, Vendedor> resolutor) {
+        this.redDeContactos = new ListaPerezosa<>(ids, resolutor);
+    }
+
+    // IDs de las publicaciones y de los contactos sin resolver los objetos
+    public List<String> idsPublicaciones() {
+        return publicaciones == null ? Collections.emptyList() : publicaciones.ids();
+    }
+
+    public List<String> idsRedDeContactos() {
+        return redDeContactos == null ? Collections.emptyList() : redDeContactos.ids();
+    }
+
+    // Quita la publicación por ID, aunque el producto ya no esté en el repositorio
+    public boolean quitarPublicacion(String idProducto) {
+        return publicaciones != null && publicaciones.quitarId(idProducto);
+    }
+
+    // Tras reemplazar un producto en el repositorio: cambia la instancia solo si las publicaciones
+    // ya están resueltas, sin obligar a resolverlas
+    public void refrescarPublicacion(Producto anterior, Producto nuevo) {
+        if (publicaciones != null) {
+            publicaciones.reemplazarResuelto(anterior, nuevo);
+        }
+    }
+
+    // Hace que ambas listas resuelvan contra el dueño de las instancias (el Repositorio)
+    public void enlazar(Function<String, Producto> productos, Function<String, Vendedor> vendedores) {
+        if (publicaciones != null) {
+            publicaciones.enlazar(productos);
+        }
+        if (redDeContactos != null) {
+            redDeContactos.enlazar(vendedores);
+        }
     }
 
     public Utilidades getUtilidades() {
         return utilidades;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     // CRUD PRODUCTO
+    // Las operaciones toman el bloqueo de la franja del vendedor: las de vendedores distintos
+    // avanzan en paralelo y las del mismo vendedor no pierden actualizaciones
+    // La publicación se registra sobre una copia del vendedor publicado (compare-and-set con
+    // reintentos), no sobre esta instancia, que puede no ser la publicada o estar desactualizada
     public void crearProducto(Producto producto) {
-        utilidades.guardarProductoEnArchivo(producto);
+        Lock bloqueo = utilidades.bloqueoVendedor(getId());
+        bloqueo.lock();
+        try {
+            if (utilidades.buscarVendedorPorId(getId()) == null) {
+                utilidades.escribirLog(() -> "El vendedor con ID " + getId()
+                        + " no está registrado; no se publica el producto.", Level.WARNING);
+                return;
+            }
+            if (!utilidades.guardarProductoEnArchivo(producto)) {
+                // Puede haber quedado en memoria sin ser durable: se retira en vez de publicarlo
+                utilidades.eliminarProducto(producto.getId());
+                return;
+            }
+            Vendedor publicado = utilidades.actualizarVendedorConReintentos(getId(), copia -> {
+                if (copia.publicaciones == null) {
+                    copia.setPublicaciones(new ArrayList<>());
+                }
+                copia.publicaciones.add(producto);
+            });
+            if (publicado == null) {
+                // El vendedor se eliminó mientras tanto o el cambio no se pudo registrar: el
+                // producto no queda huérfano
+                utilidades.eliminarProducto(producto.getId());
+                utilidades.escribirLog(() -> "No se pudo registrar la publicación en el vendedor con ID " + getId()
+                        + "; no se publica el producto.", Level.WARNING);
+                return;
+            }
+            // Esta instancia refleja lo publicado para que el llamador vea la nueva publicación
+            this.publicaciones = new ListaPerezosa<>(publicado.publicaciones);
+            this.version = publicado.version;
+        } finally {
+            bloqueo.unlock();
+        }
         utilidades.actualizarSerializacionProductos();
     }
 
     public void eliminarProducto(String id) {
+        Lock bloqueo = utilidades.bloqueoVendedor(getId());
+        bloqueo.lock();
+        try {
+            eliminarProductoPropio(id);
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+
+    private void eliminarProductoPropio(String id) {
         List<Producto> productosPropios = utilidades.obtenerProductosDeVendedor(getId());
         boolean productoEncontrado = false;
 
@@ -69,6 +184,16 @@ public class Vendedor extends Persona {
     }
 
     public void actualizarProducto(Producto producto) {
+        Lock bloqueo = utilidades.bloqueoVendedor(getId());
+        bloqueo.lock();
+        try {
+            actualizarProductoPropio(producto);
+        } finally {
+            bloqueo.unlock();
+        }
+    }
+
+    private void actualizarProductoPropio(Producto producto) {
         List<Producto> productosPropios = utilidades.obtenerProductosDeVendedor(getId());
         boolean productoEncontrado = false;
 
@@ -80,8 +205,12 @@ public class Vendedor extends Persona {
         }
 
         if (productoEncontrado) {
-            utilidades.modificarProducto(producto);
-            utilidades.actualizarSerializacionProductos();
+            if (utilidades.modificarProducto(producto)) {
+                utilidades.actualizarSerializacionProductos();
+            } else {
+                utilidades.escribirLog(() -> "El producto con ID " + producto.getId()
+                        + " cambió desde que se leyó; vuelva a cargarlo.", Level.WARNING);
+            }
         } else {
             System.out.println("El producto con ID " + producto.getId() + " no pertenece a este vendedor.");
         }
@@ -0,0 +1,343 @@
+package com.marketplace.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import com.marketplace.model.Comentario;
+import com.marketplace.model.Mensaje;
+import com.marketplace.model.Producto;
+import com.marketplace.model.Solicitud;
+import com.marketplace.model.Vendedor;
+
+// Vendedores, productos y solicitudes en disco, cada tipo en un ArbolBMas por ID:
+//   <ruta>.productos, <ruta>.vendedores, <ruta>.solicitudes
+// Cada valor es el registro de CodificadorBinario de la entidad, con las relaciones como IDs.
+// Las consultas arman objetos sueltos, no las instancias del Repositorio: las publicaciones de un
+// vendedor se leen del árbol de productos recién cuando se recorren, y los contactos, emisores,
+// receptores y autores de comentarios son vendedores "superficiales" (sin publicaciones ni
+// contactos) para no traer el grafo entero. La memoria usada es la de los pools, 'marcos'
+// páginas por árbol.
+//
+// Como oyente del repositorio sigue cada cambio; el árbol es confiable (isConfiable) si los tres
+// se cerraron en orden y alguna vez se reconstruyeron completos desde el repositorio. Un error al
+// seguir un cambio no se propaga al repositorio (cortaría los avisos a los demás oyentes): el
+// árbol deja de ser confiable y el error se informa a 'avisoError'.
+public class AlmacenArbol implements OyenteProductos, OyenteVendedores, OyenteSolicitudes, Closeable {
+
+    // IDs de las relaciones del último registro decodificado
+    private static final class Referencias implements DecodificadorBinario.Referencias {
+        String[] publicaciones;
+        String[] contactos;
+        String emisorId;
+        String receptorId;
+        final List<Comentario> comentarios = new ArrayList<>();
+        final List<String> autores = new ArrayList<>();
+
+        @Override
+        public void vendedor(Vendedor vendedor, String[] publicaciones, String[] contactos) {
+            this.publicaciones = publicaciones;
+            this.contactos = contactos;
+        }
+
+        @Override
+        public void producto(Producto producto) {
+            // Sin relaciones propias; las de sus comentarios llegan por autorComentario
+        }
+
+        @Override
+        public void solicitud(Solicitud solicitud, String emisorId, String receptorId) {
+            this.emisorId = emisorId;
+            this.receptorId = receptorId;
+        }
+
+        @Override
+        public void autorComentario(Comentario comentario, String autorId) {
+            comentarios.add(comentario);
+            autores.add(autorId);
+        }
+
+        @Override
+        public void emisorMensaje(Mensaje mensaje, String emisorId) {
+            // Los mensajes no se guardan aquí
+        }
+    }
+
+    private final String ruta;
+    private final int marcos;
+    private volatile ArbolBMas productos;
+    private volatile ArbolBMas vendedores;
+    private volatile ArbolBMas solicitudes;
+    private final Consumer<String> avisoError;
+
+    public AlmacenArbol(String ruta, int marcos) throws IOException {
+        this(ruta, marcos, mensaje -> {
+        });
+    }
+
+    public AlmacenArbol(String ruta, int marcos, Consumer<String> avisoError) throws IOException {
+        this.ruta = ruta;
+        this.marcos = marcos;
+        this.avisoError = avisoError;
+        this.productos = new ArbolBMas(ruta + ".productos", marcos);
+        this.vendedores = new ArbolBMas(ruta + ".vendedores", marcos);
+        this.solicitudes = new ArbolBMas(ruta + ".solicitudes", marcos);
+        if (!productos.isLimpio() || !vendedores.isLimpio() || !solicitudes.isLimpio()) {
+            // Pudo perder cambios: deja de ser confiable hasta la próxima reconstrucción
+            productos.setCompleto(false);
+            vendedores.setCompleto(false);
+            solicitudes.setCompleto(false);
+        }
+    }
+
+    public synchronized boolean isConfiable() {
+        return productos.isCompleto() && vendedores.isCompleto() && solicitudes.isCompleto();
+    }
+
+    // Reemplaza el contenido por el del repositorio. Inserta en orden de ID para que las hojas
+    // queden llenas
+    public synchronized void reconstruir(Collection<Producto> listaProductos, Collection<Vendedor> listaVendedores,
+            Collection<Solicitud> listaSolicitudes) throws IOException {
+        productos = reiniciar(productos, ".productos");
+        vendedores = reiniciar(vendedores, ".vendedores");
+        solicitudes = reiniciar(solicitudes, ".solicitudes");
+        List<Producto> ordenProductos = new ArrayList<>(listaProductos);
+        ordenProductos.sort(Comparator.comparing(Producto::getId));
+        for (Producto producto : ordenProductos) {
+            productos.guardar(producto.getId(), codificar(c -> c.escribirProducto(producto)));
+        }
+        List<Vendedor> ordenVendedores = new ArrayList<>(listaVendedores);
+        ordenVendedores.sort(Comparator.comparing(Vendedor::getId));
+        for (Vendedor vendedor : ordenVendedores) {
+            vendedores.guardar(vendedor.getId(), codificar(c -> c.escribirVendedor(vendedor)));
+        }
+        List<Solicitud> ordenSolicitudes = new ArrayList<>(listaSolicitudes);
+        ordenSolicitudes.sort(Comparator.comparing(Solicitud::getId));
+        for (Solicitud solicitud : ordenSolicitudes) {
+            solicitudes.guardar(solicitud.getId(), codificar(c -> c.escribirSolicitud(solicitud)));
+        }
+        productos.setCompleto(true);
+        vendedores.setCompleto(true);
+        solicitudes.setCompleto(true);
+        forzar();
+    }
+
+    // Consultas por ID; null si no está
+
+    public Producto producto(String id) {
+        byte[] valor = id == null ? null : productos.obtener(id);
+        return valor == null ? null : decodificarProducto(valor);
+    }
+
+    public Vendedor vendedor(String id) {
+        byte[] valor = id == null ? null : vendedores.obtener(id);
+        return valor == null ? null : decodificarVendedor(valor, true);
+    }
+
+    public Solicitud solicitud(String id) {
+        byte[] valor = id == null ? null : solicitudes.obtener(id);
+        return valor == null ? null : decodificarSolicitud(valor);
+    }
+
+    // Rangos por ID, desde <= id < hasta (null deja ese lado abierto), a lo sumo 'limite'. Para
+    // seguir, se pide desde el último ID + "\0"
+
+    public List<Producto> productos(String desde, String hasta, int limite) {
+        return rango(productos, desde, hasta, limite, this::decodificarProducto);
+    }
+
+    public List<Vendedor> vendedores(String desde, String hasta, int limite) {
+        return rango(vendedores, desde, hasta, limite, valor -> decodificarVendedor(valor, true));
+    }
+
+    public List<Solicitud> solicitudes(String desde, String hasta, int limite) {
+        return rango(solicitudes, desde, hasta, limite, this::decodificarSolicitud);
+    }
+
+    // Recorridos completos en orden de ID, hasta que el visitante devuelva false
+
+    public void recorrerProductos(Predicate<Producto> visitante) {
+        productos.recorrer(null, null, (id, valor) -> visitante.test(decodificarProducto(valor)));
+    }
+
+    public void recorrerVendedores(Predicate<Vendedor> visitante) {
+        vendedores.recorrer(null, null, (id, valor) -> visitante.test(decodificarVendedor(valor, true)));
+    }
+
+    public void recorrerSolicitudes(Predicate<Solicitud> visitante) {
+        solicitudes.recorrer(null, null, (id, valor) -> visitante.test(decodificarSolicitud(valor)));
+    }
+
+    // Entrega cada registro tal como está guardado, con las relaciones como IDs (p. ej. a un
+    // CargadorDatos que después las resuelve)
+    public void volcar(DecodificadorBinario.Referencias destino) {
+        for (ArbolBMas arbol : new ArbolBMas[] { productos, vendedores, solicitudes }) {
+            arbol.recorrer(null, null, (id, valor) -> {
+                decodificar(valor, destino);
+                return true;
+            });
+        }
+    }
+
+    public long cantidadProductos() {
+        return productos.getEntradas();
+    }
+
+    public long cantidadVendedores() {
+        return vendedores.getEntradas();
+    }
+
+    public long cantidadSolicitudes() {
+        return solicitudes.getEntradas();
+    }
+
+    @Override
+    public void productoGuardado(Producto producto) {
+        seguir("guardar el producto", producto.getId(),
+                () -> productos.guardar(producto.getId(), codificar(c -> c.escribirProducto(producto))));
+    }
+
+    @Override
+    public void productoEliminado(String id) {
+        seguir("eliminar el producto", id, () -> productos.eliminar(id));
+    }
+
+    @Override
+    public void vendedorGuardado(Vendedor vendedor) {
+        seguir("guardar el vendedor", vendedor.getId(),
+                () -> vendedores.guardar(vendedor.getId(), codificar(c -> c.escribirVendedor(vendedor))));
+    }
+
+    @Override
+    public void vendedorEliminado(String id) {
+        seguir("eliminar el vendedor", id, () -> vendedores.eliminar(id));
+    }
+
+    @Override
+    public void solicitudGuardada(Solicitud solicitud) {
+        seguir("guardar la solicitud", solicitud.getId(),
+                () -> solicitudes.guardar(solicitud.getId(), codificar(c -> c.escribirSolicitud(solicitud))));
+    }
+
+    @Override
+    public void solicitudEliminada(String id) {
+        seguir("eliminar la solicitud", id, () -> solicitudes.eliminar(id));
+    }
+
+    // Aplica el cambio de un aviso; si falla, el árbol queda marcado como incompleto (se reconstruye
+    // en la próxima carga) y el error se informa sin propagarlo
+    private void seguir(String operacion, String id, Runnable cambio) {
+        try {
+            cambio.run();
+        } catch (RuntimeException e) {
+            productos.setCompleto(false);
+            vendedores.setCompleto(false);
+            solicitudes.setCompleto(false);
+            avisoError.accept("Error del árbol de entidades al " + operacion + " " + id
+                    + "; deja de ser confiable hasta reconstruirlo: " + e);
+        }
+    }
+
+    // Lleva a disco las páginas modificadas de los tres árboles
+    public synchronized void forzar() throws IOException {
+        productos.vaciar();
+        vendedores.vaciar();
+        solicitudes.vaciar();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        productos.close();
+        vendedores.close();
+        solicitudes.close();
+    }
+
+    private ArbolBMas reiniciar(ArbolBMas arbol, String sufijo) throws IOException {
+        arbol.close();
+        Files.deleteIfExists(Paths.get(ruta + sufijo));
+        return new ArbolBMas(ruta + sufijo, marcos);
+    }
+
+    private static <T> List<T> rango(ArbolBMas arbol, String desde, String hasta, int limite,
+            Function<byte[], T> decodificar) {
+        List<T> resultado = new ArrayList<>();
+        if (limite <= 0) {
+            return resultado;
+        }
+        arbol.recorrer(desde, hasta, (id, valor) -> {
+            resultado.add(decodificar.apply(valor));
+            return resultado.size() < limite;
+        });
+        return resultado;
+    }
+
+    private interface Escritura {
+        void escribir(CodificadorBinario codificador) throws IOException;
+    }
+
+    // Un solo registro como flujo completo del codificador (cabecera, registro y fin)
+    private static byte[] codificar(Escritura escritura) {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(128);
+        try {
+            CodificadorBinario codificador = new CodificadorBinario(salida);
+            escritura.escribir(codificador);
+            codificador.terminar();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return salida.toByteArray();
+    }
+
+    private static Object decodificar(byte[] valor, DecodificadorBinario.Referencias referencias) {
+        try {
+            return new DecodificadorBinario(new ByteArrayInputStream(valor), referencias).leerSiguiente();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Producto decodificarProducto(byte[] valor) {
+        Referencias referencias = new Referencias();
+        Producto producto = (Producto) decodificar(valor, referencias);
+        for (int i = 0; i < referencias.comentarios.size(); i++) {
+            referencias.comentarios.get(i).setAutor(superficial(referencias.autores.get(i)));
+        }
+        return producto;
+    }
+
+    // Con 'completo', también las publicaciones y los contactos (superficiales), resueltos contra
+    // el árbol en el primer acceso; las que ya no están en el árbol se omiten
+    private Vendedor decodificarVendedor(byte[] valor, boolean completo) {
+        Referencias referencias = new Referencias();
+        Vendedor vendedor = (Vendedor) decodificar(valor, referencias);
+        if (completo) {
+            vendedor.setIdsPublicaciones(referencias.publicaciones, this::producto);
+            vendedor.setIdsRedDeContactos(referencias.contactos, this::superficial);
+        }
+        return vendedor;
+    }
+
+    private Solicitud decodificarSolicitud(byte[] valor) {
+        Referencias referencias = new Referencias();
+        Solicitud solicitud = (Solicitud) decodificar(valor, referencias);
+        solicitud.setEmisor(superficial(referencias.emisorId));
+        solicitud.setReceptor(superficial(referencias.receptorId));
+        return solicitud;
+    }
+
+    private Vendedor superficial(String id) {
+        byte[] valor = id == null ? null : vendedores.obtener(id);
+        return valor == null ? null : decodificarVendedor(valor, false);
+    }
+}
@@ -0,0 +1,59 @@
+package com.marketplace.util;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import com.marketplace.model.Producto;
+import com.marketplace.model.Solicitud;
+import com.marketplace.model.Vendedor;
+
+// Motor binario: el punto de control es un solo flujo de CodificadorBinario con productos,
+// vendedores y solicitudes (las relaciones como IDs). Más compacto y rápido de leer que el texto,
+// y conserva los comentarios; las fechas se guardan con precisión de segundos.
+public class AlmacenBinario extends AlmacenConDiario {
+    private final String ruta;
+    private final boolean fsync;
+
+    public AlmacenBinario(String ruta, DiarioMutaciones diario, boolean fsync) {
+        super(diario);
+        this.ruta = ruta;
+        this.fsync = fsync;
+    }
+
+    @Override
+    public String getNombre() {
+        return "binario";
+    }
+
+    @Override
+    protected void leerPuntoDeControl(CargadorDatos cargador) throws IOException {
+        if (!new File(ruta).exists()) {
+            return;
+        }
+        try (InputStream entrada = new BufferedInputStream(new FileInputStream(ruta), 1 << 16)) {
+            new DecodificadorBinario(entrada, cargador).leerTodo();
+        }
+    }
+
+    @Override
+    protected void escribirPuntoDeControl(List<Vendedor> vendedores, List<Producto> productos,
+            List<Solicitud> solicitudes) throws IOException {
+        EscrituraAtomica.escribir(ruta, fsync, salida -> {
+            CodificadorBinario codificador = new CodificadorBinario(salida);
+            for (Producto producto : productos) {
+                codificador.escribirProducto(producto);
+            }
+            for (Vendedor vendedor : vendedores) {
+                codificador.escribirVendedor(vendedor);
+            }
+            for (Solicitud solicitud : solicitudes) {
+                codificador.escribirSolicitud(solicitud);
+            }
+            codificador.terminar();
+        });
+    }
+}
@@ -0,0 +1,126 @@
+package com.marketplace.util;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import com.marketplace.model.Producto;
+import com.marketplace.model.Solicitud;
+import com.marketplace.model.Vendedor;
+
+// Base de los motores que hacen durable cada mutación en un DiarioMutaciones y el estado completo
+// en un punto de control: al cargar se lee el punto de control y se reproduce el diario encima.
+// Las subclases solo eligen el formato del punto de control. Los registros del diario usan el
+// formato de línea de los archivos de texto, sea cual sea el motor.
+public abstract class AlmacenConDiario implements AlmacenMarketplace {
+    private final DiarioMutaciones diario;
+
+    protected AlmacenConDiario(DiarioMutaciones diario) {
+        this.diario = diario;
+    }
+
+    public DiarioMutaciones getDiario() {
+        return diario;
+    }
+
+    // Llena el cargador con el último punto de control; sin punto de control no hace nada
+    protected abstract void leerPuntoDeControl(CargadorDatos cargador) throws IOException;
+
+    // Publica el estado completo de forma atómica: ante una caída queda el anterior o el nuevo
+    protected abstract void escribirPuntoDeControl(List<Vendedor> vendedores, List<Producto> productos,
+            List<Solicitud> solicitudes) throws IOException;
+
+    @Override
+    public CargadorDatos cargar() throws IOException {
+        CargadorDatos cargador = new CargadorDatos();
+        leerPuntoDeControl(cargador);
+        diario.reproducir(cargador);
+        cargador.resolverReferencias();
+        return cargador;
+    }
+
+    @Override
+    public boolean registrar(DiarioMutaciones.Tipo tipo, Object entidad, BooleanSupplier aplicar) throws IOException {
+        return diario.registrar(tipo, clave(tipo, entidad), aplicar, () -> contenido(tipo, entidad));
+    }
+
+    // Entidad que cambia, para ordenar en el diario solo los cambios que compiten entre sí
+    private static String clave(DiarioMutaciones.Tipo tipo, Object entidad) {
+        switch (tipo) {
+            case PONER_VENDEDOR:
+                return "V" + ((Vendedor) entidad).getId();
+            case ELIMINAR_VENDEDOR:
+                return "V" + entidad;
+            case PONER_PRODUCTO:
+                return "P" + ((Producto) entidad).getId();
+            case ELIMINAR_PRODUCTO:
+                return "P" + entidad;
+            case PONER_SOLICITUD:
+            case ESTADO_SOLICITUD:
+                return "S" + ((Solicitud) entidad).getId();
+            default:
+                return "S" + entidad;
+        }
+    }
+
+    @Override
+    public int getRegistrosPendientes() {
+        return diario.getRegistrosPendientes();
+    }
+
+    @Override
+    public void puntoDeControl(List<Vendedor> vendedores, List<Producto> productos, List<Solicitud> solicitudes)
+            throws IOException {
+        escribirPuntoDeControl(vendedores, productos, solicitudes);
+        diario.truncar();
+    }
+
+    @Override
+    public void close() throws IOException {
+        diario.cerrar();
+    }
+
+    private static String contenido(DiarioMutaciones.Tipo tipo, Object entidad) {
+        switch (tipo) {
+            case PONER_VENDEDOR:
+                return lineaVendedor((Vendedor) entidad);
+            case PONER_PRODUCTO:
+                return lineaProducto((Producto) entidad);
+            case PONER_SOLICITUD:
+                return lineaSolicitud((Solicitud) entidad);
+            case ESTADO_SOLICITUD:
+                Solicitud solicitud = (Solicitud) entidad;
+                return solicitud.getId() + "%" + solicitud.getEstado();
+            default:
+                return (String) entidad; // Las eliminaciones llevan solo el ID
+        }
+    }
+
+    // Formato de línea de cada archivo: campos separados por '%', listas de IDs separadas por ','
+    static String lineaVendedor(Vendedor vendedor) {
+        String publicacionesStr = vendedor.idsPublicaciones().stream()
+                .filter(id -> id != null)
+                .collect(Collectors.joining(","));
+
+        String contactosStr = vendedor.idsRedDeContactos().stream()
+                .filter(id -> id != null)
+                .collect(Collectors.joining(","));
+
+        return vendedor.getId() + "%" + vendedor.getNombre() + "%" + vendedor.getApellido() + "%"
+                + vendedor.getCedula() + "%" + vendedor.getDireccion() + "%" + vendedor.getContraseña() + "%"
+                + publicacionesStr + "%" + contactosStr + "%";
+    }
+
+    static String lineaProducto(Producto producto) {
+        return producto.getId() + "%" + producto.getNombre() + "%" + producto.getDescripcion() + "%"
+                + producto.getFechaPublicacion() + "%" + producto.getImagenRuta() + "%" + producto.getPrecio() + "%"
+                + producto.getMeGustas() + "%" + producto.getEstado() + "%" + producto.getCategoria();
+    }
+
+    static String lineaSolicitud(Solicitud solicitud) {
+        String emisorId = solicitud.getEmisor() != null ? solicitud.getEmisor().getId() : "";
+        String receptorId = solicitud.getReceptor() != null ? solicitud.getReceptor().getId() : "";
+        return solicitud.getId() + "%" + emisorId + "%" + receptorId + "%" + solicitud.getEstado();
+    }
+}
@@ -0,0 +1,133 @@
+package com.marketplace.util;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.marketplace.model.Producto;
+import com.marketplace.model.Solicitud;
+import com.marketplace.model.Vendedor;
+
+// Motor mapeado: los productos viven en un AlmacenProductos (ranuras de largo fijo mapeadas en
+// memoria, ID -> ranura) y vendedores y solicitudes en un flujo de CodificadorBinario en
+// <ruta>.bin. El punto de control no reescribe todo: solo guarda los productos que cambiaron desde
+// el anterior (los publicados nunca se modifican en su lugar, así que alcanza con comparar la
+// instancia) y elimina los que ya no están. Como el almacén de productos guarda lo mismo que el
+// formato de texto, los comentarios de los productos no se conservan.
+//
+// El punto de control se escribe en el lugar, sin generación nueva. Es seguro porque el diario se
+// trunca solo después de forzar el almacén y publicar <ruta>.bin: si la caída es antes, al cargar
+// se reproduce el diario completo sobre un almacén a medio escribir, y sus registros (poner o
+// eliminar la entidad entera) dan el mismo resultado aplicados una o dos veces.
+public class AlmacenMapeado extends AlmacenConDiario {
+    private final String ruta;
+    private final boolean fsync;
+    private AlmacenProductos productos;
+    // Última instancia guardada de cada producto
+    private final Map<String, Producto> escritos = new HashMap<>();
+
+    public AlmacenMapeado(String ruta, DiarioMutaciones diario, boolean fsync) {
+        super(diario);
+        this.ruta = ruta;
+        this.fsync = fsync;
+    }
+
+    @Override
+    public String getNombre() {
+        return "mapeado";
+    }
+
+    @Override
+    protected void leerPuntoDeControl(CargadorDatos cargador) throws IOException {
+        escritos.clear();
+        try {
+            abrir().recorrer(producto -> {
+                escritos.put(producto.getId(), producto);
+                cargador.agregarProducto(producto);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (!new File(ruta + ".bin").exists()) {
+            return;
+        }
+        try (InputStream entrada = new BufferedInputStream(new FileInputStream(ruta + ".bin"), 1 << 16)) {
+            new DecodificadorBinario(entrada, cargador).leerTodo();
+        }
+    }
+
+    @Override
+    protected void escribirPuntoDeControl(List<Vendedor> vendedores, List<Producto> productos,
+            List<Solicitud> solicitudes) throws IOException {
+        AlmacenProductos almacen = abrir();
+        List<Producto> cambiados = new ArrayList<>();
+        Set<String> vigentes = new HashSet<>();
+        for (Producto producto : productos) {
+            vigentes.add(producto.getId());
+            if (escritos.get(producto.getId()) != producto) {
+                cambiados.add(producto);
+            }
+        }
+        try {
+            almacen.guardar(cambiados);
+            for (String id : almacen.ids()) {
+                if (!vigentes.contains(id)) {
+                    almacen.eliminar(id);
+                }
+            }
+            if (fsync) {
+                almacen.forzar();
+            } else {
+                almacen.escribirPendientes();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        escritos.keySet().retainAll(vigentes);
+        for (Producto producto : cambiados) {
+            escritos.put(producto.getId(), producto);
+        }
+        EscrituraAtomica.escribir(ruta + ".bin", fsync, salida -> {
+            CodificadorBinario codificador = new CodificadorBinario(salida);
+            for (Vendedor vendedor : vendedores) {
+                codificador.escribirVendedor(vendedor);
+            }
+            for (Solicitud solicitud : solicitudes) {
+                codificador.escribirSolicitud(solicitud);
+            }
+            codificador.terminar();
+        });
+        // Los textos reemplazados se acumulan: se compacta cuando son más de la mitad del desborde
+        if (almacen.getBytesMuertos() > (1 << 20) && almacen.getBytesMuertos() * 2 > almacen.getBytesTextos()) {
+            almacen.compactar();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            if (productos != null) {
+                productos.close();
+                productos = null;
+            }
+        }
+    }
+
+    private AlmacenProductos abrir() throws IOException {
+        if (productos == null) {
+            productos = new AlmacenProductos(ruta);
+        }
+        return productos;
+    }
+}
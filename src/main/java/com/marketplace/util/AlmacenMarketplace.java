@@ -0,0 +1,41 @@
+package com.marketplace.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import com.marketplace.model.Producto;
+import com.marketplace.model.Solicitud;
+import com.marketplace.model.Vendedor;
+
+// Motor de persistencia del marketplace, elegido con almacen.motor en config.properties:
+//   texto     archivos de texto '%' como punto de control + diario (el formato de siempre)
+//   binario   un solo archivo de CodificadorBinario como punto de control + diario
+//   paginado  árboles B+ de AlmacenArbol como punto de control + diario
+//   mapeado   productos en ranuras mapeadas en memoria (AlmacenProductos), el resto en binario + diario
+//   memoria   nada en disco; para pruebas y comparaciones
+// El repositorio en memoria sigue siendo la fuente de las consultas: el motor solo carga el estado
+// al iniciar, hace durable cada mutación y escribe los puntos de control.
+public interface AlmacenMarketplace extends Closeable {
+
+    String getNombre();
+
+    // Estado durable completo, con las referencias ya resueltas
+    CargadorDatos cargar() throws IOException;
+
+    // Aplica el cambio en memoria (aplicar) y lo hace durable como una sola operación; los cambios
+    // de una misma entidad quedan en el orden en que se aplicaron, los de entidades distintas no
+    // se esperan entre sí. Si aplicar lo rechaza no se registra nada y se devuelve false.
+    // 'entidad' es el Vendedor, Producto o Solicitud para PONER_*, el ID para ELIMINAR_*, y la
+    // Solicitud (ya con el estado nuevo tras aplicar) para ESTADO_SOLICITUD
+    boolean registrar(DiarioMutaciones.Tipo tipo, Object entidad, BooleanSupplier aplicar) throws IOException;
+
+    // Mutaciones registradas desde el último punto de control
+    int getRegistrosPendientes();
+
+    // Escribe el estado completo y descarta las mutaciones que ya quedan cubiertas. El llamador
+    // excluye a las mutaciones mientras tanto
+    void puntoDeControl(List<Vendedor> vendedores, List<Producto> productos, List<Solicitud> solicitudes)
+            throws IOException;
+}
@@ -0,0 +1,45 @@
+package com.marketplace.util;
+
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import com.marketplace.model.Producto;
+import com.marketplace.model.Solicitud;
+import com.marketplace.model.Vendedor;
+
+// Motor sin persistencia: cada carga empieza vacía y las mutaciones solo se aplican en memoria.
+// Sirve de referencia en las comparaciones y para ejecutar sin tocar el disco.
+public class AlmacenMemoria implements AlmacenMarketplace {
+
+    @Override
+    public String getNombre() {
+        return "memoria";
+    }
+
+    @Override
+    public CargadorDatos cargar() {
+        CargadorDatos cargador = new CargadorDatos();
+        cargador.resolverReferencias();
+        return cargador;
+    }
+
+    @Override
+    public boolean registrar(DiarioMutaciones.Tipo tipo, Object entidad, BooleanSupplier aplicar) {
+        return aplicar.getAsBoolean();
+    }
+
+    @Override
+    public int getRegistrosPendientes() {
+        return 0;
+    }
+
+    @Override
+    public void puntoDeControl(List<Vendedor> vendedores, List<Producto> productos, List<Solicitud> solicitudes) {
+        // Nada que escribir
+    }
+
+    @Override
+    public void close() {
+        // Nada que cerrar
+    }
+}
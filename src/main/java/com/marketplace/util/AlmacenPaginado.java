@@ -0,0 +1,72 @@
+package com.marketplace.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import com.marketplace.model.Producto;
+import com.marketplace.model.Solicitud;
+import com.marketplace.model.Vendedor;
+
+// Motor paginado: el punto de control son los árboles B+ de AlmacenArbol, que se pueden consultar
+// por ID sin leerlos enteros. Cada punto de control se escribe en una generación nueva
+// (<ruta>-<n>.productos, ...) y recién al cerrarla se publica su número en <ruta>.generacion con
+// un rename atómico, así una caída a mitad de camino deja la generación anterior intacta.
+public class AlmacenPaginado extends AlmacenConDiario {
+    private static final String[] SUFIJOS = { ".productos", ".vendedores", ".solicitudes" };
+    private final String ruta;
+    private final int marcos;
+    private final boolean fsync;
+
+    public AlmacenPaginado(String ruta, int marcos, DiarioMutaciones diario, boolean fsync) {
+        super(diario);
+        this.ruta = ruta;
+        this.marcos = marcos;
+        this.fsync = fsync;
+    }
+
+    @Override
+    public String getNombre() {
+        return "paginado";
+    }
+
+    @Override
+    protected void leerPuntoDeControl(CargadorDatos cargador) throws IOException {
+        long generacion = generacion();
+        if (generacion < 0) {
+            return;
+        }
+        try (AlmacenArbol arbol = new AlmacenArbol(ruta + "-" + generacion, marcos)) {
+            arbol.volcar(cargador);
+        }
+    }
+
+    @Override
+    protected void escribirPuntoDeControl(List<Vendedor> vendedores, List<Producto> productos,
+            List<Solicitud> solicitudes) throws IOException {
+        long anterior = generacion();
+        long nueva = anterior + 1;
+        try (AlmacenArbol arbol = new AlmacenArbol(ruta + "-" + nueva, marcos)) {
+            arbol.reconstruir(productos, vendedores, solicitudes);
+        }
+        EscrituraAtomica.escribir(ruta + ".generacion", fsync,
+                salida -> salida.write(Long.toString(nueva).getBytes(StandardCharsets.UTF_8)));
+        if (anterior >= 0) {
+            for (String sufijo : SUFIJOS) {
+                Files.deleteIfExists(Paths.get(ruta + "-" + anterior + sufijo));
+            }
+        }
+    }
+
+    // Generación publicada; -1 si todavía no hay punto de control
+    private long generacion() throws IOException {
+        Path archivo = Paths.get(ruta + ".generacion");
+        if (!Files.exists(archivo)) {
+            return -1;
+        }
+        return Long.parseLong(new String(Files.readAllBytes(archivo), StandardCharsets.UTF_8).trim());
+    }
+}
@@ -0,0 +1,643 @@
+package com.marketplace.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import com.marketplace.model.Categoria;
+import com.marketplace.model.Estado;
+import com.marketplace.model.Producto;
+
+// Almacén de productos en disco con acceso por ID, sin leer el archivo completo:
+//   <ruta>.ranuras    encabezado y ranuras de 64 bytes, mapeado en memoria: los campos de largo
+//                     fijo (precio, "me gusta", estados, fecha, versión) se leen y modifican en su
+//                     lugar;
+//   <ruta>.textos.N   área de desborde de solo agregado con id, nombre, descripción e imagen
+//                     (largo int + UTF-8); la ranura guarda la posición de cada uno. N es la
+//                     generación anotada en el encabezado, que cambia al compactar;
+//   <ruta>.indice     ID -> ranura, escrito al cerrar. Si falta o el cierre no fue limpio, se
+//                     reconstruye recorriendo las ranuras.
+// Las ranuras eliminadas forman una lista de libres que se reutiliza antes de crecer. Los textos
+// reemplazados quedan como bytes muertos hasta compactar().
+//
+// Ante una caída: los textos de un lote se escriben antes que las ranuras que los referencian, pero
+// el sistema puede llevar a disco las páginas del mapeo y las del desborde en cualquier orden hasta
+// forzar(). Tras un cierre no limpio se ajusta el encabezado a los archivos, se recorta el desborde
+// tras el último texto anotado y se liberan las ranuras con textos fuera de él o ilegibles. Son
+// ranuras escritas después del último forzar(): quien las escribió debe poder rehacerlas (el motor
+// mapeado las rehace con su diario, ver AlmacenMapeado).
+public class AlmacenProductos implements Closeable {
+    private static final int MAGIA = 0x4D505232; // "MPR2"
+    private static final int ENCABEZADO = 64;
+    private static final int RANURA = 64;
+    private static final int CAPACIDAD_INICIAL = 1024;
+    private static final long SIN_TEXTO = -1;
+    private static final long SIN_FECHA = Long.MIN_VALUE;
+    private static final Estado[] ESTADOS = Estado.values();
+    private static final Categoria[] CATEGORIAS = Categoria.values();
+    // Encabezado
+    private static final int E_MAGIA = 0;
+    private static final int E_CAPACIDAD = 4;
+    private static final int E_USADAS = 8; // Ranuras tocadas alguna vez (las demás nunca se leen)
+    private static final int E_PRIMERA_LIBRE = 12;
+    private static final int E_CANTIDAD = 16;
+    private static final int E_LIMPIO = 20;
+    private static final int E_FIN_TEXTOS = 24;
+    private static final int E_BYTES_MUERTOS = 32;
+    private static final int E_GENERACION = 40;
+    // Ranura
+    private static final int R_OCUPADA = 0;
+    private static final int R_ESTADO = 1;
+    private static final int R_CATEGORIA = 2;
+    private static final int R_PRECIO = 4;
+    private static final int R_ME_GUSTAS = 8;
+    private static final int R_FIRMA = 12; // Firma de los textos; en una ranura libre, la siguiente libre
+    private static final int R_FECHA = 16;
+    private static final int R_VERSION = 24;
+    private static final int R_ID = 32;
+    private static final int R_NOMBRE = 40;
+    private static final int R_DESCRIPCION = 48;
+    private static final int R_IMAGEN = 56;
+
+    private final String ruta;
+    private FileChannel ranuras;
+    private FileChannel textos;
+    private MappedByteBuffer mapa;
+    private final Map<String, Integer> indice = new HashMap<>();
+    // Textos agregados que aún no se escribieron; empiezan en la posición inicioPendiente
+    private final ByteBuffer pendiente = ByteBuffer.allocate(1 << 16);
+    private long inicioPendiente;
+
+    public AlmacenProductos(String ruta) throws IOException {
+        this.ruta = ruta;
+        boolean nuevo = !new File(ruta + ".ranuras").exists();
+        ranuras = FileChannel.open(Paths.get(ruta + ".ranuras"), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (nuevo) {
+            mapear(CAPACIDAD_INICIAL);
+            mapa.putInt(E_MAGIA, MAGIA);
+            mapa.putInt(E_CAPACIDAD, CAPACIDAD_INICIAL);
+            mapa.putInt(E_PRIMERA_LIBRE, -1);
+            mapa.putInt(E_LIMPIO, 1);
+        } else {
+            mapa = ranuras.map(FileChannel.MapMode.READ_WRITE, 0, ranuras.size());
+            if (ranuras.size() < ENCABEZADO || mapa.getInt(E_MAGIA) != MAGIA) {
+                ranuras.close();
+                throw new IOException("No es un almacén de productos: " + ruta + ".ranuras");
+            }
+        }
+        textos = FileChannel.open(rutaTextos(mapa.getInt(E_GENERACION)), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        borrarOtrasGeneraciones();
+        boolean limpio = mapa.getInt(E_LIMPIO) != 0;
+        if (!limpio) {
+            ajustarTrasCaida();
+        }
+        if (!limpio || !leerIndice()) {
+            reconstruirIndice();
+        }
+        inicioPendiente = mapa.getLong(E_FIN_TEXTOS);
+        mapa.putInt(E_LIMPIO, 0); // Hasta el próximo close()
+        mapa.force();
+    }
+
+    // Lectura puntual; null si el ID no está
+    public synchronized Producto leer(String id) {
+        Integer ranura = id == null ? null : indice.get(id);
+        return ranura == null ? null : leerRanura(ranura, null);
+    }
+
+    public synchronized boolean contiene(String id) {
+        return indice.containsKey(id);
+    }
+
+    public synchronized int tamano() {
+        return indice.size();
+    }
+
+    public synchronized List<String> ids() {
+        return new ArrayList<>(indice.keySet());
+    }
+
+    // Todos los productos en orden de ranura. Para el recorrido el desborde también se mapea en
+    // memoria (si cabe en un solo mapeo) en vez de leer cada texto por separado
+    public synchronized void recorrer(Consumer<Producto> accion) throws IOException {
+        vaciar();
+        long fin = mapa.getLong(E_FIN_TEXTOS);
+        ByteBuffer vista = fin > 0 && fin <= Integer.MAX_VALUE
+                ? textos.map(FileChannel.MapMode.READ_ONLY, 0, fin) : null;
+        int usadas = mapa.getInt(E_USADAS);
+        for (int ranura = 0; ranura < usadas; ranura++) {
+            if (mapa.get(posicion(ranura) + R_OCUPADA) != 0) {
+                accion.accept(leerRanura(ranura, vista));
+            }
+        }
+    }
+
+    public synchronized void guardar(Producto producto) {
+        guardar(Collections.singletonList(producto));
+    }
+
+    // Alta o reemplazo de un lote. Primero se agregan al desborde los textos que cambiaron y se
+    // escriben al archivo; después se escriben las ranuras que los referencian. Los campos de largo
+    // fijo solo se escriben si cambiaron, para no ensuciar páginas del mapeo que no hace falta forzar
+    public synchronized void guardar(Collection<Producto> productos) {
+        List<long[]> referencias = new ArrayList<>(productos.size());
+        for (Producto producto : productos) {
+            Integer existente = indice.get(producto.getId());
+            if (existente != null && textosIguales(posicion(existente), producto)) {
+                referencias.add(null);
+            } else {
+                referencias.add(new long[] { agregarTexto(producto.getId()), agregarTexto(producto.getNombre()),
+                        agregarTexto(producto.getDescripcion()), agregarTexto(producto.getImagenRuta()) });
+            }
+        }
+        vaciar();
+        int i = 0;
+        for (Producto producto : productos) {
+            long[] textosNuevos = referencias.get(i++);
+            Integer existente = indice.get(producto.getId());
+            int ranura = existente != null ? existente : tomarRanura();
+            int base = posicion(ranura);
+            if (textosNuevos != null) {
+                if (existente != null) {
+                    descartarTextos(base);
+                }
+                for (int campo = 0; campo < 4; campo++) {
+                    mapa.putLong(base + R_ID + 8 * campo, textosNuevos[campo]);
+                }
+                mapa.putInt(base + R_FIRMA, firma(producto));
+            }
+            ponerByte(base + R_ESTADO, ordinal(producto.getEstado()));
+            ponerByte(base + R_CATEGORIA, ordinal(producto.getCategoria()));
+            ponerInt(base + R_PRECIO, producto.getPrecio());
+            ponerInt(base + R_ME_GUSTAS, producto.getMeGustas());
+            ponerLong(base + R_FECHA, producto.getFechaPublicacion() == null ? SIN_FECHA
+                    : ColumnasProductos.clave(producto.getFechaPublicacion()));
+            ponerLong(base + R_VERSION, producto.getVersion());
+            if (existente == null) {
+                mapa.put(base + R_OCUPADA, (byte) 1);
+                mapa.putInt(E_CANTIDAD, mapa.getInt(E_CANTIDAD) + 1);
+                indice.put(producto.getId(), ranura);
+            }
+        }
+    }
+
+    // Cambios en el lugar: solo se escriben los bytes del campo
+
+    public synchronized boolean actualizarPrecio(String id, int precio) {
+        Integer ranura = indice.get(id);
+        if (ranura != null) {
+            ponerInt(posicion(ranura) + R_PRECIO, precio);
+        }
+        return ranura != null;
+    }
+
+    public synchronized boolean actualizarMeGustas(String id, int meGustas) {
+        Integer ranura = indice.get(id);
+        if (ranura != null) {
+            ponerInt(posicion(ranura) + R_ME_GUSTAS, meGustas);
+        }
+        return ranura != null;
+    }
+
+    public synchronized boolean actualizarEstado(String id, Estado estado) {
+        Integer ranura = indice.get(id);
+        if (ranura != null) {
+            ponerByte(posicion(ranura) + R_ESTADO, ordinal(estado));
+        }
+        return ranura != null;
+    }
+
+    // La ranura pasa a la lista de libres; sus textos quedan como bytes muertos
+    public synchronized boolean eliminar(String id) {
+        Integer ranura = id == null ? null : indice.remove(id);
+        if (ranura == null) {
+            return false;
+        }
+        int base = posicion(ranura);
+        descartarTextos(base);
+        mapa.put(base + R_OCUPADA, (byte) 0);
+        mapa.putInt(base + R_FIRMA, mapa.getInt(E_PRIMERA_LIBRE));
+        mapa.putInt(E_PRIMERA_LIBRE, ranura);
+        mapa.putInt(E_CANTIDAD, mapa.getInt(E_CANTIDAD) - 1);
+        return true;
+    }
+
+    // Bytes del desborde que ya no referencia ninguna ranura
+    public synchronized long getBytesMuertos() {
+        return mapa.getLong(E_BYTES_MUERTOS);
+    }
+
+    public synchronized long getBytesTextos() {
+        return mapa.getLong(E_FIN_TEXTOS);
+    }
+
+    // Reescribe el desborde solo con los textos vivos en una generación nueva, y las ranuras con
+    // las posiciones nuevas en una copia completa que reemplaza al archivo con un rename atómico.
+    // Ese rename es el único punto de cambio: antes queda todo como estaba, después la generación
+    // nueva; la anterior se borra al final (o al abrir, si la caída fue en medio)
+    public synchronized void compactar() throws IOException {
+        vaciar();
+        int generacion = mapa.getInt(E_GENERACION) + 1;
+        int usadas = mapa.getInt(E_USADAS);
+        int capacidad = Math.max(usadas, CAPACIDAD_INICIAL);
+        ByteBuffer imagen = ByteBuffer.allocate(ENCABEZADO + capacidad * RANURA);
+        ByteBuffer origen = mapa.duplicate();
+        origen.position(0).limit(ENCABEZADO + usadas * RANURA);
+        imagen.put(origen);
+        long fin = 0;
+        Path rutaNuevos = rutaTextos(generacion);
+        try (DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(rutaNuevos), 1 << 16))) {
+            for (int ranura = 0; ranura < usadas; ranura++) {
+                int base = posicion(ranura);
+                if (mapa.get(base + R_OCUPADA) == 0) {
+                    continue;
+                }
+                for (int campo = R_ID; campo <= R_IMAGEN; campo += 8) {
+                    String texto = leerTexto(mapa.getLong(base + campo), null);
+                    if (texto == null) {
+                        imagen.putLong(base + campo, SIN_TEXTO);
+                        continue;
+                    }
+                    byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+                    imagen.putLong(base + campo, fin);
+                    salida.writeInt(bytes.length);
+                    salida.write(bytes);
+                    fin += 4 + bytes.length;
+                }
+            }
+        }
+        try (FileChannel nuevos = FileChannel.open(rutaNuevos, StandardOpenOption.WRITE)) {
+            nuevos.force(true);
+        }
+        imagen.putInt(E_CAPACIDAD, capacidad);
+        imagen.putLong(E_FIN_TEXTOS, fin);
+        imagen.putLong(E_BYTES_MUERTOS, 0);
+        imagen.putInt(E_GENERACION, generacion);
+        imagen.putInt(E_LIMPIO, 0);
+        EscrituraAtomica.escribir(ruta + ".ranuras", true,
+                salida -> salida.write(imagen.array(), 0, imagen.capacity()));
+        ranuras.close();
+        textos.close();
+        ranuras = FileChannel.open(Paths.get(ruta + ".ranuras"), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        textos = FileChannel.open(rutaNuevos, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        mapear(capacidad);
+        inicioPendiente = fin;
+        borrarOtrasGeneraciones();
+    }
+
+    // Escribe al archivo los textos que siguen en memoria, sin forzarlos a disco
+    public synchronized void escribirPendientes() {
+        vaciar();
+    }
+
+    // Fuerza a disco el desborde y después las ranuras
+    public synchronized void forzar() throws IOException {
+        vaciar();
+        textos.force(false);
+        mapa.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        forzar();
+        escribirIndice();
+        mapa.putInt(E_LIMPIO, 1);
+        mapa.force();
+        textos.close();
+        ranuras.close();
+    }
+
+    private Path rutaTextos(int generacion) {
+        return Paths.get(ruta + ".textos." + generacion);
+    }
+
+    // Generaciones del desborde que quedaron de una compactación interrumpida o ya reemplazada
+    private void borrarOtrasGeneraciones() throws IOException {
+        Path vigente = rutaTextos(mapa.getInt(E_GENERACION)).toAbsolutePath();
+        Path directorio = vigente.getParent();
+        String prefijo = Paths.get(ruta).getFileName() + ".textos.";
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio, prefijo + "*")) {
+            for (Path archivo : archivos) {
+                if (!archivo.toAbsolutePath().equals(vigente)) {
+                    Files.deleteIfExists(archivo);
+                }
+            }
+        }
+    }
+
+    private Producto leerRanura(int ranura, ByteBuffer vista) {
+        int base = posicion(ranura);
+        Producto producto = new Producto();
+        producto.setId(leerTexto(mapa.getLong(base + R_ID), vista));
+        producto.setNombre(leerTexto(mapa.getLong(base + R_NOMBRE), vista));
+        producto.setDescripcion(leerTexto(mapa.getLong(base + R_DESCRIPCION), vista));
+        producto.setImagenRuta(leerTexto(mapa.getLong(base + R_IMAGEN), vista));
+        byte estado = mapa.get(base + R_ESTADO);
+        byte categoria = mapa.get(base + R_CATEGORIA);
+        producto.setEstado(estado < 0 ? null : ESTADOS[estado]);
+        producto.setCategoria(categoria < 0 ? null : CATEGORIAS[categoria]);
+        producto.setPrecio(mapa.getInt(base + R_PRECIO));
+        producto.setMeGustas(mapa.getInt(base + R_ME_GUSTAS));
+        long fecha = mapa.getLong(base + R_FECHA);
+        producto.setFechaPublicacion(fecha == SIN_FECHA ? null
+                : LocalDateTime.ofEpochSecond(Math.floorDiv(fecha, 1_000_000L),
+                        (int) Math.floorMod(fecha, 1_000_000L) * 1_000, ZoneOffset.UTC));
+        producto.setVersion(mapa.getLong(base + R_VERSION));
+        producto.setComentarios(new ArrayList<>());
+        return producto;
+    }
+
+    private boolean textosIguales(int base, Producto producto) {
+        return mapa.getInt(base + R_FIRMA) == firma(producto)
+                && Objects.equals(leerTexto(mapa.getLong(base + R_NOMBRE), null), producto.getNombre())
+                && Objects.equals(leerTexto(mapa.getLong(base + R_DESCRIPCION), null), producto.getDescripcion())
+                && Objects.equals(leerTexto(mapa.getLong(base + R_IMAGEN), null), producto.getImagenRuta());
+    }
+
+    private static int firma(Producto producto) {
+        return Objects.hash(producto.getNombre(), producto.getDescripcion(), producto.getImagenRuta());
+    }
+
+    private void ponerByte(int posicion, byte valor) {
+        if (mapa.get(posicion) != valor) {
+            mapa.put(posicion, valor);
+        }
+    }
+
+    private void ponerInt(int posicion, int valor) {
+        if (mapa.getInt(posicion) != valor) {
+            mapa.putInt(posicion, valor);
+        }
+    }
+
+    private void ponerLong(int posicion, long valor) {
+        if (mapa.getLong(posicion) != valor) {
+            mapa.putLong(posicion, valor);
+        }
+    }
+
+    private int tomarRanura() {
+        int libre = mapa.getInt(E_PRIMERA_LIBRE);
+        if (libre >= 0) {
+            mapa.putInt(E_PRIMERA_LIBRE, mapa.getInt(posicion(libre) + R_FIRMA));
+            return libre;
+        }
+        int usadas = mapa.getInt(E_USADAS);
+        asegurar(usadas + 1);
+        mapa.putInt(E_USADAS, usadas + 1);
+        return usadas;
+    }
+
+    // Duplica la capacidad (y el mapeo) hasta que quepan 'cantidad' ranuras
+    private void asegurar(int cantidad) {
+        int capacidad = mapa.getInt(E_CAPACIDAD);
+        if (cantidad <= capacidad) {
+            return;
+        }
+        while (capacidad < cantidad) {
+            capacidad *= 2;
+        }
+        try {
+            mapear(capacidad);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        mapa.putInt(E_CAPACIDAD, capacidad);
+    }
+
+    private void mapear(int capacidad) throws IOException {
+        mapa = ranuras.map(FileChannel.MapMode.READ_WRITE, 0, ENCABEZADO + (long) capacidad * RANURA);
+    }
+
+    private static int posicion(int ranura) {
+        return ENCABEZADO + ranura * RANURA;
+    }
+
+    private static byte ordinal(Enum<?> valor) {
+        return valor == null ? -1 : (byte) valor.ordinal();
+    }
+
+    private void descartarTextos(int base) {
+        long muertos = 0;
+        for (int campo = R_ID; campo <= R_IMAGEN; campo += 8) {
+            long referencia = mapa.getLong(base + campo);
+            if (referencia != SIN_TEXTO) {
+                muertos += 4 + largoTexto(referencia);
+            }
+        }
+        mapa.putLong(E_BYTES_MUERTOS, mapa.getLong(E_BYTES_MUERTOS) + muertos);
+    }
+
+    // Agrega el texto al final del desborde y devuelve su posición; se escribe por lotes
+    private long agregarTexto(String texto) {
+        if (texto == null) {
+            return SIN_TEXTO;
+        }
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        long posicion = mapa.getLong(E_FIN_TEXTOS);
+        if (pendiente.remaining() < 4 + bytes.length) {
+            vaciar();
+        }
+        if (pendiente.remaining() < 4 + bytes.length) {
+            escribirCompleto(ByteBuffer.allocate(4 + bytes.length).putInt(bytes.length).put(bytes), posicion);
+            inicioPendiente = posicion + 4 + bytes.length;
+        } else {
+            pendiente.putInt(bytes.length).put(bytes);
+        }
+        mapa.putLong(E_FIN_TEXTOS, posicion + 4 + bytes.length);
+        return posicion;
+    }
+
+    private void vaciar() {
+        if (pendiente.position() > 0) {
+            escribirCompleto(pendiente, inicioPendiente);
+            inicioPendiente += pendiente.position();
+            pendiente.clear();
+        }
+    }
+
+    private void escribirCompleto(ByteBuffer buffer, long posicion) {
+        ByteBuffer datos = buffer.duplicate();
+        datos.flip();
+        try {
+            while (datos.hasRemaining()) {
+                textos.write(datos, posicion + datos.position());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Con 'vista' (el desborde mapeado) se lee de la memoria; si no, del canal. La mayoría de los
+    // textos caben en la primera lectura, que trae el largo y el contenido
+    private String leerTexto(long referencia, ByteBuffer vista) {
+        if (referencia == SIN_TEXTO) {
+            return null;
+        }
+        if (vista != null) {
+            int largo = vista.getInt((int) referencia);
+            byte[] bytes = new byte[largo];
+            ByteBuffer texto = vista.duplicate();
+            texto.position((int) referencia + 4);
+            texto.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        vaciar();
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(256);
+            leer(buffer, referencia, 4);
+            int largo = buffer.getInt(0);
+            if (buffer.position() < 4 + largo) {
+                ByteBuffer completo = ByteBuffer.allocate(4 + largo);
+                buffer.flip();
+                completo.put(buffer);
+                buffer = completo;
+                leer(buffer, referencia, 4 + largo);
+            }
+            return new String(buffer.array(), 4, largo, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int largoTexto(long referencia) {
+        vaciar();
+        try {
+            ByteBuffer largo = ByteBuffer.allocate(4);
+            leer(largo, referencia, 4);
+            return largo.getInt(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Lee desde 'posicion' hasta tener al menos 'minimo' bytes en el buffer (o llenarlo)
+    private void leer(ByteBuffer buffer, long posicion, int minimo) throws IOException {
+        while (buffer.position() < minimo && buffer.hasRemaining()) {
+            if (textos.read(buffer, posicion + buffer.position()) < 0) {
+                throw new IOException("Desborde de textos truncado en la posición " + posicion);
+            }
+        }
+    }
+
+    private boolean leerIndice() {
+        File archivo = new File(ruta + ".indice");
+        if (!archivo.exists()) {
+            return false;
+        }
+        try (DataInputStream entrada = new DataInputStream(new BufferedInputStream(new FileInputStream(archivo)))) {
+            int cantidad = entrada.readInt();
+            if (cantidad != mapa.getInt(E_CANTIDAD)) {
+                return false;
+            }
+            indice.clear();
+            for (int i = 0; i < cantidad; i++) {
+                indice.put(entrada.readUTF(), entrada.readInt());
+            }
+            return true;
+        } catch (IOException e) {
+            indice.clear();
+            return false;
+        }
+    }
+
+    private void escribirIndice() throws IOException {
+        EscrituraAtomica.escribir(ruta + ".indice", true, salida -> {
+            DataOutputStream datos = new DataOutputStream(new BufferedOutputStream(salida));
+            datos.writeInt(indice.size());
+            for (Map.Entry<String, Integer> entrada : indice.entrySet()) {
+                datos.writeUTF(entrada.getKey());
+                datos.writeInt(entrada.getValue());
+            }
+            datos.flush();
+        });
+    }
+
+    // Tras un cierre no limpio el encabezado puede no coincidir con los archivos: la capacidad
+    // se toma del tamaño de las ranuras, y el fin del desborde no puede pasar del archivo. Lo que
+    // siga a ese fin son textos agregados sin anotar: se recortan
+    private void ajustarTrasCaida() throws IOException {
+        int capacidad = (int) ((ranuras.size() - ENCABEZADO) / RANURA);
+        mapa.putInt(E_CAPACIDAD, capacidad);
+        mapa.putInt(E_USADAS, Math.max(0, Math.min(mapa.getInt(E_USADAS), capacidad)));
+        long fin = Math.max(0, Math.min(mapa.getLong(E_FIN_TEXTOS), textos.size()));
+        textos.truncate(fin);
+        mapa.putLong(E_FIN_TEXTOS, fin);
+    }
+
+    // Recorre las ranuras usadas: las ocupadas con textos legibles van al índice y las demás se
+    // vuelven a encadenar como libres. También recalcula la cantidad y los bytes muertos
+    private void reconstruirIndice() {
+        indice.clear();
+        int libre = -1;
+        long vivos = 0;
+        long fin = mapa.getLong(E_FIN_TEXTOS);
+        int usadas = mapa.getInt(E_USADAS);
+        for (int ranura = usadas - 1; ranura >= 0; ranura--) {
+            int base = posicion(ranura);
+            if (mapa.get(base + R_OCUPADA) != 0) {
+                long bytes = bytesTextos(base, fin);
+                String id = bytes < 0 ? null : leerTexto(mapa.getLong(base + R_ID), null);
+                if (id != null && !id.isEmpty() && !indice.containsKey(id)) {
+                    indice.put(id, ranura);
+                    vivos += bytes;
+                    continue;
+                }
+                mapa.put(base + R_OCUPADA, (byte) 0);
+            }
+            mapa.putInt(base + R_FIRMA, libre);
+            libre = ranura;
+        }
+        mapa.putInt(E_PRIMERA_LIBRE, libre);
+        mapa.putInt(E_CANTIDAD, indice.size());
+        mapa.putLong(E_BYTES_MUERTOS, fin - vivos);
+    }
+
+    // Bytes que ocupan los textos de la ranura, o -1 si alguno cae fuera de [0, fin)
+    private long bytesTextos(int base, long fin) {
+        long total = 0;
+        for (int campo = R_ID; campo <= R_IMAGEN; campo += 8) {
+            long referencia = mapa.getLong(base + campo);
+            if (referencia == SIN_TEXTO) {
+                continue;
+            }
+            if (referencia < 0 || referencia + 4 > fin) {
+                return -1;
+            }
+            int largo = largoTexto(referencia);
+            if (largo < 0 || referencia + 4 + largo > fin) {
+                return -1;
+            }
+            total += 4 + largo;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,75 @@
+package com.marketplace.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import com.marketplace.model.Producto;
+import com.marketplace.model.Solicitud;
+import com.marketplace.model.Vendedor;
+
+// Motor de siempre: un archivo de texto por entidad (una línea por registro, campos separados por
+// '%') como punto de control. Los comentarios de los productos no forman parte de este formato.
+public class AlmacenTexto extends AlmacenConDiario {
+    private final String rutaVendedores;
+    private final String rutaProductos;
+    private final String rutaSolicitudes;
+    private final boolean fsync;
+
+    public AlmacenTexto(String rutaVendedores, String rutaProductos, String rutaSolicitudes, DiarioMutaciones diario,
+            boolean fsync) {
+        super(diario);
+        this.rutaVendedores = rutaVendedores;
+        this.rutaProductos = rutaProductos;
+        this.rutaSolicitudes = rutaSolicitudes;
+        this.fsync = fsync;
+    }
+
+    @Override
+    public String getNombre() {
+        return "texto";
+    }
+
+    @Override
+    protected void leerPuntoDeControl(CargadorDatos cargador) throws IOException {
+        // Un archivo que todavía no existe es una lista vacía
+        if (new File(rutaProductos).exists()) {
+            cargador.leerProductos(rutaProductos);
+        }
+        if (new File(rutaVendedores).exists()) {
+            cargador.leerVendedores(rutaVendedores);
+        }
+        if (new File(rutaSolicitudes).exists()) {
+            cargador.leerSolicitudes(rutaSolicitudes);
+        }
+    }
+
+    @Override
+    protected void escribirPuntoDeControl(List<Vendedor> vendedores, List<Producto> productos,
+            List<Solicitud> solicitudes) throws IOException {
+        escribirListaEnArchivo(rutaVendedores, vendedores);
+        escribirListaEnArchivo(rutaProductos, productos);
+        escribirListaEnArchivo(rutaSolicitudes, solicitudes);
+    }
+
+    // Los puntos de control se publican con escritura a temporal + rename atómico
+    public void escribirListaEnArchivo(String ruta, List<?> lista) throws IOException {
+        EscrituraAtomica.escribir(ruta, fsync, salida -> {
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8));
+            for (Object objeto : lista) {
+                if (objeto instanceof Vendedor) {
+                    writer.write(lineaVendedor((Vendedor) objeto));
+                } else if (objeto instanceof Producto) {
+                    writer.write(lineaProducto((Producto) objeto));
+                } else {
+                    writer.write(lineaSolicitud((Solicitud) objeto));
+                }
+                writer.newLine();
+            }
+            writer.flush();
+        });
+    }
+}
@@ -0,0 +1,564 @@
+package com.marketplace.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiPredicate;
+
+// Árbol B+ de claves String y valores byte[] sobre un archivo de páginas de PoolPaginas, así que
+// la memoria que usa es la del pool, no la del archivo. Las claves se ordenan por sus bytes UTF-8
+// sin signo (el orden de los puntos de código; solo difiere de String.compareTo con caracteres
+// fuera del plano básico). Los valores que no caben en línea van a una cadena de páginas de
+// desborde. Los borrados no fusionan nodos: las hojas que quedan vacías siguen enlazadas.
+//
+// Formato, páginas de PoolPaginas.TAMANO bytes:
+//   página 0 (meta): int mágico, long raíz, long páginas, long primera libre, long entradas,
+//                    byte cierre limpio, byte completo
+//   nodos: byte tipo, short entradas, long enlace (hoja: hoja siguiente; interior: primer hijo)
+//     hoja:     short largo clave, clave, valor (byte 0 + short largo + bytes, o byte 1 + int
+//               largo + long primera página de desborde)
+//     interior: short largo clave, clave, long hijo con las claves >= esa
+//   desborde:   byte tipo, short bytes usados, long página siguiente, datos
+//   libre:      byte tipo, short 0, long siguiente libre
+// No hay diario: si el proceso se cae con el árbol abierto, el próximo open lo ve como no limpio
+// (isLimpio) y el dueño debe reconstruirlo.
+public class ArbolBMas implements Closeable {
+    private static final int MAGICO = 0x4D4B4254; // "MKBT"
+    private static final byte HOJA = 1;
+    private static final byte INTERIOR = 2;
+    private static final byte DESBORDE = 3;
+    private static final byte LIBRE = 4;
+    private static final int CABECERA = 11;
+    private static final int META_RAIZ = 4;
+    private static final int META_PAGINAS = 12;
+    private static final int META_LIBRE = 20;
+    private static final int META_ENTRADAS = 28;
+    private static final int META_LIMPIO = 36;
+    private static final int META_COMPLETO = 37;
+    public static final int MAXIMO_CLAVE = 512;
+    // Así cualquier nodo con tres entradas cabe en una página y siempre se puede dividir
+    private static final int MAXIMO_EN_LINEA = 1024;
+    private static final byte EN_LINEA = 0;
+    private static final byte DESBORDADO = 1;
+
+    // Nodo decodificado para modificarlo; en las hojas 'valores' guarda el valor ya codificado
+    private static final class Nodo {
+        final byte tipo;
+        long enlace;
+        final List<byte[]> claves = new ArrayList<>();
+        final List<byte[]> valores = new ArrayList<>();
+        final List<Long> hijos = new ArrayList<>();
+
+        Nodo(byte tipo) {
+            this.tipo = tipo;
+        }
+
+        int tamano() {
+            int tamano = CABECERA;
+            for (int i = 0; i < claves.size(); i++) {
+                tamano += 2 + claves.get(i).length + (tipo == HOJA ? valores.get(i).length : 8);
+            }
+            return tamano;
+        }
+    }
+
+    // Clave separadora y página nueva que un nodo dividido entrega a su padre
+    private static final class Division {
+        final byte[] clave;
+        final long pagina;
+
+        Division(byte[] clave, long pagina) {
+            this.clave = clave;
+            this.pagina = pagina;
+        }
+    }
+
+    private final FileChannel canal;
+    private final PoolPaginas pool;
+    private final boolean limpio;
+    private long raiz;
+    private long paginas;
+    private long libre;
+    private long entradas;
+    private boolean completo;
+
+    public ArbolBMas(String ruta, int marcos) throws IOException {
+        this.canal = FileChannel.open(Paths.get(ruta), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.pool = new PoolPaginas(canal, marcos);
+        if (canal.size() == 0) {
+            raiz = 1;
+            paginas = 2;
+            escribir(raiz, new Nodo(HOJA));
+            limpio = true;
+        } else {
+            int marco = pool.fijar(0);
+            try {
+                ByteBuffer meta = pool.buffer(marco);
+                if (meta.getInt(0) != MAGICO) {
+                    throw new IOException("El archivo no es un árbol B+ del marketplace: " + ruta);
+                }
+                raiz = meta.getLong(META_RAIZ);
+                paginas = meta.getLong(META_PAGINAS);
+                libre = meta.getLong(META_LIBRE);
+                entradas = meta.getLong(META_ENTRADAS);
+                limpio = meta.get(META_LIMPIO) == 1;
+                completo = meta.get(META_COMPLETO) == 1;
+            } finally {
+                pool.soltar(marco, false);
+            }
+        }
+        // Queda marcado como abierto hasta el close
+        escribirMeta(false);
+        pool.vaciar();
+        canal.force(false);
+    }
+
+    // Si el último cierre fue ordenado; si no, el contenido puede estar a medias
+    public boolean isLimpio() {
+        return limpio;
+    }
+
+    // Marca del dueño del árbol, guardada en la meta; AlmacenArbol la usa para saber si el árbol
+    // tiene todos los datos
+    public synchronized boolean isCompleto() {
+        return completo;
+    }
+
+    public synchronized void setCompleto(boolean completo) {
+        this.completo = completo;
+    }
+
+    public synchronized long getEntradas() {
+        return entradas;
+    }
+
+    public PoolPaginas getPool() {
+        return pool;
+    }
+
+    // Valor de la clave; null si no está
+    public synchronized byte[] obtener(String clave) {
+        byte[] buscada = clave.getBytes(StandardCharsets.UTF_8);
+        byte[] codificado = null;
+        int marco = pool.fijar(hojaDe(buscada));
+        try {
+            ByteBuffer pagina = pool.buffer(marco);
+            int cantidad = pagina.getShort(1) & 0xFFFF;
+            int posicion = CABECERA;
+            for (int i = 0; i < cantidad; i++) {
+                int largo = pagina.getShort(posicion) & 0xFFFF;
+                int comparacion = comparar(pagina, posicion + 2, largo, buscada);
+                posicion += 2 + largo;
+                if (comparacion == 0) {
+                    codificado = valorCodificado(pagina, posicion);
+                    break;
+                }
+                if (comparacion > 0) {
+                    break;
+                }
+                posicion += largoValor(pagina, posicion);
+            }
+        } finally {
+            pool.soltar(marco, false);
+        }
+        return codificado == null ? null : expandir(codificado);
+    }
+
+    public synchronized boolean contiene(String clave) {
+        return obtener(clave) != null;
+    }
+
+    // Alta o reemplazo
+    public synchronized void guardar(String clave, byte[] valor) {
+        byte[] bytes = clave.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAXIMO_CLAVE) {
+            throw new IllegalArgumentException("Clave de más de " + MAXIMO_CLAVE + " bytes: " + clave);
+        }
+        Division division = insertar(raiz, bytes, codificarValor(valor));
+        if (division != null) {
+            Nodo nuevaRaiz = new Nodo(INTERIOR);
+            nuevaRaiz.enlace = raiz;
+            nuevaRaiz.claves.add(division.clave);
+            nuevaRaiz.hijos.add(division.pagina);
+            raiz = asignar();
+            escribir(raiz, nuevaRaiz);
+        }
+    }
+
+    // false si la clave no estaba
+    public synchronized boolean eliminar(String clave) {
+        byte[] bytes = clave.getBytes(StandardCharsets.UTF_8);
+        long pagina = hojaDe(bytes);
+        Nodo hoja = leer(pagina);
+        int i = buscar(hoja.claves, bytes);
+        if (i < 0) {
+            return false;
+        }
+        liberarValor(hoja.valores.get(i));
+        hoja.claves.remove(i);
+        hoja.valores.remove(i);
+        escribir(pagina, hoja);
+        entradas--;
+        return true;
+    }
+
+    // Entrega en orden las entradas con desde <= clave < hasta (null deja ese lado abierto) hasta
+    // que el visitante devuelva false. Las entradas de cada hoja se copian antes de visitarlas,
+    // así que el visitante puede consultar o modificar el árbol; las modificaciones hechas
+    // durante el recorrido pueden verse o no
+    public synchronized void recorrer(String desde, String hasta, BiPredicate<String, byte[]> visitante) {
+        byte[] inicio = desde == null ? new byte[0] : desde.getBytes(StandardCharsets.UTF_8);
+        byte[] fin = hasta == null ? null : hasta.getBytes(StandardCharsets.UTF_8);
+        long pagina = hojaDe(inicio);
+        List<byte[]> claves = new ArrayList<>();
+        List<byte[]> valores = new ArrayList<>();
+        while (pagina != 0) {
+            claves.clear();
+            valores.clear();
+            boolean terminado = false;
+            int marco = pool.fijar(pagina);
+            try {
+                ByteBuffer buffer = pool.buffer(marco);
+                int cantidad = buffer.getShort(1) & 0xFFFF;
+                int posicion = CABECERA;
+                for (int i = 0; i < cantidad; i++) {
+                    int largo = buffer.getShort(posicion) & 0xFFFF;
+                    int clave = posicion + 2;
+                    posicion = clave + largo;
+                    if (fin != null && comparar(buffer, clave, largo, fin) >= 0) {
+                        terminado = true;
+                        break;
+                    }
+                    if (comparar(buffer, clave, largo, inicio) >= 0) {
+                        claves.add(Arrays.copyOfRange(buffer.array(), clave, clave + largo));
+                        valores.add(valorCodificado(buffer, posicion));
+                    }
+                    posicion += largoValor(buffer, posicion);
+                }
+                pagina = buffer.getLong(3);
+            } finally {
+                pool.soltar(marco, false);
+            }
+            for (int i = 0; i < claves.size(); i++) {
+                if (!visitante.test(new String(claves.get(i), StandardCharsets.UTF_8), expandir(valores.get(i)))) {
+                    return;
+                }
+            }
+            if (terminado) {
+                return;
+            }
+        }
+    }
+
+    // Escribe las páginas modificadas y la meta, sin marcar el cierre
+    public synchronized void vaciar() throws IOException {
+        escribirMeta(false);
+        pool.vaciar();
+        canal.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!canal.isOpen()) {
+            return;
+        }
+        vaciar();
+        // La marca de cierre limpio va recién cuando todo lo demás está en disco
+        escribirMeta(true);
+        pool.vaciar();
+        canal.force(false);
+        pool.close();
+    }
+
+    private void escribirMeta(boolean cerrado) {
+        int marco = pool.fijar(0);
+        ByteBuffer meta = pool.buffer(marco);
+        meta.putInt(0, MAGICO);
+        meta.putLong(META_RAIZ, raiz);
+        meta.putLong(META_PAGINAS, paginas);
+        meta.putLong(META_LIBRE, libre);
+        meta.putLong(META_ENTRADAS, entradas);
+        meta.put(META_LIMPIO, (byte) (cerrado ? 1 : 0));
+        meta.put(META_COMPLETO, (byte) (completo ? 1 : 0));
+        pool.soltar(marco, true);
+    }
+
+    // Baja por los nodos interiores leyéndolos en el pool, sin decodificarlos
+    private long hojaDe(byte[] clave) {
+        long pagina = raiz;
+        while (true) {
+            int marco = pool.fijar(pagina);
+            try {
+                ByteBuffer buffer = pool.buffer(marco);
+                if (buffer.get(0) == HOJA) {
+                    return pagina;
+                }
+                long hijo = buffer.getLong(3);
+                int cantidad = buffer.getShort(1) & 0xFFFF;
+                int posicion = CABECERA;
+                for (int i = 0; i < cantidad; i++) {
+                    int largo = buffer.getShort(posicion) & 0xFFFF;
+                    if (comparar(buffer, posicion + 2, largo, clave) > 0) {
+                        break;
+                    }
+                    posicion += 2 + largo;
+                    hijo = buffer.getLong(posicion);
+                    posicion += 8;
+                }
+                pagina = hijo;
+            } finally {
+                pool.soltar(marco, false);
+            }
+        }
+    }
+
+    private Division insertar(long pagina, byte[] clave, byte[] valor) {
+        Nodo nodo = leer(pagina);
+        if (nodo.tipo == HOJA) {
+            int i = buscar(nodo.claves, clave);
+            if (i >= 0) {
+                liberarValor(nodo.valores.get(i));
+                nodo.valores.set(i, valor);
+            } else {
+                nodo.claves.add(-i - 1, clave);
+                nodo.valores.add(-i - 1, valor);
+                entradas++;
+            }
+        } else {
+            int i = buscar(nodo.claves, clave);
+            int posicion = i >= 0 ? i + 1 : -i - 1; // Cantidad de claves <= clave
+            long hijo = posicion == 0 ? nodo.enlace : nodo.hijos.get(posicion - 1);
+            Division division = insertar(hijo, clave, valor);
+            if (division == null) {
+                return null;
+            }
+            nodo.claves.add(posicion, division.clave);
+            nodo.hijos.add(posicion, division.pagina);
+        }
+        if (nodo.tamano() <= PoolPaginas.TAMANO) {
+            escribir(pagina, nodo);
+            return null;
+        }
+        return dividir(pagina, nodo, clave);
+    }
+
+    private Division dividir(long pagina, Nodo nodo, byte[] insertada) {
+        int cantidad = nodo.claves.size();
+        int corte;
+        if (nodo.tipo == HOJA && nodo.enlace == 0 && Arrays.equals(nodo.claves.get(cantidad - 1), insertada)) {
+            // Inserción al final de la última hoja (IDs crecientes): la hoja queda llena en vez
+            // de a medias
+            corte = cantidad - 1;
+        } else {
+            int mitad = nodo.tamano() / 2;
+            int acumulado = CABECERA;
+            corte = 0;
+            while (corte < cantidad - 1 && acumulado < mitad) {
+                acumulado += 2 + nodo.claves.get(corte).length
+                        + (nodo.tipo == HOJA ? nodo.valores.get(corte).length : 8);
+                corte++;
+            }
+            corte = Math.max(1, Math.min(corte, cantidad - (nodo.tipo == HOJA ? 1 : 2)));
+        }
+        long nueva = asignar();
+        Nodo derecho = new Nodo(nodo.tipo);
+        byte[] separadora;
+        if (nodo.tipo == HOJA) {
+            derecho.claves.addAll(nodo.claves.subList(corte, cantidad));
+            derecho.valores.addAll(nodo.valores.subList(corte, cantidad));
+            nodo.claves.subList(corte, cantidad).clear();
+            nodo.valores.subList(corte, cantidad).clear();
+            derecho.enlace = nodo.enlace;
+            nodo.enlace = nueva;
+            separadora = derecho.claves.get(0);
+        } else {
+            // La clave del corte sube al padre y su hijo pasa a ser el primero del nodo derecho
+            separadora = nodo.claves.get(corte);
+            derecho.enlace = nodo.hijos.get(corte);
+            derecho.claves.addAll(nodo.claves.subList(corte + 1, cantidad));
+            derecho.hijos.addAll(nodo.hijos.subList(corte + 1, cantidad));
+            nodo.claves.subList(corte, cantidad).clear();
+            nodo.hijos.subList(corte, cantidad).clear();
+        }
+        escribir(pagina, nodo);
+        escribir(nueva, derecho);
+        return new Division(separadora, nueva);
+    }
+
+    private Nodo leer(long pagina) {
+        int marco = pool.fijar(pagina);
+        try {
+            ByteBuffer buffer = pool.buffer(marco);
+            Nodo nodo = new Nodo(buffer.get(0));
+            int cantidad = buffer.getShort(1) & 0xFFFF;
+            nodo.enlace = buffer.getLong(3);
+            byte[] arreglo = buffer.array();
+            int posicion = CABECERA;
+            for (int i = 0; i < cantidad; i++) {
+                int largo = buffer.getShort(posicion) & 0xFFFF;
+                posicion += 2;
+                nodo.claves.add(Arrays.copyOfRange(arreglo, posicion, posicion + largo));
+                posicion += largo;
+                if (nodo.tipo == HOJA) {
+                    int largoValor = largoValor(buffer, posicion);
+                    nodo.valores.add(Arrays.copyOfRange(arreglo, posicion, posicion + largoValor));
+                    posicion += largoValor;
+                } else {
+                    nodo.hijos.add(buffer.getLong(posicion));
+                    posicion += 8;
+                }
+            }
+            return nodo;
+        } finally {
+            pool.soltar(marco, false);
+        }
+    }
+
+    private void escribir(long pagina, Nodo nodo) {
+        int marco = pool.fijar(pagina);
+        ByteBuffer buffer = pool.buffer(marco);
+        buffer.put(0, nodo.tipo);
+        buffer.putShort(1, (short) nodo.claves.size());
+        buffer.putLong(3, nodo.enlace);
+        int posicion = CABECERA;
+        for (int i = 0; i < nodo.claves.size(); i++) {
+            byte[] clave = nodo.claves.get(i);
+            buffer.putShort(posicion, (short) clave.length);
+            posicion += 2;
+            System.arraycopy(clave, 0, buffer.array(), posicion, clave.length);
+            posicion += clave.length;
+            if (nodo.tipo == HOJA) {
+                byte[] valor = nodo.valores.get(i);
+                System.arraycopy(valor, 0, buffer.array(), posicion, valor.length);
+                posicion += valor.length;
+            } else {
+                buffer.putLong(posicion, nodo.hijos.get(i));
+                posicion += 8;
+            }
+        }
+        Arrays.fill(buffer.array(), posicion, PoolPaginas.TAMANO, (byte) 0);
+        pool.soltar(marco, true);
+    }
+
+    // Búsqueda binaria como Collections.binarySearch: la posición o -(punto de inserción) - 1
+    private static int buscar(List<byte[]> claves, byte[] clave) {
+        int bajo = 0;
+        int alto = claves.size() - 1;
+        while (bajo <= alto) {
+            int medio = (bajo + alto) >>> 1;
+            int comparacion = Arrays.compareUnsigned(claves.get(medio), clave);
+            if (comparacion < 0) {
+                bajo = medio + 1;
+            } else if (comparacion > 0) {
+                alto = medio - 1;
+            } else {
+                return medio;
+            }
+        }
+        return -(bajo + 1);
+    }
+
+    // Compara la clave guardada en la página con 'clave', byte a byte sin signo
+    private static int comparar(ByteBuffer pagina, int desde, int largo, byte[] clave) {
+        return Arrays.compareUnsigned(pagina.array(), desde, desde + largo, clave, 0, clave.length);
+    }
+
+    private static int largoValor(ByteBuffer pagina, int posicion) {
+        return pagina.get(posicion) == EN_LINEA ? 3 + (pagina.getShort(posicion + 1) & 0xFFFF) : 13;
+    }
+
+    private static byte[] valorCodificado(ByteBuffer pagina, int posicion) {
+        return Arrays.copyOfRange(pagina.array(), posicion, posicion + largoValor(pagina, posicion));
+    }
+
+    // Valor en línea, o la cadena de desborde ya escrita con su referencia
+    private byte[] codificarValor(byte[] valor) {
+        if (valor.length <= MAXIMO_EN_LINEA) {
+            ByteBuffer codificado = ByteBuffer.allocate(3 + valor.length);
+            codificado.put(EN_LINEA).putShort((short) valor.length).put(valor);
+            return codificado.array();
+        }
+        int porPagina = PoolPaginas.TAMANO - CABECERA;
+        long[] cadena = new long[(valor.length + porPagina - 1) / porPagina];
+        for (int i = 0; i < cadena.length; i++) {
+            cadena[i] = asignar();
+        }
+        for (int i = 0; i < cadena.length; i++) {
+            int desde = i * porPagina;
+            int largo = Math.min(porPagina, valor.length - desde);
+            int marco = pool.fijar(cadena[i]);
+            ByteBuffer buffer = pool.buffer(marco);
+            buffer.put(0, DESBORDE);
+            buffer.putShort(1, (short) largo);
+            buffer.putLong(3, i + 1 < cadena.length ? cadena[i + 1] : 0);
+            System.arraycopy(valor, desde, buffer.array(), CABECERA, largo);
+            pool.soltar(marco, true);
+        }
+        ByteBuffer codificado = ByteBuffer.allocate(13);
+        codificado.put(DESBORDADO).putInt(valor.length).putLong(cadena[0]);
+        return codificado.array();
+    }
+
+    private byte[] expandir(byte[] codificado) {
+        ByteBuffer referencia = ByteBuffer.wrap(codificado);
+        if (referencia.get() == EN_LINEA) {
+            return Arrays.copyOfRange(codificado, 3, codificado.length);
+        }
+        byte[] valor = new byte[referencia.getInt()];
+        long pagina = referencia.getLong();
+        int posicion = 0;
+        while (pagina != 0 && posicion < valor.length) {
+            int marco = pool.fijar(pagina);
+            try {
+                ByteBuffer buffer = pool.buffer(marco);
+                int largo = Math.min(buffer.getShort(1) & 0xFFFF, valor.length - posicion);
+                System.arraycopy(buffer.array(), CABECERA, valor, posicion, largo);
+                posicion += largo;
+                pagina = buffer.getLong(3);
+            } finally {
+                pool.soltar(marco, false);
+            }
+        }
+        return valor;
+    }
+
+    private void liberarValor(byte[] codificado) {
+        ByteBuffer referencia = ByteBuffer.wrap(codificado);
+        if (referencia.get() == EN_LINEA) {
+            return;
+        }
+        referencia.getInt();
+        long pagina = referencia.getLong();
+        while (pagina != 0) {
+            int marco = pool.fijar(pagina);
+            ByteBuffer buffer = pool.buffer(marco);
+            long siguiente = buffer.getLong(3);
+            buffer.put(0, LIBRE);
+            buffer.putShort(1, (short) 0);
+            buffer.putLong(3, libre);
+            pool.soltar(marco, true);
+            libre = pagina;
+            pagina = siguiente;
+        }
+    }
+
+    // Página libre reutilizada o una nueva al final del archivo
+    private long asignar() {
+        if (libre == 0) {
+            return paginas++;
+        }
+        long pagina = libre;
+        int marco = pool.fijar(pagina);
+        libre = pool.buffer(marco).getLong(3);
+        pool.soltar(marco, false);
+        return pagina;
+    }
+}
@@ -0,0 +1,507 @@
+package com.marketplace.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Árbol de prefijos compacto (radix: cada arista lleva una cadena, no un carácter) que devuelve
+// los N IDs de mayor peso cuyas claves empiezan por un prefijo. Cada nodo con más de N claves
+// debajo guarda ya armados sus N mejores, así que completar cuesta recorrer el prefijo y copiar la
+// lista; los nodos con N o menos (la gran mayoría, cerca de las hojas) no guardan nada y se
+// recorren al consultar. Un ID puede tener varias claves; en los resultados aparece una vez.
+// Un cambio recalcula los mejores solo en los nodos del camino de su clave.
+public class ArbolPrefijos {
+
+    private static final class Entrada {
+        final String id;
+        final String clave;
+        final int peso;
+
+        Entrada(String id, String clave, int peso) {
+            this.id = id;
+            this.clave = clave;
+            this.peso = peso;
+        }
+    }
+
+    // Más peso primero; a igual peso, por clave y luego por ID
+    private static final Comparator<Entrada> ORDEN = (a, b) -> {
+        int c = Integer.compare(b.peso, a.peso);
+        if (c == 0) {
+            c = a.clave.compareTo(b.clave);
+        }
+        return c != 0 ? c : a.id.compareTo(b.id);
+    };
+
+    private static final Nodo[] SIN_HIJOS = new Nodo[0];
+
+    private static final class Nodo {
+        String etiqueta;
+        Nodo[] hijos = SIN_HIJOS; // Ordenados por el primer carácter de su etiqueta
+        List<Entrada> propias; // Claves que terminan en este nodo, en ORDEN; null si ninguna
+        int cantidad; // Claves en todo el subárbol
+        Entrada[] mejores; // Los N mejores del subárbol; null si cantidad <= N
+
+        Nodo(String etiqueta) {
+            this.etiqueta = etiqueta;
+        }
+    }
+
+    private final int n;
+    private final Nodo raiz = new Nodo("");
+    private final Map<String, Entrada[]> porId = new HashMap<>();
+    private final ReentrantReadWriteLock bloqueo = new ReentrantReadWriteLock();
+
+    public ArbolPrefijos(int n) {
+        this.n = Math.max(1, n);
+    }
+
+    public int getN() {
+        return n;
+    }
+
+    // Reemplaza las claves y el peso del ID; las claves vacías se ignoran
+    public void poner(String id, Collection<String> claves, int peso) {
+        List<Entrada> nuevas = new ArrayList<>(claves.size());
+        for (String clave : new HashSet<>(claves)) {
+            if (clave != null && !clave.isEmpty()) {
+                nuevas.add(new Entrada(id, clave, peso));
+            }
+        }
+        bloqueo.writeLock().lock();
+        try {
+            Entrada[] viejas = porId.get(id);
+            if (viejas != null && iguales(viejas, nuevas)) {
+                return;
+            }
+            if (viejas != null && viejas.length == 1 && nuevas.size() == 1
+                    && viejas[0].clave.equals(nuevas.get(0).clave)) {
+                cambiarPeso(viejas[0], nuevas.get(0)); // El caso común: cambian los "me gusta"
+            } else {
+                if (viejas != null) {
+                    for (Entrada vieja : viejas) {
+                        quitarEntrada(vieja);
+                    }
+                }
+                if (nuevas.isEmpty()) {
+                    porId.remove(id);
+                    return;
+                }
+                for (Entrada nueva : nuevas) {
+                    insertar(nueva);
+                }
+            }
+            porId.put(id, nuevas.toArray(new Entrada[0]));
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+    }
+
+    // Carga en lote (claves[i] es la del ID ids[i]). Con el árbol vacío lo arma de una vez a partir
+    // de las claves ordenadas, sin recalcular mejores en cada inserción; si no, o si se repite un
+    // ID, equivale a llamar a poner() con cada uno
+    public void ponerTodos(String[] ids, String[] claves, int[] pesos) {
+        bloqueo.writeLock().lock();
+        try {
+            List<Entrada> entradas = new ArrayList<>(ids.length);
+            boolean vacio = porId.isEmpty();
+            boolean deUnaVez = vacio;
+            for (int i = 0; i < ids.length && deUnaVez; i++) {
+                if (claves[i] == null || claves[i].isEmpty()) {
+                    continue;
+                }
+                Entrada entrada = new Entrada(ids[i], claves[i], pesos[i]);
+                deUnaVez = porId.put(ids[i], new Entrada[] {entrada}) == null;
+                entradas.add(entrada);
+            }
+            if (!deUnaVez) {
+                if (vacio) {
+                    porId.clear(); // Deshace lo anotado antes del ID repetido
+                }
+                for (int i = 0; i < ids.length; i++) {
+                    poner(ids[i], Collections.singletonList(claves[i]), pesos[i]);
+                }
+                return;
+            }
+            entradas.sort((a, b) -> a.clave.compareTo(b.clave)); // construir() ordena las propias por ORDEN
+            construir(raiz, entradas, 0, entradas.size(), 0);
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+    }
+
+    public void quitar(String id) {
+        bloqueo.writeLock().lock();
+        try {
+            Entrada[] viejas = porId.remove(id);
+            if (viejas != null) {
+                for (Entrada vieja : viejas) {
+                    quitarEntrada(vieja);
+                }
+            }
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+    }
+
+    // Los 'cantidad' IDs de mayor peso con alguna clave que empieza por 'prefijo'
+    public List<String> completar(String prefijo, int cantidad) {
+        if (cantidad <= 0) {
+            return Collections.emptyList();
+        }
+        bloqueo.readLock().lock();
+        try {
+            Nodo nodo = descender(prefijo);
+            if (nodo == null) {
+                return Collections.emptyList();
+            }
+            List<Entrada> candidatas;
+            if (nodo.mejores != null && cantidad <= n) {
+                candidatas = Arrays.asList(nodo.mejores);
+            } else {
+                candidatas = new ArrayList<>(nodo.cantidad);
+                recolectar(nodo, candidatas);
+                candidatas.sort(ORDEN);
+            }
+            List<String> ids = new ArrayList<>(Math.min(cantidad, candidatas.size()));
+            Set<String> vistos = new HashSet<>();
+            for (Entrada entrada : candidatas) {
+                if (ids.size() == cantidad) {
+                    break;
+                }
+                if (vistos.add(entrada.id)) {
+                    ids.add(entrada.id);
+                }
+            }
+            return ids;
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    public int tamano() {
+        bloqueo.readLock().lock();
+        try {
+            return porId.size();
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    // Nodo cuyo subárbol tiene exactamente las claves que empiezan por 'prefijo'; null si ninguna
+    private Nodo descender(String prefijo) {
+        Nodo nodo = raiz;
+        int i = 0;
+        while (i < prefijo.length()) {
+            int pos = buscarHijo(nodo, prefijo.charAt(i));
+            if (pos < 0) {
+                return null;
+            }
+            nodo = nodo.hijos[pos];
+            int comun = prefijoComun(nodo.etiqueta, prefijo, i);
+            if (i + comun == prefijo.length()) {
+                return nodo; // El prefijo termina dentro de la etiqueta o justo al final
+            }
+            if (comun < nodo.etiqueta.length()) {
+                return null;
+            }
+            i += comun;
+        }
+        return nodo;
+    }
+
+    // Arma el subárbol de las entradas [desde, hasta), ordenadas por clave, que comparten los
+    // primeros 'profundidad' caracteres
+    private void construir(Nodo nodo, List<Entrada> entradas, int desde, int hasta, int profundidad) {
+        nodo.cantidad = hasta - desde;
+        int i = desde;
+        while (i < hasta && entradas.get(i).clave.length() == profundidad) {
+            i++; // Las claves que terminan aquí van primero en el orden
+        }
+        if (i > desde) {
+            nodo.propias = new ArrayList<>(entradas.subList(desde, i));
+            nodo.propias.sort(ORDEN);
+        }
+        List<Nodo> hijos = new ArrayList<>();
+        while (i < hasta) {
+            char c = entradas.get(i).clave.charAt(profundidad);
+            int fin = i + 1;
+            while (fin < hasta && entradas.get(fin).clave.charAt(profundidad) == c) {
+                fin++;
+            }
+            // El prefijo común del grupo es el de su primera y su última clave
+            String primera = entradas.get(i).clave;
+            String ultima = entradas.get(fin - 1).clave;
+            int largo = profundidad + 1;
+            while (largo < primera.length() && largo < ultima.length() && primera.charAt(largo) == ultima.charAt(largo)) {
+                largo++;
+            }
+            Nodo hijo = new Nodo(primera.substring(profundidad, largo));
+            construir(hijo, entradas, i, fin, largo);
+            hijos.add(hijo);
+            i = fin;
+        }
+        if (!hijos.isEmpty()) {
+            nodo.hijos = hijos.toArray(new Nodo[0]);
+        }
+        if (nodo.cantidad > n) {
+            recalcular(nodo);
+        }
+    }
+
+    private void insertar(Entrada entrada) {
+        String clave = entrada.clave;
+        List<Nodo> camino = new ArrayList<>();
+        Nodo nodo = raiz;
+        camino.add(nodo);
+        int i = 0;
+        while (i < clave.length()) {
+            int pos = buscarHijo(nodo, clave.charAt(i));
+            if (pos < 0) {
+                Nodo hoja = new Nodo(clave.substring(i));
+                agregarHijo(nodo, -pos - 1, hoja);
+                nodo = hoja;
+                camino.add(nodo);
+                break;
+            }
+            Nodo hijo = nodo.hijos[pos];
+            int comun = prefijoComun(hijo.etiqueta, clave, i);
+            if (comun < hijo.etiqueta.length()) {
+                // La clave se separa a mitad de la arista: se parte con un nodo intermedio
+                Nodo intermedio = new Nodo(hijo.etiqueta.substring(0, comun));
+                hijo.etiqueta = hijo.etiqueta.substring(comun);
+                intermedio.hijos = new Nodo[] {hijo};
+                intermedio.cantidad = hijo.cantidad;
+                intermedio.mejores = hijo.mejores;
+                nodo.hijos[pos] = intermedio;
+                hijo = intermedio;
+            }
+            nodo = hijo;
+            camino.add(nodo);
+            i += comun;
+        }
+        if (nodo.propias == null) {
+            nodo.propias = new ArrayList<>(1);
+        }
+        nodo.propias.add(-Collections.binarySearch(nodo.propias, entrada, ORDEN) - 1, entrada);
+        boolean propagar = true;
+        for (int j = camino.size() - 1; j >= 0; j--) {
+            Nodo actual = camino.get(j);
+            actual.cantidad++;
+            propagar = propagar && ajustar(actual, null, entrada);
+        }
+    }
+
+    private void quitarEntrada(Entrada entrada) {
+        List<Nodo> camino = camino(entrada.clave);
+        Nodo nodo = camino.get(camino.size() - 1);
+        int posicion = nodo.propias == null ? -1 : Collections.binarySearch(nodo.propias, entrada, ORDEN);
+        if (posicion < 0) {
+            return;
+        }
+        nodo.propias.remove(posicion);
+        if (nodo.propias.isEmpty()) {
+            nodo.propias = null;
+        }
+        boolean propagar = true;
+        for (int j = camino.size() - 1; j >= 0; j--) {
+            Nodo actual = camino.get(j);
+            actual.cantidad--;
+            if (j > 0) {
+                Nodo padre = camino.get(j - 1);
+                if (actual.cantidad == 0) {
+                    quitarHijo(padre, actual);
+                    continue;
+                }
+                if (actual.propias == null && actual.hijos.length == 1) {
+                    // Nodo de paso sin claves propias: se funde con su único hijo, que ya tiene
+                    // los mejores de ese mismo subárbol
+                    Nodo hijo = actual.hijos[0];
+                    actual.etiqueta = actual.etiqueta + hijo.etiqueta;
+                    actual.hijos = hijo.hijos;
+                    actual.propias = hijo.propias;
+                    actual.mejores = hijo.mejores;
+                    continue;
+                }
+            }
+            propagar = propagar && ajustar(actual, entrada, null);
+        }
+    }
+
+    // Misma clave, otro peso: la entrada cambia de lugar en su nodo y en los mejores del camino
+    private void cambiarPeso(Entrada vieja, Entrada nueva) {
+        List<Nodo> camino = camino(vieja.clave);
+        Nodo nodo = camino.get(camino.size() - 1);
+        nodo.propias.remove(Collections.binarySearch(nodo.propias, vieja, ORDEN));
+        nodo.propias.add(-Collections.binarySearch(nodo.propias, nueva, ORDEN) - 1, nueva);
+        int j = camino.size() - 1;
+        while (j >= 0 && ajustar(camino.get(j), vieja, nueva)) {
+            j--; // Si cambiaron los mejores del nodo pueden cambiar los de su padre
+        }
+    }
+
+    // Nodos desde la raíz hasta el de una clave presente en el árbol
+    private List<Nodo> camino(String clave) {
+        List<Nodo> camino = new ArrayList<>();
+        Nodo nodo = raiz;
+        camino.add(nodo);
+        int i = 0;
+        while (i < clave.length()) {
+            nodo = nodo.hijos[buscarHijo(nodo, clave.charAt(i))];
+            camino.add(nodo);
+            i += nodo.etiqueta.length();
+        }
+        return camino;
+    }
+
+    // Actualiza los mejores del nodo después de que en su subárbol 'vieja' sale y 'nueva' entra
+    // (cualquiera puede ser null), con 'cantidad' ya al día. Devuelve false si no cambiaron: en ese
+    // caso tampoco cambian los de sus ancestros, cuyos mejores de este subárbol son un prefijo de
+    // los de este nodo. Solo recorre los hijos cuando sale uno de los mejores sin reemplazo seguro.
+    private boolean ajustar(Nodo nodo, Entrada vieja, Entrada nueva) {
+        if (nodo.cantidad <= n) {
+            nodo.mejores = null;
+            return true;
+        }
+        Entrada[] mejores = nodo.mejores;
+        if (mejores == null || mejores.length < n) {
+            recalcular(nodo); // Recién pasó de N claves, o hay IDs repetidos entre ellas
+            return true;
+        }
+        int posicion = -1;
+        for (int i = 0; i < n && vieja != null; i++) {
+            if (mejores[i] == vieja) {
+                posicion = i;
+            }
+        }
+        // 'nueva' queda entre los mejores si no va detrás del último actual
+        boolean entra = nueva != null && ORDEN.compare(nueva, mejores[n - 1]) <= 0;
+        if (posicion < 0 && !entra) {
+            return false;
+        }
+        if (!entra || mismoIdEnOtra(mejores, nueva, vieja)) {
+            recalcular(nodo);
+            return true;
+        }
+        // Sale 'vieja' si estaba y si no el último; 'nueva' se ubica en orden
+        List<Entrada> lista = new ArrayList<>(Arrays.asList(mejores));
+        lista.remove(posicion >= 0 ? posicion : n - 1);
+        lista.add(-Collections.binarySearch(lista, nueva, ORDEN) - 1, nueva);
+        nodo.mejores = lista.toArray(new Entrada[0]);
+        return true;
+    }
+
+    private static boolean mismoIdEnOtra(Entrada[] mejores, Entrada nueva, Entrada vieja) {
+        for (Entrada entrada : mejores) {
+            if (entrada != vieja && entrada.id.equals(nueva.id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Los N mejores del nodo a partir de sus claves propias y de los mejores de cada hijo
+    private void recalcular(Nodo nodo) {
+        List<Entrada> candidatas = new ArrayList<>();
+        if (nodo.propias != null) {
+            // Muchos productos pueden tener el mismo nombre; de los propios bastan los N primeros
+            candidatas.addAll(nodo.propias.subList(0, Math.min(n, nodo.propias.size())));
+        }
+        for (Nodo hijo : nodo.hijos) {
+            if (hijo.mejores != null) {
+                candidatas.addAll(Arrays.asList(hijo.mejores));
+            } else {
+                recolectar(hijo, candidatas);
+            }
+        }
+        candidatas.sort(ORDEN);
+        List<Entrada> mejores = new ArrayList<>(n);
+        Set<String> vistos = new HashSet<>();
+        for (Entrada entrada : candidatas) {
+            if (mejores.size() == n) {
+                break;
+            }
+            if (vistos.add(entrada.id)) {
+                mejores.add(entrada);
+            }
+        }
+        nodo.mejores = mejores.toArray(new Entrada[0]);
+    }
+
+    private static void recolectar(Nodo nodo, List<Entrada> destino) {
+        if (nodo.propias != null) {
+            destino.addAll(nodo.propias);
+        }
+        for (Nodo hijo : nodo.hijos) {
+            recolectar(hijo, destino);
+        }
+    }
+
+    private static boolean iguales(Entrada[] viejas, List<Entrada> nuevas) {
+        if (viejas.length != nuevas.size()) {
+            return false;
+        }
+        for (Entrada nueva : nuevas) {
+            boolean esta = false;
+            for (Entrada vieja : viejas) {
+                esta |= vieja.peso == nueva.peso && vieja.clave.equals(nueva.clave);
+            }
+            if (!esta) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Posición del hijo cuya etiqueta empieza por c, o -(posición de inserción) - 1
+    private static int buscarHijo(Nodo nodo, char c) {
+        int bajo = 0;
+        int alto = nodo.hijos.length - 1;
+        while (bajo <= alto) {
+            int medio = (bajo + alto) >>> 1;
+            char actual = nodo.hijos[medio].etiqueta.charAt(0);
+            if (actual < c) {
+                bajo = medio + 1;
+            } else if (actual > c) {
+                alto = medio - 1;
+            } else {
+                return medio;
+            }
+        }
+        return -bajo - 1;
+    }
+
+    private static void agregarHijo(Nodo nodo, int posicion, Nodo hijo) {
+        Nodo[] hijos = new Nodo[nodo.hijos.length + 1];
+        System.arraycopy(nodo.hijos, 0, hijos, 0, posicion);
+        hijos[posicion] = hijo;
+        System.arraycopy(nodo.hijos, posicion, hijos, posicion + 1, nodo.hijos.length - posicion);
+        nodo.hijos = hijos;
+    }
+
+    private static void quitarHijo(Nodo nodo, Nodo hijo) {
+        int posicion = buscarHijo(nodo, hijo.etiqueta.charAt(0));
+        Nodo[] hijos = new Nodo[nodo.hijos.length - 1];
+        System.arraycopy(nodo.hijos, 0, hijos, 0, posicion);
+        System.arraycopy(nodo.hijos, posicion + 1, hijos, posicion, hijos.length - posicion);
+        nodo.hijos = hijos.length == 0 ? SIN_HIJOS : hijos;
+    }
+
+    // Cuántos caracteres de 'etiqueta' coinciden con 'texto' a partir de 'desde'
+    private static int prefijoComun(String etiqueta, String texto, int desde) {
+        int limite = Math.min(etiqueta.length(), texto.length() - desde);
+        int i = 0;
+        while (i < limite && etiqueta.charAt(i) == texto.charAt(desde + i)) {
+            i++;
+        }
+        return i;
+    }
+}
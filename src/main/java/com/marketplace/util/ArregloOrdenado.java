@@ -0,0 +1,414 @@
+package com.marketplace.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Conjunto ordenado de pares (clave, id) para consultas por rango de clave. Los pares viven en
+// arreglos paralelos ordenados, así que contar un rango son dos búsquedas binarias (la diferencia
+// de posiciones es la suma acumulada de elementos hasta cada extremo) y listarlo es recorrer un
+// tramo contiguo. Los cambios se acumulan en dos deltas pequeños y ordenados (altas y bajas) que se
+// funden con la base cuando superan ~4·raíz de n, para que una alta no cueste copiar todo el arreglo.
+// Escrituras synchronized; las lecturas toman la instantánea volátil vigente sin bloquear.
+public class ArregloOrdenado {
+    private static final long[] SIN_CLAVES = new long[0];
+    private static final String[] SIN_IDS = new String[0];
+    private static final int DELTA_MINIMO = 64;
+    private static final int BITS_POR_PASADA = 11;
+    private static final int MASCARA_PASADA = (1 << BITS_POR_PASADA) - 1;
+
+    // Instantánea inmutable: base - bajas + altas. Las bajas siempre están en la base y las altas nunca
+    private static final class Estado {
+        final long[] claves;
+        final String[] ids;
+        final long[] clavesAltas;
+        final String[] idsAltas;
+        final long[] clavesBajas;
+        final String[] idsBajas;
+
+        Estado(long[] claves, String[] ids, long[] clavesAltas, String[] idsAltas, long[] clavesBajas,
+                String[] idsBajas) {
+            this.claves = claves;
+            this.ids = ids;
+            this.clavesAltas = clavesAltas;
+            this.idsAltas = idsAltas;
+            this.clavesBajas = clavesBajas;
+            this.idsBajas = idsBajas;
+        }
+
+        int tamano() {
+            return claves.length + clavesAltas.length - clavesBajas.length;
+        }
+    }
+
+    private volatile Estado estado = new Estado(SIN_CLAVES, SIN_IDS, SIN_CLAVES, SIN_IDS, SIN_CLAVES, SIN_IDS);
+
+    public int tamano() {
+        return estado.tamano();
+    }
+
+    public synchronized void agregar(long clave, String id) {
+        Estado e = estado;
+        if (buscar(e.clavesAltas, e.idsAltas, clave, id) >= 0) {
+            return;
+        }
+        if (buscar(e.claves, e.ids, clave, id) >= 0) {
+            int baja = buscar(e.clavesBajas, e.idsBajas, clave, id);
+            if (baja >= 0) { // Estaba en la base y se había dado de baja: basta con anular la baja
+                estado = new Estado(e.claves, e.ids, e.clavesAltas, e.idsAltas,
+                        quitar(e.clavesBajas, baja), quitar(e.idsBajas, baja));
+            }
+            return;
+        }
+        int posicion = -buscar(e.clavesAltas, e.idsAltas, clave, id) - 1;
+        estado = new Estado(e.claves, e.ids, insertar(e.clavesAltas, posicion, clave),
+                insertar(e.idsAltas, posicion, id), e.clavesBajas, e.idsBajas);
+        compactarSiHaceFalta();
+    }
+
+    public synchronized void eliminar(long clave, String id) {
+        Estado e = estado;
+        int alta = buscar(e.clavesAltas, e.idsAltas, clave, id);
+        if (alta >= 0) {
+            estado = new Estado(e.claves, e.ids, quitar(e.clavesAltas, alta), quitar(e.idsAltas, alta),
+                    e.clavesBajas, e.idsBajas);
+            return;
+        }
+        int baja = buscar(e.clavesBajas, e.idsBajas, clave, id);
+        if (baja >= 0 || buscar(e.claves, e.ids, clave, id) < 0) {
+            return; // Ya dado de baja o nunca estuvo
+        }
+        int posicion = -baja - 1;
+        estado = new Estado(e.claves, e.ids, e.clavesAltas, e.idsAltas,
+                insertar(e.clavesBajas, posicion, clave), insertar(e.idsBajas, posicion, id));
+        compactarSiHaceFalta();
+    }
+
+    // Alta masiva (carga inicial): se ordena una vez y se funde con la base en una sola pasada.
+    // Puede reordenar los arreglos recibidos
+    public synchronized void agregarTodos(long[] claves, String[] ids) {
+        if (!ordenado(claves, ids)) {
+            ordenar(claves, ids);
+        }
+        compactar();
+        Estado e = estado;
+        estado = fundir(e.claves, e.ids, claves, ids, SIN_CLAVES, SIN_IDS);
+    }
+
+    // Ordena por (clave, id) los arreglos paralelos, en el lugar: ordenación por base (radix) de las
+    // claves de 11 en 11 bits llevando la posición original, sin comparaciones ni objetos por par.
+    // Los IDs solo se comparan dentro de cada tramo de claves iguales. Devuelve la posición original
+    // de cada par en el orden nuevo, para que el llamador reordene sus propios datos paralelos
+    static int[] ordenar(long[] claves, String[] ids) {
+        int n = claves.length;
+        long[] llaves = new long[n];
+        int[] posiciones = new int[n];
+        for (int i = 0; i < n; i++) {
+            llaves[i] = claves[i] ^ Long.MIN_VALUE; // Orden con signo como orden sin signo
+            posiciones[i] = i;
+        }
+        long[] llavesAux = new long[n];
+        int[] posicionesAux = new int[n];
+        int[] cubetas = new int[1 << BITS_POR_PASADA];
+        for (int desplazamiento = 0; desplazamiento < 64; desplazamiento += BITS_POR_PASADA) {
+            Arrays.fill(cubetas, 0);
+            for (int i = 0; i < n; i++) {
+                cubetas[(int) (llaves[i] >>> desplazamiento) & MASCARA_PASADA]++;
+            }
+            if (n == 0 || cubetas[(int) (llaves[0] >>> desplazamiento) & MASCARA_PASADA] == n) {
+                continue; // Todos caen en la misma cubeta: la pasada no cambia nada
+            }
+            for (int i = 0, acumulado = 0; i < cubetas.length; i++) {
+                int cantidad = cubetas[i];
+                cubetas[i] = acumulado;
+                acumulado += cantidad;
+            }
+            for (int i = 0; i < n; i++) {
+                int destino = cubetas[(int) (llaves[i] >>> desplazamiento) & MASCARA_PASADA]++;
+                llavesAux[destino] = llaves[i];
+                posicionesAux[destino] = posiciones[i];
+            }
+            long[] llavesTmp = llaves;
+            llaves = llavesAux;
+            llavesAux = llavesTmp;
+            int[] posicionesTmp = posiciones;
+            posiciones = posicionesAux;
+            posicionesAux = posicionesTmp;
+        }
+        String[] idsOrdenados = new String[n];
+        for (int i = 0; i < n; i++) {
+            idsOrdenados[i] = ids[posiciones[i]];
+            claves[i] = llaves[i] ^ Long.MIN_VALUE;
+        }
+        for (int inicio = 0, fin; inicio < n; inicio = fin) {
+            fin = inicio + 1;
+            while (fin < n && claves[fin] == claves[inicio]) {
+                fin++;
+            }
+            if (fin - inicio > 1) {
+                ordenarTramo(idsOrdenados, posiciones, inicio, fin);
+            }
+        }
+        System.arraycopy(idsOrdenados, 0, ids, 0, n);
+        return posiciones;
+    }
+
+    // Ordena por ID un tramo de claves iguales (suelen ser pocos pares) junto con sus posiciones
+    private static void ordenarTramo(String[] ids, int[] posiciones, int inicio, int fin) {
+        for (int i = inicio + 1; i < fin; i++) {
+            String id = ids[i];
+            int posicion = posiciones[i];
+            int j = i - 1;
+            while (j >= inicio && ids[j].compareTo(id) > 0) {
+                ids[j + 1] = ids[j];
+                posiciones[j + 1] = posiciones[j];
+                j--;
+            }
+            ids[j + 1] = id;
+            posiciones[j + 1] = posicion;
+        }
+    }
+
+    // Cantidad de pares con desde <= clave < hasta
+    public int contar(long desde, long hasta) {
+        if (desde >= hasta) {
+            return 0;
+        }
+        Estado e = estado;
+        return contar(e.claves, desde, hasta) + contar(e.clavesAltas, desde, hasta)
+                - contar(e.clavesBajas, desde, hasta);
+    }
+
+    // IDs con desde <= clave < hasta, en orden de clave (y de ID a igual clave)
+    public List<String> listar(long desde, long hasta) {
+        List<String> resultado = new ArrayList<>();
+        if (desde >= hasta) {
+            return resultado;
+        }
+        Estado e = estado;
+        int i = cota(e.claves, desde);
+        int finBase = cota(e.claves, hasta);
+        int j = cota(e.clavesAltas, desde);
+        int finAltas = cota(e.clavesAltas, hasta);
+        int k = cota(e.clavesBajas, desde);
+        int finBajas = cota(e.clavesBajas, hasta);
+        while (i < finBase || j < finAltas) {
+            if (j >= finAltas || (i < finBase
+                    && comparar(e.claves[i], e.ids[i], e.clavesAltas[j], e.idsAltas[j]) < 0)) {
+                // Las bajas están ordenadas igual que la base: se avanzan a la par
+                if (k < finBajas && e.clavesBajas[k] == e.claves[i] && e.idsBajas[k].equals(e.ids[i])) {
+                    k++;
+                } else {
+                    resultado.add(e.ids[i]);
+                }
+                i++;
+            } else {
+                resultado.add(e.idsAltas[j++]);
+            }
+        }
+        return resultado;
+    }
+
+    // Paginación por cursor (keyset): escribe en clavesPagina/idsPagina, hasta llenarlos, los pares
+    // con desde <= clave < hasta que van después del par (clave, id) en orden ascendente, o antes en
+    // orden descendente; id null = desde el extremo del rango. Devuelve cuántos escribió. Cada
+    // página cuesta O(log n + tamaño de página), sin importar cuántas se hayan pedido antes
+    public int pagina(long desde, long hasta, long clave, String id, boolean descendente,
+            long[] clavesPagina, String[] idsPagina) {
+        if (desde >= hasta) {
+            return 0;
+        }
+        Estado e = estado;
+        if (!descendente) {
+            int i = Math.max(cota(e.claves, desde), id == null ? 0 : posterior(e.claves, e.ids, clave, id));
+            int j = Math.max(cota(e.clavesAltas, desde), id == null ? 0 : posterior(e.clavesAltas, e.idsAltas, clave, id));
+            int k = Math.max(cota(e.clavesBajas, desde), id == null ? 0 : posterior(e.clavesBajas, e.idsBajas, clave, id));
+            int finBase = cota(e.claves, hasta);
+            int finAltas = cota(e.clavesAltas, hasta);
+            int finBajas = cota(e.clavesBajas, hasta);
+            int n = 0;
+            while (n < idsPagina.length && (i < finBase || j < finAltas)) {
+                if (j >= finAltas || (i < finBase
+                        && comparar(e.claves[i], e.ids[i], e.clavesAltas[j], e.idsAltas[j]) < 0)) {
+                    if (k < finBajas && e.clavesBajas[k] == e.claves[i] && e.idsBajas[k].equals(e.ids[i])) {
+                        k++;
+                    } else {
+                        clavesPagina[n] = e.claves[i];
+                        idsPagina[n++] = e.ids[i];
+                    }
+                    i++;
+                } else {
+                    clavesPagina[n] = e.clavesAltas[j];
+                    idsPagina[n++] = e.idsAltas[j++];
+                }
+            }
+            return n;
+        }
+        // Descendente: el mismo recorrido de atrás hacia adelante
+        int i = Math.min(cota(e.claves, hasta), id == null ? e.claves.length : noMenor(e.claves, e.ids, clave, id)) - 1;
+        int j = Math.min(cota(e.clavesAltas, hasta), id == null ? e.clavesAltas.length : noMenor(e.clavesAltas, e.idsAltas, clave, id)) - 1;
+        int k = Math.min(cota(e.clavesBajas, hasta), id == null ? e.clavesBajas.length : noMenor(e.clavesBajas, e.idsBajas, clave, id)) - 1;
+        int inicioBase = cota(e.claves, desde);
+        int inicioAltas = cota(e.clavesAltas, desde);
+        int inicioBajas = cota(e.clavesBajas, desde);
+        int n = 0;
+        while (n < idsPagina.length && (i >= inicioBase || j >= inicioAltas)) {
+            if (j < inicioAltas || (i >= inicioBase
+                    && comparar(e.claves[i], e.ids[i], e.clavesAltas[j], e.idsAltas[j]) > 0)) {
+                if (k >= inicioBajas && e.clavesBajas[k] == e.claves[i] && e.idsBajas[k].equals(e.ids[i])) {
+                    k--;
+                } else {
+                    clavesPagina[n] = e.claves[i];
+                    idsPagina[n++] = e.ids[i];
+                }
+                i--;
+            } else {
+                clavesPagina[n] = e.clavesAltas[j];
+                idsPagina[n++] = e.idsAltas[j--];
+            }
+        }
+        return n;
+    }
+
+    private void compactarSiHaceFalta() {
+        Estado e = estado;
+        int limite = Math.max(DELTA_MINIMO, 4 * (int) Math.sqrt(e.claves.length));
+        if (e.clavesAltas.length + e.clavesBajas.length > limite) {
+            compactar();
+        }
+    }
+
+    private void compactar() {
+        Estado e = estado;
+        if (e.clavesAltas.length > 0 || e.clavesBajas.length > 0) {
+            estado = fundir(e.claves, e.ids, e.clavesAltas, e.idsAltas, e.clavesBajas, e.idsBajas);
+        }
+    }
+
+    // Nueva base = base - bajas + altas, con los deltas vacíos
+    private static Estado fundir(long[] claves, String[] ids, long[] clavesAltas, String[] idsAltas,
+            long[] clavesBajas, String[] idsBajas) {
+        int total = claves.length + clavesAltas.length - clavesBajas.length;
+        long[] nuevasClaves = new long[total];
+        String[] nuevosIds = new String[total];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        int n = 0;
+        while (i < claves.length || j < clavesAltas.length) {
+            if (j >= clavesAltas.length
+                    || (i < claves.length && comparar(claves[i], ids[i], clavesAltas[j], idsAltas[j]) < 0)) {
+                if (k < clavesBajas.length && clavesBajas[k] == claves[i] && idsBajas[k].equals(ids[i])) {
+                    k++;
+                } else {
+                    nuevasClaves[n] = claves[i];
+                    nuevosIds[n++] = ids[i];
+                }
+                i++;
+            } else if (i < claves.length && comparar(claves[i], ids[i], clavesAltas[j], idsAltas[j]) == 0) {
+                j++; // Repetido en la alta masiva: se queda el de la base
+            } else {
+                nuevasClaves[n] = clavesAltas[j];
+                nuevosIds[n++] = idsAltas[j++];
+            }
+        }
+        if (n < total) { // Hubo repetidos
+            nuevasClaves = Arrays.copyOf(nuevasClaves, n);
+            nuevosIds = Arrays.copyOf(nuevosIds, n);
+        }
+        return new Estado(nuevasClaves, nuevosIds, SIN_CLAVES, SIN_IDS, SIN_CLAVES, SIN_IDS);
+    }
+
+    private static boolean ordenado(long[] claves, String[] ids) {
+        for (int i = 1; i < claves.length; i++) {
+            if (comparar(claves[i - 1], ids[i - 1], claves[i], ids[i]) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int contar(long[] claves, long desde, long hasta) {
+        return cota(claves, hasta) - cota(claves, desde);
+    }
+
+    // Primera posición con clave >= valor
+    private static int cota(long[] claves, long valor) {
+        int bajo = 0;
+        int alto = claves.length;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (claves[medio] < valor) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    // Primera posición con par > (clave, id)
+    private static int posterior(long[] claves, String[] ids, long clave, String id) {
+        int posicion = buscar(claves, ids, clave, id);
+        return posicion >= 0 ? posicion + 1 : -posicion - 1;
+    }
+
+    // Primera posición con par >= (clave, id)
+    private static int noMenor(long[] claves, String[] ids, long clave, String id) {
+        int posicion = buscar(claves, ids, clave, id);
+        return posicion >= 0 ? posicion : -posicion - 1;
+    }
+
+    // Igual que Arrays.binarySearch: posición del par, o -(punto de inserción) - 1
+    private static int buscar(long[] claves, String[] ids, long clave, String id) {
+        int bajo = 0;
+        int alto = claves.length - 1;
+        while (bajo <= alto) {
+            int medio = (bajo + alto) >>> 1;
+            int c = comparar(claves[medio], ids[medio], clave, id);
+            if (c < 0) {
+                bajo = medio + 1;
+            } else if (c > 0) {
+                alto = medio - 1;
+            } else {
+                return medio;
+            }
+        }
+        return -(bajo + 1);
+    }
+
+    private static int comparar(long claveA, String idA, long claveB, String idB) {
+        int c = Long.compare(claveA, claveB);
+        return c != 0 ? c : idA.compareTo(idB);
+    }
+
+    private static long[] insertar(long[] arreglo, int posicion, long valor) {
+        long[] nuevo = new long[arreglo.length + 1];
+        System.arraycopy(arreglo, 0, nuevo, 0, posicion);
+        nuevo[posicion] = valor;
+        System.arraycopy(arreglo, posicion, nuevo, posicion + 1, arreglo.length - posicion);
+        return nuevo;
+    }
+
+    private static String[] insertar(String[] arreglo, int posicion, String valor) {
+        String[] nuevo = new String[arreglo.length + 1];
+        System.arraycopy(arreglo, 0, nuevo, 0, posicion);
+        nuevo[posicion] = valor;
+        System.arraycopy(arreglo, posicion, nuevo, posicion + 1, arreglo.length - posicion);
+        return nuevo;
+    }
+
+    private static long[] quitar(long[] arreglo, int posicion) {
+        long[] nuevo = new long[arreglo.length - 1];
+        System.arraycopy(arreglo, 0, nuevo, 0, posicion);
+        System.arraycopy(arreglo, posicion + 1, nuevo, posicion, nuevo.length - posicion);
+        return nuevo;
+    }
+
+    private static String[] quitar(String[] arreglo, int posicion) {
+        String[] nuevo = new String[arreglo.length - 1];
+        System.arraycopy(arreglo, 0, nuevo, 0, posicion);
+        System.arraycopy(arreglo, posicion + 1, nuevo, posicion, nuevo.length - posicion);
+        return nuevo;
+    }
+}
@@ -0,0 +1,70 @@
+package com.marketplace.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import com.marketplace.model.Producto;
+import com.marketplace.model.Vendedor;
+
+// Sugerencias mientras se escribe: nombres de productos (los de más "me gusta" primero) y de
+// vendedores (por nombre completo o por apellido, en orden alfabético). Claves y prefijos pasan
+// por NormalizadorTexto, así que no distinguen mayúsculas ni tildes. Se mantiene al día como
+// oyente del repositorio.
+public class Autocompletado implements OyenteProductos, OyenteVendedores {
+    private final ArbolPrefijos productos;
+    private final ArbolPrefijos vendedores;
+
+    public Autocompletado(int sugerencias) {
+        productos = new ArbolPrefijos(sugerencias);
+        vendedores = new ArbolPrefijos(sugerencias);
+    }
+
+    public List<String> completarProductos(String prefijo, int cantidad) {
+        return productos.completar(NormalizadorTexto.normalizar(prefijo), cantidad);
+    }
+
+    public List<String> completarVendedores(String prefijo, int cantidad) {
+        return vendedores.completar(NormalizadorTexto.normalizar(prefijo), cantidad);
+    }
+
+    @Override
+    public void productoGuardado(Producto producto) {
+        productos.poner(producto.getId(),
+                Collections.singletonList(NormalizadorTexto.normalizar(producto.getNombre())),
+                producto.getMeGustas());
+    }
+
+    @Override
+    public void productosGuardados(Collection<Producto> lote) {
+        String[] ids = new String[lote.size()];
+        String[] claves = new String[ids.length];
+        int[] pesos = new int[ids.length];
+        int i = 0;
+        for (Producto producto : lote) {
+            ids[i] = producto.getId();
+            claves[i] = NormalizadorTexto.normalizar(producto.getNombre());
+            pesos[i] = producto.getMeGustas();
+            i++;
+        }
+        productos.ponerTodos(ids, claves, pesos);
+    }
+
+    @Override
+    public void productoEliminado(String id) {
+        productos.quitar(id);
+    }
+
+    @Override
+    public void vendedorGuardado(Vendedor vendedor) {
+        String nombre = NormalizadorTexto.normalizar(vendedor.getNombre());
+        String apellido = NormalizadorTexto.normalizar(vendedor.getApellido());
+        vendedores.poner(vendedor.getId(), Arrays.asList((nombre + " " + apellido).trim(), apellido), 0);
+    }
+
+    @Override
+    public void vendedorEliminado(String id) {
+        vendedores.quitar(id);
+    }
+}
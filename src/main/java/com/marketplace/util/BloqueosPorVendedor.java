@@ -0,0 +1,28 @@
+package com.marketplace.util;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Bloqueos segmentados por ID de vendedor: cada ID se asigna a una de N franjas fijas, de modo
+// que las operaciones sobre vendedores distintos (casi siempre en franjas distintas) avanzan en
+// paralelo y las del mismo vendedor se serializan. Los bloqueos son reentrantes, así que una
+// operación compuesta puede llamar a otras que toman el mismo bloqueo.
+public class BloqueosPorVendedor {
+    private final ReentrantLock[] franjas;
+    private final int mascara;
+
+    public BloqueosPorVendedor(int cantidad) {
+        int tamano = Integer.highestOneBit(Math.max(1, cantidad - 1)) << 1; // Potencia de dos
+        franjas = new ReentrantLock[tamano];
+        for (int i = 0; i < tamano; i++) {
+            franjas[i] = new ReentrantLock();
+        }
+        mascara = tamano - 1;
+    }
+
+    public Lock bloqueo(String idVendedor) {
+        int hash = idVendedor == null ? 0 : idVendedor.hashCode();
+        hash ^= hash >>> 16; // Mezcla los bits altos, como HashMap
+        return franjas[hash & mascara];
+    }
+}
@@ -0,0 +1,289 @@
+package com.marketplace.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.marketplace.model.Categoria;
+import com.marketplace.model.Comentario;
+import com.marketplace.model.Estado;
+import com.marketplace.model.EstadoSolicitud;
+import com.marketplace.model.Mensaje;
+import com.marketplace.model.Producto;
+import com.marketplace.model.Solicitud;
+import com.marketplace.model.Vendedor;
+
+// Cargador en dos fases de los archivos de texto:
+// 1) se leen los tres archivos una sola vez, guardando las referencias como IDs pendientes;
+// 2) se resuelven las partes de las solicitudes contra las tablas ya leídas; publicaciones y
+//    contactos quedan como IDs que se resuelven (y validan) en el primer acceso.
+// Cada archivo se recorre una vez y las redes de contactos cíclicas no generan recursión.
+// También recibe las referencias pendientes de las instantáneas binarias (DecodificadorBinario).
+public class CargadorDatos implements DecodificadorBinario.Referencias {
+    // Buffers de lectura compartidos entre cargas (la carga inicial y las recargas)
+    private static final ReservaBuffers RESERVA = new ReservaBuffers(1 << 16, 4);
+    private static final String ORIGEN_DIARIO = "diario";
+    // Líneas inválidas que se describen; las demás solo se cuentan
+    private static final int MAXIMO_ERRORES = 20;
+    private static final Estado[] ESTADOS = Estado.values();
+    private static final Categoria[] CATEGORIAS = Categoria.values();
+    private static final EstadoSolicitud[] ESTADOS_SOLICITUD = EstadoSolicitud.values();
+    private final Map<String, Producto> productos = new LinkedHashMap<>();
+    private final Map<String, Vendedor> vendedores = new LinkedHashMap<>();
+    private final Map<String, Solicitud> solicitudes = new LinkedHashMap<>();
+    private final Map<String, String[]> idsPublicaciones = new HashMap<>();
+    private final Map<String, String[]> idsContactos = new HashMap<>();
+    private final Map<String, String[]> partesSolicitudes = new HashMap<>();
+    private final Map<Comentario, String> autoresComentarios = new IdentityHashMap<>();
+    private final Map<Mensaje, String> emisoresMensajes = new IdentityHashMap<>();
+    private int lineasInvalidas;
+    private int referenciasRotas;
+    private final List<String> errores = new ArrayList<>();
+
+    // Fase 1: lectura
+
+    public void leerProductos(String ruta) throws IOException {
+        try (LectorRegistros lector = new LectorRegistros(ruta, RESERVA)) {
+            while (lector.siguiente()) {
+                agregarRegistroProducto(lector, ruta);
+            }
+        }
+    }
+
+    public void leerVendedores(String ruta) throws IOException {
+        try (LectorRegistros lector = new LectorRegistros(ruta, RESERVA)) {
+            while (lector.siguiente()) {
+                agregarRegistroVendedor(lector, ruta);
+            }
+        }
+    }
+
+    public void leerSolicitudes(String ruta) throws IOException {
+        try (LectorRegistros lector = new LectorRegistros(ruta, RESERVA)) {
+            while (lector.siguiente()) {
+                agregarRegistroSolicitud(lector, ruta);
+            }
+        }
+    }
+
+    // Líneas sueltas, como las del diario de mutaciones; mismo formato que los archivos
+    public void agregarLineaProducto(String linea) {
+        agregarRegistroProducto(LectorRegistros.linea(linea), ORIGEN_DIARIO);
+    }
+
+    public void agregarLineaVendedor(String linea) {
+        agregarRegistroVendedor(LectorRegistros.linea(linea), ORIGEN_DIARIO);
+    }
+
+    public void agregarLineaSolicitud(String linea) {
+        agregarRegistroSolicitud(LectorRegistros.linea(linea), ORIGEN_DIARIO);
+    }
+
+    // Formato: id%nombre%descripcion%fecha%imagen%precio%meGustas%estado%categoria
+    private void agregarRegistroProducto(LectorRegistros registro, String origen) {
+        if (registro.vacia()) {
+            return;
+        }
+        try {
+            Producto producto = new Producto();
+            producto.setId(registro.texto(0));
+            producto.setNombre(registro.texto(1));
+            producto.setDescripcion(registro.texto(2));
+            producto.setFechaPublicacion(registro.fecha(3));
+            producto.setImagenRuta(registro.texto(4));
+            producto.setPrecio(registro.entero(5));
+            producto.setMeGustas(registro.entero(6));
+            producto.setEstado(registro.enumerado(7, ESTADOS));
+            producto.setCategoria(registro.enumerado(8, CATEGORIAS));
+            producto.setComentarios(new ArrayList<>());
+            agregarProducto(producto);
+        } catch (RuntimeException e) {
+            lineaInvalida(origen, registro, e.getMessage());
+        }
+    }
+
+    // Formato: id%nombre%apellido%cedula%direccion%contraseña%idsPublicaciones%idsContactos%
+    private void agregarRegistroVendedor(LectorRegistros registro, String origen) {
+        if (registro.vacia()) {
+            return;
+        }
+        if (registro.campos() < 6) {
+            lineaInvalida(origen, registro, "se esperaban al menos 6 campos y hay " + registro.campos());
+            return;
+        }
+        Vendedor vendedor = new Vendedor(registro.texto(0), registro.texto(1), registro.texto(2),
+                registro.texto(3), registro.texto(4), registro.texto(5), new ArrayList<>(), new ArrayList<>());
+        agregarVendedor(vendedor, registro.lista(6), registro.lista(7));
+    }
+
+    // Formato: id%emisorId%receptorId%estado
+    private void agregarRegistroSolicitud(LectorRegistros registro, String origen) {
+        if (registro.vacia()) {
+            return;
+        }
+        if (registro.campos() < 4) {
+            lineaInvalida(origen, registro, "se esperaban 4 campos y hay " + registro.campos());
+            return;
+        }
+        try {
+            agregarSolicitud(new Solicitud(registro.texto(0), null, null,
+                    registro.enumerado(3, ESTADOS_SOLICITUD)), registro.texto(1), registro.texto(2));
+        } catch (IllegalArgumentException e) {
+            lineaInvalida(origen, registro, e.getMessage());
+        }
+    }
+
+    // Cuenta la línea y guarda dónde estaba (archivo y posición en bytes) para el log de la carga
+    private void lineaInvalida(String origen, LectorRegistros registro, String motivo) {
+        lineasInvalidas++;
+        if (errores.size() < MAXIMO_ERRORES) {
+            errores.add(ORIGEN_DIARIO.equals(origen) ? origen + ": " + motivo
+                    : origen + " (byte " + registro.posicion() + "): " + motivo);
+        }
+    }
+
+    public void agregarProducto(Producto producto) {
+        productos.put(producto.getId(), producto);
+    }
+
+    // Registra un vendedor con listas vacías; las publicaciones y contactos se enlazan en la fase 2
+    public void agregarVendedor(Vendedor vendedor, String[] publicaciones, String[] contactos) {
+        vendedores.put(vendedor.getId(), vendedor);
+        idsPublicaciones.put(vendedor.getId(), publicaciones);
+        idsContactos.put(vendedor.getId(), contactos);
+    }
+
+    public void agregarSolicitud(Solicitud solicitud, String emisorId, String receptorId) {
+        solicitudes.put(solicitud.getId(), solicitud);
+        partesSolicitudes.put(solicitud.getId(), new String[] { emisorId, receptorId });
+    }
+
+    // Referencias pendientes recibidas desde el decodificador binario
+
+    @Override
+    public void vendedor(Vendedor vendedor, String[] publicaciones, String[] contactos) {
+        agregarVendedor(vendedor, publicaciones, contactos);
+    }
+
+    @Override
+    public void producto(Producto producto) {
+        agregarProducto(producto);
+    }
+
+    @Override
+    public void solicitud(Solicitud solicitud, String emisorId, String receptorId) {
+        agregarSolicitud(solicitud, emisorId, receptorId);
+    }
+
+    @Override
+    public void autorComentario(Comentario comentario, String autorId) {
+        if (autorId != null) {
+            autoresComentarios.put(comentario, autorId);
+        }
+    }
+
+    @Override
+    public void emisorMensaje(Mensaje mensaje, String emisorId) {
+        if (emisorId != null) {
+            emisoresMensajes.put(mensaje, emisorId);
+        }
+    }
+
+    // Operaciones usadas al reproducir el diario de mutaciones sobre las tablas leídas
+
+    public void eliminarProducto(String id) {
+        productos.remove(id);
+    }
+
+    public void eliminarVendedor(String id) {
+        vendedores.remove(id);
+        idsPublicaciones.remove(id);
+        idsContactos.remove(id);
+    }
+
+    public void eliminarSolicitud(String id) {
+        solicitudes.remove(id);
+        partesSolicitudes.remove(id);
+    }
+
+    public void cambiarEstadoSolicitud(String id, EstadoSolicitud estado) {
+        Solicitud solicitud = solicitudes.get(id);
+        if (solicitud != null) {
+            solicitud.setEstado(estado);
+        }
+    }
+
+    // Fase 2: resolución lineal de las referencias por ID
+
+    public void resolverReferencias() {
+        // Publicaciones y contactos quedan como los IDs leídos, sin recorrerlos: se validan al
+        // resolverse en el primer acceso (contra estas tablas, y contra el Repositorio una vez que
+        // los guarda), donde los que no existen quedan como huecos de ListaPerezosa
+        for (Map.Entry<String, String[]> entrada : idsPublicaciones.entrySet()) {
+            vendedores.get(entrada.getKey()).setIdsPublicaciones(entrada.getValue(), productos::get);
+        }
+        for (Map.Entry<String, String[]> entrada : idsContactos.entrySet()) {
+            vendedores.get(entrada.getKey()).setIdsRedDeContactos(entrada.getValue(), vendedores::get);
+        }
+        idsPublicaciones.clear();
+        idsContactos.clear();
+
+        for (Map.Entry<String, String[]> entrada : partesSolicitudes.entrySet()) {
+            Solicitud solicitud = solicitudes.get(entrada.getKey());
+            solicitud.setEmisor(resolverVendedor(entrada.getValue()[0]));
+            solicitud.setReceptor(resolverVendedor(entrada.getValue()[1]));
+        }
+        partesSolicitudes.clear();
+
+        for (Map.Entry<Comentario, String> entrada : autoresComentarios.entrySet()) {
+            entrada.getKey().setAutor(resolverVendedor(entrada.getValue()));
+        }
+        autoresComentarios.clear();
+        for (Map.Entry<Mensaje, String> entrada : emisoresMensajes.entrySet()) {
+            entrada.getKey().setEmisor(resolverVendedor(entrada.getValue()));
+        }
+        emisoresMensajes.clear();
+    }
+
+    private Vendedor resolverVendedor(String id) {
+        if (id == null || id.isEmpty()) {
+            return null;
+        }
+        Vendedor vendedor = vendedores.get(id);
+        if (vendedor == null) {
+            referenciasRotas++;
+        }
+        return vendedor;
+    }
+
+    public List<Producto> getProductos() {
+        return new ArrayList<>(productos.values());
+    }
+
+    public List<Vendedor> getVendedores() {
+        return new ArrayList<>(vendedores.values());
+    }
+
+    public List<Solicitud> getSolicitudes() {
+        return new ArrayList<>(solicitudes.values());
+    }
+
+    public int getLineasInvalidas() {
+        return lineasInvalidas;
+    }
+
+    // Solo las de solicitudes, comentarios y mensajes: las de publicaciones y contactos no se
+    // recorren al cargar
+    public int getReferenciasRotas() {
+        return referenciasRotas;
+    }
+
+    // Las primeras líneas inválidas, con su archivo y posición en bytes
+    public List<String> getErrores() {
+        return errores;
+    }
+}
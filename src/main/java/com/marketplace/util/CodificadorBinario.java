@@ -0,0 +1,184 @@
+package com.marketplace.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import com.marketplace.model.Comentario;
+import com.marketplace.model.Mensaje;
+import com.marketplace.model.Producto;
+import com.marketplace.model.Solicitud;
+import com.marketplace.model.Vendedor;
+
+// Codificador en streaming del formato binario de las instantáneas.
+//
+// Formato (versión 1):
+//   cabecera: 'M' 'K' 'P' 'B', varint versión
+//   registros: byte etiqueta, varint longitud del cuerpo, cuerpo; la etiqueta FIN cierra el flujo
+//   varint: LEB128 sin signo; enteros con signo en zigzag
+//   texto: varint (longitud en bytes + 1) seguido de UTF-8; 0 representa null
+//   enum: varint (ordinal + 1); 0 representa null. Las constantes nuevas se agregan al final
+//   fecha: byte de presencia + segundos epoch UTC en zigzag
+// Las relaciones entre entidades se guardan como IDs, nunca como objetos anidados. Un lector
+// antiguo ignora los campos agregados al final de un cuerpo; uno nuevo usa valores por defecto
+// para los campos que falten en cuerpos antiguos.
+public class CodificadorBinario {
+    static final byte[] MAGICO = { 'M', 'K', 'P', 'B' };
+    static final int VERSION = 1;
+
+    static final int FIN = 0;
+    static final int VENDEDOR = 1;
+    static final int PRODUCTO = 2;
+    static final int SOLICITUD = 3;
+    static final int COMENTARIO = 4;
+    static final int MENSAJE = 5;
+
+    private final OutputStream salida;
+    private final ByteArrayOutputStream cuerpo = new ByteArrayOutputStream(256);
+    private boolean terminado;
+
+    public CodificadorBinario(OutputStream salida) throws IOException {
+        this.salida = salida;
+        salida.write(MAGICO);
+        escribirVarint(salida, VERSION);
+    }
+
+    public void escribirVendedor(Vendedor vendedor) throws IOException {
+        texto(vendedor.getId());
+        texto(vendedor.getNombre());
+        texto(vendedor.getApellido());
+        texto(vendedor.getCedula());
+        texto(vendedor.getDireccion());
+        texto(vendedor.getContraseña());
+        // Las relaciones salen de los IDs: escribir un vendedor no resuelve sus listas
+        ids(vendedor.idsPublicaciones());
+        ids(vendedor.idsRedDeContactos());
+        cerrarRegistro(VENDEDOR);
+    }
+
+    public void escribirProducto(Producto producto) throws IOException {
+        texto(producto.getId());
+        texto(producto.getNombre());
+        texto(producto.getDescripcion());
+        fecha(producto.getFechaPublicacion());
+        texto(producto.getImagenRuta());
+        zigzag(producto.getPrecio());
+        zigzag(producto.getMeGustas());
+        enumeracion(producto.getEstado());
+        enumeracion(producto.getCategoria());
+        List<Comentario> comentarios = producto.getComentarios();
+        varint(comentarios == null ? 0 : comentarios.size());
+        if (comentarios != null) {
+            for (Comentario comentario : comentarios) {
+                comentario(comentario);
+            }
+        }
+        cerrarRegistro(PRODUCTO);
+    }
+
+    public void escribirSolicitud(Solicitud solicitud) throws IOException {
+        texto(solicitud.getId());
+        texto(solicitud.getEmisor() != null ? solicitud.getEmisor().getId() : null);
+        texto(solicitud.getReceptor() != null ? solicitud.getReceptor().getId() : null);
+        enumeracion(solicitud.getEstado());
+        cerrarRegistro(SOLICITUD);
+    }
+
+    public void escribirComentario(Comentario comentario) throws IOException {
+        comentario(comentario);
+        cerrarRegistro(COMENTARIO);
+    }
+
+    public void escribirMensaje(Mensaje mensaje) throws IOException {
+        texto(mensaje.getContenido());
+        texto(mensaje.getEmisor() != null ? mensaje.getEmisor().getId() : null);
+        fecha(mensaje.getHoraDeEnvio());
+        cerrarRegistro(MENSAJE);
+    }
+
+    // Escribe la marca de fin; el flujo subyacente no se cierra
+    public void terminar() throws IOException {
+        if (!terminado) {
+            salida.write(FIN);
+            salida.flush();
+            terminado = true;
+        }
+    }
+
+    private void comentario(Comentario comentario) {
+        texto(comentario.getId());
+        texto(comentario.getAutor() != null ? comentario.getAutor().getId() : null);
+        fecha(comentario.getFechaPublicacion());
+        texto(comentario.getTexto());
+    }
+
+    private void cerrarRegistro(int etiqueta) throws IOException {
+        salida.write(etiqueta);
+        escribirVarint(salida, cuerpo.size());
+        cuerpo.writeTo(salida);
+        cuerpo.reset();
+    }
+
+    private void texto(String valor) {
+        if (valor == null) {
+            varint(0);
+            return;
+        }
+        byte[] bytes = valor.getBytes(StandardCharsets.UTF_8);
+        varint(bytes.length + 1L);
+        cuerpo.write(bytes, 0, bytes.length);
+    }
+
+    // Cantidad y luego cada ID; los nulos se omiten
+    private void ids(List<String> ids) {
+        int cantidad = 0;
+        for (String id : ids) {
+            if (id != null) {
+                cantidad++;
+            }
+        }
+        varint(cantidad);
+        for (String id : ids) {
+            if (id != null) {
+                texto(id);
+            }
+        }
+    }
+
+    private void enumeracion(Enum<?> valor) {
+        varint(valor == null ? 0 : valor.ordinal() + 1L);
+    }
+
+    private void fecha(LocalDateTime valor) {
+        if (valor == null) {
+            cuerpo.write(0);
+            return;
+        }
+        cuerpo.write(1);
+        zigzag(valor.toEpochSecond(ZoneOffset.UTC));
+    }
+
+    private void zigzag(long valor) {
+        varint((valor << 1) ^ (valor >> 63));
+    }
+
+    private void varint(long valor) {
+        while ((valor & ~0x7FL) != 0) {
+            cuerpo.write((int) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        cuerpo.write((int) valor);
+    }
+
+    private static void escribirVarint(OutputStream salida, long valor) throws IOException {
+        while ((valor & ~0x7FL) != 0) {
+            salida.write((int) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        salida.write((int) valor);
+    }
+}
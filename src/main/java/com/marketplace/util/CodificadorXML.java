@@ -0,0 +1,152 @@
+package com.marketplace.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import com.marketplace.model.Comentario;
+import com.marketplace.model.Producto;
+import com.marketplace.model.Solicitud;
+import com.marketplace.model.Vendedor;
+
+// Exportación del modelo a XML en streaming (StAX): cada vendedor, producto y solicitud se
+// escribe como un elemento independiente, sin construir el árbol completo en memoria.
+//
+// Formato:
+//   <marketplace version="1">
+//     <vendedor id nombre apellido cedula direccion contrasena>
+//       <publicacion id/>... <contacto id/>...
+//     </vendedor>
+//     <producto id nombre fecha imagen precio meGustas estado categoria>
+//       <descripcion>texto</descripcion> <comentario id autor fecha>texto</comentario>...
+//     </producto>
+//     <solicitud id emisor receptor estado/>
+//   </marketplace>
+// Las relaciones se guardan como IDs, igual que en CodificadorBinario; un valor null omite el atributo.
+public class CodificadorXML {
+    static final String VERSION = "1";
+
+    private static final XMLOutputFactory FABRICA = XMLOutputFactory.newInstance();
+
+    private final XMLStreamWriter escritor;
+    private boolean terminado;
+
+    public CodificadorXML(OutputStream salida) throws IOException {
+        try {
+            escritor = FABRICA.createXMLStreamWriter(salida, "UTF-8");
+            escritor.writeStartDocument("UTF-8", "1.0");
+            escritor.writeCharacters("\n");
+            escritor.writeStartElement("marketplace");
+            escritor.writeAttribute("version", VERSION);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    public void escribirVendedor(Vendedor vendedor) throws IOException {
+        try {
+            inicio("vendedor");
+            atributo("id", vendedor.getId());
+            atributo("nombre", vendedor.getNombre());
+            atributo("apellido", vendedor.getApellido());
+            atributo("cedula", vendedor.getCedula());
+            atributo("direccion", vendedor.getDireccion());
+            atributo("contrasena", vendedor.getContraseña());
+            for (String id : vendedor.idsPublicaciones()) {
+                if (id != null) {
+                    escritor.writeEmptyElement("publicacion");
+                    atributo("id", id);
+                }
+            }
+            for (String id : vendedor.idsRedDeContactos()) {
+                if (id != null) {
+                    escritor.writeEmptyElement("contacto");
+                    atributo("id", id);
+                }
+            }
+            escritor.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    public void escribirProducto(Producto producto) throws IOException {
+        try {
+            inicio("producto");
+            atributo("id", producto.getId());
+            atributo("nombre", producto.getNombre());
+            atributo("fecha", producto.getFechaPublicacion());
+            atributo("imagen", producto.getImagenRuta());
+            atributo("precio", producto.getPrecio());
+            atributo("meGustas", producto.getMeGustas());
+            atributo("estado", producto.getEstado());
+            atributo("categoria", producto.getCategoria());
+            if (producto.getDescripcion() != null) {
+                escritor.writeStartElement("descripcion");
+                escritor.writeCharacters(producto.getDescripcion());
+                escritor.writeEndElement();
+            }
+            List<Comentario> comentarios = producto.getComentarios();
+            if (comentarios != null) {
+                for (Comentario comentario : comentarios) {
+                    escritor.writeStartElement("comentario");
+                    atributo("id", comentario.getId());
+                    atributo("autor", comentario.getAutor() != null ? comentario.getAutor().getId() : null);
+                    atributo("fecha", comentario.getFechaPublicacion());
+                    if (comentario.getTexto() != null) {
+                        escritor.writeCharacters(comentario.getTexto());
+                    }
+                    escritor.writeEndElement();
+                }
+            }
+            escritor.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    public void escribirSolicitud(Solicitud solicitud) throws IOException {
+        try {
+            escritor.writeCharacters("\n");
+            escritor.writeEmptyElement("solicitud");
+            atributo("id", solicitud.getId());
+            atributo("emisor", solicitud.getEmisor() != null ? solicitud.getEmisor().getId() : null);
+            atributo("receptor", solicitud.getReceptor() != null ? solicitud.getReceptor().getId() : null);
+            atributo("estado", solicitud.getEstado());
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    // Cierra el elemento raíz y vacía el escritor; el flujo subyacente no se cierra
+    public void terminar() throws IOException {
+        if (terminado) {
+            return;
+        }
+        try {
+            escritor.writeCharacters("\n");
+            escritor.writeEndElement();
+            escritor.writeEndDocument();
+            escritor.flush();
+            escritor.close();
+            terminado = true;
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void inicio(String elemento) throws XMLStreamException {
+        escritor.writeCharacters("\n");
+        escritor.writeStartElement(elemento);
+    }
+
+    private void atributo(String nombre, Object valor) throws XMLStreamException {
+        if (valor != null) {
+            escritor.writeAttribute(nombre, valor.toString());
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package com.marketplace.util;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+import com.marketplace.model.Categoria;
+import com.marketplace.model.Producto;
+import com.marketplace.model.Vendedor;
+
+// Copia por columnas del catálogo para las estadísticas: precio, "me gusta", fecha, categoría,
+// estado y vendedor de cada producto en arreglos primitivos paralelos, sin objetos de por medio.
+// Una agregación es un bucle sobre enteros contiguos en vez de seguir un puntero por producto.
+// Las posiciones están siempre compactas (0..cantidad-1): al eliminar, el último ocupa el hueco.
+// El vendedor se guarda como su ranura densa (RanurasDensas), que se aprende de sus publicaciones.
+public class ColumnasProductos implements OyenteProductos, OyenteVendedores {
+    private static final Categoria[] CATEGORIAS = Categoria.values();
+    static final long SIN_FECHA = Long.MIN_VALUE;
+    private static final byte SIN_VALOR = -1;
+    private static final int SIN_VENDEDOR = -1;
+
+    // Resultado de una pasada: productos publicados en un rango de fechas, los de un vendedor y,
+    // por categoría, cantidad, precios y "me gusta" de los publicados en el rango
+    public static final class Estadisticas {
+        private final int enRango;
+        private final int delVendedor;
+        private final int delVendedorEnRango;
+        private final int[] cantidades;
+        private final long[] sumasPrecio;
+        private final int[] preciosMinimos;
+        private final int[] preciosMaximos;
+        private final long[] sumasMeGustas;
+
+        Estadisticas(int enRango, int delVendedor, int delVendedorEnRango, int[] cantidades, long[] sumasPrecio,
+                int[] preciosMinimos, int[] preciosMaximos, long[] sumasMeGustas) {
+            this.enRango = enRango;
+            this.delVendedor = delVendedor;
+            this.delVendedorEnRango = delVendedorEnRango;
+            this.cantidades = cantidades;
+            this.sumasPrecio = sumasPrecio;
+            this.preciosMinimos = preciosMinimos;
+            this.preciosMaximos = preciosMaximos;
+            this.sumasMeGustas = sumasMeGustas;
+        }
+
+        public int getEnRango() {
+            return enRango;
+        }
+
+        public int getDelVendedor() {
+            return delVendedor;
+        }
+
+        public int getDelVendedorEnRango() {
+            return delVendedorEnRango;
+        }
+
+        public int getCantidad(Categoria categoria) {
+            return cantidades[categoria.ordinal()];
+        }
+
+        // 0 si la categoría no tiene productos en el rango
+        public double getPrecioPromedio(Categoria categoria) {
+            int cantidad = cantidades[categoria.ordinal()];
+            return cantidad == 0 ? 0 : (double) sumasPrecio[categoria.ordinal()] / cantidad;
+        }
+
+        public int getPrecioMinimo(Categoria categoria) {
+            return cantidades[categoria.ordinal()] == 0 ? 0 : preciosMinimos[categoria.ordinal()];
+        }
+
+        public int getPrecioMaximo(Categoria categoria) {
+            return cantidades[categoria.ordinal()] == 0 ? 0 : preciosMaximos[categoria.ordinal()];
+        }
+
+        public long getMeGustas(Categoria categoria) {
+            return sumasMeGustas[categoria.ordinal()];
+        }
+
+        public Map<Categoria, Integer> getCantidadesPorCategoria() {
+            Map<Categoria, Integer> mapa = new EnumMap<>(Categoria.class);
+            for (Categoria categoria : CATEGORIAS) {
+                mapa.put(categoria, cantidades[categoria.ordinal()]);
+            }
+            return mapa;
+        }
+    }
+
+    // Las columnas vigentes, solo válidas mientras dura leer(); los arreglos pueden ser más largos
+    // que 'cantidad'
+    static final class Columnas {
+        final int cantidad;
+        final int[] precios;
+        final int[] meGustas;
+        final long[] fechas;
+        final byte[] categorias;
+        final byte[] estados;
+        final int[] vendedores;
+
+        Columnas(int cantidad, int[] precios, int[] meGustas, long[] fechas, byte[] categorias, byte[] estados,
+                int[] vendedores) {
+            this.cantidad = cantidad;
+            this.precios = precios;
+            this.meGustas = meGustas;
+            this.fechas = fechas;
+            this.categorias = categorias;
+            this.estados = estados;
+            this.vendedores = vendedores;
+        }
+    }
+
+    private final ReentrantReadWriteLock bloqueo = new ReentrantReadWriteLock();
+    private final Map<String, Integer> posiciones = new HashMap<>();
+    private int cantidad;
+    private String[] ids = new String[16];
+    private int[] precios = new int[16];
+    private int[] meGustas = new int[16];
+    private long[] fechas = new long[16];
+    private byte[] categorias = new byte[16];
+    private byte[] estados = new byte[16];
+    private int[] vendedores = new int[16];
+    // Dueños según las publicaciones de cada vendedor, como en Repositorio.propietarios
+    private final RanurasDensas ranurasVendedores = new RanurasDensas();
+    private final Map<String, Integer> duenos = new HashMap<>();
+    private final Map<String, List<String>> publicaciones = new HashMap<>();
+
+    @Override
+    public void productoGuardado(Producto producto) {
+        bloqueo.writeLock().lock();
+        try {
+            colocar(producto);
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void productosGuardados(Collection<Producto> lote) {
+        bloqueo.writeLock().lock();
+        try {
+            asegurar(cantidad + lote.size());
+            for (Producto producto : lote) {
+                colocar(producto);
+            }
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void productoEliminado(String id) {
+        bloqueo.writeLock().lock();
+        try {
+            duenos.remove(id); // Repositorio también olvida el propietario al eliminar
+            Integer posicion = posiciones.remove(id);
+            if (posicion == null) {
+                return;
+            }
+            int ultima = --cantidad;
+            if (posicion != ultima) {
+                mover(ultima, posicion);
+                posiciones.put(ids[posicion], posicion);
+            }
+            ids[ultima] = null;
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void vendedorGuardado(Vendedor vendedor) {
+        int ranura = ranurasVendedores.ranura(vendedor.getId());
+        bloqueo.writeLock().lock();
+        try {
+            olvidarPublicaciones(vendedor.getId(), ranura);
+            if (vendedor.getPublicaciones() == null) {
+                return;
+            }
+            List<String> ids = vendedor.idsPublicaciones();
+            List<String> propias = new ArrayList<>(ids.size());
+            for (String idProducto : ids) {
+                if (idProducto != null) {
+                    propias.add(idProducto);
+                    duenos.put(idProducto, ranura);
+                    Integer posicion = posiciones.get(idProducto);
+                    if (posicion != null) {
+                        vendedores[posicion] = ranura;
+                    }
+                }
+            }
+            publicaciones.put(vendedor.getId(), propias);
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void vendedorEliminado(String id) {
+        int ranura = ranurasVendedores.buscar(id);
+        if (ranura < 0) {
+            return;
+        }
+        bloqueo.writeLock().lock();
+        try {
+            olvidarPublicaciones(id, ranura);
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+    }
+
+    public int tamano() {
+        bloqueo.readLock().lock();
+        try {
+            return cantidad;
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    // Productos vivos cuyo dueño es el vendedor; 0 si el vendedor no tiene publicaciones
+    public int contarPorVendedor(String idVendedor) {
+        int ranura = ranurasVendedores.buscar(idVendedor);
+        if (ranura < 0) {
+            return 0;
+        }
+        bloqueo.readLock().lock();
+        try {
+            int total = 0;
+            for (int i = 0; i < cantidad; i++) {
+                if (vendedores[i] == ranura) {
+                    total++;
+                }
+            }
+            return total;
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    // Todas las cifras del reporte en una sola pasada; desde y hasta incluidos. Los productos sin
+    // fecha no están en ningún rango y los sin categoría solo cuentan en los totales
+    public Estadisticas estadisticas(LocalDateTime desde, LocalDateTime hasta, String idVendedor) {
+        long inicio = clave(desde);
+        long fin = clave(hasta);
+        int ranura = idVendedor == null ? SIN_VENDEDOR : ranurasVendedores.buscar(idVendedor);
+        int enRango = 0;
+        int delVendedor = 0;
+        int delVendedorEnRango = 0;
+        int[] cantidades = new int[CATEGORIAS.length];
+        long[] sumasPrecio = new long[CATEGORIAS.length];
+        int[] minimos = new int[CATEGORIAS.length];
+        int[] maximos = new int[CATEGORIAS.length];
+        long[] sumasMeGustas = new long[CATEGORIAS.length];
+        Arrays.fill(minimos, Integer.MAX_VALUE);
+        Arrays.fill(maximos, Integer.MIN_VALUE);
+        bloqueo.readLock().lock();
+        try {
+            for (int i = 0; i < cantidad; i++) {
+                long fecha = fechas[i];
+                boolean dentro = fecha != SIN_FECHA && fecha >= inicio && fecha <= fin;
+                boolean propio = ranura >= 0 && vendedores[i] == ranura;
+                if (propio) {
+                    delVendedor++;
+                }
+                if (!dentro) {
+                    continue;
+                }
+                enRango++;
+                if (propio) {
+                    delVendedorEnRango++;
+                }
+                int c = categorias[i];
+                if (c >= 0) {
+                    int precio = precios[i];
+                    cantidades[c]++;
+                    sumasPrecio[c] += precio;
+                    minimos[c] = Math.min(minimos[c], precio);
+                    maximos[c] = Math.max(maximos[c], precio);
+                    sumasMeGustas[c] += meGustas[i];
+                }
+            }
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+        return new Estadisticas(enRango, delVendedor, delVendedorEnRango, cantidades, sumasPrecio, minimos, maximos,
+                sumasMeGustas);
+    }
+
+    // Corre la consulta con el bloqueo de lectura tomado: ninguna escritura cambia las columnas
+    // mientras tanto, aunque la consulta las reparta entre otros hilos y espere sus resultados
+    <R> R leer(Function<Columnas, R> consulta) {
+        bloqueo.readLock().lock();
+        try {
+            return consulta.apply(new Columnas(cantidad, precios, meGustas, fechas, categorias, estados, vendedores));
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    // ID del vendedor de una ranura de la columna de vendedores
+    String idVendedor(int ranura) {
+        return ranurasVendedores.id(ranura);
+    }
+
+    // Misma clave que IndiceFechas: microsegundos desde la época, sin zona
+    static long clave(LocalDateTime fecha) {
+        return fecha.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + fecha.getNano() / 1_000;
+    }
+
+    private void colocar(Producto producto) {
+        Integer posicion = posiciones.get(producto.getId());
+        int i;
+        if (posicion != null) {
+            i = posicion;
+        } else {
+            asegurar(cantidad + 1);
+            i = cantidad++;
+            ids[i] = producto.getId();
+            posiciones.put(producto.getId(), i);
+        }
+        precios[i] = producto.getPrecio();
+        meGustas[i] = producto.getMeGustas();
+        fechas[i] = producto.getFechaPublicacion() == null ? SIN_FECHA : clave(producto.getFechaPublicacion());
+        categorias[i] = producto.getCategoria() == null ? SIN_VALOR : (byte) producto.getCategoria().ordinal();
+        estados[i] = producto.getEstado() == null ? SIN_VALOR : (byte) producto.getEstado().ordinal();
+        Integer dueno = duenos.get(producto.getId());
+        vendedores[i] = dueno == null ? SIN_VENDEDOR : dueno;
+    }
+
+    private void mover(int desde, int hacia) {
+        ids[hacia] = ids[desde];
+        precios[hacia] = precios[desde];
+        meGustas[hacia] = meGustas[desde];
+        fechas[hacia] = fechas[desde];
+        categorias[hacia] = categorias[desde];
+        estados[hacia] = estados[desde];
+        vendedores[hacia] = vendedores[desde];
+    }
+
+    // Quita al vendedor de las publicaciones que registró la última vez, salvo las que ya
+    // pasaron a otro
+    private void olvidarPublicaciones(String idVendedor, int ranura) {
+        List<String> anteriores = publicaciones.remove(idVendedor);
+        if (anteriores == null) {
+            return;
+        }
+        for (String id : anteriores) {
+            if (duenos.remove(id, ranura)) {
+                Integer posicion = posiciones.get(id);
+                if (posicion != null) {
+                    vendedores[posicion] = SIN_VENDEDOR;
+                }
+            }
+        }
+    }
+
+    private void asegurar(int capacidad) {
+        if (capacidad <= ids.length) {
+            return;
+        }
+        int nueva = Math.max(capacidad, ids.length * 2);
+        ids = Arrays.copyOf(ids, nueva);
+        precios = Arrays.copyOf(precios, nueva);
+        meGustas = Arrays.copyOf(meGustas, nueva);
+        fechas = Arrays.copyOf(fechas, nueva);
+        categorias = Arrays.copyOf(categorias, nueva);
+        estados = Arrays.copyOf(estados, nueva);
+        vendedores = Arrays.copyOf(vendedores, nueva);
+    }
+}
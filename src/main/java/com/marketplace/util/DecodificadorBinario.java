@@ -0,0 +1,259 @@
+package com.marketplace.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.marketplace.model.Categoria;
+import com.marketplace.model.Comentario;
+import com.marketplace.model.Estado;
+import com.marketplace.model.EstadoSolicitud;
+import com.marketplace.model.Mensaje;
+import com.marketplace.model.Producto;
+import com.marketplace.model.Solicitud;
+import com.marketplace.model.Vendedor;
+
+// Decodificador en streaming del formato escrito por CodificadorBinario.
+// Las relaciones se leen como IDs y se entregan a Referencias para resolverlas después
+// (p. ej. CargadorDatos), de modo que el orden de los registros no importa.
+public class DecodificadorBinario {
+
+    public interface Referencias {
+        void vendedor(Vendedor vendedor, String[] publicaciones, String[] contactos);
+
+        void producto(Producto producto);
+
+        void solicitud(Solicitud solicitud, String emisorId, String receptorId);
+
+        void autorComentario(Comentario comentario, String autorId);
+
+        void emisorMensaje(Mensaje mensaje, String emisorId);
+    }
+
+    private static final Categoria[] CATEGORIAS = Categoria.values();
+    private static final Estado[] ESTADOS = Estado.values();
+    private static final EstadoSolicitud[] ESTADOS_SOLICITUD = EstadoSolicitud.values();
+
+    private final InputStream entrada;
+    private final Referencias referencias;
+    private final int version;
+    private byte[] cuerpo = new byte[256];
+    private int posicion;
+    private int limite;
+
+    public DecodificadorBinario(InputStream entrada, Referencias referencias) throws IOException {
+        this.entrada = entrada;
+        this.referencias = referencias;
+        byte[] magico = new byte[CodificadorBinario.MAGICO.length];
+        leerCompleto(magico, magico.length);
+        if (!Arrays.equals(magico, CodificadorBinario.MAGICO)) {
+            throw new IOException("El archivo no es una instantánea binaria del marketplace");
+        }
+        this.version = (int) leerVarintFlujo();
+        if (version < 1 || version > CodificadorBinario.VERSION) {
+            throw new IOException("Versión de instantánea no soportada: " + version);
+        }
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    // Lee el siguiente registro y lo devuelve ya construido; null al llegar al fin del flujo.
+    // Las etiquetas desconocidas (de versiones futuras) se saltan.
+    public Object leerSiguiente() throws IOException {
+        while (true) {
+            int etiqueta = entrada.read();
+            if (etiqueta < 0 || etiqueta == CodificadorBinario.FIN) {
+                return null;
+            }
+            int longitud = (int) leerVarintFlujo();
+            if (cuerpo.length < longitud) {
+                cuerpo = new byte[Math.max(longitud, cuerpo.length * 2)];
+            }
+            leerCompleto(cuerpo, longitud);
+            posicion = 0;
+            limite = longitud;
+            switch (etiqueta) {
+                case CodificadorBinario.VENDEDOR:
+                    return vendedor();
+                case CodificadorBinario.PRODUCTO:
+                    return producto();
+                case CodificadorBinario.SOLICITUD:
+                    return solicitud();
+                case CodificadorBinario.COMENTARIO:
+                    return comentario();
+                case CodificadorBinario.MENSAJE:
+                    return mensaje();
+                default:
+                    break; // Registro desconocido: se ignora
+            }
+        }
+    }
+
+    // Lee todo el flujo entregando cada registro a Referencias
+    public void leerTodo() throws IOException {
+        while (leerSiguiente() != null) {
+            // Los registros ya se entregaron a Referencias
+        }
+    }
+
+    private Vendedor vendedor() throws IOException {
+        Vendedor vendedor = new Vendedor(texto(), texto(), texto(), texto(), texto(), texto(),
+                new ArrayList<>(), new ArrayList<>());
+        String[] publicaciones = ids();
+        String[] contactos = ids();
+        referencias.vendedor(vendedor, publicaciones, contactos);
+        return vendedor;
+    }
+
+    private Producto producto() throws IOException {
+        Producto producto = new Producto();
+        producto.setId(texto());
+        producto.setNombre(texto());
+        producto.setDescripcion(texto());
+        producto.setFechaPublicacion(fecha());
+        producto.setImagenRuta(texto());
+        producto.setPrecio((int) zigzag());
+        producto.setMeGustas((int) zigzag());
+        producto.setEstado(enumeracion(ESTADOS));
+        producto.setCategoria(enumeracion(CATEGORIAS));
+        int cantidad = (int) varint();
+        List<Comentario> comentarios = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            comentarios.add(comentario());
+        }
+        producto.setComentarios(comentarios);
+        referencias.producto(producto);
+        return producto;
+    }
+
+    private Solicitud solicitud() throws IOException {
+        String id = texto();
+        String emisorId = texto();
+        String receptorId = texto();
+        Solicitud solicitud = new Solicitud(id, null, null, enumeracion(ESTADOS_SOLICITUD));
+        referencias.solicitud(solicitud, emisorId, receptorId);
+        return solicitud;
+    }
+
+    private Comentario comentario() throws IOException {
+        String id = texto();
+        String autorId = texto();
+        Comentario comentario = new Comentario(id, null, fecha(), texto());
+        referencias.autorComentario(comentario, autorId);
+        return comentario;
+    }
+
+    private Mensaje mensaje() throws IOException {
+        Mensaje mensaje = new Mensaje(texto(), null);
+        String emisorId = texto();
+        mensaje.setHoraDeEnvio(fecha());
+        referencias.emisorMensaje(mensaje, emisorId);
+        return mensaje;
+    }
+
+    // Lectores de campos sobre el cuerpo del registro actual; fuera del cuerpo devuelven el valor por defecto
+
+    private String[] ids() throws IOException {
+        int cantidad = (int) varint();
+        String[] ids = new String[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            ids[i] = texto();
+        }
+        return ids;
+    }
+
+    private String texto() throws IOException {
+        long longitud = varint();
+        if (longitud == 0) {
+            return null;
+        }
+        int bytes = (int) (longitud - 1);
+        if (posicion + bytes > limite) {
+            throw new IOException("Registro binario truncado");
+        }
+        String valor = new String(cuerpo, posicion, bytes, StandardCharsets.UTF_8);
+        posicion += bytes;
+        return valor;
+    }
+
+    private <E extends Enum<E>> E enumeracion(E[] valores) throws IOException {
+        int codigo = (int) varint();
+        if (codigo == 0) {
+            return null;
+        }
+        if (codigo > valores.length) {
+            throw new IOException("Valor de enumeración desconocido: " + (codigo - 1));
+        }
+        return valores[codigo - 1];
+    }
+
+    private LocalDateTime fecha() throws IOException {
+        if (posicion >= limite || cuerpo[posicion++] == 0) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(zigzag(), 0, ZoneOffset.UTC);
+    }
+
+    private long zigzag() throws IOException {
+        long valor = varint();
+        return (valor >>> 1) ^ -(valor & 1);
+    }
+
+    private long varint() throws IOException {
+        long valor = 0;
+        int desplazamiento = 0;
+        while (posicion < limite) {
+            byte b = cuerpo[posicion++];
+            valor |= (long) (b & 0x7F) << desplazamiento;
+            if ((b & 0x80) == 0) {
+                return valor;
+            }
+            desplazamiento += 7;
+            if (desplazamiento > 63) {
+                throw new IOException("Varint demasiado largo");
+            }
+        }
+        if (desplazamiento > 0) {
+            throw new IOException("Registro binario truncado");
+        }
+        return 0; // Campo ausente en un cuerpo de una versión anterior
+    }
+
+    private long leerVarintFlujo() throws IOException {
+        long valor = 0;
+        int desplazamiento = 0;
+        while (true) {
+            int b = entrada.read();
+            if (b < 0) {
+                throw new EOFException("Fin inesperado de la instantánea binaria");
+            }
+            valor |= (long) (b & 0x7F) << desplazamiento;
+            if ((b & 0x80) == 0) {
+                return valor;
+            }
+            desplazamiento += 7;
+            if (desplazamiento > 63) {
+                throw new IOException("Varint demasiado largo");
+            }
+        }
+    }
+
+    private void leerCompleto(byte[] destino, int longitud) throws IOException {
+        int leidos = 0;
+        while (leidos < longitud) {
+            int n = entrada.read(destino, leidos, longitud - leidos);
+            if (n < 0) {
+                throw new EOFException("Fin inesperado de la instantánea binaria");
+            }
+            leidos += n;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.marketplace.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.marketplace.model.Categoria;
+import com.marketplace.model.Comentario;
+import com.marketplace.model.Estado;
+import com.marketplace.model.EstadoSolicitud;
+import com.marketplace.model.Producto;
+import com.marketplace.model.Solicitud;
+import com.marketplace.model.Vendedor;
+
+// Importación en streaming (StAX) del formato escrito por CodificadorXML.
+// Cada elemento se construye y se entrega a DecodificadorBinario.Referencias en cuanto se lee,
+// así que la memoria usada depende del receptor y no del tamaño del documento.
+public class DecodificadorXML {
+    private static final XMLInputFactory FABRICA = XMLInputFactory.newInstance();
+
+    static {
+        // El documento es un archivo de datos: sin DTD ni entidades externas
+        FABRICA.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        FABRICA.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private final XMLStreamReader lector;
+    private final DecodificadorBinario.Referencias referencias;
+
+    public DecodificadorXML(InputStream entrada, DecodificadorBinario.Referencias referencias) throws IOException {
+        this.referencias = referencias;
+        try {
+            lector = FABRICA.createXMLStreamReader(entrada);
+            lector.nextTag();
+            if (!"marketplace".equals(lector.getLocalName())) {
+                throw new IOException("El archivo no es una exportación XML del marketplace");
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    // Lee el siguiente vendedor, producto o solicitud; null al cerrar el elemento raíz.
+    // Los elementos desconocidos se saltan completos.
+    public Object leerSiguiente() throws IOException {
+        try {
+            while (lector.hasNext()) {
+                int evento = lector.next();
+                if (evento == XMLStreamConstants.END_ELEMENT) {
+                    return null; // Fin de <marketplace>
+                }
+                if (evento != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                switch (lector.getLocalName()) {
+                    case "vendedor":
+                        return vendedor();
+                    case "producto":
+                        return producto();
+                    case "solicitud":
+                        return solicitud();
+                    default:
+                        saltarElemento();
+                        break;
+                }
+            }
+            return null;
+        } catch (XMLStreamException | RuntimeException e) {
+            throw new IOException("XML inválido en la línea " + lector.getLocation().getLineNumber(), e);
+        }
+    }
+
+    // Lee todo el documento entregando cada elemento a Referencias
+    public void leerTodo() throws IOException {
+        while (leerSiguiente() != null) {
+            // Los elementos ya se entregaron a Referencias
+        }
+    }
+
+    private Vendedor vendedor() throws XMLStreamException {
+        Vendedor vendedor = new Vendedor(atributo("id"), atributo("nombre"), atributo("apellido"),
+                atributo("cedula"), atributo("direccion"), atributo("contrasena"),
+                new ArrayList<>(), new ArrayList<>());
+        List<String> publicaciones = new ArrayList<>();
+        List<String> contactos = new ArrayList<>();
+        while (lector.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            switch (lector.getLocalName()) {
+                case "publicacion":
+                    publicaciones.add(atributo("id"));
+                    break;
+                case "contacto":
+                    contactos.add(atributo("id"));
+                    break;
+                default:
+                    break;
+            }
+            saltarElemento();
+        }
+        referencias.vendedor(vendedor, publicaciones.toArray(new String[0]), contactos.toArray(new String[0]));
+        return vendedor;
+    }
+
+    private Producto producto() throws XMLStreamException {
+        Producto producto = new Producto();
+        producto.setId(atributo("id"));
+        producto.setNombre(atributo("nombre"));
+        producto.setFechaPublicacion(fecha(atributo("fecha")));
+        producto.setImagenRuta(atributo("imagen"));
+        producto.setPrecio(entero(atributo("precio")));
+        producto.setMeGustas(entero(atributo("meGustas")));
+        String estado = atributo("estado");
+        producto.setEstado(estado == null ? null : Estado.valueOf(estado));
+        String categoria = atributo("categoria");
+        producto.setCategoria(categoria == null ? null : Categoria.valueOf(categoria));
+        List<Comentario> comentarios = new ArrayList<>();
+        while (lector.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            switch (lector.getLocalName()) {
+                case "descripcion":
+                    producto.setDescripcion(lector.getElementText());
+                    break;
+                case "comentario":
+                    String id = atributo("id");
+                    String autorId = atributo("autor");
+                    LocalDateTime fecha = fecha(atributo("fecha"));
+                    Comentario comentario = new Comentario(id, null, fecha, lector.getElementText());
+                    referencias.autorComentario(comentario, autorId);
+                    comentarios.add(comentario);
+                    break;
+                default:
+                    saltarElemento();
+                    break;
+            }
+        }
+        producto.setComentarios(comentarios);
+        referencias.producto(producto);
+        return producto;
+    }
+
+    private Solicitud solicitud() throws XMLStreamException {
+        String estado = atributo("estado");
+        Solicitud solicitud = new Solicitud(atributo("id"), null, null,
+                estado == null ? null : EstadoSolicitud.valueOf(estado));
+        String emisorId = atributo("emisor");
+        String receptorId = atributo("receptor");
+        saltarElemento();
+        referencias.solicitud(solicitud, emisorId, receptorId);
+        return solicitud;
+    }
+
+    // Avanza hasta el cierre del elemento actual, ignorando su contenido
+    private void saltarElemento() throws XMLStreamException {
+        int profundidad = 1;
+        while (profundidad > 0) {
+            int evento = lector.next();
+            if (evento == XMLStreamConstants.START_ELEMENT) {
+                profundidad++;
+            } else if (evento == XMLStreamConstants.END_ELEMENT) {
+                profundidad--;
+            }
+        }
+    }
+
+    private String atributo(String nombre) {
+        return lector.getAttributeValue(null, nombre);
+    }
+
+    private static int entero(String valor) {
+        return valor == null ? 0 : Integer.parseInt(valor);
+    }
+
+    private static LocalDateTime fecha(String valor) {
+        return valor == null ? null : LocalDateTime.parse(valor);
+    }
+}
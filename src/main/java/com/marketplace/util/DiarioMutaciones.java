@@ -0,0 +1,343 @@
+package com.marketplace.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Lock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import com.marketplace.model.EstadoSolicitud;
+
+// Diario de mutaciones de solo anexado. Cada cambio del modelo se registra como una línea
+// "TIPO%contenido" (el contenido usa el mismo formato que los archivos de texto), de modo que
+// una actualización es una escritura secuencial pequeña. Los archivos de texto actúan como
+// punto de control: al cargar se leen y luego se reproduce el diario encima.
+//
+// Orden: el cambio en memoria y su registro se hacen bajo un bloqueo por clave de entidad
+// (franjas de BloqueosPorVendedor), así que el diario guarda los cambios de una misma entidad en
+// el orden en que se aplicaron. Las entidades distintas no se esperan entre sí: el monitor del
+// diario solo cubre la escritura del registro y la asignación de su secuencia. Al reproducir
+// gana el último registro de cada entidad, así que no hace falta un orden global.
+//
+// Durabilidad: con fsync activo, registrar() no retorna hasta que su registro está en disco.
+// Los hilos que escriben a la vez comparten un único FileChannel.force (group commit): el primero
+// en llegar actúa como líder, espera la ventana configurada para agrupar a los demás y fuerza
+// una sola vez todo lo escrito hasta ese momento.
+public class DiarioMutaciones {
+
+    public enum Tipo {
+        PONER_VENDEDOR,
+        ELIMINAR_VENDEDOR,
+        PONER_PRODUCTO,
+        ELIMINAR_PRODUCTO,
+        PONER_SOLICITUD,
+        ELIMINAR_SOLICITUD,
+        ESTADO_SOLICITUD
+    }
+
+    private final String ruta;
+    private final boolean fsync;
+    private final long ventanaGrupoMs;
+    private FileChannel canal;
+    private int registrosPendientes;
+    private long escritos; // Secuencia del último registro escrito
+    private final BloqueosPorVendedor bloqueosClave = new BloqueosPorVendedor(64);
+
+    // Estado del group commit, protegido por monitorSync
+    private final Object monitorSync = new Object();
+    private long durables; // Secuencia del último registro forzado a disco
+    private boolean forzando;
+
+    public DiarioMutaciones(String ruta) {
+        this(ruta, true, 0);
+    }
+
+    public DiarioMutaciones(String ruta, boolean fsync, long ventanaGrupoMs) {
+        this.ruta = ruta;
+        this.fsync = fsync;
+        this.ventanaGrupoMs = ventanaGrupoMs;
+    }
+
+    public String getRuta() {
+        return ruta;
+    }
+
+    // Registros escritos desde el último punto de control
+    public synchronized int getRegistrosPendientes() {
+        return registrosPendientes;
+    }
+
+    public void registrar(Tipo tipo, String contenido) throws IOException {
+        registrar(tipo, null, () -> true, () -> contenido);
+    }
+
+    // Aplica el cambio en memoria y anexa su registro bajo el bloqueo de 'clave' (la entidad que
+    // cambia), de modo que el diario guarda los cambios de esa entidad en el orden en que se
+    // aplicaron. Si 'aplicar' rechaza el cambio no se escribe nada y se devuelve false
+    public boolean registrar(Tipo tipo, String clave, BooleanSupplier aplicar, Supplier<String> contenido)
+            throws IOException {
+        long secuencia;
+        Lock bloqueo = bloqueosClave.bloqueo(clave);
+        bloqueo.lock();
+        try {
+            if (!aplicar.getAsBoolean()) {
+                return false;
+            }
+            ByteBuffer registro = ByteBuffer.wrap((tipo.name() + "%" + contenido.get() + System.lineSeparator())
+                    .getBytes(StandardCharsets.UTF_8));
+            secuencia = anexar(registro);
+        } finally {
+            bloqueo.unlock();
+        }
+        if (fsync) {
+            esperarDurabilidad(secuencia);
+        }
+        return true;
+    }
+
+    // Única sección serializada entre todas las entidades: escribir el registro y numerarlo
+    private synchronized long anexar(ByteBuffer registro) throws IOException {
+        abrir();
+        long fin = canal.size();
+        try {
+            while (registro.hasRemaining()) {
+                canal.write(registro);
+            }
+        } catch (IOException e) {
+            descartarIncompleto(fin);
+            throw e;
+        }
+        registrosPendientes++;
+        return ++escritos;
+    }
+
+    // Abre el canal si hace falta; un hilo interrumpido mientras lo usaba lo deja cerrado
+    private void abrir() throws IOException {
+        if (canal == null || !canal.isOpen()) {
+            canal = FileChannel.open(Paths.get(ruta), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+    }
+
+    // Una escritura fallida o interrumpida puede dejar un registro a medias en el archivo: se
+    // recorta para que el siguiente no quede pegado a él. Con el hilo interrumpido el canal no
+    // operaría, así que la marca se retira mientras tanto y se restaura al final
+    private void descartarIncompleto(long fin) {
+        boolean interrumpido = Thread.interrupted();
+        try {
+            abrir();
+            canal.truncate(fin);
+        } catch (IOException e) {
+            // Queda el resto; reproducir() descarta los registros que no se pueden leer
+        } finally {
+            if (interrumpido) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Bloquea hasta que el registro con la secuencia dada esté forzado a disco
+    private void esperarDurabilidad(long secuencia) throws IOException {
+        boolean lider = false;
+        synchronized (monitorSync) {
+            while (durables < secuencia && !lider) {
+                if (!forzando) {
+                    forzando = true; // Este hilo será el líder del grupo
+                    lider = true;
+                } else {
+                    try {
+                        monitorSync.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrumpido esperando la escritura del diario");
+                    }
+                }
+            }
+        }
+        if (!lider) {
+            return;
+        }
+        try {
+            if (ventanaGrupoMs > 0) {
+                Thread.sleep(ventanaGrupoMs); // Ventana para que otros hilos se sumen al grupo
+            }
+            long hasta;
+            FileChannel actual;
+            synchronized (this) {
+                hasta = escritos;
+                actual = canal;
+            }
+            // Sin canal, cerrar() ya forzó todo lo escrito y lo marcó como durable
+            if (actual != null) {
+                forzar(actual);
+            }
+            synchronized (monitorSync) {
+                durables = Math.max(durables, hasta);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrumpido durante la ventana de group commit");
+        } finally {
+            synchronized (monitorSync) {
+                forzando = false;
+                monitorSync.notifyAll();
+            }
+        }
+    }
+
+    // El FileChannel es interrumpible: si un hilo se interrumpe mientras escribe o fuerza, el canal
+    // queda cerrado (cerrar() también lo cierra, pero antes de soltarlo lo fuerza y pone null).
+    // Lo escrito por el canal cerrado sigue en el archivo, así que se fuerza por el canal reabierto.
+    // Si el interrumpido es este hilo, se propaga la interrupción
+    private void forzar(FileChannel actual) throws IOException {
+        try {
+            actual.force(false);
+        } catch (ClosedChannelException e) {
+            if (e instanceof ClosedByInterruptException) {
+                throw e;
+            }
+            synchronized (this) {
+                if (canal != null) {
+                    abrir();
+                    canal.force(false);
+                }
+            }
+        }
+    }
+
+    // Aplica sobre las tablas del cargador (antes de resolver referencias) los registros del diario.
+    // Un registro solo cuenta si termina en salto de línea: el último puede haber quedado a medias
+    // por una caída durante anexar(). Ese resto se descarta y se recorta del archivo, para que el
+    // próximo registro no quede pegado a él
+    public synchronized void reproducir(CargadorDatos cargador) throws IOException {
+        File archivo = new File(ruta);
+        if (!archivo.exists()) {
+            registrosPendientes = 0;
+            return;
+        }
+        int registros = 0;
+        long leidos = 0;
+        long completos = 0; // Bytes hasta el último salto de línea
+        ByteArrayOutputStream linea = new ByteArrayOutputStream();
+        byte[] bloque = new byte[8192];
+        try (InputStream entrada = new FileInputStream(archivo)) {
+            int n;
+            while ((n = entrada.read(bloque)) != -1) {
+                int inicio = 0;
+                for (int i = 0; i < n; i++) {
+                    if (bloque[i] == '\n') {
+                        linea.write(bloque, inicio, i - inicio);
+                        inicio = i + 1;
+                        completos = leidos + inicio;
+                        if (reproducirRegistro(cargador, linea.toString(StandardCharsets.UTF_8))) {
+                            registros++;
+                        }
+                        linea.reset();
+                    }
+                }
+                linea.write(bloque, inicio, n - inicio);
+                leidos += n;
+            }
+        }
+        if (completos < leidos) {
+            try (FileChannel recorte = FileChannel.open(archivo.toPath(), StandardOpenOption.WRITE)) {
+                recorte.truncate(completos);
+                if (fsync) {
+                    recorte.force(true);
+                }
+            }
+        }
+        registrosPendientes = registros;
+    }
+
+    private boolean reproducirRegistro(CargadorDatos cargador, String linea) {
+        if (linea.endsWith("\r")) {
+            linea = linea.substring(0, linea.length() - 1);
+        }
+        int separador = linea.indexOf('%');
+        if (separador < 0) {
+            return false;
+        }
+        Tipo tipo;
+        try {
+            tipo = Tipo.valueOf(linea.substring(0, separador));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        try {
+            aplicar(cargador, tipo, linea.substring(separador + 1));
+            return true;
+        } catch (IllegalArgumentException e) {
+            // Registro con un valor de enumeración desconocido: se ignora
+            return false;
+        }
+    }
+
+    private void aplicar(CargadorDatos cargador, Tipo tipo, String contenido) {
+        switch (tipo) {
+            case PONER_VENDEDOR:
+                cargador.agregarLineaVendedor(contenido);
+                break;
+            case ELIMINAR_VENDEDOR:
+                cargador.eliminarVendedor(contenido);
+                break;
+            case PONER_PRODUCTO:
+                cargador.agregarLineaProducto(contenido);
+                break;
+            case ELIMINAR_PRODUCTO:
+                cargador.eliminarProducto(contenido);
+                break;
+            case PONER_SOLICITUD:
+                cargador.agregarLineaSolicitud(contenido);
+                break;
+            case ELIMINAR_SOLICITUD:
+                cargador.eliminarSolicitud(contenido);
+                break;
+            case ESTADO_SOLICITUD:
+                String[] datos = contenido.split("%");
+                if (datos.length == 2) {
+                    cargador.cambiarEstadoSolicitud(datos[0], EstadoSolicitud.valueOf(datos[1]));
+                }
+                break;
+        }
+    }
+
+    // Se llama después de escribir un punto de control: el diario vuelve a quedar vacío
+    public synchronized void truncar() throws IOException {
+        abrir();
+        canal.truncate(0);
+        if (fsync) {
+            canal.force(true);
+        }
+        registrosPendientes = 0;
+        synchronized (monitorSync) {
+            durables = escritos; // Lo anterior ya está cubierto por el punto de control
+            monitorSync.notifyAll();
+        }
+    }
+
+    public synchronized void cerrar() throws IOException {
+        if (canal != null) {
+            if (fsync) {
+                canal.force(false);
+            }
+            canal.close();
+            canal = null;
+        }
+        synchronized (monitorSync) {
+            durables = escritos;
+            monitorSync.notifyAll();
+        }
+    }
+}
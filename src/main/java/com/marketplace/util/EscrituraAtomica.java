@@ -0,0 +1,72 @@
+package com.marketplace.util;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Publica archivos completos (puntos de control, instantáneas) sin truncar el original:
+// se escribe un temporal junto al destino, se fuerza a disco y se reemplaza con un rename atómico.
+// Ante una caída queda el archivo anterior o el nuevo, nunca uno vacío o a medias.
+public final class EscrituraAtomica {
+
+    @FunctionalInterface
+    public interface Contenido {
+        void escribir(OutputStream salida) throws IOException;
+    }
+
+    private EscrituraAtomica() {
+    }
+
+    public static void escribir(String ruta, boolean fsync, Contenido contenido) throws IOException {
+        Path destino = Paths.get(ruta).toAbsolutePath();
+        Path temporal = destino.resolveSibling(destino.getFileName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temporal.toFile())) {
+            // Los codificadores (XMLEncoder, ObjectOutputStream) cierran su flujo: aquí cerrar solo vacía el búfer
+            OutputStream salida = new FilterOutputStream(new BufferedOutputStream(fos)) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+            contenido.escribir(salida);
+            salida.flush();
+            if (fsync) {
+                fos.getFD().sync();
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporal);
+            throw e;
+        }
+        try {
+            Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (fsync) {
+            sincronizarDirectorio(destino.getParent());
+        }
+    }
+
+    // Hace durable la entrada del directorio tras el rename (no soportado en todos los sistemas)
+    private static void sincronizarDirectorio(Path directorio) {
+        try (FileChannel canal = FileChannel.open(directorio, StandardOpenOption.READ)) {
+            canal.force(true);
+        } catch (IOException e) {
+            // Windows no permite abrir directorios como canal; el rename sigue siendo atómico
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.marketplace.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.marketplace.model.Categoria;
+import com.marketplace.model.Estado;
+import com.marketplace.model.Producto;
+
+// Filtros por categoría y estado sin recorrer los productos: cada producto tiene una ranura densa
+// (RanurasDensas) y cada valor de Categoria y de Estado un conjunto de bits sobre esas ranuras.
+// Un filtro como TECNOLOGIA y PUBLICADO es un AND palabra a palabra (64 productos por operación)
+// y contar es sumar bitCount. Los conjuntos que devuelve son copias: se pueden intersecar o
+// recorrer sin bloqueo. Las ranuras de los productos eliminados no se reutilizan; quedan en cero.
+public class IndiceFacetas implements OyenteProductos {
+    private static final Categoria[] CATEGORIAS = Categoria.values();
+    private static final Estado[] ESTADOS = Estado.values();
+
+    // Cantidades por categoría y por estado de un conjunto de productos
+    public static final class Facetas {
+        private final int total;
+        private final Map<Categoria, Integer> porCategoria;
+        private final Map<Estado, Integer> porEstado;
+
+        Facetas(int total, Map<Categoria, Integer> porCategoria, Map<Estado, Integer> porEstado) {
+            this.total = total;
+            this.porCategoria = Collections.unmodifiableMap(porCategoria);
+            this.porEstado = Collections.unmodifiableMap(porEstado);
+        }
+
+        // Productos que cumplen todos los filtros
+        public int getTotal() {
+            return total;
+        }
+
+        // Por categoría, con el filtro de estados aplicado pero no el de categorías
+        public Map<Categoria, Integer> getPorCategoria() {
+            return porCategoria;
+        }
+
+        // Por estado, con el filtro de categorías aplicado pero no el de estados
+        public Map<Estado, Integer> getPorEstado() {
+            return porEstado;
+        }
+    }
+
+    private final ReentrantReadWriteLock bloqueo = new ReentrantReadWriteLock();
+    private final RanurasDensas ranuras = new RanurasDensas();
+    private long[] vivos = new long[16];
+    private final long[][] porCategoria = new long[CATEGORIAS.length][16];
+    private final long[][] porEstado = new long[ESTADOS.length][16];
+
+    @Override
+    public void productoGuardado(Producto producto) {
+        int ranura = ranuras.ranura(producto.getId());
+        bloqueo.writeLock().lock();
+        try {
+            colocar(ranura, producto);
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void productosGuardados(Collection<Producto> productos) {
+        bloqueo.writeLock().lock();
+        try {
+            for (Producto producto : productos) {
+                colocar(ranuras.ranura(producto.getId()), producto);
+            }
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void productoEliminado(String id) {
+        int ranura = ranuras.buscar(id);
+        if (ranura < 0) {
+            return;
+        }
+        bloqueo.writeLock().lock();
+        try {
+            if (ranura >> 6 < vivos.length) {
+                limpiar(ranura);
+            }
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+    }
+
+    // Productos de alguna de las categorías y alguno de los estados; null o vacío = sin filtro
+    public long[] filtrar(Collection<Categoria> categorias, Collection<Estado> estados) {
+        bloqueo.readLock().lock();
+        try {
+            long[][] deCategorias = elegidos(porCategoria, categorias);
+            long[][] deEstados = elegidos(porEstado, estados);
+            long[] resultado = vivos.clone();
+            for (int i = 0; i < resultado.length; i++) {
+                resultado[i] &= mascara(deCategorias, i) & mascara(deEstados, i);
+            }
+            return resultado;
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    // Conjunto de los productos vivos de la colección, para cruzarlo con filtros o facetas
+    public long[] conjunto(Collection<String> ids) {
+        bloqueo.readLock().lock();
+        try {
+            long[] resultado = new long[vivos.length];
+            for (String id : ids) {
+                int ranura = ranuras.buscar(id);
+                if (ranura >= 0 && ranura >> 6 < vivos.length && (vivos[ranura >> 6] & (1L << ranura)) != 0) {
+                    resultado[ranura >> 6] |= 1L << ranura;
+                }
+            }
+            return resultado;
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    public boolean contiene(long[] conjunto, String id) {
+        int ranura = ranuras.buscar(id);
+        return ranura >= 0 && ranura >> 6 < conjunto.length && (conjunto[ranura >> 6] & (1L << ranura)) != 0;
+    }
+
+    public static int contar(long[] conjunto) {
+        int total = 0;
+        for (long palabra : conjunto) {
+            total += Long.bitCount(palabra);
+        }
+        return total;
+    }
+
+    // IDs del conjunto, en orden de ranura
+    public List<String> ids(long[] conjunto) {
+        List<String> resultado = new ArrayList<>(contar(conjunto));
+        for (int i = 0; i < conjunto.length; i++) {
+            long palabra = conjunto[i];
+            while (palabra != 0) {
+                resultado.add(ranuras.id((i << 6) + Long.numberOfTrailingZeros(palabra)));
+                palabra &= palabra - 1;
+            }
+        }
+        return resultado;
+    }
+
+    // Facetas de 'base' (null = todos los productos) en una sola pasada por sus palabras: cada
+    // dimensión se cuenta con el filtro de la otra, como se muestran en un panel de filtros
+    public Facetas facetas(long[] base, Collection<Categoria> categorias, Collection<Estado> estados) {
+        int[] cuentaCategoria = new int[CATEGORIAS.length];
+        int[] cuentaEstado = new int[ESTADOS.length];
+        int total = 0;
+        bloqueo.readLock().lock();
+        try {
+            long[][] deCategorias = elegidos(porCategoria, categorias);
+            long[][] deEstados = elegidos(porEstado, estados);
+            int palabras = base == null ? vivos.length : Math.min(base.length, vivos.length);
+            for (int i = 0; i < palabras; i++) {
+                long palabra = base == null ? vivos[i] : base[i] & vivos[i];
+                if (palabra == 0) {
+                    continue;
+                }
+                long enCategorias = palabra & mascara(deCategorias, i);
+                long enEstados = palabra & mascara(deEstados, i);
+                for (int c = 0; c < CATEGORIAS.length; c++) {
+                    cuentaCategoria[c] += Long.bitCount(enEstados & porCategoria[c][i]);
+                }
+                for (int e = 0; e < ESTADOS.length; e++) {
+                    cuentaEstado[e] += Long.bitCount(enCategorias & porEstado[e][i]);
+                }
+                total += Long.bitCount(enCategorias & enEstados);
+            }
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+        Map<Categoria, Integer> mapaCategorias = new EnumMap<>(Categoria.class);
+        for (int c = 0; c < CATEGORIAS.length; c++) {
+            mapaCategorias.put(CATEGORIAS[c], cuentaCategoria[c]);
+        }
+        Map<Estado, Integer> mapaEstados = new EnumMap<>(Estado.class);
+        for (int e = 0; e < ESTADOS.length; e++) {
+            mapaEstados.put(ESTADOS[e], cuentaEstado[e]);
+        }
+        return new Facetas(total, mapaCategorias, mapaEstados);
+    }
+
+    // Conjuntos de los valores elegidos; null si no se eligió ninguno (sin filtro)
+    private static long[][] elegidos(long[][] conjuntos, Collection<? extends Enum<?>> valores) {
+        if (valores == null || valores.isEmpty()) {
+            return null;
+        }
+        List<long[]> resultado = new ArrayList<>();
+        for (Enum<?> valor : valores) {
+            resultado.add(conjuntos[valor.ordinal()]);
+        }
+        return resultado.toArray(new long[0][]);
+    }
+
+    // OR de las palabras i de los conjuntos elegidos; todos los bits si no hay filtro
+    private static long mascara(long[][] elegidos, int i) {
+        if (elegidos == null) {
+            return -1L;
+        }
+        long mascara = 0;
+        for (long[] conjunto : elegidos) {
+            mascara |= conjunto[i];
+        }
+        return mascara;
+    }
+
+    private void colocar(int ranura, Producto producto) {
+        asegurar(ranura);
+        limpiar(ranura);
+        int palabra = ranura >> 6;
+        long bit = 1L << ranura;
+        vivos[palabra] |= bit;
+        if (producto.getCategoria() != null) {
+            porCategoria[producto.getCategoria().ordinal()][palabra] |= bit;
+        }
+        if (producto.getEstado() != null) {
+            porEstado[producto.getEstado().ordinal()][palabra] |= bit;
+        }
+    }
+
+    private void limpiar(int ranura) {
+        int palabra = ranura >> 6;
+        long resto = ~(1L << ranura);
+        vivos[palabra] &= resto;
+        for (long[] conjunto : porCategoria) {
+            conjunto[palabra] &= resto;
+        }
+        for (long[] conjunto : porEstado) {
+            conjunto[palabra] &= resto;
+        }
+    }
+
+    private void asegurar(int ranura) {
+        int palabras = (ranura >> 6) + 1;
+        if (palabras <= vivos.length) {
+            return;
+        }
+        int capacidad = Math.max(palabras, vivos.length * 2);
+        vivos = Arrays.copyOf(vivos, capacidad);
+        for (int c = 0; c < porCategoria.length; c++) {
+            porCategoria[c] = Arrays.copyOf(porCategoria[c], capacidad);
+        }
+        for (int e = 0; e < porEstado.length; e++) {
+            porEstado[e] = Arrays.copyOf(porEstado[e], capacidad);
+        }
+    }
+}
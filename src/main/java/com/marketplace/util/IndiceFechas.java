@@ -0,0 +1,62 @@
+package com.marketplace.util;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import com.marketplace.model.Categoria;
+import com.marketplace.model.Producto;
+
+// Índice de productos por fecha de publicación, global y por categoría. La fecha se guarda como
+// microsegundos desde la época (sin zona, igual que LocalDateTime) en un ArregloOrdenado, así que
+// contar un rango cuesta dos búsquedas binarias.
+public class IndiceFechas extends IndiceRangos {
+
+    @Override
+    protected boolean indexable(Producto producto) {
+        return producto.getFechaPublicacion() != null; // Sin fecha no entra en ningún rango
+    }
+
+    @Override
+    protected long clave(Producto producto) {
+        return clave(producto.getFechaPublicacion());
+    }
+
+    // Productos publicados entre desde y hasta, ambos incluidos
+    public int contar(LocalDateTime desde, LocalDateTime hasta) {
+        return contarClaves(null, clave(desde), clave(hasta) + 1);
+    }
+
+    public int contar(Categoria categoria, LocalDateTime desde, LocalDateTime hasta) {
+        return contarClaves(categoria, clave(desde), clave(hasta) + 1);
+    }
+
+    public Map<Categoria, Integer> contarPorCategoria(LocalDateTime desde, LocalDateTime hasta) {
+        Map<Categoria, Integer> conteo = new EnumMap<>(Categoria.class);
+        for (Categoria categoria : Categoria.values()) {
+            conteo.put(categoria, contar(categoria, desde, hasta));
+        }
+        return conteo;
+    }
+
+    // IDs publicados entre desde y hasta, ambos incluidos, del más antiguo al más reciente
+    public List<String> listar(LocalDateTime desde, LocalDateTime hasta) {
+        return listarClaves(null, clave(desde), clave(hasta) + 1);
+    }
+
+    public List<String> listar(Categoria categoria, LocalDateTime desde, LocalDateTime hasta) {
+        return listarClaves(categoria, clave(desde), clave(hasta) + 1);
+    }
+
+    // Página de IDs de todas las fechas en orden de publicación (ver ArregloOrdenado.pagina); el
+    // cursor es la clave y el ID del último de la página anterior
+    public int pagina(Categoria categoria, long clave, String id, boolean masRecientes, long[] claves, String[] ids) {
+        return paginaClaves(categoria, Long.MIN_VALUE, Long.MAX_VALUE, clave, id, masRecientes, claves, ids);
+    }
+
+    private static long clave(LocalDateTime fecha) {
+        return fecha.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + fecha.getNano() / 1_000;
+    }
+}
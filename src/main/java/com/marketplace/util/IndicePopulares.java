@@ -0,0 +1,255 @@
+package com.marketplace.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.marketplace.model.Categoria;
+import com.marketplace.model.Producto;
+
+// Ranking en vivo de los K productos con más "me gusta", global y por categoría. Cada ranking
+// guarda solo los mejores (hasta 2K, para tener margen) en un TreeSet, así que un cambio cuesta
+// O(log K); la lista de los K primeros se publica ya armada y las lecturas no ordenan nada.
+// Solo hace falta recorrer todos los productos cuando el ranking se queda con menos de K.
+public class IndicePopulares implements OyenteProductos {
+
+    // Lo indexado de cada producto; inmutable, cada cambio crea una nueva
+    private static final class Entrada {
+        final String id;
+        final int meGustas;
+        final Categoria categoria;
+        final Producto producto;
+
+        Entrada(Producto producto) {
+            this.id = producto.getId();
+            this.meGustas = producto.getMeGustas();
+            this.categoria = producto.getCategoria();
+            this.producto = producto;
+        }
+    }
+
+    // Más "me gusta" primero; a igual cantidad, por ID para que el orden sea total
+    private static final Comparator<Entrada> ORDEN = (a, b) -> {
+        int c = Integer.compare(b.meGustas, a.meGustas);
+        return c != 0 ? c : a.id.compareTo(b.id);
+    };
+
+    // Invariante: toda entrada de 'mejores' va antes que cualquier producto de fuera, y 'cota' es
+    // una cota superior del mejor de fuera (null si no queda ninguno fuera)
+    private static final class Ranking {
+        final int k;
+        final TreeSet<Entrada> mejores = new TreeSet<>(ORDEN);
+        Entrada cota;
+        int total;
+        volatile List<Producto> vista = Collections.emptyList();
+
+        Ranking(int k) {
+            this.k = k;
+        }
+
+        void agregar(Entrada entrada) {
+            total++;
+            colocar(entrada);
+        }
+
+        // Devuelve true si la entrada estaba entre los mejores
+        boolean quitar(Entrada entrada) {
+            total--;
+            boolean estaba = mejores.remove(entrada);
+            if (total == mejores.size()) {
+                cota = null;
+            }
+            return estaba;
+        }
+
+        void colocar(Entrada entrada) {
+            if (mejores.size() < 2 * k && (cota == null || ORDEN.compare(entrada, cota) < 0)) {
+                mejores.add(entrada);
+            } else if (!mejores.isEmpty() && ORDEN.compare(entrada, mejores.last()) < 0) {
+                mejores.add(entrada);
+                if (mejores.size() > 2 * k) {
+                    subirCota(mejores.pollLast());
+                }
+            } else {
+                subirCota(entrada);
+            }
+        }
+
+        boolean necesitaReconstruir() {
+            return mejores.size() < k && total > mejores.size();
+        }
+
+        // Vuelve a elegir los mejores recorriendo todas las entradas de este ranking
+        void reconstruir(Collection<Entrada> todas) {
+            mejores.clear();
+            cota = null;
+            for (Entrada entrada : todas) {
+                mejores.add(entrada);
+                if (mejores.size() > 2 * k) {
+                    subirCota(mejores.pollLast());
+                }
+            }
+            publicar();
+        }
+
+        void publicar() {
+            List<Producto> primeros = new ArrayList<>(Math.min(k, mejores.size()));
+            for (Entrada entrada : mejores) {
+                if (primeros.size() == k) {
+                    break;
+                }
+                primeros.add(entrada.producto);
+            }
+            vista = Collections.unmodifiableList(primeros);
+        }
+
+        private void subirCota(Entrada entrada) {
+            if (cota == null || ORDEN.compare(entrada, cota) < 0) {
+                cota = entrada;
+            }
+        }
+    }
+
+    private final int k;
+    private final Map<String, Entrada> entradas = new ConcurrentHashMap<>();
+    private final Ranking global;
+    private final Map<Categoria, Ranking> porCategoria = new EnumMap<>(Categoria.class);
+
+    public IndicePopulares(int k) {
+        this.k = Math.max(1, k);
+        global = new Ranking(this.k);
+        for (Categoria categoria : Categoria.values()) {
+            porCategoria.put(categoria, new Ranking(this.k));
+        }
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    // Los 'cantidad' productos con más "me gusta" (cantidad <= K); categoria null = todas
+    public List<Producto> obtener(Categoria categoria, int cantidad) {
+        List<Producto> vista = (categoria == null ? global : porCategoria.get(categoria)).vista;
+        return cantidad >= vista.size() ? vista : vista.subList(0, Math.max(0, cantidad));
+    }
+
+    @Override
+    public synchronized void productoGuardado(Producto producto) {
+        Entrada nueva = new Entrada(producto);
+        Entrada vieja = entradas.put(nueva.id, nueva);
+        if (vieja != null && vieja.meGustas == nueva.meGustas && vieja.categoria == nueva.categoria) {
+            // Mismo lugar en el ranking; solo se actualiza la instancia que se publica
+            reemplazarInstancia(global, vieja, nueva);
+            if (nueva.categoria != null) {
+                reemplazarInstancia(porCategoria.get(nueva.categoria), vieja, nueva);
+            }
+            return;
+        }
+        if (vieja != null) {
+            quitar(vieja);
+        }
+        actualizar(global, nueva);
+        if (nueva.categoria != null) {
+            actualizar(porCategoria.get(nueva.categoria), nueva);
+        }
+        if (vieja != null) {
+            revisar(global, null);
+            if (vieja.categoria != null) {
+                revisar(porCategoria.get(vieja.categoria), vieja.categoria);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void productoEliminado(String id) {
+        Entrada vieja = id == null ? null : entradas.remove(id);
+        if (vieja == null) {
+            return;
+        }
+        quitar(vieja);
+        revisar(global, null);
+        if (vieja.categoria != null) {
+            revisar(porCategoria.get(vieja.categoria), vieja.categoria);
+        }
+    }
+
+    @Override
+    public synchronized void productosGuardados(Collection<Producto> productos) {
+        for (Producto producto : productos) {
+            Entrada nueva = new Entrada(producto);
+            Entrada vieja = entradas.put(nueva.id, nueva);
+            if (vieja != null) {
+                contar(vieja, -1);
+            }
+            contar(nueva, 1);
+        }
+        Map<Categoria, List<Entrada>> grupos = new EnumMap<>(Categoria.class);
+        for (Categoria categoria : Categoria.values()) {
+            grupos.put(categoria, new ArrayList<>());
+        }
+        for (Entrada entrada : entradas.values()) {
+            if (entrada.categoria != null) {
+                grupos.get(entrada.categoria).add(entrada);
+            }
+        }
+        global.reconstruir(entradas.values());
+        for (Map.Entry<Categoria, Ranking> ranking : porCategoria.entrySet()) {
+            ranking.getValue().reconstruir(grupos.get(ranking.getKey()));
+        }
+    }
+
+    private void quitar(Entrada vieja) {
+        if (global.quitar(vieja)) {
+            global.publicar();
+        }
+        if (vieja.categoria != null) {
+            Ranking ranking = porCategoria.get(vieja.categoria);
+            if (ranking.quitar(vieja)) {
+                ranking.publicar();
+            }
+        }
+    }
+
+    private static void actualizar(Ranking ranking, Entrada nueva) {
+        ranking.agregar(nueva);
+        if (ranking.mejores.contains(nueva)) {
+            ranking.publicar();
+        }
+    }
+
+    private void revisar(Ranking ranking, Categoria categoria) {
+        if (ranking.necesitaReconstruir()) {
+            ranking.reconstruir(categoria == null ? entradas.values() : deCategoria(categoria));
+        }
+    }
+
+    private static void reemplazarInstancia(Ranking ranking, Entrada vieja, Entrada nueva) {
+        if (ranking.mejores.remove(vieja)) {
+            ranking.mejores.add(nueva);
+            ranking.publicar();
+        }
+    }
+
+    private void contar(Entrada entrada, int delta) {
+        global.total += delta;
+        if (entrada.categoria != null) {
+            porCategoria.get(entrada.categoria).total += delta;
+        }
+    }
+
+    private List<Entrada> deCategoria(Categoria categoria) {
+        List<Entrada> resultado = new ArrayList<>();
+        for (Entrada entrada : entradas.values()) {
+            if (entrada.categoria == categoria) {
+                resultado.add(entrada);
+            }
+        }
+        return resultado;
+    }
+}
@@ -0,0 +1,56 @@
+package com.marketplace.util;
+
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import com.marketplace.model.Categoria;
+import com.marketplace.model.Producto;
+
+// Índice de productos por precio, global y por categoría (categoria null = todas). Los rangos de
+// precio son cerrados: minimo y maximo incluidos.
+public class IndicePrecios extends IndiceRangos {
+
+    @Override
+    protected boolean indexable(Producto producto) {
+        return true;
+    }
+
+    @Override
+    protected long clave(Producto producto) {
+        return producto.getPrecio();
+    }
+
+    public int contar(Categoria categoria, int minimo, int maximo) {
+        return contarClaves(categoria, minimo, (long) maximo + 1);
+    }
+
+    // IDs con precio entre minimo y maximo, del más barato al más caro
+    public List<String> listar(Categoria categoria, int minimo, int maximo) {
+        return listarClaves(categoria, minimo, (long) maximo + 1);
+    }
+
+    // Página de IDs del rango por precio (ver ArregloOrdenado.pagina); el cursor es el precio y el
+    // ID del último de la página anterior
+    public int pagina(Categoria categoria, int minimo, int maximo, long precio, String id, boolean descendente,
+            long[] precios, String[] ids) {
+        return paginaClaves(categoria, minimo, (long) maximo + 1, precio, id, descendente, precios, ids);
+    }
+
+    // Histograma de 'cubetas' tramos de igual ancho entre minimo y maximo: cada clave es el precio
+    // inicial del tramo, que llega hasta la clave siguiente (el último, hasta maximo). Cada tramo
+    // cuesta dos búsquedas binarias
+    public SortedMap<Integer, Integer> histograma(Categoria categoria, int minimo, int maximo, int cubetas) {
+        SortedMap<Integer, Integer> histograma = new TreeMap<>();
+        if (minimo > maximo || cubetas <= 0) {
+            return histograma;
+        }
+        long total = (long) maximo - minimo + 1;
+        long ancho = Math.max(1, (total + cubetas - 1) / cubetas);
+        for (long desde = minimo; desde <= maximo; desde += ancho) {
+            long hasta = Math.min(desde + ancho, (long) maximo + 1);
+            histograma.put((int) desde, contarClaves(categoria, desde, hasta));
+        }
+        return histograma;
+    }
+}
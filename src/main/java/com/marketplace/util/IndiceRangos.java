@@ -0,0 +1,144 @@
+package com.marketplace.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.marketplace.model.Categoria;
+import com.marketplace.model.Producto;
+
+// Base de los índices de productos por una clave numérica (fecha, precio...), global y por
+// categoría, sobre ArregloOrdenado: contar un rango cuesta dos búsquedas binarias y listarlo o
+// paginarlo, recorrer un tramo contiguo. Guarda la clave y categoría indexadas de cada ID para poder
+// desindexar el producto aunque la instancia haya cambiado. Las subclases solo dicen qué clave
+// tiene cada producto; los métodos de consulta reciben claves y rangos medio abiertos [desde, hasta)
+// y categoria null significa todas.
+public abstract class IndiceRangos implements OyenteProductos {
+
+    private static final class Entrada {
+        final long clave;
+        final Categoria categoria;
+
+        Entrada(long clave, Categoria categoria) {
+            this.clave = clave;
+            this.categoria = categoria;
+        }
+    }
+
+    private final Map<String, Entrada> entradas = new ConcurrentHashMap<>();
+    private final ArregloOrdenado todos = new ArregloOrdenado();
+    private final Map<Categoria, ArregloOrdenado> porCategoria = new EnumMap<>(Categoria.class);
+
+    protected IndiceRangos() {
+        for (Categoria categoria : Categoria.values()) {
+            porCategoria.put(categoria, new ArregloOrdenado());
+        }
+    }
+
+    // false si el producto no tiene clave (por ejemplo, sin fecha) y no entra en ningún rango
+    protected abstract boolean indexable(Producto producto);
+
+    protected abstract long clave(Producto producto);
+
+    @Override
+    public synchronized void productoGuardado(Producto producto) {
+        productoEliminado(producto.getId());
+        if (!indexable(producto)) {
+            return;
+        }
+        Entrada entrada = new Entrada(clave(producto), producto.getCategoria());
+        entradas.put(producto.getId(), entrada);
+        todos.agregar(entrada.clave, producto.getId());
+        if (entrada.categoria != null) {
+            porCategoria.get(entrada.categoria).agregar(entrada.clave, producto.getId());
+        }
+    }
+
+    @Override
+    public synchronized void productoEliminado(String id) {
+        Entrada entrada = id == null ? null : entradas.remove(id);
+        if (entrada == null) {
+            return;
+        }
+        todos.eliminar(entrada.clave, id);
+        if (entrada.categoria != null) {
+            porCategoria.get(entrada.categoria).eliminar(entrada.clave, id);
+        }
+    }
+
+    @Override
+    public synchronized void productosGuardados(Collection<Producto> productos) {
+        if (!entradas.isEmpty()) {
+            OyenteProductos.super.productosGuardados(productos);
+            return;
+        }
+        // Índice vacío: se ordena el lote una sola vez y cada categoría se filtra ya en orden
+        long[] claves = new long[productos.size()];
+        String[] ids = new String[claves.length];
+        Categoria[] categorias = new Categoria[claves.length];
+        int cantidad = 0;
+        for (Producto producto : productos) {
+            if (indexable(producto)) {
+                Entrada entrada = new Entrada(clave(producto), producto.getCategoria());
+                if (entradas.put(producto.getId(), entrada) != null) {
+                    // ID repetido en el lote: se indexa de a uno para quedarse con el último
+                    entradas.clear();
+                    OyenteProductos.super.productosGuardados(productos);
+                    return;
+                }
+                claves[cantidad] = entrada.clave;
+                ids[cantidad] = producto.getId();
+                categorias[cantidad++] = entrada.categoria;
+            }
+        }
+        claves = Arrays.copyOf(claves, cantidad);
+        ids = Arrays.copyOf(ids, cantidad);
+        int[] posiciones = ArregloOrdenado.ordenar(claves, ids);
+        int[] cantidades = new int[Categoria.values().length];
+        for (Categoria categoria : categorias) {
+            if (categoria != null) {
+                cantidades[categoria.ordinal()]++;
+            }
+        }
+        for (Categoria categoria : Categoria.values()) {
+            long[] clavesCategoria = new long[cantidades[categoria.ordinal()]];
+            String[] idsCategoria = new String[clavesCategoria.length];
+            int j = 0;
+            for (int k = 0; k < cantidad; k++) {
+                if (categorias[posiciones[k]] == categoria) {
+                    clavesCategoria[j] = claves[k];
+                    idsCategoria[j++] = ids[k];
+                }
+            }
+            porCategoria.get(categoria).agregarTodos(clavesCategoria, idsCategoria);
+        }
+        todos.agregarTodos(claves, ids);
+    }
+
+    // Clave indexada del producto, o null si no está en el índice
+    public Long claveIndexada(String id) {
+        Entrada entrada = id == null ? null : entradas.get(id);
+        return entrada == null ? null : entrada.clave;
+    }
+
+    protected int contarClaves(Categoria categoria, long desde, long hasta) {
+        return arreglo(categoria).contar(desde, hasta);
+    }
+
+    protected List<String> listarClaves(Categoria categoria, long desde, long hasta) {
+        return arreglo(categoria).listar(desde, hasta);
+    }
+
+    // Ver ArregloOrdenado.pagina
+    protected int paginaClaves(Categoria categoria, long desde, long hasta, long clave, String id,
+            boolean descendente, long[] claves, String[] ids) {
+        return arreglo(categoria).pagina(desde, hasta, clave, id, descendente, claves, ids);
+    }
+
+    private ArregloOrdenado arreglo(Categoria categoria) {
+        return categoria == null ? todos : porCategoria.get(categoria);
+    }
+}
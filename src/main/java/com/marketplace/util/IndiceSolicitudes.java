@@ -0,0 +1,135 @@
+package com.marketplace.util;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import com.marketplace.model.EstadoSolicitud;
+import com.marketplace.model.Solicitud;
+
+// Índices secundarios de solicitudes por emisor, receptor y estado, con contadores por vendedor y
+// estado para responder en O(1) preguntas como "cuántas solicitudes pendientes tiene X".
+// El índice guarda lo que indexó de cada solicitud, así que puede desindexarla aunque el objeto
+// haya cambiado después. Lo mantiene Repositorio (un solo escritor a la vez, bajo su monitor);
+// las lecturas no toman bloqueos.
+public class IndiceSolicitudes {
+    private static final EstadoSolicitud[] ESTADOS = EstadoSolicitud.values();
+
+    // Lo indexado de cada solicitud
+    private static final class Entrada {
+        final Solicitud solicitud;
+        final String emisorId;
+        final String receptorId;
+        final EstadoSolicitud estado;
+
+        Entrada(Solicitud solicitud) {
+            this.solicitud = solicitud;
+            this.emisorId = solicitud.getEmisor() != null ? solicitud.getEmisor().getId() : null;
+            this.receptorId = solicitud.getReceptor() != null ? solicitud.getReceptor().getId() : null;
+            this.estado = solicitud.getEstado();
+        }
+    }
+
+    private final Map<String, Entrada> entradas = new ConcurrentHashMap<>();
+    private final Map<String, Set<Solicitud>> porEmisor = new ConcurrentHashMap<>();
+    private final Map<String, Set<Solicitud>> porReceptor = new ConcurrentHashMap<>();
+    private final Map<EstadoSolicitud, Set<Solicitud>> porEstado = new EnumMap<>(EstadoSolicitud.class);
+    // ID de vendedor -> cantidad de solicitudes por ordinal de estado
+    private final Map<String, AtomicIntegerArray> conteoEmisor = new ConcurrentHashMap<>();
+    private final Map<String, AtomicIntegerArray> conteoReceptor = new ConcurrentHashMap<>();
+
+    public IndiceSolicitudes() {
+        for (EstadoSolicitud estado : ESTADOS) {
+            porEstado.put(estado, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    // Indexa la solicitud; si ya había una con el mismo ID, la reemplaza
+    public void agregar(Solicitud solicitud) {
+        eliminar(solicitud.getId());
+        Entrada entrada = new Entrada(solicitud);
+        entradas.put(solicitud.getId(), entrada);
+        indexar(porEmisor, conteoEmisor, entrada.emisorId, entrada);
+        indexar(porReceptor, conteoReceptor, entrada.receptorId, entrada);
+        if (entrada.estado != null) {
+            porEstado.get(entrada.estado).add(solicitud);
+        }
+    }
+
+    public void eliminar(String id) {
+        Entrada entrada = id == null ? null : entradas.remove(id);
+        if (entrada == null) {
+            return;
+        }
+        desindexar(porEmisor, conteoEmisor, entrada.emisorId, entrada);
+        desindexar(porReceptor, conteoReceptor, entrada.receptorId, entrada);
+        if (entrada.estado != null) {
+            porEstado.get(entrada.estado).remove(entrada.solicitud);
+        }
+    }
+
+    public List<Solicitud> buscarPorEmisor(String emisorId) {
+        return copiar(emisorId == null ? null : porEmisor.get(emisorId));
+    }
+
+    public List<Solicitud> buscarPorReceptor(String receptorId) {
+        return copiar(receptorId == null ? null : porReceptor.get(receptorId));
+    }
+
+    public List<Solicitud> buscarPorEstado(EstadoSolicitud estado) {
+        return copiar(estado == null ? null : porEstado.get(estado));
+    }
+
+    public int contarPorEmisor(String emisorId, EstadoSolicitud estado) {
+        return contar(conteoEmisor, emisorId, estado);
+    }
+
+    public int contarPorReceptor(String receptorId, EstadoSolicitud estado) {
+        return contar(conteoReceptor, receptorId, estado);
+    }
+
+    private static void indexar(Map<String, Set<Solicitud>> indice, Map<String, AtomicIntegerArray> conteo,
+            String vendedorId, Entrada entrada) {
+        if (vendedorId == null) {
+            return;
+        }
+        indice.computeIfAbsent(vendedorId, k -> ConcurrentHashMap.newKeySet()).add(entrada.solicitud);
+        if (entrada.estado != null) {
+            conteo.computeIfAbsent(vendedorId, k -> new AtomicIntegerArray(ESTADOS.length))
+                    .incrementAndGet(entrada.estado.ordinal());
+        }
+    }
+
+    private static void desindexar(Map<String, Set<Solicitud>> indice, Map<String, AtomicIntegerArray> conteo,
+            String vendedorId, Entrada entrada) {
+        if (vendedorId == null) {
+            return;
+        }
+        Set<Solicitud> solicitudes = indice.get(vendedorId);
+        if (solicitudes != null) {
+            solicitudes.remove(entrada.solicitud);
+            if (solicitudes.isEmpty()) {
+                indice.remove(vendedorId);
+            }
+        }
+        if (entrada.estado != null) {
+            AtomicIntegerArray contadores = conteo.get(vendedorId);
+            if (contadores != null) {
+                contadores.decrementAndGet(entrada.estado.ordinal());
+            }
+        }
+    }
+
+    private static int contar(Map<String, AtomicIntegerArray> conteo, String vendedorId, EstadoSolicitud estado) {
+        AtomicIntegerArray contadores = vendedorId == null ? null : conteo.get(vendedorId);
+        return contadores == null || estado == null ? 0 : contadores.get(estado.ordinal());
+    }
+
+    private static List<Solicitud> copiar(Set<Solicitud> solicitudes) {
+        return solicitudes == null ? new ArrayList<>() : new ArrayList<>(solicitudes);
+    }
+}
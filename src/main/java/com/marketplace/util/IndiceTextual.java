@@ -0,0 +1,396 @@
+package com.marketplace.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+import com.marketplace.model.Producto;
+
+// Índice invertido de texto completo sobre nombre y descripción de los productos.
+//
+// Cada versión indexada de un producto recibe un número de documento nuevo y creciente, así que
+// las listas de apariciones solo crecen por el final y se guardan comprimidas: por cada documento,
+// la distancia al anterior y la frecuencia del término, ambas en varint (1 byte casi siempre).
+// Modificar el texto de un producto deja muerta su versión anterior en lugar de reescribir las
+// listas; cuando los muertos pasan de la cuarta parte, compactar() renumera y reescribe todo.
+// Si solo cambian los "me gusta", no se reindexa nada.
+//
+// Consultas: los términos separados por espacios se combinan con AND y los grupos separados por
+// "OR" o "|" con OR. El puntaje suma (1 + ln tf) * idf de cada término (las apariciones en el
+// nombre cuentan doble) y lo multiplica por un factor que crece con el logaritmo de los "me gusta".
+// Escrituras y compactación toman el bloqueo de escritura; las consultas, el de lectura.
+public class IndiceTextual implements OyenteProductos {
+    private static final int PESO_NOMBRE = 2;
+    private static final double PESO_ME_GUSTAS = 0.1;
+    private static final int MUERTOS_MINIMOS = 1024;
+
+    // Lista de apariciones de un término: pares (distancia, frecuencia) en varint
+    private static final class Apariciones {
+        byte[] datos = new byte[4];
+        int longitud;
+        int ultimoDocumento = -1;
+        int cantidad;
+
+        void agregar(int documento, int frecuencia) {
+            if (datos.length - longitud < 10) {
+                datos = Arrays.copyOf(datos, Math.max(datos.length * 2, longitud + 10));
+            }
+            longitud = escribirVarint(datos, longitud, documento - ultimoDocumento);
+            longitud = escribirVarint(datos, longitud, frecuencia);
+            ultimoDocumento = documento;
+            cantidad++;
+        }
+
+        void recortar() {
+            datos = Arrays.copyOf(datos, longitud);
+        }
+    }
+
+    // Recorre una lista de apariciones en orden de documento
+    private static final class Cursor {
+        final Apariciones apariciones;
+        int posicion;
+        int documento = -1;
+        int frecuencia;
+
+        Cursor(Apariciones apariciones) {
+            this.apariciones = apariciones;
+        }
+
+        boolean avanzar() {
+            if (posicion >= apariciones.longitud) {
+                documento = Integer.MAX_VALUE;
+                return false;
+            }
+            long distancia = leerVarint(apariciones.datos, posicion);
+            posicion = (int) (distancia >>> 32);
+            long tf = leerVarint(apariciones.datos, posicion);
+            posicion = (int) (tf >>> 32);
+            documento += (int) distancia;
+            frecuencia = (int) tf;
+            return true;
+        }
+
+        // Avanza hasta el primer documento >= objetivo
+        boolean avanzarHasta(int objetivo) {
+            while (documento < objetivo) {
+                if (!avanzar()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private interface Acumulador {
+        void sumar(int documento, double puntaje);
+    }
+
+    private static final class Resultado {
+        final int documento;
+        final double puntaje;
+
+        Resultado(int documento, double puntaje) {
+            this.documento = documento;
+            this.puntaje = puntaje;
+        }
+    }
+
+    private final ReentrantReadWriteLock bloqueo = new ReentrantReadWriteLock();
+    private final Map<String, Apariciones> terminos = new HashMap<>();
+    private final Map<String, Integer> documentoDeProducto = new HashMap<>();
+    // Por número de documento: producto (null si la versión está muerta), huella del texto y "me gusta"
+    private String[] productos = new String[1024];
+    private long[] huellas = new long[1024];
+    private int[] meGustas = new int[1024];
+    private int documentos;
+    private int vivos;
+
+    @Override
+    public void productoGuardado(Producto producto) {
+        long huella = huella(producto);
+        bloqueo.writeLock().lock();
+        try {
+            Integer anterior = documentoDeProducto.get(producto.getId());
+            if (anterior != null && huellas[anterior] == huella) {
+                meGustas[anterior] = producto.getMeGustas(); // Mismo texto: no se reindexa
+                return;
+            }
+            if (anterior != null) {
+                matar(anterior);
+            }
+            indexar(producto, huella);
+            compactarSiHaceFalta();
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void productoEliminado(String id) {
+        bloqueo.writeLock().lock();
+        try {
+            Integer anterior = documentoDeProducto.remove(id);
+            if (anterior != null) {
+                matar(anterior);
+                compactarSiHaceFalta();
+            }
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+    }
+
+    // Los 'limite' productos (IDs) que mejor responden a la consulta, del mejor al peor
+    public List<String> buscar(String consulta, int limite) {
+        return buscar(consulta, limite, id -> true);
+    }
+
+    // Igual, pero solo entre los productos que 'admitido' acepta (por ejemplo, los de un filtro de
+    // IndiceFacetas): se descartan antes de competir por el límite, no después
+    public List<String> buscar(String consulta, int limite, Predicate<String> admitido) {
+        List<List<String>> grupos = analizar(consulta);
+        if (grupos.isEmpty() || limite <= 0) {
+            return Collections.emptyList();
+        }
+        bloqueo.readLock().lock();
+        try {
+            PriorityQueue<Resultado> mejores = new PriorityQueue<>(
+                    (a, b) -> Double.compare(a.puntaje, b.puntaje));
+            Acumulador ofrecer = (documento, puntaje) -> {
+                if (!admitido.test(productos[documento])) {
+                    return;
+                }
+                double total = puntaje * (1 + PESO_ME_GUSTAS * Math.log1p(Math.max(0, meGustas[documento])));
+                if (mejores.size() < limite) {
+                    mejores.add(new Resultado(documento, total));
+                } else if (total > mejores.peek().puntaje) {
+                    mejores.poll();
+                    mejores.add(new Resultado(documento, total));
+                }
+            };
+            if (grupos.size() == 1) {
+                puntuarGrupo(grupos.get(0), ofrecer); // Sin OR cada documento aparece una sola vez
+            } else {
+                // Un documento puede cumplir varios grupos; se queda con el mejor puntaje
+                Map<Integer, Double> puntajes = new HashMap<>();
+                for (List<String> grupo : grupos) {
+                    puntuarGrupo(grupo, (documento, puntaje) -> puntajes.merge(documento, puntaje, Math::max));
+                }
+                for (Map.Entry<Integer, Double> puntaje : puntajes.entrySet()) {
+                    ofrecer.sumar(puntaje.getKey(), puntaje.getValue());
+                }
+            }
+            String[] ids = new String[mejores.size()];
+            for (int i = ids.length - 1; i >= 0; i--) {
+                ids[i] = productos[mejores.poll().documento];
+            }
+            return Arrays.asList(ids);
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    // Todos los productos (IDs) que responden a la consulta, sin orden; para contar facetas
+    public Set<String> coincidencias(String consulta) {
+        Set<String> ids = new HashSet<>();
+        List<List<String>> grupos = analizar(consulta);
+        bloqueo.readLock().lock();
+        try {
+            for (List<String> grupo : grupos) {
+                puntuarGrupo(grupo, (documento, puntaje) -> ids.add(productos[documento]));
+            }
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+        return ids;
+    }
+
+    public int cantidadTerminos() {
+        bloqueo.readLock().lock();
+        try {
+            return terminos.size();
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    // Reescribe las listas sin las versiones muertas, renumerando los documentos vivos en orden
+    public void compactar() {
+        bloqueo.writeLock().lock();
+        try {
+            int[] nuevoNumero = new int[documentos];
+            int siguiente = 0;
+            for (int documento = 0; documento < documentos; documento++) {
+                if (productos[documento] != null) {
+                    nuevoNumero[documento] = siguiente;
+                    productos[siguiente] = productos[documento];
+                    huellas[siguiente] = huellas[documento];
+                    meGustas[siguiente] = meGustas[documento];
+                    documentoDeProducto.put(productos[siguiente], siguiente);
+                    siguiente++;
+                } else {
+                    nuevoNumero[documento] = -1;
+                }
+            }
+            Arrays.fill(productos, siguiente, documentos, null);
+            documentos = siguiente;
+            int capacidad = Math.max(1024, Integer.highestOneBit(Math.max(1, documentos)) << 1);
+            productos = Arrays.copyOf(productos, capacidad);
+            huellas = Arrays.copyOf(huellas, capacidad);
+            meGustas = Arrays.copyOf(meGustas, capacidad);
+            terminos.entrySet().removeIf(termino -> {
+                Cursor cursor = new Cursor(termino.getValue());
+                Apariciones nuevas = new Apariciones();
+                while (cursor.avanzar()) {
+                    int numero = nuevoNumero[cursor.documento];
+                    if (numero >= 0) {
+                        nuevas.agregar(numero, cursor.frecuencia);
+                    }
+                }
+                nuevas.recortar();
+                termino.setValue(nuevas);
+                return nuevas.cantidad == 0;
+            });
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+    }
+
+    private void indexar(Producto producto, long huella) {
+        Map<String, Integer> frecuencias = new HashMap<>();
+        for (String token : NormalizadorTexto.tokens(producto.getNombre())) {
+            frecuencias.merge(token, PESO_NOMBRE, Integer::sum);
+        }
+        for (String token : NormalizadorTexto.tokens(producto.getDescripcion())) {
+            frecuencias.merge(token, 1, Integer::sum);
+        }
+        if (documentos == productos.length) {
+            productos = Arrays.copyOf(productos, documentos * 2);
+            huellas = Arrays.copyOf(huellas, documentos * 2);
+            meGustas = Arrays.copyOf(meGustas, documentos * 2);
+        }
+        int documento = documentos++;
+        productos[documento] = producto.getId();
+        huellas[documento] = huella;
+        meGustas[documento] = producto.getMeGustas();
+        documentoDeProducto.put(producto.getId(), documento);
+        vivos++;
+        for (Map.Entry<String, Integer> frecuencia : frecuencias.entrySet()) {
+            terminos.computeIfAbsent(frecuencia.getKey(), k -> new Apariciones())
+                    .agregar(documento, frecuencia.getValue());
+        }
+    }
+
+    private void matar(int documento) {
+        productos[documento] = null;
+        vivos--;
+    }
+
+    private void compactarSiHaceFalta() {
+        int muertos = documentos - vivos;
+        if (muertos > MUERTOS_MINIMOS && muertos * 4 > documentos) {
+            compactar();
+        }
+    }
+
+    // AND entre los términos del grupo: se avanza el cursor de la lista más corta y los demás
+    // saltan hasta su documento. Suma al puntaje de cada documento vivo que tiene todos los términos
+    private void puntuarGrupo(List<String> grupo, Acumulador acumulador) {
+        Cursor[] cursores = new Cursor[grupo.size()];
+        double[] idf = new double[grupo.size()];
+        for (int i = 0; i < cursores.length; i++) {
+            Apariciones apariciones = terminos.get(grupo.get(i));
+            if (apariciones == null) {
+                return; // Un término que no aparece vacía el AND
+            }
+            cursores[i] = new Cursor(apariciones);
+            idf[i] = Math.log(1 + (double) vivos / apariciones.cantidad);
+        }
+        Integer[] orden = new Integer[cursores.length];
+        for (int i = 0; i < orden.length; i++) {
+            orden[i] = i;
+        }
+        Arrays.sort(orden, (a, b) -> Integer.compare(cursores[a].apariciones.cantidad, cursores[b].apariciones.cantidad));
+        Cursor guia = cursores[orden[0]];
+        while (guia.avanzar()) {
+            int documento = guia.documento;
+            boolean todos = true;
+            for (int i = 1; i < orden.length && todos; i++) {
+                Cursor cursor = cursores[orden[i]];
+                if (!cursor.avanzarHasta(documento)) {
+                    return; // Se agotó otra lista: no hay más coincidencias
+                }
+                todos = cursor.documento == documento;
+            }
+            if (!todos || productos[documento] == null) {
+                continue;
+            }
+            double puntaje = 0;
+            for (int i = 0; i < cursores.length; i++) {
+                puntaje += (1 + Math.log(cursores[i].frecuencia)) * idf[i];
+            }
+            acumulador.sumar(documento, puntaje);
+        }
+    }
+
+    // Grupos OR de términos AND, ya normalizados; los grupos vacíos se descartan
+    private static List<List<String>> analizar(String consulta) {
+        List<List<String>> grupos = new ArrayList<>();
+        if (consulta == null) {
+            return grupos;
+        }
+        for (String grupo : consulta.split("\\s+OR\\s+|\\|")) {
+            List<String> terminos = new ArrayList<>(new LinkedHashSet<>(NormalizadorTexto.tokens(grupo)));
+            if (!terminos.isEmpty()) {
+                grupos.add(terminos);
+            }
+        }
+        return grupos;
+    }
+
+    // Huella de 64 bits (FNV-1a) del texto indexado, para detectar si cambió
+    private static long huella(Producto producto) {
+        long huella = 0xcbf29ce484222325L;
+        String[] partes = {producto.getNombre(), producto.getDescripcion()};
+        for (String parte : partes) {
+            if (parte != null) {
+                for (int i = 0; i < parte.length(); i++) {
+                    huella = (huella ^ parte.charAt(i)) * 0x100000001b3L;
+                }
+            }
+            huella = (huella ^ 0xffff) * 0x100000001b3L; // Separa nombre de descripción y null de ""
+        }
+        return huella;
+    }
+
+    private static int escribirVarint(byte[] destino, int posicion, int valor) {
+        while ((valor & ~0x7f) != 0) {
+            destino[posicion++] = (byte) ((valor & 0x7f) | 0x80);
+            valor >>>= 7;
+        }
+        destino[posicion++] = (byte) valor;
+        return posicion;
+    }
+
+    // Valor en los 32 bits bajos y la posición siguiente en los altos
+    private static long leerVarint(byte[] origen, int posicion) {
+        int valor = 0;
+        int desplazamiento = 0;
+        byte b;
+        do {
+            b = origen[posicion++];
+            valor |= (b & 0x7f) << desplazamiento;
+            desplazamiento += 7;
+        } while (b < 0);
+        return ((long) posicion << 32) | (valor & 0xffffffffL);
+    }
+}
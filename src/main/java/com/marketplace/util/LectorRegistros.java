@@ -0,0 +1,293 @@
+package com.marketplace.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Lector de los archivos de texto de registros (campos separados por '%', listas por ','), en
+// UTF-8, sobre un FileChannel y un buffer de ReservaBuffers. Las líneas se cortan y los campos se
+// ubican en el propio buffer, sin crear un String por línea; enteros, enumeraciones y fechas se
+// leen de los bytes y solo los campos de texto se decodifican. Los campos siguen las reglas de
+// String.split("%") que usaba el formato: los vacíos del final no cuentan.
+//
+//     while (lector.siguiente()) { ... lector.texto(0), lector.entero(5) ... }
+public class LectorRegistros implements Closeable {
+    private final FileChannel canal; // null al leer una línea suelta
+    private final ReservaBuffers reserva;
+    private ByteBuffer prestado;
+    private ByteBuffer buffer; // Envuelve 'bytes': el prestado o uno más grande
+    private byte[] bytes;
+    private int lectura; // Primer byte sin consumir
+    private int escaneado; // Hasta aquí ya se buscó el fin de línea
+    private int limite; // Fin de los bytes válidos
+    private long desplazamiento; // Posición en el archivo de bytes[0]
+    private boolean agotado;
+    private long posicionLinea;
+    // Inicio de cada campo de la línea actual; inicios[total] es el fin de la línea + 1
+    private int[] inicios = new int[16];
+    private int total;
+    private int campos;
+
+    public LectorRegistros(String ruta, ReservaBuffers reserva) throws IOException {
+        this.canal = FileChannel.open(Paths.get(ruta), StandardOpenOption.READ);
+        this.reserva = reserva;
+        this.prestado = reserva.tomar();
+        this.buffer = prestado;
+        this.bytes = prestado.array();
+    }
+
+    private LectorRegistros(byte[] linea) {
+        this.canal = null;
+        this.reserva = null;
+        this.bytes = linea;
+        this.limite = linea.length;
+        this.agotado = true;
+    }
+
+    // Lector posicionado sobre una sola línea ya leída (por ejemplo, un registro del diario)
+    public static LectorRegistros linea(String linea) {
+        LectorRegistros lector = new LectorRegistros(linea.getBytes(StandardCharsets.UTF_8));
+        lector.ubicarCampos(0, lector.limite);
+        lector.lectura = lector.limite;
+        return lector;
+    }
+
+    // Avanza a la línea siguiente; false al terminar el archivo
+    public boolean siguiente() throws IOException {
+        while (true) {
+            for (int i = escaneado; i < limite; i++) {
+                if (bytes[i] == '\n') {
+                    int fin = i > lectura && bytes[i - 1] == '\r' ? i - 1 : i;
+                    ubicarCampos(lectura, fin);
+                    lectura = i + 1;
+                    escaneado = lectura;
+                    return true;
+                }
+            }
+            escaneado = limite;
+            if (agotado) {
+                if (lectura == limite) {
+                    return false;
+                }
+                ubicarCampos(lectura, limite); // Última línea sin salto final
+                lectura = limite;
+                return true;
+            }
+            cargar();
+        }
+    }
+
+    // Posición en bytes, desde el inicio del archivo, de la línea actual
+    public long posicion() {
+        return posicionLinea;
+    }
+
+    public boolean vacia() {
+        return inicios[total] - 1 == inicios[0];
+    }
+
+    public int campos() {
+        return campos;
+    }
+
+    public String texto(int campo) {
+        int inicio = inicio(campo);
+        return new String(bytes, inicio, fin(campo) - inicio, StandardCharsets.UTF_8);
+    }
+
+    // Entero decimal con signo opcional; NumberFormatException si no lo es o no cabe en un int
+    public int entero(int campo) {
+        int i = inicio(campo);
+        int fin = fin(campo);
+        boolean negativo = i < fin && bytes[i] == '-';
+        if (negativo || (i < fin && bytes[i] == '+')) {
+            i++;
+        }
+        if (i == fin) {
+            throw new NumberFormatException("Entero vacío en el campo " + campo);
+        }
+        long valor = 0;
+        for (; i < fin; i++) {
+            int digito = bytes[i] - '0';
+            if (digito < 0 || digito > 9) {
+                throw new NumberFormatException("Entero inválido en el campo " + campo + ": " + texto(campo));
+            }
+            valor = valor * 10 + digito;
+            if (valor > (long) Integer.MAX_VALUE + 1) {
+                throw new NumberFormatException("Entero fuera de rango en el campo " + campo);
+            }
+        }
+        valor = negativo ? -valor : valor;
+        if (valor > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Entero fuera de rango en el campo " + campo);
+        }
+        return (int) valor;
+    }
+
+    // Constante cuyo nombre coincide con el campo, comparando bytes (los nombres son ASCII);
+    // IllegalArgumentException si ninguna coincide, como Enum.valueOf
+    public <E extends Enum<E>> E enumerado(int campo, E[] valores) {
+        int inicio = inicio(campo);
+        int largo = fin(campo) - inicio;
+        for (E valor : valores) {
+            String nombre = valor.name();
+            if (nombre.length() == largo && coincide(nombre, inicio)) {
+                return valor;
+            }
+        }
+        throw new IllegalArgumentException("Valor desconocido en el campo " + campo + ": " + texto(campo));
+    }
+
+    // Fecha en el formato de LocalDateTime.toString (aaaa-MM-ddTHH:mm[:ss[.fracción]]); los demás
+    // formatos se delegan a LocalDateTime.parse
+    public LocalDateTime fecha(int campo) {
+        int i = inicio(campo);
+        int largo = fin(campo) - i;
+        if (largo < 16 || bytes[i + 4] != '-' || bytes[i + 7] != '-' || bytes[i + 10] != 'T' || bytes[i + 13] != ':') {
+            return LocalDateTime.parse(texto(campo));
+        }
+        int segundos = 0;
+        int nanos = 0;
+        if (largo > 16) {
+            if (largo < 19 || bytes[i + 16] != ':') {
+                return LocalDateTime.parse(texto(campo));
+            }
+            segundos = digitos(i + 17, 2);
+            if (largo > 19) {
+                int cifras = largo - 20;
+                if (bytes[i + 19] != '.' || cifras < 1 || cifras > 9) {
+                    return LocalDateTime.parse(texto(campo));
+                }
+                nanos = digitos(i + 20, cifras);
+                for (int k = cifras; k < 9; k++) {
+                    nanos *= 10;
+                }
+            }
+        }
+        if (segundos < 0 || nanos < 0) {
+            return LocalDateTime.parse(texto(campo));
+        }
+        int anio = digitos(i, 4);
+        int mes = digitos(i + 5, 2);
+        int dia = digitos(i + 8, 2);
+        int hora = digitos(i + 11, 2);
+        int minuto = digitos(i + 14, 2);
+        if (anio < 0 || mes < 0 || dia < 0 || hora < 0 || minuto < 0) {
+            return LocalDateTime.parse(texto(campo));
+        }
+        return LocalDateTime.of(anio, mes, dia, hora, minuto, segundos, nanos);
+    }
+
+    // IDs separados por ',' sin los vacíos; un campo que no está (vacío del final) da una lista vacía
+    public String[] lista(int campo) {
+        if (campo >= campos) {
+            return new String[0];
+        }
+        List<String> elementos = new ArrayList<>();
+        int desde = inicio(campo);
+        int fin = fin(campo);
+        for (int i = desde; i <= fin; i++) {
+            if (i == fin || bytes[i] == ',') {
+                if (i > desde) {
+                    elementos.add(new String(bytes, desde, i - desde, StandardCharsets.UTF_8));
+                }
+                desde = i + 1;
+            }
+        }
+        return elementos.toArray(new String[0]);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reserva != null) {
+            reserva.devolver(prestado);
+            prestado = null;
+        }
+        if (canal != null) {
+            canal.close();
+        }
+    }
+
+    private void ubicarCampos(int desde, int hasta) {
+        posicionLinea = desplazamiento + desde;
+        total = 0;
+        inicios[total++] = desde;
+        for (int i = desde; i < hasta; i++) {
+            if (bytes[i] == '%') {
+                if (total == inicios.length - 1) {
+                    inicios = Arrays.copyOf(inicios, inicios.length * 2);
+                }
+                inicios[total++] = i + 1;
+            }
+        }
+        inicios[total] = hasta + 1;
+        campos = total;
+        while (campos > 0 && fin(campos - 1) == inicio(campos - 1)) {
+            campos--;
+        }
+    }
+
+    private int inicio(int campo) {
+        if (campo >= campos) {
+            throw new IndexOutOfBoundsException("La línea tiene " + campos + " campos, se pidió el " + campo);
+        }
+        return inicios[campo];
+    }
+
+    private int fin(int campo) {
+        return inicios[campo + 1] - 1;
+    }
+
+    private boolean coincide(String nombre, int inicio) {
+        for (int k = 0; k < nombre.length(); k++) {
+            if (bytes[inicio + k] != nombre.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Valor de 'cantidad' dígitos decimales; -1 si alguno no es dígito
+    private int digitos(int desde, int cantidad) {
+        int valor = 0;
+        for (int k = desde; k < desde + cantidad; k++) {
+            int digito = bytes[k] - '0';
+            if (digito < 0 || digito > 9) {
+                return -1;
+            }
+            valor = valor * 10 + digito;
+        }
+        return valor;
+    }
+
+    // Corre al inicio la línea a medias y llena el resto del buffer; si la línea no cabe, el
+    // buffer se duplica (ese más grande no vuelve a la reserva)
+    private void cargar() throws IOException {
+        if (lectura > 0) {
+            System.arraycopy(bytes, lectura, bytes, 0, limite - lectura);
+            desplazamiento += lectura;
+            limite -= lectura;
+            escaneado -= lectura;
+            lectura = 0;
+        }
+        if (limite == bytes.length) {
+            bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            buffer = ByteBuffer.wrap(bytes);
+        }
+        buffer.limit(bytes.length).position(limite);
+        int leidos = canal.read(buffer);
+        if (leidos < 0) {
+            agotado = true;
+        } else {
+            limite += leidos;
+        }
+    }
+}
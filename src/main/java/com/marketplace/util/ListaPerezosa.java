@@ -0,0 +1,419 @@
+package com.marketplace.util;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.ref.SoftReference;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+import com.marketplace.model.Identificable;
+
+// Lista de referencias guardada como IDs. Con un resolutor (p. ej. las búsquedas del Repositorio),
+// los elementos se resuelven recién en el primer acceso y quedan en una SoftReference: el
+// recolector puede liberarlos si falta memoria y el siguiente acceso los vuelve a resolver. Sin
+// resolutor (listas armadas a mano con objetos) los elementos se guardan directamente.
+// Los IDs que no resuelven (p. ej. un producto que aún no está cargado) se conservan en los IDs, y
+// por lo tanto en lo que se persiste, pero no aparecen en la vista; las modificaciones los
+// mantienen detrás del elemento que los precedía.
+//
+// Es copy-on-write como la CopyOnWriteArrayList a la que reemplaza: cada modificación publica un
+// arreglo de IDs nuevo bajo el monitor de la lista, y los recorridos trabajan sobre una
+// instantánea inmutable sin bloqueo (sus iteradores no admiten remove).
+public class ListaPerezosa<T extends Identificable> extends AbstractList<T> implements RandomAccess, Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final String[] VACIA = new String[0];
+    private static final int[] SIN_HUECOS = new int[0];
+
+    // Elementos resueltos a partir de un arreglo de IDs concreto; vale mientras ese arreglo siga vigente.
+    // 'huecos' son las posiciones (crecientes) de 'ids' que no resolvieron y no están en 'elementos'
+    private static final class Resueltos<T> {
+        final String[] ids;
+        final List<T> elementos;
+        final int[] huecos;
+
+        Resueltos(String[] ids, List<T> elementos, int[] huecos) {
+            this.ids = ids;
+            this.elementos = elementos;
+            this.huecos = huecos;
+        }
+    }
+
+    private transient volatile String[] ids = VACIA;
+    private transient volatile Function<String, T> resolutor;
+    // Sin resolutor se usa 'fijos'; con resolutor, 'blandos'
+    private transient volatile Resueltos<T> fijos;
+    private transient volatile SoftReference<Resueltos<T>> blandos;
+
+    public ListaPerezosa() {
+        fijos = new Resueltos<>(VACIA, Collections.emptyList(), SIN_HUECOS);
+    }
+
+    public ListaPerezosa(Collection<? extends T> elementos) {
+        this();
+        publicar(new ArrayList<>(elementos), null);
+    }
+
+    // Copia de los IDs y del resolutor; comparte los elementos ya resueltos (son inmutables)
+    public ListaPerezosa(ListaPerezosa<T> otra) {
+        synchronized (otra) {
+            this.ids = otra.ids;
+            this.resolutor = otra.resolutor;
+            this.fijos = otra.fijos;
+            Resueltos<T> blandos = otra.blandos == null ? null : otra.blandos.get();
+            this.blandos = blandos == null ? null : new SoftReference<>(blandos);
+        }
+    }
+
+    // Solo los IDs; nada se resuelve hasta el primer acceso
+    public ListaPerezosa(String[] ids, Function<String, T> resolutor) {
+        this.ids = ids == null ? VACIA : ids.clone();
+        this.resolutor = resolutor;
+    }
+
+    // IDs vigentes sin resolver los elementos (lo que necesitan los índices y los codificadores)
+    public List<String> ids() {
+        return Collections.unmodifiableList(Arrays.asList(ids));
+    }
+
+    // Pasa a resolver con 'resolutor'; los elementos ya resueltos quedan liberables
+    public synchronized void enlazar(Function<String, T> resolutor) {
+        Resueltos<T> actuales = vigentes();
+        this.resolutor = resolutor;
+        fijos = null;
+        blandos = actuales == null ? null : new SoftReference<>(actuales);
+    }
+
+    // Quita todas las apariciones de un ID sin resolver la lista; a diferencia de remove/removeIf,
+    // alcanza también a los IDs que ya no resuelven (p. ej. un producto recién eliminado)
+    public synchronized boolean quitarId(String id) {
+        Resueltos<T> base = vigentes();
+        String[] actuales = ids;
+        List<String> nuevos = new ArrayList<>(actuales.length);
+        List<T> elementos = base == null ? null : new ArrayList<>(base.elementos.size());
+        int[] huecos = base == null ? null : new int[base.huecos.length];
+        int cantidadHuecos = 0;
+        int hueco = 0;
+        int resuelto = 0;
+        for (int i = 0; i < actuales.length; i++) {
+            boolean esHueco = base != null && hueco < base.huecos.length && base.huecos[hueco] == i;
+            if (esHueco) {
+                hueco++;
+            }
+            T elemento = base == null || esHueco ? null : base.elementos.get(resuelto++);
+            if (Objects.equals(actuales[i], id)) {
+                continue;
+            }
+            if (esHueco) {
+                huecos[cantidadHuecos++] = nuevos.size();
+            } else if (base != null) {
+                elementos.add(elemento);
+            }
+            nuevos.add(actuales[i]);
+        }
+        if (nuevos.size() == actuales.length) {
+            return false;
+        }
+        if (base == null) {
+            ids = nuevos.toArray(VACIA);
+        } else {
+            guardar(nuevos.toArray(VACIA), elementos, Arrays.copyOf(huecos, cantidadHuecos));
+        }
+        return true;
+    }
+
+    // Sustituye 'anterior' por 'nuevo' (mismo ID) solo en los elementos ya resueltos. Si la lista no
+    // está resuelta no hace nada: al resolverse tomará la instancia vigente
+    public synchronized void reemplazarResuelto(T anterior, T nuevo) {
+        Resueltos<T> base = vigentes();
+        if (base == null) {
+            return;
+        }
+        List<T> elementos = null;
+        for (int i = 0; i < base.elementos.size(); i++) {
+            if (base.elementos.get(i) == anterior) {
+                if (elementos == null) {
+                    elementos = new ArrayList<>(base.elementos);
+                }
+                elementos.set(i, nuevo);
+            }
+        }
+        if (elementos != null) {
+            guardar(base.ids, elementos, base.huecos);
+        }
+    }
+
+    // Indica si los elementos están resueltos en memoria (sin resolverlos)
+    public boolean estaResuelta() {
+        return vigentes() != null;
+    }
+
+    @Override
+    public T get(int indice) {
+        return resueltos().elementos.get(indice);
+    }
+
+    @Override
+    public int size() {
+        return resueltos().elementos.size();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return resueltos().elementos.iterator();
+    }
+
+    @Override
+    public Object[] toArray() {
+        return resueltos().elementos.toArray();
+    }
+
+    @Override
+    public <E> E[] toArray(E[] destino) {
+        return resueltos().elementos.toArray(destino);
+    }
+
+    // Agregar al final solo anexa el ID: no obliga a resolver la lista
+    @Override
+    public synchronized boolean add(T elemento) {
+        Resueltos<T> actuales = vigentes();
+        String[] nuevos = Arrays.copyOf(ids, ids.length + 1);
+        nuevos[nuevos.length - 1] = elemento == null ? null : elemento.getId();
+        if (actuales == null) {
+            ids = nuevos;
+        } else {
+            List<T> elementos = new ArrayList<>(actuales.elementos);
+            elementos.add(elemento);
+            guardar(nuevos, elementos, actuales.huecos); // Los huecos no se mueven al agregar al final
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void add(int indice, T elemento) {
+        Resueltos<T> base = resueltos();
+        List<T> elementos = new ArrayList<>(base.elementos);
+        elementos.add(indice, elemento);
+        publicar(elementos, base);
+    }
+
+    @Override
+    public synchronized boolean addAll(Collection<? extends T> nuevos) {
+        Resueltos<T> base = resueltos();
+        List<T> elementos = new ArrayList<>(base.elementos);
+        boolean cambio = elementos.addAll(nuevos);
+        if (cambio) {
+            publicar(elementos, base);
+        }
+        return cambio;
+    }
+
+    @Override
+    public synchronized T set(int indice, T elemento) {
+        Resueltos<T> base = resueltos();
+        List<T> elementos = new ArrayList<>(base.elementos);
+        T anterior = elementos.set(indice, elemento);
+        publicar(elementos, base);
+        return anterior;
+    }
+
+    @Override
+    public synchronized T remove(int indice) {
+        Resueltos<T> base = resueltos();
+        List<T> elementos = new ArrayList<>(base.elementos);
+        T eliminado = elementos.remove(indice);
+        publicar(elementos, base);
+        return eliminado;
+    }
+
+    @Override
+    public synchronized boolean remove(Object elemento) {
+        Resueltos<T> base = resueltos();
+        List<T> elementos = new ArrayList<>(base.elementos);
+        boolean cambio = elementos.remove(elemento);
+        if (cambio) {
+            publicar(elementos, base);
+        }
+        return cambio;
+    }
+
+    @Override
+    public synchronized boolean removeIf(Predicate<? super T> filtro) {
+        Resueltos<T> base = resueltos();
+        List<T> elementos = new ArrayList<>(base.elementos);
+        boolean cambio = elementos.removeIf(filtro);
+        if (cambio) {
+            publicar(elementos, base);
+        }
+        return cambio;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> otros) {
+        return removeIf(otros::contains);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> otros) {
+        return removeIf(elemento -> !otros.contains(elemento));
+    }
+
+    @Override
+    public synchronized void replaceAll(UnaryOperator<T> operador) {
+        Resueltos<T> base = resueltos();
+        List<T> elementos = new ArrayList<>(base.elementos);
+        elementos.replaceAll(operador);
+        publicar(elementos, base);
+    }
+
+    @Override
+    public synchronized void sort(Comparator<? super T> comparador) {
+        Resueltos<T> base = resueltos();
+        List<T> elementos = new ArrayList<>(base.elementos);
+        elementos.sort(comparador);
+        publicar(elementos, base);
+    }
+
+    @Override
+    public synchronized void clear() {
+        publicar(new ArrayList<>(), null); // También descarta los IDs sin resolver
+    }
+
+    // Instantánea vigente, resolviéndola si hace falta
+    private Resueltos<T> resueltos() {
+        Resueltos<T> actuales = vigentes();
+        return actuales != null ? actuales : resolver();
+    }
+
+    // Instantánea en memoria que corresponde a los IDs vigentes, o null si no hay
+    private Resueltos<T> vigentes() {
+        String[] actuales = ids;
+        Resueltos<T> resueltos = fijos;
+        if (resueltos == null) {
+            SoftReference<Resueltos<T>> referencia = blandos;
+            resueltos = referencia == null ? null : referencia.get();
+        }
+        return resueltos != null && resueltos.ids == actuales ? resueltos : null;
+    }
+
+    private synchronized Resueltos<T> resolver() {
+        Resueltos<T> actuales = vigentes();
+        if (actuales != null) {
+            return actuales;
+        }
+        String[] vigentesIds = ids;
+        List<T> elementos = new ArrayList<>(vigentesIds.length);
+        int[] huecos = SIN_HUECOS;
+        int cantidadHuecos = 0;
+        for (int i = 0; i < vigentesIds.length; i++) {
+            T elemento = resolutor == null ? null : resolutor.apply(vigentesIds[i]);
+            if (elemento != null) {
+                elementos.add(elemento);
+            } else {
+                // El ID se conserva: solo la vista lo omite
+                if (cantidadHuecos == huecos.length) {
+                    huecos = Arrays.copyOf(huecos, Math.max(4, cantidadHuecos * 2));
+                }
+                huecos[cantidadHuecos++] = i;
+            }
+        }
+        return guardar(vigentesIds, elementos, Arrays.copyOf(huecos, cantidadHuecos));
+    }
+
+    // Publica la vista modificada 'elementos'. Los IDs sin resolver de 'base' (la instantánea de la
+    // que partió la modificación) se reinsertan detrás del elemento que los precedía; si ese
+    // elemento ya no está, van al final
+    private Resueltos<T> publicar(List<T> elementos, Resueltos<T> base) {
+        if (base == null || base.huecos.length == 0) {
+            String[] nuevos = new String[elementos.size()];
+            for (int i = 0; i < nuevos.length; i++) {
+                nuevos[i] = idDe(elementos.get(i));
+            }
+            return guardar(nuevos, elementos, SIN_HUECOS);
+        }
+        List<String> alInicio = new ArrayList<>();
+        Map<String, List<String>> trasDe = new LinkedHashMap<>();
+        String ancla = null;
+        int hueco = 0;
+        for (int i = 0; i < base.ids.length; i++) {
+            if (hueco < base.huecos.length && base.huecos[hueco] == i) {
+                hueco++;
+                if (ancla == null) {
+                    alInicio.add(base.ids[i]);
+                } else {
+                    trasDe.computeIfAbsent(ancla, clave -> new ArrayList<>()).add(base.ids[i]);
+                }
+            } else {
+                ancla = base.ids[i];
+            }
+        }
+        List<String> nuevos = new ArrayList<>(elementos.size() + base.huecos.length);
+        int[] huecos = new int[base.huecos.length];
+        int cantidadHuecos = 0;
+        for (String id : alInicio) {
+            huecos[cantidadHuecos++] = nuevos.size();
+            nuevos.add(id);
+        }
+        for (T elemento : elementos) {
+            String id = idDe(elemento);
+            nuevos.add(id);
+            List<String> siguientes = id == null ? null : trasDe.remove(id);
+            if (siguientes != null) {
+                for (String faltante : siguientes) {
+                    huecos[cantidadHuecos++] = nuevos.size();
+                    nuevos.add(faltante);
+                }
+            }
+        }
+        for (List<String> huerfanos : trasDe.values()) {
+            for (String faltante : huerfanos) {
+                huecos[cantidadHuecos++] = nuevos.size();
+                nuevos.add(faltante);
+            }
+        }
+        return guardar(nuevos.toArray(VACIA), elementos, huecos);
+    }
+
+    private static String idDe(Identificable elemento) {
+        return elemento == null ? null : elemento.getId();
+    }
+
+    private Resueltos<T> guardar(String[] nuevos, List<T> elementos, int[] huecos) {
+        Resueltos<T> resueltos = new Resueltos<>(nuevos, Collections.unmodifiableList(elementos), huecos);
+        if (resolutor == null) {
+            fijos = resueltos;
+        } else {
+            blandos = new SoftReference<>(resueltos);
+        }
+        ids = nuevos;
+        return resueltos;
+    }
+
+    // Se serializan los elementos resueltos; al leerla queda como lista sin resolutor
+    private void writeObject(ObjectOutputStream salida) throws IOException {
+        salida.defaultWriteObject();
+        salida.writeObject(new ArrayList<>(resueltos().elementos));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream entrada) throws IOException, ClassNotFoundException {
+        entrada.defaultReadObject();
+        ids = VACIA;
+        fijos = new Resueltos<>(VACIA, Collections.emptyList(), SIN_HUECOS);
+        publicar((List<T>) entrada.readObject(), null);
+    }
+}
@@ -0,0 +1,152 @@
+package com.marketplace.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+// Handler de java.util.logging que desacopla el registro de la escritura: publish() solo deja el
+// registro en un búfer circular acotado y un hilo escritor lo vacía por lotes hacia los handlers
+// de destino (archivo, consola), formateando y vaciando a disco una vez por lote.
+// Cuando el búfer se llena, la política decide entre esperar, descartar o muestrear.
+public class LogAsincrono extends Handler {
+
+    public enum Politica {
+        BLOQUEAR, // El hilo que registra espera a que haya espacio
+        DESCARTAR, // Se descarta el registro nuevo
+        MUESTREAR // Con el búfer casi lleno solo pasa 1 de cada N registros por debajo de WARNING
+    }
+
+    private static final int LOTE = 512;
+    // Marca de fin encolada por close(); nunca se publica
+    private static final LogRecord FIN = new LogRecord(Level.OFF, "");
+
+    private final Handler[] destinos;
+    private final BlockingQueue<LogRecord> cola;
+    private final Politica politica;
+    private final int muestreo;
+    private final int umbralMuestreo;
+    private final AtomicLong contadorMuestreo = new AtomicLong();
+    private final AtomicLong descartados = new AtomicLong();
+    private final Thread escritor;
+    private volatile boolean cerrado;
+
+    public LogAsincrono(int capacidad, Politica politica, int muestreo, Handler... destinos) {
+        this.destinos = destinos;
+        this.cola = new ArrayBlockingQueue<>(capacidad);
+        this.politica = politica;
+        this.muestreo = Math.max(1, muestreo);
+        this.umbralMuestreo = capacidad / 4;
+        setLevel(Level.ALL);
+        escritor = new Thread(this::drenar, "marketplace-log");
+        escritor.setDaemon(true);
+        escritor.start();
+    }
+
+    @Override
+    public void publish(LogRecord registro) {
+        if (cerrado || !isLoggable(registro)) {
+            return;
+        }
+        try {
+            switch (politica) {
+                case BLOQUEAR:
+                    cola.put(registro);
+                    break;
+                case DESCARTAR:
+                    encolarODescartar(registro);
+                    break;
+                case MUESTREAR:
+                    if (registro.getLevel().intValue() >= Level.WARNING.intValue()) {
+                        cola.put(registro); // Las advertencias y errores nunca se muestrean
+                    } else if (cola.remainingCapacity() > umbralMuestreo
+                            || contadorMuestreo.incrementAndGet() % muestreo == 0) {
+                        encolarODescartar(registro);
+                    } else {
+                        descartados.incrementAndGet();
+                    }
+                    break;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void encolarODescartar(LogRecord registro) {
+        if (!cola.offer(registro)) {
+            descartados.incrementAndGet();
+        }
+    }
+
+    public long getDescartados() {
+        return descartados.get();
+    }
+
+    // El vaciado a disco lo hace el hilo escritor al terminar cada lote
+    @Override
+    public void flush() {
+    }
+
+    // Espera a que se escriba lo pendiente y cierra los destinos
+    @Override
+    public void close() {
+        if (cerrado) {
+            return;
+        }
+        cerrado = true;
+        try {
+            cola.put(FIN);
+            escritor.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Handler destino : destinos) {
+            destino.close();
+        }
+    }
+
+    private void drenar() {
+        List<LogRecord> lote = new ArrayList<>(LOTE);
+        long descartadosInformados = 0;
+        try {
+            while (true) {
+                lote.add(cola.take());
+                cola.drainTo(lote, LOTE - 1);
+                boolean fin = false;
+                for (LogRecord registro : lote) {
+                    if (registro == FIN) {
+                        fin = true;
+                    } else {
+                        publicarEnDestinos(registro);
+                    }
+                }
+                lote.clear();
+                long totalDescartados = descartados.get();
+                if (totalDescartados > descartadosInformados) {
+                    publicarEnDestinos(new LogRecord(Level.WARNING, "Búfer de log lleno: "
+                            + (totalDescartados - descartadosInformados) + " registro(s) descartado(s)"));
+                    descartadosInformados = totalDescartados;
+                }
+                for (Handler destino : destinos) {
+                    destino.flush();
+                }
+                if (fin) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void publicarEnDestinos(LogRecord registro) {
+        for (Handler destino : destinos) {
+            destino.publish(registro);
+        }
+    }
+}
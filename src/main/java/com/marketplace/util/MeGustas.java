@@ -0,0 +1,274 @@
+package com.marketplace.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+import java.util.function.IntConsumer;
+
+// Subsistema de "me gusta": cada producto tiene un contador LongAdder (segmentado por hilo, sin
+// un punto único de contención) y un conjunto de bits sobre las ranuras densas de los vendedores
+// que ya le dieron "me gusta", para no contar dos veces al mismo. Los "me gusta" no se escriben
+// uno a uno: se acumulan y vaciar() entrega a la persistencia quién dio "me gusta" a qué y la
+// diferencia de cada producto cambiado desde el último volcado.
+public class MeGustas {
+    // Cada página cubre 512 vendedores (8 longs); un producto solo reserva las páginas que usa
+    private static final int BITS_PAGINA = 9;
+    private static final int PALABRAS_PAGINA = (1 << BITS_PAGINA) / Long.SIZE;
+
+    private static final class Registro {
+        final LongAdder contador = new LongAdder();
+        // Parte del contador ya entregada en volcados anteriores; solo la usa vaciar()
+        volatile long volcado;
+        final AtomicBoolean pendiente = new AtomicBoolean();
+        final Map<Integer, AtomicLongArray> paginas = new ConcurrentHashMap<>();
+
+        // true si el bit no estaba puesto
+        boolean marcar(int ranura) {
+            AtomicLongArray pagina = paginas.computeIfAbsent(ranura >>> BITS_PAGINA,
+                    k -> new AtomicLongArray(PALABRAS_PAGINA));
+            int palabra = (ranura >>> 6) & (PALABRAS_PAGINA - 1);
+            long mascara = 1L << ranura;
+            while (true) {
+                long actual = pagina.get(palabra);
+                if ((actual & mascara) != 0) {
+                    return false;
+                }
+                if (pagina.compareAndSet(palabra, actual, actual | mascara)) {
+                    return true;
+                }
+            }
+        }
+
+        // true si el bit estaba puesto
+        boolean desmarcar(int ranura) {
+            AtomicLongArray pagina = paginas.get(ranura >>> BITS_PAGINA);
+            if (pagina == null) {
+                return false;
+            }
+            int palabra = (ranura >>> 6) & (PALABRAS_PAGINA - 1);
+            long mascara = 1L << ranura;
+            while (true) {
+                long actual = pagina.get(palabra);
+                if ((actual & mascara) == 0) {
+                    return false;
+                }
+                if (pagina.compareAndSet(palabra, actual, actual & ~mascara)) {
+                    return true;
+                }
+            }
+        }
+
+        boolean marcado(int ranura) {
+            AtomicLongArray pagina = paginas.get(ranura >>> BITS_PAGINA);
+            return pagina != null && (pagina.get((ranura >>> 6) & (PALABRAS_PAGINA - 1)) & (1L << ranura)) != 0;
+        }
+
+        void recorrer(IntConsumer accion) {
+            for (Map.Entry<Integer, AtomicLongArray> pagina : paginas.entrySet()) {
+                int base = pagina.getKey() << BITS_PAGINA;
+                for (int palabra = 0; palabra < PALABRAS_PAGINA; palabra++) {
+                    long bits = pagina.getValue().get(palabra);
+                    while (bits != 0) {
+                        accion.accept(base + palabra * Long.SIZE + Long.numberOfTrailingZeros(bits));
+                        bits &= bits - 1;
+                    }
+                }
+            }
+        }
+    }
+
+    private final RanurasDensas vendedores = new RanurasDensas();
+    private final Map<String, Registro> registros = new ConcurrentHashMap<>();
+    private final Set<String> pendientes = ConcurrentHashMap.newKeySet();
+    // Se invoca cuando un producto pasa de no tener cambios pendientes a tenerlos
+    private final Runnable avisoPendiente;
+    private volatile boolean quienesCambiaron;
+
+    public MeGustas(Runnable avisoPendiente) {
+        this.avisoPendiente = avisoPendiente;
+    }
+
+    // Registra el "me gusta" del vendedor; false si ya se lo había dado
+    public boolean dar(String idProducto, String idVendedor) {
+        Registro registro = registro(idProducto);
+        if (!registro.marcar(vendedores.ranura(idVendedor))) {
+            return false;
+        }
+        registro.contador.increment();
+        anotarCambioDeQuienes();
+        marcarPendiente(idProducto, registro);
+        return true;
+    }
+
+    // Retira el "me gusta" del vendedor; false si no se lo había dado
+    public boolean quitar(String idProducto, String idVendedor) {
+        Registro registro = registros.get(idProducto);
+        int ranura = vendedores.buscar(idVendedor);
+        if (registro == null || ranura < 0 || !registro.desmarcar(ranura)) {
+            return false;
+        }
+        registro.contador.decrement();
+        anotarCambioDeQuienes();
+        marcarPendiente(idProducto, registro);
+        return true;
+    }
+
+    // "Me gusta" anónimo, sin registro de quién lo da
+    public void sumar(String idProducto) {
+        Registro registro = registro(idProducto);
+        registro.contador.increment();
+        marcarPendiente(idProducto, registro);
+    }
+
+    public boolean dioMeGusta(String idProducto, String idVendedor) {
+        Registro registro = registros.get(idProducto);
+        int ranura = vendedores.buscar(idVendedor);
+        return registro != null && ranura >= 0 && registro.marcado(ranura);
+    }
+
+    // "Me gusta" acumulados que todavía no se entregaron en un volcado
+    public long sinVolcar(String idProducto) {
+        Registro registro = registros.get(idProducto);
+        return registro == null ? 0 : registro.contador.sum() - registro.volcado;
+    }
+
+    // Escribe quién dio "me gusta" a qué, normalmente con escribir()
+    public interface Quienes {
+        void escribir() throws IOException;
+    }
+
+    // Volcado en tres pasos, ordenados para que una caída en medio pueda perder los "me gusta" del
+    // volcado en curso pero nunca contar uno dos veces:
+    // 1. Se leen los totales a volcar. dar() y quitar() cambian el bit antes que el contador, así
+    //    que todo lo incluido en un total ya está reflejado en los bits.
+    // 2. Si cambió quién dio "me gusta" a qué, se escribe con 'quienes'. Si falla no se entrega
+    //    nada y todo queda pendiente.
+    // 3. Se entrega a 'aplicar' la diferencia de cada producto; si la rechaza (false), la
+    //    diferencia sigue pendiente para el próximo volcado.
+    // Devuelve true si algo quedó pendiente por un rechazo. Se llama desde un solo hilo a la vez
+    // (el de instantáneas o el de cierre); lo que queda pendiente no avisa a avisoPendiente, el
+    // llamador decide cuándo reintentar
+    public synchronized boolean vaciar(Quienes quienes, BiPredicate<String, Long> aplicar) throws IOException {
+        Map<String, Long> totales = new LinkedHashMap<>();
+        Iterator<String> iterador = pendientes.iterator();
+        while (iterador.hasNext()) {
+            String idProducto = iterador.next();
+            iterador.remove();
+            Registro registro = registros.get(idProducto);
+            if (registro != null) {
+                // Se baja la marca antes de leer: un "me gusta" posterior la vuelve a subir
+                registro.pendiente.set(false);
+                totales.put(idProducto, registro.contador.sum());
+            }
+        }
+        if (quienesCambiaron) {
+            quienesCambiaron = false; // Se baja antes de escribir: lo que cambie después la sube otra vez
+            try {
+                quienes.escribir();
+            } catch (IOException e) {
+                quienesCambiaron = true;
+                for (String idProducto : totales.keySet()) {
+                    devolver(idProducto);
+                }
+                throw e;
+            }
+        }
+        boolean rechazados = false;
+        for (Map.Entry<String, Long> total : totales.entrySet()) {
+            Registro registro = registros.get(total.getKey());
+            if (registro == null) {
+                continue; // Olvidado mientras tanto
+            }
+            long diferencia = total.getValue() - registro.volcado;
+            if (diferencia == 0) {
+                continue;
+            }
+            if (aplicar.test(total.getKey(), diferencia)) {
+                registro.volcado = total.getValue();
+            } else {
+                devolver(total.getKey());
+                rechazados = true;
+            }
+        }
+        return rechazados;
+    }
+
+    // El producto ya no existe: se descartan su contador y quiénes le dieron "me gusta"
+    public void olvidar(String idProducto) {
+        if (idProducto != null && registros.remove(idProducto) != null) {
+            quienesCambiaron = true;
+        }
+    }
+
+    // Una línea por producto: idProducto%idVendedor,idVendedor,...
+    public void escribir(Writer salida) throws IOException {
+        BufferedWriter escritor = new BufferedWriter(salida);
+        for (Map.Entry<String, Registro> entrada : registros.entrySet()) {
+            List<String> quienes = new ArrayList<>();
+            entrada.getValue().recorrer(ranura -> quienes.add(vendedores.id(ranura)));
+            if (!quienes.isEmpty()) {
+                escritor.write(entrada.getKey() + "%" + String.join(",", quienes));
+                escritor.newLine();
+            }
+        }
+        escritor.flush();
+    }
+
+    // Restaura quién dio "me gusta" a qué; los contadores ya vienen persistidos en cada producto
+    public void leer(Reader entrada) throws IOException {
+        BufferedReader lector = new BufferedReader(entrada);
+        String linea;
+        while ((linea = lector.readLine()) != null) {
+            String[] partes = linea.split("%", 2);
+            if (partes.length < 2 || partes[1].isEmpty()) {
+                continue;
+            }
+            Registro registro = registro(partes[0]);
+            for (String idVendedor : partes[1].split(",")) {
+                registro.marcar(vendedores.ranura(idVendedor));
+            }
+        }
+    }
+
+    private Registro registro(String idProducto) {
+        Registro registro = registros.get(idProducto);
+        return registro != null ? registro : registros.computeIfAbsent(idProducto, k -> new Registro());
+    }
+
+    private void anotarCambioDeQuienes() {
+        if (!quienesCambiaron) { // Igual que en marcarPendiente: solo escribe si hace falta
+            quienesCambiaron = true;
+        }
+    }
+
+    // Vuelve a marcar como pendiente un producto que vaciar() no pudo entregar
+    private void devolver(String idProducto) {
+        Registro registro = registros.get(idProducto);
+        if (registro != null) {
+            registro.pendiente.set(true);
+            pendientes.add(idProducto);
+        }
+    }
+
+    private void marcarPendiente(String idProducto, Registro registro) {
+        // Se lee antes de escribir para que los hilos que dan "me gusta" al mismo producto no
+        // compitan por la línea de caché de la marca mientras ya está subida
+        if (!registro.pendiente.get() && registro.pendiente.compareAndSet(false, true)) {
+            pendientes.add(idProducto);
+            avisoPendiente.run();
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.marketplace.util;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.marketplace.model.Categoria;
+import com.marketplace.model.Estado;
+
+// Estadísticas del catálogo por categoría, estado, vendedor y día de publicación, calculadas en
+// paralelo con fork-join sobre las columnas de ColumnasProductos. Cada tarea hoja acumula un tramo
+// de filas en sumas enteras y las parciales se combinan sumando, así que el resultado es el mismo
+// con cualquier cantidad de hilos y cualquier reparto de los tramos.
+public class MotorEstadisticas {
+    private static final Categoria[] CATEGORIAS = Categoria.values();
+    private static final Estado[] ESTADOS = Estado.values();
+    private static final long MICROS_POR_DIA = 86_400_000_000L;
+    // Filas por tarea hoja: bastantes para amortizar la tarea, pocas para repartir bien la carga
+    private static final int TRAMO = 1 << 16;
+    // Cada grupo ocupa tres posiciones seguidas en los arreglos de sumas
+    private static final int CANTIDAD = 0;
+    private static final int PRECIOS = 1;
+    private static final int ME_GUSTAS = 2;
+
+    // Cantidad de productos, suma de sus precios y de sus "me gusta"
+    public static final class Agregado {
+        private final long cantidad;
+        private final long sumaPrecios;
+        private final long meGustas;
+
+        Agregado(long[] sumas, int grupo) {
+            this.cantidad = sumas[3 * grupo + CANTIDAD];
+            this.sumaPrecios = sumas[3 * grupo + PRECIOS];
+            this.meGustas = sumas[3 * grupo + ME_GUSTAS];
+        }
+
+        public long getCantidad() {
+            return cantidad;
+        }
+
+        public long getSumaPrecios() {
+            return sumaPrecios;
+        }
+
+        // 0 si el grupo está vacío
+        public double getPrecioPromedio() {
+            return cantidad == 0 ? 0 : (double) sumaPrecios / cantidad;
+        }
+
+        public long getMeGustas() {
+            return meGustas;
+        }
+    }
+
+    public static final class Resultado {
+        private final Agregado total;
+        private final Map<Categoria, Agregado> porCategoria;
+        private final Map<Estado, Agregado> porEstado;
+        private final SortedMap<String, Agregado> porVendedor;
+        private final SortedMap<LocalDate, Agregado> porDia;
+
+        Resultado(Agregado total, Map<Categoria, Agregado> porCategoria, Map<Estado, Agregado> porEstado,
+                SortedMap<String, Agregado> porVendedor, SortedMap<LocalDate, Agregado> porDia) {
+            this.total = total;
+            this.porCategoria = Collections.unmodifiableMap(porCategoria);
+            this.porEstado = Collections.unmodifiableMap(porEstado);
+            this.porVendedor = Collections.unmodifiableSortedMap(porVendedor);
+            this.porDia = Collections.unmodifiableSortedMap(porDia);
+        }
+
+        public Agregado getTotal() {
+            return total;
+        }
+
+        // Todas las categorías, también las vacías; los productos sin categoría solo van al total
+        public Map<Categoria, Agregado> getPorCategoria() {
+            return porCategoria;
+        }
+
+        public Map<Estado, Agregado> getPorEstado() {
+            return porEstado;
+        }
+
+        // Solo los vendedores con productos, por ID
+        public SortedMap<String, Agregado> getPorVendedor() {
+            return porVendedor;
+        }
+
+        // Solo los días con publicaciones (UTC, como las claves de fecha)
+        public SortedMap<LocalDate, Agregado> getPorDia() {
+            return porDia;
+        }
+    }
+
+    // Sumas de un tramo de filas; los vendedores por ranura y los días desde primerDia
+    private static final class Parcial {
+        final long[] total = new long[3];
+        final long[] categorias = new long[3 * CATEGORIAS.length];
+        final long[] estados = new long[3 * ESTADOS.length];
+        long[] vendedores = new long[0];
+        long primerDia;
+        long[] dias = new long[0];
+    }
+
+    private final class Tarea extends RecursiveTask<Parcial> {
+        private static final long serialVersionUID = 1L; // RecursiveTask es Serializable; nunca se serializa
+        private final ColumnasProductos.Columnas columnas;
+        private final int desde;
+        private final int hasta;
+        private final boolean filtrar;
+        private final long inicio;
+        private final long fin;
+
+        Tarea(ColumnasProductos.Columnas columnas, int desde, int hasta, boolean filtrar, long inicio, long fin) {
+            this.columnas = columnas;
+            this.desde = desde;
+            this.hasta = hasta;
+            this.filtrar = filtrar;
+            this.inicio = inicio;
+            this.fin = fin;
+        }
+
+        @Override
+        protected Parcial compute() {
+            if (hasta - desde <= TRAMO) {
+                return acumular(columnas, desde, hasta, filtrar, inicio, fin);
+            }
+            int medio = (desde + hasta) >>> 1;
+            Tarea izquierda = new Tarea(columnas, desde, medio, filtrar, inicio, fin);
+            izquierda.fork();
+            Parcial derecha = new Tarea(columnas, medio, hasta, filtrar, inicio, fin).compute();
+            return combinar(izquierda.join(), derecha);
+        }
+    }
+
+    private final ColumnasProductos columnas;
+    private final ForkJoinPool pool;
+
+    public MotorEstadisticas(ColumnasProductos columnas, ForkJoinPool pool) {
+        this.columnas = columnas;
+        this.pool = pool;
+    }
+
+    // Todo el catálogo
+    public Resultado calcular() {
+        return calcular(null, null);
+    }
+
+    // Solo los publicados entre desde y hasta, ambos incluidos; null deja ese lado abierto. Con
+    // algún límite, los productos sin fecha quedan fuera
+    public Resultado calcular(LocalDateTime desde, LocalDateTime hasta) {
+        boolean filtrar = desde != null || hasta != null;
+        long inicio = desde == null ? Long.MIN_VALUE + 1 : ColumnasProductos.clave(desde);
+        long fin = hasta == null ? Long.MAX_VALUE : ColumnasProductos.clave(hasta);
+        Parcial parcial = columnas.leer(c -> pool.invoke(new Tarea(c, 0, c.cantidad, filtrar, inicio, fin)));
+        return resultado(parcial);
+    }
+
+    private static Parcial acumular(ColumnasProductos.Columnas c, int desde, int hasta, boolean filtrar, long inicio,
+            long fin) {
+        // Primera pasada: rango de días y mayor ranura de vendedor, para dimensionar las sumas
+        long primerDia = Long.MAX_VALUE;
+        long ultimoDia = Long.MIN_VALUE;
+        int mayorVendedor = -1;
+        for (int i = desde; i < hasta; i++) {
+            long fecha = c.fechas[i];
+            if (filtrar && (fecha < inicio || fecha > fin)) {
+                continue;
+            }
+            if (fecha != ColumnasProductos.SIN_FECHA) {
+                long dia = Math.floorDiv(fecha, MICROS_POR_DIA);
+                primerDia = Math.min(primerDia, dia);
+                ultimoDia = Math.max(ultimoDia, dia);
+            }
+            mayorVendedor = Math.max(mayorVendedor, c.vendedores[i]);
+        }
+        Parcial parcial = new Parcial();
+        parcial.vendedores = new long[3 * (mayorVendedor + 1)];
+        if (ultimoDia >= primerDia) {
+            parcial.primerDia = primerDia;
+            parcial.dias = new long[3 * (int) (ultimoDia - primerDia + 1)];
+        }
+        for (int i = desde; i < hasta; i++) {
+            long fecha = c.fechas[i];
+            if (filtrar && (fecha < inicio || fecha > fin)) {
+                continue;
+            }
+            int precio = c.precios[i];
+            int meGustas = c.meGustas[i];
+            sumar(parcial.total, 0, precio, meGustas);
+            if (c.categorias[i] >= 0) {
+                sumar(parcial.categorias, c.categorias[i], precio, meGustas);
+            }
+            if (c.estados[i] >= 0) {
+                sumar(parcial.estados, c.estados[i], precio, meGustas);
+            }
+            if (c.vendedores[i] >= 0) {
+                sumar(parcial.vendedores, c.vendedores[i], precio, meGustas);
+            }
+            if (fecha != ColumnasProductos.SIN_FECHA) {
+                sumar(parcial.dias, (int) (Math.floorDiv(fecha, MICROS_POR_DIA) - primerDia), precio, meGustas);
+            }
+        }
+        return parcial;
+    }
+
+    private static void sumar(long[] sumas, int grupo, int precio, int meGustas) {
+        sumas[3 * grupo + CANTIDAD]++;
+        sumas[3 * grupo + PRECIOS] += precio;
+        sumas[3 * grupo + ME_GUSTAS] += meGustas;
+    }
+
+    private static Parcial combinar(Parcial a, Parcial b) {
+        agregar(a.total, b.total, 0);
+        agregar(a.categorias, b.categorias, 0);
+        agregar(a.estados, b.estados, 0);
+        if (b.vendedores.length > a.vendedores.length) {
+            long[] vendedores = a.vendedores;
+            a.vendedores = b.vendedores;
+            b.vendedores = vendedores;
+        }
+        agregar(a.vendedores, b.vendedores, 0);
+        if (b.dias.length == 0) {
+            return a;
+        }
+        if (a.dias.length == 0) {
+            a.primerDia = b.primerDia;
+            a.dias = b.dias;
+            return a;
+        }
+        long primerDia = Math.min(a.primerDia, b.primerDia);
+        long ultimoDia = Math.max(a.primerDia + a.dias.length / 3, b.primerDia + b.dias.length / 3);
+        long[] dias = new long[3 * (int) (ultimoDia - primerDia)];
+        agregar(dias, a.dias, 3 * (int) (a.primerDia - primerDia));
+        agregar(dias, b.dias, 3 * (int) (b.primerDia - primerDia));
+        a.primerDia = primerDia;
+        a.dias = dias;
+        return a;
+    }
+
+    private static void agregar(long[] destino, long[] origen, int desplazamiento) {
+        for (int i = 0; i < origen.length; i++) {
+            destino[desplazamiento + i] += origen[i];
+        }
+    }
+
+    private Resultado resultado(Parcial parcial) {
+        Map<Categoria, Agregado> porCategoria = new EnumMap<>(Categoria.class);
+        for (Categoria categoria : CATEGORIAS) {
+            porCategoria.put(categoria, new Agregado(parcial.categorias, categoria.ordinal()));
+        }
+        Map<Estado, Agregado> porEstado = new EnumMap<>(Estado.class);
+        for (Estado estado : ESTADOS) {
+            porEstado.put(estado, new Agregado(parcial.estados, estado.ordinal()));
+        }
+        SortedMap<String, Agregado> porVendedor = new TreeMap<>();
+        for (int ranura = 0; ranura < parcial.vendedores.length / 3; ranura++) {
+            String id = columnas.idVendedor(ranura);
+            if (parcial.vendedores[3 * ranura + CANTIDAD] > 0 && id != null) {
+                porVendedor.put(id, new Agregado(parcial.vendedores, ranura));
+            }
+        }
+        SortedMap<LocalDate, Agregado> porDia = new TreeMap<>();
+        for (int dia = 0; dia < parcial.dias.length / 3; dia++) {
+            if (parcial.dias[3 * dia + CANTIDAD] > 0) {
+                porDia.put(LocalDate.ofEpochDay(parcial.primerDia + dia), new Agregado(parcial.dias, dia));
+            }
+        }
+        return new Resultado(new Agregado(parcial.total, 0), porCategoria, porEstado, porVendedor, porDia);
+    }
+}
@@ -0,0 +1,75 @@
+package com.marketplace.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Tokenización para búsquedas en español: minúsculas, sin tildes ni diéresis (así "camión" y
+// "camion" coinciden; también la ñ pasa a n) y sin palabras vacías. Un token es una secuencia de
+// letras o dígitos. Los caracteres latinos se pliegan con una tabla precalculada; el resto solo
+// se pasa a minúsculas.
+public final class NormalizadorTexto {
+    private static final int LIMITE_TABLA = 0x250; // Latín básico, Latín-1 y Latín extendido A/B
+    private static final char[] PLEGADO = new char[LIMITE_TABLA];
+    private static final Set<String> VACIAS = new HashSet<>(Arrays.asList(
+            "a", "al", "ante", "con", "de", "del", "el", "en", "es", "la", "las", "le", "lo", "los",
+            "mas", "mi", "o", "para", "pero", "por", "que", "se", "sin", "su", "sus", "un", "una",
+            "uno", "unos", "unas", "y"));
+
+    static {
+        for (char c = 0; c < LIMITE_TABLA; c++) {
+            if (!Character.isLetterOrDigit(c)) {
+                PLEGADO[c] = 0; // Separador
+                continue;
+            }
+            // NFD separa la letra base de sus marcas diacríticas; se queda la base
+            String descompuesto = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+            PLEGADO[c] = Character.toLowerCase(descompuesto.charAt(0));
+        }
+    }
+
+    private NormalizadorTexto() {
+    }
+
+    // Tokens normalizados en orden de aparición, con repeticiones y sin palabras vacías
+    public static List<String> tokens(String texto) {
+        return tokens(texto, true);
+    }
+
+    // Texto completo normalizado, palabras vacías incluidas, con un espacio entre tokens
+    public static String normalizar(String texto) {
+        return String.join(" ", tokens(texto, false));
+    }
+
+    private static List<String> tokens(String texto, boolean sinVacias) {
+        List<String> tokens = new ArrayList<>();
+        if (texto == null) {
+            return tokens;
+        }
+        StringBuilder actual = new StringBuilder();
+        for (int i = 0; i <= texto.length(); i++) {
+            char c = i < texto.length() ? plegar(texto.charAt(i)) : 0;
+            if (c != 0) {
+                actual.append(c);
+            } else if (actual.length() > 0) {
+                String token = actual.toString();
+                if (!sinVacias || !VACIAS.contains(token)) {
+                    tokens.add(token);
+                }
+                actual.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    // Carácter plegado, o 0 si es un separador
+    private static char plegar(char c) {
+        if (c < LIMITE_TABLA) {
+            return PLEGADO[c];
+        }
+        return Character.isLetterOrDigit(c) ? Character.toLowerCase(c) : 0;
+    }
+}
@@ -0,0 +1,23 @@
+package com.marketplace.util;
+
+import java.util.Collection;
+
+import com.marketplace.model.Producto;
+
+// Observador de los cambios de productos en Repositorio, para los índices derivados.
+// Las notificaciones llegan de una en una (Repositorio las serializa) y con la instancia vigente
+// del producto, así que el oyente no necesita sincronizar con otros avisos del mismo producto.
+public interface OyenteProductos {
+
+    // Alta o modificación; el oyente debe reemplazar lo que tuviera indexado de ese ID
+    void productoGuardado(Producto producto);
+
+    void productoEliminado(String id);
+
+    // Carga inicial del repositorio; los oyentes pueden indexar el lote de una vez
+    default void productosGuardados(Collection<Producto> productos) {
+        for (Producto producto : productos) {
+            productoGuardado(producto);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.marketplace.util;
+
+import com.marketplace.model.Solicitud;
+
+// Observador de los cambios de solicitudes en Repositorio, con las mismas garantías que
+// OyenteVendedores: avisos de uno en uno, bajo el monitor del repositorio.
+public interface OyenteSolicitudes {
+
+    // Alta o cambio de estado; el oyente debe reemplazar lo que tuviera de ese ID
+    void solicitudGuardada(Solicitud solicitud);
+
+    void solicitudEliminada(String id);
+}
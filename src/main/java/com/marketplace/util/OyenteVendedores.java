@@ -0,0 +1,13 @@
+package com.marketplace.util;
+
+import com.marketplace.model.Vendedor;
+
+// Observador de los cambios de vendedores en Repositorio, con las mismas garantías que
+// OyenteProductos: avisos de uno en uno y con la instancia vigente.
+public interface OyenteVendedores {
+
+    // Alta o modificación; el oyente debe reemplazar lo que tuviera indexado de ese ID
+    void vendedorGuardado(Vendedor vendedor);
+
+    void vendedorEliminado(String id);
+}
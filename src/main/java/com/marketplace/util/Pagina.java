@@ -0,0 +1,48 @@
+package com.marketplace.util;
+
+import java.util.Collections;
+import java.util.List;
+
+// Una página de resultados paginados por cursor (keyset). El cursor identifica el último elemento
+// entregado (su clave de orden y su ID), no una posición: pedir la página siguiente no recorre las
+// anteriores y no salta ni repite elementos aunque entre pedidos se agreguen o quiten otros.
+public final class Pagina<T> {
+    private final List<T> elementos;
+    private final String siguiente;
+
+    Pagina(List<T> elementos, String siguiente) {
+        this.elementos = Collections.unmodifiableList(elementos);
+        this.siguiente = siguiente;
+    }
+
+    static <T> Pagina<T> vacia() {
+        return new Pagina<>(Collections.emptyList(), null);
+    }
+
+    public List<T> getElementos() {
+        return elementos;
+    }
+
+    // Cursor para pedir la página siguiente; null si esta es la última
+    public String getSiguiente() {
+        return siguiente;
+    }
+
+    static String cursor(long clave, String id) {
+        return clave + ":" + id;
+    }
+
+    // Clave del cursor; NumberFormatException si no es un cursor válido
+    static long clave(String cursor) {
+        int separador = cursor.indexOf(':');
+        return Long.parseLong(separador < 0 ? cursor : cursor.substring(0, separador));
+    }
+
+    static String id(String cursor) {
+        int separador = cursor.indexOf(':');
+        if (separador < 0) {
+            throw new NumberFormatException("Cursor sin ID: " + cursor);
+        }
+        return cursor.substring(separador + 1);
+    }
+}
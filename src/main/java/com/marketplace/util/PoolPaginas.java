@@ -0,0 +1,159 @@
+package com.marketplace.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Caché de páginas de tamaño fijo de un archivo, con una cantidad fija de marcos: la memoria que
+// usa no depende del tamaño del archivo. Se reemplaza con el algoritmo del reloj (CLOCK): cada
+// acceso marca el marco y la manecilla avanza dando una segunda oportunidad a los marcados, hasta
+// encontrar uno sin marca y sin fijar. Las páginas modificadas se escriben al desalojarlas o en
+// vaciar(). Lo usa un solo árbol bajo su propio monitor, así que no sincroniza.
+public class PoolPaginas implements Closeable {
+    public static final int TAMANO = 4096;
+    private static final long VACIO = -1;
+
+    private final FileChannel canal;
+    private final ByteBuffer[] marcos;
+    private final long[] paginas;
+    private final int[] fijaciones;
+    private final boolean[] marcados;
+    private final boolean[] sucios;
+    private final Map<Long, Integer> ubicaciones = new HashMap<>();
+    private int manecilla;
+    private long aciertos;
+    private long fallos;
+    private long escrituras;
+
+    public PoolPaginas(FileChannel canal, int cantidadMarcos) {
+        if (cantidadMarcos < 4) {
+            throw new IllegalArgumentException("El pool necesita al menos 4 marcos: " + cantidadMarcos);
+        }
+        this.canal = canal;
+        this.marcos = new ByteBuffer[cantidadMarcos];
+        this.paginas = new long[cantidadMarcos];
+        this.fijaciones = new int[cantidadMarcos];
+        this.marcados = new boolean[cantidadMarcos];
+        this.sucios = new boolean[cantidadMarcos];
+        Arrays.fill(paginas, VACIO);
+        for (int i = 0; i < cantidadMarcos; i++) {
+            marcos[i] = ByteBuffer.allocate(TAMANO);
+        }
+    }
+
+    // Trae la página al pool y la fija: no se desaloja hasta soltar(). Las páginas más allá del
+    // fin del archivo se leen en cero
+    public int fijar(long pagina) {
+        Integer marco = ubicaciones.get(pagina);
+        if (marco != null) {
+            aciertos++;
+        } else {
+            fallos++;
+            marco = victima();
+            ByteBuffer buffer = marcos[marco];
+            buffer.clear();
+            try {
+                while (buffer.hasRemaining()) {
+                    if (canal.read(buffer, pagina * TAMANO + buffer.position()) < 0) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            Arrays.fill(buffer.array(), buffer.position(), TAMANO, (byte) 0);
+            paginas[marco] = pagina;
+            ubicaciones.put(pagina, marco);
+        }
+        fijaciones[marco]++;
+        marcados[marco] = true;
+        return marco;
+    }
+
+    // Contenido del marco; solo válido mientras esté fijado
+    public ByteBuffer buffer(int marco) {
+        return marcos[marco];
+    }
+
+    public void soltar(int marco, boolean modificado) {
+        if (fijaciones[marco] == 0) {
+            throw new IllegalStateException("Marco no fijado: " + marco);
+        }
+        fijaciones[marco]--;
+        sucios[marco] |= modificado;
+    }
+
+    // Escribe todas las páginas modificadas
+    public void vaciar() throws IOException {
+        for (int marco = 0; marco < marcos.length; marco++) {
+            if (sucios[marco]) {
+                escribir(marco);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        vaciar();
+        canal.close();
+    }
+
+    public int getMarcos() {
+        return marcos.length;
+    }
+
+    public long getAciertos() {
+        return aciertos;
+    }
+
+    public long getFallos() {
+        return fallos;
+    }
+
+    public long getEscrituras() {
+        return escrituras;
+    }
+
+    private int victima() {
+        for (int vueltas = 0; vueltas < 2 * marcos.length + 1; vueltas++) {
+            int marco = manecilla;
+            manecilla = (manecilla + 1) % marcos.length;
+            if (fijaciones[marco] > 0) {
+                continue;
+            }
+            if (marcados[marco]) {
+                marcados[marco] = false; // Segunda oportunidad
+                continue;
+            }
+            if (paginas[marco] != VACIO) {
+                if (sucios[marco]) {
+                    try {
+                        escribir(marco);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                ubicaciones.remove(paginas[marco]);
+                paginas[marco] = VACIO;
+            }
+            return marco;
+        }
+        throw new IllegalStateException("Todos los marcos del pool están fijados");
+    }
+
+    private void escribir(int marco) throws IOException {
+        ByteBuffer buffer = marcos[marco].duplicate();
+        buffer.clear();
+        long posicion = paginas[marco] * TAMANO;
+        while (buffer.hasRemaining()) {
+            canal.write(buffer, posicion + buffer.position());
+        }
+        sucios[marco] = false;
+        escrituras++;
+    }
+}
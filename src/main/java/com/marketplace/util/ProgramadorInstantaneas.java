@@ -0,0 +1,96 @@
+package com.marketplace.util;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Programa la escritura de instantáneas en un hilo de fondo. Cada CRUD solo marca como sucio
+// su tipo de entidad; las marcas se agrupan y cada tipo se escribe como máximo una vez por
+// intervalo, de modo que la latencia del CRUD no depende del tamaño de la instantánea.
+// Al cerrar se escriben de inmediato los tipos que sigan sucios.
+public class ProgramadorInstantaneas {
+
+    public enum Entidad {
+        VENDEDORES,
+        PRODUCTOS,
+        SOLICITUDES,
+        ME_GUSTAS
+    }
+
+    private final long intervaloMs;
+    private final Consumer<Entidad> escritor;
+    private final ScheduledThreadPoolExecutor ejecutor;
+    private final Map<Entidad, AtomicBoolean> sucias = new EnumMap<>(Entidad.class);
+    private final Map<Entidad, AtomicBoolean> programadas = new EnumMap<>(Entidad.class);
+    private final Map<Entidad, AtomicLong> ultimaEscritura = new EnumMap<>(Entidad.class);
+    private final AtomicBoolean cerrado = new AtomicBoolean();
+
+    public ProgramadorInstantaneas(long intervaloMs, Consumer<Entidad> escritor) {
+        this.intervaloMs = intervaloMs;
+        this.escritor = escritor;
+        this.ejecutor = new ScheduledThreadPoolExecutor(1, tarea -> {
+            Thread hilo = new Thread(tarea, "marketplace-instantaneas");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        // Al cerrar se descarta lo programado; lo pendiente lo escribe cerrar() en su propio hilo
+        ejecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        for (Entidad entidad : Entidad.values()) {
+            sucias.put(entidad, new AtomicBoolean());
+            programadas.put(entidad, new AtomicBoolean());
+            ultimaEscritura.put(entidad, new AtomicLong(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(intervaloMs)));
+        }
+    }
+
+    public void marcarSucio(Entidad entidad) {
+        sucias.get(entidad).set(true);
+        if (cerrado.get()) {
+            escribirSiSucio(entidad); // Tras el cierre se escribe en el hilo que llama
+            return;
+        }
+        if (programadas.get(entidad).compareAndSet(false, true)) {
+            long transcurridoMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - ultimaEscritura.get(entidad).get());
+            ejecutor.schedule(() -> {
+                programadas.get(entidad).set(false);
+                escribirSiSucio(entidad);
+            }, Math.max(0, intervaloMs - transcurridoMs), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Tras una escritura fallida: se vuelve a marcar para el próximo intervalo. Después del cierre
+    // no hay próximo intervalo, y marcarSucio escribiría en el acto, en bucle si el fallo persiste
+    public void reintentar(Entidad entidad) {
+        if (!cerrado.get()) {
+            marcarSucio(entidad);
+        }
+    }
+
+    private void escribirSiSucio(Entidad entidad) {
+        if (sucias.get(entidad).getAndSet(false)) {
+            ultimaEscritura.get(entidad).set(System.nanoTime());
+            escritor.accept(entidad);
+        }
+    }
+
+    // Cancela lo programado y escribe en el hilo actual lo que siga pendiente. La escritura en
+    // curso no se interrumpe: puede estar escribiendo en el diario, y un FileChannel interrumpido
+    // se cierra
+    public void cerrar() {
+        if (!cerrado.compareAndSet(false, true)) {
+            return;
+        }
+        ejecutor.shutdown();
+        try {
+            ejecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Entidad entidad : Entidad.values()) {
+            escribirSiSucio(entidad);
+        }
+    }
+}
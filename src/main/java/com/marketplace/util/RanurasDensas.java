@@ -0,0 +1,45 @@
+package com.marketplace.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Asigna a cada ID de texto un entero denso (0, 1, 2...) que sirve de posición en arreglos y
+// conjuntos de bits. La ranura de un ID no cambia mientras viva el proceso; no se persiste, así
+// que lo que se guarde en disco debe usar los IDs. Consultas sin bloqueo; la asignación de una
+// ranura nueva es synchronized.
+public class RanurasDensas {
+    private final Map<String, Integer> ranuras = new ConcurrentHashMap<>();
+    private volatile String[] ids = new String[16];
+    private int cantidad;
+
+    // Ranura del ID, asignándole la siguiente libre si aún no tiene
+    public int ranura(String id) {
+        Integer ranura = ranuras.get(id);
+        return ranura != null ? ranura : asignar(id);
+    }
+
+    // Ranura del ID o -1 si nunca se le asignó
+    public int buscar(String id) {
+        Integer ranura = id == null ? null : ranuras.get(id);
+        return ranura != null ? ranura : -1;
+    }
+
+    public String id(int ranura) {
+        String[] actuales = ids;
+        return ranura >= 0 && ranura < actuales.length ? actuales[ranura] : null;
+    }
+
+    private synchronized int asignar(String id) {
+        Integer existente = ranuras.get(id);
+        if (existente != null) {
+            return existente;
+        }
+        if (cantidad == ids.length) {
+            ids = Arrays.copyOf(ids, cantidad * 2);
+        }
+        ids[cantidad] = id; // Se escribe antes de publicar la ranura en el mapa
+        ranuras.put(id, cantidad);
+        return cantidad++;
+    }
+}
@@ -0,0 +1,524 @@
+package com.marketplace.util;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+import com.marketplace.model.Categoria;
+import com.marketplace.model.Estado;
+import com.marketplace.model.EstadoSolicitud;
+import com.marketplace.model.Producto;
+import com.marketplace.model.Solicitud;
+import com.marketplace.model.Vendedor;
+
+// Repositorio residente en memoria: una única instancia por ID (identity map) para vendedores,
+// productos y solicitudes. Se carga una vez desde los archivos y se mantiene en cada CRUD.
+// Las lecturas no toman bloqueos (ConcurrentHashMap); las escrituras son synchronized porque
+// mantienen varios mapas a la vez.
+public class Repositorio {
+    private final Map<String, Vendedor> vendedores = new ConcurrentHashMap<>();
+    private final Map<String, Producto> productos = new ConcurrentHashMap<>();
+    private final Map<String, Solicitud> solicitudes = new ConcurrentHashMap<>();
+    // ID de producto -> ID del vendedor que lo publica
+    private final Map<String, String> propietarios = new ConcurrentHashMap<>();
+    private final IndiceSolicitudes indiceSolicitudes = new IndiceSolicitudes();
+    private final IndiceFechas indiceFechas = new IndiceFechas();
+    private final IndicePrecios indicePrecios = new IndicePrecios();
+    private final IndicePopulares indicePopulares;
+    private final IndiceTextual indiceTextual = new IndiceTextual();
+    private final IndiceFacetas indiceFacetas = new IndiceFacetas();
+    private final ColumnasProductos columnas = new ColumnasProductos();
+    private final MotorEstadisticas motorEstadisticas = new MotorEstadisticas(columnas, ForkJoinPool.commonPool());
+    private final Autocompletado autocompletado;
+    private final List<OyenteProductos> oyentesProductos = new CopyOnWriteArrayList<>();
+    private final List<OyenteVendedores> oyentesVendedores = new CopyOnWriteArrayList<>();
+    private final List<OyenteSolicitudes> oyentesSolicitudes = new CopyOnWriteArrayList<>();
+    // Serializa los avisos a los oyentes, también los de reemplazarProducto, que no toma el monitor
+    // del repositorio
+    private final Object bloqueoOyentes = new Object();
+    private final Function<String, Producto> resolutorProductos = this::buscarProducto;
+    private final Function<String, Vendedor> resolutorVendedores = this::buscarVendedor;
+    // Hasta este tamaño, un rango de precios se ordena entero para paginarlo por fecha
+    private static final int RANGO_ORDENABLE = 4096;
+
+    public Repositorio() {
+        this(10, 10);
+    }
+
+    // tamanoPopulares: cuántos productos mantiene en vivo cada ranking de popularidad;
+    // sugerencias: cuántas completaciones tiene ya armadas cada prefijo del autocompletado
+    public Repositorio(int tamanoPopulares, int sugerencias) {
+        indicePopulares = new IndicePopulares(tamanoPopulares);
+        autocompletado = new Autocompletado(sugerencias);
+        agregarOyente(indiceFechas);
+        agregarOyente(indicePrecios);
+        agregarOyente(indicePopulares);
+        agregarOyente(indiceTextual);
+        agregarOyente(indiceFacetas);
+        agregarOyente((OyenteProductos) columnas);
+        agregarOyente((OyenteVendedores) columnas);
+        agregarOyente((OyenteProductos) autocompletado);
+        agregarOyente((OyenteVendedores) autocompletado);
+    }
+
+    public void agregarOyente(OyenteProductos oyente) {
+        oyentesProductos.add(oyente);
+    }
+
+    public void agregarOyente(OyenteVendedores oyente) {
+        oyentesVendedores.add(oyente);
+    }
+
+    public void agregarOyente(OyenteSolicitudes oyente) {
+        oyentesSolicitudes.add(oyente);
+    }
+
+    public Vendedor buscarVendedor(String id) {
+        return id == null ? null : vendedores.get(id);
+    }
+
+    public Producto buscarProducto(String id) {
+        return id == null ? null : productos.get(id);
+    }
+
+    public Solicitud buscarSolicitud(String id) {
+        return id == null ? null : solicitudes.get(id);
+    }
+
+    public Vendedor buscarPropietario(String idProducto) {
+        return idProducto == null ? null : buscarVendedor(propietarios.get(idProducto));
+    }
+
+    public List<Vendedor> listarVendedores() {
+        return new ArrayList<>(vendedores.values());
+    }
+
+    public List<Producto> listarProductos() {
+        return new ArrayList<>(productos.values());
+    }
+
+    public List<Solicitud> listarSolicitudes() {
+        return new ArrayList<>(solicitudes.values());
+    }
+
+    // Consultas de solicitudes servidas por IndiceSolicitudes
+
+    public List<Solicitud> buscarSolicitudesPorEmisor(String emisorId) {
+        return indiceSolicitudes.buscarPorEmisor(emisorId);
+    }
+
+    public List<Solicitud> buscarSolicitudesPorReceptor(String receptorId) {
+        return indiceSolicitudes.buscarPorReceptor(receptorId);
+    }
+
+    public List<Solicitud> buscarSolicitudesPorEstado(EstadoSolicitud estado) {
+        return indiceSolicitudes.buscarPorEstado(estado);
+    }
+
+    public int contarSolicitudesPorEmisor(String emisorId, EstadoSolicitud estado) {
+        return indiceSolicitudes.contarPorEmisor(emisorId, estado);
+    }
+
+    public int contarSolicitudesPorReceptor(String receptorId, EstadoSolicitud estado) {
+        return indiceSolicitudes.contarPorReceptor(receptorId, estado);
+    }
+
+    // Consultas de productos por fecha de publicación servidas por IndiceFechas (extremos incluidos)
+
+    public int contarProductosPorFecha(LocalDateTime desde, LocalDateTime hasta) {
+        return indiceFechas.contar(desde, hasta);
+    }
+
+    public Map<Categoria, Integer> contarProductosPorFechaYCategoria(LocalDateTime desde, LocalDateTime hasta) {
+        return indiceFechas.contarPorCategoria(desde, hasta);
+    }
+
+    public List<Producto> listarProductosPorFecha(LocalDateTime desde, LocalDateTime hasta) {
+        return resolverProductos(indiceFechas.listar(desde, hasta));
+    }
+
+    public List<Producto> listarProductosPorFecha(Categoria categoria, LocalDateTime desde, LocalDateTime hasta) {
+        return resolverProductos(indiceFechas.listar(categoria, desde, hasta));
+    }
+
+    // Agregaciones por recorrido de las columnas primitivas de ColumnasProductos
+
+    public int contarProductosPorVendedor(String idVendedor) {
+        return columnas.contarPorVendedor(idVendedor);
+    }
+
+    public ColumnasProductos.Estadisticas estadisticasProductos(LocalDateTime desde, LocalDateTime hasta,
+            String idVendedor) {
+        return columnas.estadisticas(desde, hasta, idVendedor);
+    }
+
+    // Agregados por categoría, estado, vendedor y día, en paralelo; null deja abierto ese extremo
+    public MotorEstadisticas.Resultado calcularEstadisticas(LocalDateTime desde, LocalDateTime hasta) {
+        return motorEstadisticas.calcular(desde, hasta);
+    }
+
+    // Consultas por precio servidas por IndicePrecios (extremos incluidos, categoria null = todas)
+
+    public int contarProductosPorPrecio(Categoria categoria, int minimo, int maximo) {
+        return indicePrecios.contar(categoria, minimo, maximo);
+    }
+
+    public List<Producto> listarProductosPorPrecio(Categoria categoria, int minimo, int maximo) {
+        return resolverProductos(indicePrecios.listar(categoria, minimo, maximo));
+    }
+
+    public SortedMap<Integer, Integer> histogramaPrecios(Categoria categoria, int minimo, int maximo, int cubetas) {
+        return indicePrecios.histograma(categoria, minimo, maximo, cubetas);
+    }
+
+    // Página del rango de precios ordenada por precio; cursor null = primera página. Lanza
+    // NumberFormatException si el cursor no es uno devuelto por este método
+    public Pagina<Producto> paginarPorPrecio(Categoria categoria, int minimo, int maximo, boolean descendente,
+            String cursor, int limite) {
+        if (limite <= 0) {
+            return Pagina.vacia();
+        }
+        long[] claves = new long[limite + 1]; // Uno de más para saber si hay otra página
+        String[] ids = new String[limite + 1];
+        int n = indicePrecios.pagina(categoria, minimo, maximo, cursor == null ? 0 : Pagina.clave(cursor),
+                cursor == null ? null : Pagina.id(cursor), descendente, claves, ids);
+        return armarPagina(claves, ids, n, limite);
+    }
+
+    // Página del rango de precios ordenada por fecha de publicación (los productos sin fecha no
+    // aparecen). Si el rango es chico se ordena entero por fecha; si no, se recorre el índice de
+    // fechas desde el cursor descartando los de otro precio, así que ninguno de los dos caminos
+    // arma el catálogo completo
+    public Pagina<Producto> paginarPorFecha(Categoria categoria, int minimo, int maximo, boolean masRecientes,
+            String cursor, int limite) {
+        if (limite <= 0) {
+            return Pagina.vacia();
+        }
+        long claveCursor = cursor == null ? 0 : Pagina.clave(cursor);
+        String idCursor = cursor == null ? null : Pagina.id(cursor);
+        long[] claves = new long[limite + 1];
+        String[] ids = new String[limite + 1];
+        int n = 0;
+        if (indicePrecios.contar(categoria, minimo, maximo) <= RANGO_ORDENABLE) {
+            List<String> enRango = indicePrecios.listar(categoria, minimo, maximo);
+            long[] fechas = new long[enRango.size()];
+            String[] conFecha = new String[enRango.size()];
+            int m = 0;
+            for (String id : enRango) {
+                Long fecha = indiceFechas.claveIndexada(id);
+                if (fecha != null) {
+                    fechas[m] = fecha;
+                    conFecha[m++] = id;
+                }
+            }
+            fechas = Arrays.copyOf(fechas, m);
+            conFecha = Arrays.copyOf(conFecha, m);
+            ArregloOrdenado.ordenar(fechas, conFecha);
+            for (int k = 0; k < m && n <= limite; k++) {
+                int i = masRecientes ? m - 1 - k : k;
+                int c = idCursor == null ? 0 : fechas[i] != claveCursor
+                        ? Long.compare(fechas[i], claveCursor) : conFecha[i].compareTo(idCursor);
+                if (idCursor == null || (masRecientes ? c < 0 : c > 0)) { // Solo los posteriores al cursor
+                    claves[n] = fechas[i];
+                    ids[n++] = conFecha[i];
+                }
+            }
+            return armarPagina(claves, ids, n, limite);
+        }
+        long[] clavesTramo = new long[Math.max(64, 4 * (limite + 1))];
+        String[] idsTramo = new String[clavesTramo.length];
+        while (n <= limite) {
+            int leidos = indiceFechas.pagina(categoria, claveCursor, idCursor, masRecientes, clavesTramo, idsTramo);
+            for (int k = 0; k < leidos && n <= limite; k++) {
+                Long precio = indicePrecios.claveIndexada(idsTramo[k]);
+                if (precio != null && precio >= minimo && precio <= maximo) {
+                    claves[n] = clavesTramo[k];
+                    ids[n++] = idsTramo[k];
+                }
+            }
+            if (leidos < clavesTramo.length) {
+                break; // Se acabó el índice de fechas
+            }
+            claveCursor = clavesTramo[leidos - 1];
+            idCursor = idsTramo[leidos - 1];
+        }
+        return armarPagina(claves, ids, n, limite);
+    }
+
+    // Los 'cantidad' productos con más "me gusta" (categoria null = todos). Hasta el tamaño del
+    // ranking se sirve de IndicePopulares sin ordenar; más allá, ordenando el catálogo
+    public List<Producto> obtenerPopulares(Categoria categoria, int cantidad) {
+        if (cantidad <= indicePopulares.getK()) {
+            return indicePopulares.obtener(categoria, cantidad);
+        }
+        List<Producto> lista = new ArrayList<>();
+        for (Producto producto : productos.values()) {
+            if (categoria == null || producto.getCategoria() == categoria) {
+                lista.add(producto);
+            }
+        }
+        lista.sort((p1, p2) -> {
+            int c = Integer.compare(p2.getMeGustas(), p1.getMeGustas());
+            return c != 0 ? c : p1.getId().compareTo(p2.getId());
+        });
+        return lista.subList(0, Math.min(cantidad, lista.size()));
+    }
+
+    // Búsqueda de texto sobre nombre y descripción servida por IndiceTextual, de mejor a peor
+    public List<Producto> buscarProductosPorTexto(String consulta, int limite) {
+        return resolverProductos(indiceTextual.buscar(consulta, limite));
+    }
+
+    // Búsqueda de texto restringida a las categorías y estados elegidos (null o vacío = todos)
+    public List<Producto> buscarProductosPorTexto(String consulta, int limite,
+            Collection<Categoria> categorias, Collection<Estado> estados) {
+        long[] filtro = indiceFacetas.filtrar(categorias, estados);
+        return resolverProductos(indiceTextual.buscar(consulta, limite, id -> indiceFacetas.contiene(filtro, id)));
+    }
+
+    // Filtros por categoría y estado servidos por IndiceFacetas (null o vacío = sin filtro)
+
+    public List<Producto> filtrarProductos(Collection<Categoria> categorias, Collection<Estado> estados) {
+        return resolverProductos(indiceFacetas.ids(indiceFacetas.filtrar(categorias, estados)));
+    }
+
+    public int contarProductos(Collection<Categoria> categorias, Collection<Estado> estados) {
+        return IndiceFacetas.contar(indiceFacetas.filtrar(categorias, estados));
+    }
+
+    public IndiceFacetas.Facetas facetasProductos(Collection<Categoria> categorias, Collection<Estado> estados) {
+        return indiceFacetas.facetas(null, categorias, estados);
+    }
+
+    // Facetas de todos los resultados de una búsqueda de texto, no solo de los primeros
+    public IndiceFacetas.Facetas facetasBusqueda(String consulta, Collection<Categoria> categorias,
+            Collection<Estado> estados) {
+        return indiceFacetas.facetas(indiceFacetas.conjunto(indiceTextual.coincidencias(consulta)), categorias, estados);
+    }
+
+    // Autocompletado de nombres mientras se escribe; ver Autocompletado
+    public List<Producto> completarProductos(String prefijo, int cantidad) {
+        return resolverProductos(autocompletado.completarProductos(prefijo, cantidad));
+    }
+
+    public List<Vendedor> completarVendedores(String prefijo, int cantidad) {
+        List<Vendedor> resultado = new ArrayList<>();
+        for (String id : autocompletado.completarVendedores(prefijo, cantidad)) {
+            Vendedor vendedor = vendedores.get(id);
+            if (vendedor != null) {
+                resultado.add(vendedor);
+            }
+        }
+        return resultado;
+    }
+
+    // Métodos de mantenimiento, invocados por Utilidades en cada operación CRUD
+
+    // Las publicaciones y contactos del vendedor pasan a resolverse contra este repositorio
+    public synchronized void guardarVendedor(Vendedor vendedor) {
+        vendedor.enlazar(resolutorProductos, resolutorVendedores);
+        Vendedor anterior = vendedores.put(vendedor.getId(), vendedor);
+        vendedorPublicado(anterior, vendedor);
+    }
+
+    // Igual que reemplazarProducto, pero bajo el monitor porque también reindexa las publicaciones
+    public synchronized boolean reemplazarVendedor(Vendedor nuevo) {
+        Vendedor actual = nuevo.getId() == null ? null : vendedores.get(nuevo.getId());
+        if (actual == null || actual == nuevo) {
+            // La instancia publicada no se edita en el lugar: hay que partir de una copia
+            return false;
+        }
+        long esperada = actual.getVersion();
+        if (nuevo.getVersion() != esperada) {
+            return false;
+        }
+        nuevo.setVersion(esperada + 1);
+        nuevo.enlazar(resolutorProductos, resolutorVendedores);
+        if (!vendedores.replace(nuevo.getId(), actual, nuevo)) {
+            nuevo.setVersion(esperada);
+            return false;
+        }
+        vendedorPublicado(actual, nuevo);
+        return true;
+    }
+
+    private void vendedorPublicado(Vendedor anterior, Vendedor vendedor) {
+        if (anterior != null) {
+            desindexarPublicaciones(anterior);
+        }
+        indexarPublicaciones(vendedor);
+        for (OyenteVendedores oyente : oyentesVendedores) {
+            oyente.vendedorGuardado(vendedor);
+        }
+    }
+
+    public synchronized Vendedor eliminarVendedor(String id) {
+        Vendedor eliminado = id == null ? null : vendedores.remove(id);
+        if (eliminado != null) {
+            desindexarPublicaciones(eliminado);
+            for (OyenteVendedores oyente : oyentesVendedores) {
+                oyente.vendedorEliminado(id);
+            }
+        }
+        return eliminado;
+    }
+
+    public synchronized void guardarProducto(Producto producto) {
+        productos.put(producto.getId(), producto);
+        notificarProducto(producto.getId());
+    }
+
+    // Carga inicial: los oyentes reciben el lote completo en un solo aviso
+    public synchronized void guardarProductos(Collection<Producto> lote) {
+        for (Producto producto : lote) {
+            productos.put(producto.getId(), producto);
+        }
+        synchronized (bloqueoOyentes) {
+            for (OyenteProductos oyente : oyentesProductos) {
+                oyente.productosGuardados(lote);
+            }
+        }
+    }
+
+    // Compare-and-set optimista: 'nuevo' trae la versión que leyó su autor y solo se publica si
+    // sigue siendo la vigente. No toma el monitor del repositorio (el diario solo serializa los
+    // cambios del mismo producto): el arbitraje lo hace ConcurrentHashMap.replace sobre la
+    // identidad de la instancia leída, así que de dos copias de la misma versión gana una.
+    public boolean reemplazarProducto(Producto nuevo) {
+        Producto actual = nuevo.getId() == null ? null : productos.get(nuevo.getId());
+        if (actual == null || actual == nuevo) {
+            // La instancia publicada no se edita en el lugar: hay que partir de una copia
+            return false;
+        }
+        long esperada = actual.getVersion();
+        if (nuevo.getVersion() != esperada) {
+            return false;
+        }
+        nuevo.setVersion(esperada + 1); // 'nuevo' aún no es visible para otros hilos
+        if (!productos.replace(nuevo.getId(), actual, nuevo)) {
+            nuevo.setVersion(esperada);
+            return false;
+        }
+        Vendedor propietario = buscarPropietario(nuevo.getId());
+        if (propietario != null) {
+            propietario.refrescarPublicacion(actual, nuevo);
+        }
+        notificarProducto(nuevo.getId());
+        return true;
+    }
+
+    public synchronized Producto eliminarProducto(String id) {
+        if (id == null) {
+            return null;
+        }
+        Producto eliminado = productos.remove(id);
+        String idPropietario = propietarios.remove(id);
+        Vendedor propietario = buscarVendedor(idPropietario);
+        if (propietario != null) {
+            // Se publica una copia sin el ID y con la versión avanzada, igual que en
+            // reemplazarVendedor: una copia vieja del vendedor ya no pasa el compare-and-set y no
+            // puede devolver el producto eliminado a sus publicaciones
+            Vendedor copia = new Vendedor(propietario);
+            if (copia.quitarPublicacion(id)) {
+                copia.setVersion(propietario.getVersion() + 1);
+                copia.enlazar(resolutorProductos, resolutorVendedores);
+                if (vendedores.replace(idPropietario, propietario, copia)) {
+                    vendedorPublicado(propietario, copia);
+                }
+            }
+        }
+        notificarProducto(id);
+        return eliminado;
+    }
+
+    public synchronized void guardarSolicitud(Solicitud solicitud) {
+        solicitudes.put(solicitud.getId(), solicitud);
+        indiceSolicitudes.agregar(solicitud);
+        for (OyenteSolicitudes oyente : oyentesSolicitudes) {
+            oyente.solicitudGuardada(solicitud);
+        }
+    }
+
+    public synchronized Solicitud eliminarSolicitud(String id) {
+        indiceSolicitudes.eliminar(id);
+        Solicitud eliminada = id == null ? null : solicitudes.remove(id);
+        if (eliminada != null) {
+            for (OyenteSolicitudes oyente : oyentesSolicitudes) {
+                oyente.solicitudEliminada(id);
+            }
+        }
+        return eliminada;
+    }
+
+    // El estado se cambia aquí y no con setEstado directo para que el índice lo siga
+    public synchronized Solicitud cambiarEstadoSolicitud(String id, EstadoSolicitud estado) {
+        Solicitud solicitud = buscarSolicitud(id);
+        if (solicitud != null) {
+            solicitud.setEstado(estado);
+            indiceSolicitudes.agregar(solicitud);
+            for (OyenteSolicitudes oyente : oyentesSolicitudes) {
+                oyente.solicitudGuardada(solicitud);
+            }
+        }
+        return solicitud;
+    }
+
+    // Avisa el estado vigente del producto, leído bajo el bloqueo de avisos: si dos cambios
+    // concurrentes se notifican en desorden, el último aviso igual refleja el último estado
+    private void notificarProducto(String id) {
+        synchronized (bloqueoOyentes) {
+            Producto vigente = productos.get(id);
+            for (OyenteProductos oyente : oyentesProductos) {
+                if (vigente != null) {
+                    oyente.productoGuardado(vigente);
+                } else {
+                    oyente.productoEliminado(id);
+                }
+            }
+        }
+    }
+
+    // Los primeros 'limite' pares como página; si se leyó uno más, hay página siguiente
+    private Pagina<Producto> armarPagina(long[] claves, String[] ids, int leidos, int limite) {
+        int cantidad = Math.min(leidos, limite);
+        List<Producto> productosPagina = resolverProductos(Arrays.asList(ids).subList(0, cantidad));
+        String siguiente = leidos > limite ? Pagina.cursor(claves[cantidad - 1], ids[cantidad - 1]) : null;
+        return new Pagina<>(productosPagina, siguiente);
+    }
+
+    private List<Producto> resolverProductos(List<String> ids) {
+        List<Producto> resultado = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Producto producto = productos.get(id);
+            if (producto != null) {
+                resultado.add(producto);
+            }
+        }
+        return resultado;
+    }
+
+    // Por IDs, sin resolver las publicaciones
+    private void indexarPublicaciones(Vendedor vendedor) {
+        for (String idProducto : vendedor.idsPublicaciones()) {
+            if (idProducto != null) {
+                propietarios.put(idProducto, vendedor.getId());
+            }
+        }
+    }
+
+    private void desindexarPublicaciones(Vendedor vendedor) {
+        for (String idProducto : vendedor.idsPublicaciones()) {
+            if (idProducto != null) {
+                propietarios.remove(idProducto, vendedor.getId());
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.marketplace.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+// Reserva de ByteBuffers de tamaño fijo para la lectura de archivos: cada lectura toma uno y lo
+// devuelve al cerrar, así las cargas repetidas no vuelven a reservar ni a poner en cero memoria.
+// Los buffers son de heap porque los campos de texto se decodifican directamente de su arreglo.
+// Se guardan a lo sumo 'maximo' libres; los que sobran o cambiaron de tamaño se descartan.
+public class ReservaBuffers {
+    private final int tamano;
+    private final int maximo;
+    private final ArrayDeque<ByteBuffer> libres = new ArrayDeque<>();
+
+    public ReservaBuffers(int tamano, int maximo) {
+        this.tamano = tamano;
+        this.maximo = maximo;
+    }
+
+    public synchronized ByteBuffer tomar() {
+        ByteBuffer buffer = libres.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocate(tamano);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    public synchronized void devolver(ByteBuffer buffer) {
+        if (buffer != null && buffer.capacity() == tamano && libres.size() < maximo) {
+            libres.push(buffer);
+        }
+    }
+
+    public int getTamano() {
+        return tamano;
+    }
+}
@@ -1,10 +1,15 @@
 package com.marketplace.util;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.logging.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -21,38 +26,123 @@ import com.marketplace.model.Solicitud;
 import com.marketplace.model.Vendedor;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
 import java.util.Properties;
 import java.beans.XMLDecoder;
 import java.beans.XMLEncoder;
 
 public class Utilidades {
-    private static Utilidades instancia;
     private static final Logger logger = Logger.getLogger(Utilidades.class.getName());
+    // JAXBContext es costoso de crear y seguro entre hilos: se crea una vez y se reutiliza
+    private static JAXBContext contextoJAXB;
     private Properties propiedades;
     private static final String RUTA_DIRECTORIO = "Persistencia";
+    // Se puede usar otra configuración con -Dmarketplace.config=<ruta> (las pruebas usan la suya)
+    private static final String RUTA_CONFIGURACION = System.getProperty("marketplace.config",
+            "resources/config.properties");
+    private static final DateTimeFormatter FORMATO_RANGO_FECHA = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private final Repositorio repositorio;
+    private volatile boolean repositorioCargado;
+    private final Object bloqueoCarga = new Object();
+    // Las mutaciones toman la parte de lectura; el punto de control, la de escritura
+    private final ReentrantReadWriteLock bloqueoPuntoControl = new ReentrantReadWriteLock();
+    private BloqueosPorVendedor bloqueosVendedores;
+    // Motor de persistencia elegido con almacen.motor
+    private AlmacenMarketplace almacen;
+    // Los archivos de texto de siempre; también es el motor "texto"
+    private AlmacenTexto archivosTexto;
+    private int umbralPuntoControl;
+    private boolean fsync;
+    private ProgramadorInstantaneas programadorInstantaneas;
+    private final MeGustas meGustas;
+    // Árboles B+ en disco con las tres entidades; null si rutaArbol está vacía. Solo lo usan las
+    // consultas *EnDisco, que no necesitan cargar el repositorio
+    private AlmacenArbol almacenArbol;
+    private LogAsincrono logAsincrono;
 
     private Utilidades() {
         crearDirectorio();
         propiedades = new Properties();
-        try (FileInputStream fis = new FileInputStream("resources/config.properties")) {
+        try (FileInputStream fis = new FileInputStream(RUTA_CONFIGURACION)) {
             propiedades.load(fis);
         } catch (IOException e) {
             escribirLog("Error al cargar propiedades: " + e.getMessage(), Level.SEVERE);
         }
+        repositorio = new Repositorio(Integer.parseInt(propiedades.getProperty("populares.k", "10")),
+                Integer.parseInt(propiedades.getProperty("autocompletado.n", "10")));
+        fsync = Boolean.parseBoolean(propiedades.getProperty("diario.fsync", "true"));
+        archivosTexto = new AlmacenTexto(propiedades.getProperty("rutaVendedores.txt"),
+                propiedades.getProperty("rutaProductos.txt"), propiedades.getProperty("rutaSolicitudes.txt"),
+                crearDiario(propiedades.getProperty("rutaDiario.txt", RUTA_DIRECTORIO + "/Files/Diario.txt")), fsync);
+        almacen = crearAlmacen(propiedades.getProperty("almacen.motor", "texto").trim());
+        umbralPuntoControl = Integer.parseInt(propiedades.getProperty("diario.puntoControl", "1000"));
+        String rutaArbol = propiedades.getProperty("rutaArbol", "").trim();
+        if (!rutaArbol.isEmpty()) {
+            try {
+                almacenArbol = new AlmacenArbol(rutaArbol,
+                        Integer.parseInt(propiedades.getProperty("arbol.paginasCache", "1024")),
+                        mensaje -> escribirLog(mensaje, Level.SEVERE));
+            } catch (IOException e) {
+                escribirLog("Error al abrir el árbol de entidades: " + rutaArbol, Level.SEVERE);
+            }
+        }
+        bloqueosVendedores = new BloqueosPorVendedor(Integer.parseInt(propiedades.getProperty("bloqueos.franjas", "64")));
+        programadorInstantaneas = new ProgramadorInstantaneas(
+                Long.parseLong(propiedades.getProperty("instantaneas.intervaloMs", "1000")), this::escribirInstantanea);
+        meGustas = new MeGustas(() -> programadorInstantaneas.marcarSucio(ProgramadorInstantaneas.Entidad.ME_GUSTAS));
+        Runtime.getRuntime().addShutdownHook(new Thread(this::cerrar, "marketplace-cierre"));
         try {
+            // El archivo y la consola se escriben desde el hilo de LogAsincrono, por lotes
             String ruta = propiedades.getProperty("ruta.log");
-            FileHandler fileHandler = new FileHandler(ruta, true);
-            logger.addHandler(fileHandler);
-            logger.setLevel(Level.ALL);
-            SimpleFormatter formatter = new SimpleFormatter();
-            fileHandler.setFormatter(formatter);
+            StreamHandler archivo = new StreamHandler(
+                    new BufferedOutputStream(new FileOutputStream(ruta, true), 1 << 16), new SimpleFormatter());
+            archivo.setLevel(Level.ALL);
+            logAsincrono = new LogAsincrono(
+                    Integer.parseInt(propiedades.getProperty("log.capacidad", "8192")),
+                    LogAsincrono.Politica.valueOf(propiedades.getProperty("log.politica", "BLOQUEAR")),
+                    Integer.parseInt(propiedades.getProperty("log.muestreo", "10")),
+                    archivo, new ConsoleHandler());
+            logger.addHandler(logAsincrono);
+            logger.setUseParentHandlers(false);
+            logger.setLevel(Level.parse(propiedades.getProperty("log.nivel", "ALL")));
             logInfo("Logger configurado correctamente");
-        } catch (IOException e) {
+        } catch (IOException | IllegalArgumentException e) {
             logger.log(Level.SEVERE, "Error al configurar el logger", e);
         }
     }
 
+    // Cada motor con diario usa el suyo: los registros solo valen sobre su propio punto de control
+    private DiarioMutaciones crearDiario(String ruta) {
+        return new DiarioMutaciones(ruta, fsync, Long.parseLong(propiedades.getProperty("diario.ventanaGrupoMs", "0")));
+    }
+
+    private AlmacenMarketplace crearAlmacen(String motor) {
+        switch (motor) {
+            case "texto":
+                return archivosTexto;
+            case "binario":
+                String rutaBinario = propiedades.getProperty("almacen.binario.ruta", RUTA_DIRECTORIO + "/Files/Marketplace.bin");
+                return new AlmacenBinario(rutaBinario, crearDiario(rutaBinario + ".diario"), fsync);
+            case "paginado":
+                String rutaPaginado = propiedades.getProperty("almacen.paginado.ruta", RUTA_DIRECTORIO + "/Files/Marketplace");
+                return new AlmacenPaginado(rutaPaginado,
+                        Integer.parseInt(propiedades.getProperty("arbol.paginasCache", "1024")),
+                        crearDiario(rutaPaginado + ".diario"), fsync);
+            case "mapeado":
+                String rutaMapeado = propiedades.getProperty("almacen.mapeado.ruta", RUTA_DIRECTORIO + "/Files/Mapeado");
+                return new AlmacenMapeado(rutaMapeado, crearDiario(rutaMapeado + ".diario"), fsync);
+            case "memoria":
+                return new AlmacenMemoria();
+            default:
+                escribirLog("Motor de almacenamiento desconocido: " + motor + "; se usa texto", Level.SEVERE);
+                return archivosTexto;
+        }
+    }
+
     // Método para crear el directorio si no existe
     private void crearDirectorio() {
         File directorio = new File(RUTA_DIRECTORIO);
@@ -72,9 +162,12 @@ public class Utilidades {
     public void guardarModeloSerializadoBin(Object modelo) {
         String rutaArchivo = RUTA_DIRECTORIO + "/modelo_serializado.bin"; // Define el nombre del archivo
 
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(rutaArchivo))) {
-            oos.writeObject(modelo);
-            oos.close();
+        try {
+            EscrituraAtomica.escribir(rutaArchivo, fsync, salida -> {
+                ObjectOutputStream oos = new ObjectOutputStream(salida);
+                oos.writeObject(modelo);
+                oos.close();
+            });
             escribirLog("Modelo guardado exitosamente en: " + rutaArchivo, Level.INFO);
         } catch (IOException e) {
             escribirLog("Error al guardar el modelo: " + e.getMessage(), Level.SEVERE);
@@ -84,15 +177,20 @@ public class Utilidades {
     public void guardarModeloSerializadoXML(MarketPlace modelo) {
         String rutaArchivo = RUTA_DIRECTORIO + "/modelo_serializado.xml";
         try {
-            JAXBContext contexto = JAXBContext.newInstance(MarketPlace.class);
-            Marshaller marshaller = contexto.createMarshaller();
+            Marshaller marshaller = contextoJAXB().createMarshaller();
             marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
 
             // Guardar el modelo en un archivo XML
-            marshaller.marshal(modelo, new File(rutaArchivo));
+            EscrituraAtomica.escribir(rutaArchivo, fsync, salida -> {
+                try {
+                    marshaller.marshal(modelo, salida);
+                } catch (JAXBException e) {
+                    throw new IOException(e);
+                }
+            });
 
             logInfo("Modelo serializado a XML y guardado en: " + rutaArchivo);
-        } catch (JAXBException e) {
+        } catch (JAXBException | IOException e) {
             logSevere("Error al serializar el modelo a XML: " + e.getMessage());
         }
     }
@@ -116,8 +214,7 @@ public class Utilidades {
         String rutaArchivo = RUTA_DIRECTORIO + "/modelo_serializado.xml";
         MarketPlace modelo = null;
         try {
-            JAXBContext contexto = JAXBContext.newInstance(MarketPlace.class);
-            Unmarshaller unmarshaller = contexto.createUnmarshaller();
+            Unmarshaller unmarshaller = contextoJAXB().createUnmarshaller();
 
             // Cargar el modelo desde el archivo XML
             modelo = (MarketPlace) unmarshaller.unmarshal(new File(rutaArchivo));
@@ -129,355 +226,760 @@ public class Utilidades {
         return modelo;
     }
 
-    public static Utilidades getInstance() {
-        if (instancia == null) {
-            instancia = new Utilidades();
+    private static synchronized JAXBContext contextoJAXB() throws JAXBException {
+        if (contextoJAXB == null) {
+            contextoJAXB = JAXBContext.newInstance(MarketPlace.class);
+        }
+        return contextoJAXB;
+    }
+
+    // Exportación XML en streaming (CodificadorXML): vendedores, productos y solicitudes se
+    // escriben elemento a elemento, sin construir el árbol JAXB completo en memoria
+    public void guardarModeloEnFlujoXML(MarketPlace modelo) {
+        String rutaArchivo = RUTA_DIRECTORIO + "/modelo_flujo.xml";
+        try {
+            EscrituraAtomica.escribir(rutaArchivo, fsync, salida -> {
+                CodificadorXML codificador = new CodificadorXML(salida);
+                for (Vendedor vendedor : modelo.getVendedores()) {
+                    codificador.escribirVendedor(vendedor);
+                }
+                for (Vendedor vendedor : modelo.getVendedores()) {
+                    if (vendedor.getPublicaciones() != null) {
+                        for (Producto producto : vendedor.getPublicaciones()) {
+                            if (producto != null) {
+                                codificador.escribirProducto(producto);
+                            }
+                        }
+                    }
+                }
+                for (Solicitud solicitud : modelo.getSolicitudes()) {
+                    codificador.escribirSolicitud(solicitud);
+                }
+                codificador.terminar();
+            });
+            logInfo("Modelo exportado a XML en flujo: " + rutaArchivo);
+        } catch (IOException e) {
+            logSevere("Error al exportar el modelo a XML en flujo: " + e.getMessage());
         }
-        return instancia;
     }
 
+    // Importación en streaming: los elementos se leen uno a uno y se enlazan con CargadorDatos
+    public MarketPlace cargarModeloEnFlujoDesdeXML() {
+        String rutaArchivo = RUTA_DIRECTORIO + "/modelo_flujo.xml";
+        MarketPlace modelo = null;
+        try (InputStream entrada = new BufferedInputStream(new FileInputStream(rutaArchivo))) {
+            CargadorDatos cargador = new CargadorDatos();
+            new DecodificadorXML(entrada, cargador).leerTodo();
+            cargador.resolverReferencias();
+            if (cargador.getReferenciasRotas() > 0) {
+                logWarning("Referencias sin resolver en " + rutaArchivo + ": " + cargador.getReferenciasRotas());
+            }
+            modelo = new MarketPlace();
+            modelo.setVendedores(cargador.getVendedores());
+            modelo.setSolicitudes(cargador.getSolicitudes());
+            logInfo("Modelo cargado desde XML en flujo: " + rutaArchivo);
+        } catch (IOException e) {
+            logSevere("Error al cargar el modelo desde XML en flujo: " + e.getMessage());
+        }
+        return modelo;
+    }
+
+    // Inicialización perezosa y publicación segura entre hilos a cargo del cargador de clases
+    private static final class Contenedor {
+        private static final Utilidades INSTANCIA = new Utilidades();
+    }
+
+    public static Utilidades getInstance() {
+        return Contenedor.INSTANCIA;
+    }
+
+    // Bloqueo de la franja del vendedor; lo toman las operaciones compuestas sobre sus publicaciones
+    public Lock bloqueoVendedor(String idVendedor) {
+        return bloqueosVendedores.bloqueo(idVendedor);
+    }
+
+    // El origen se indica explícitamente para no inferirlo recorriendo la pila en cada registro
     public void escribirLog(String mensaje, Level nivel) {
-        logger.log(nivel, mensaje);
+        logger.logp(nivel, Utilidades.class.getName(), "escribirLog", mensaje);
     }
 
-    public List<Producto> obtenerProductosDeVendedor(String idVendedor) {
-        List<Vendedor> listaVendedores = leerVendedoresDesdeArchivo(); // Leer vendedores desde el archivo
-        for (Vendedor vendedor : listaVendedores) {
-            if (vendedor.getId().equals(idVendedor)) {
-                return vendedor.getPublicaciones(); // Retorna la lista de productos publicados por el vendedor
+    // Variante perezosa: el mensaje solo se construye si el nivel está habilitado
+    public void escribirLog(Supplier<String> mensaje, Level nivel) {
+        if (logger.isLoggable(nivel)) {
+            logger.logp(nivel, Utilidades.class.getName(), "escribirLog", mensaje.get());
+        }
+    }
+
+    // Carga el repositorio en memoria la primera vez que se usa; luego las búsquedas no tocan el disco
+    private Repositorio repositorio() {
+        if (!repositorioCargado) {
+            synchronized (bloqueoCarga) {
+                if (!repositorioCargado) {
+                    CargadorDatos cargador = cargarDatos();
+                    repositorio.guardarProductos(cargador.getProductos());
+                    for (Vendedor vendedor : cargador.getVendedores()) {
+                        repositorio.guardarVendedor(vendedor);
+                    }
+                    for (Solicitud solicitud : cargador.getSolicitudes()) {
+                        repositorio.guardarSolicitud(solicitud);
+                    }
+                    cargarMeGustas();
+                    if (almacenArbol != null) {
+                        sincronizarArbol();
+                    }
+                    repositorioCargado = true;
+                    escribirLog("Repositorio en memoria cargado correctamente.", Level.INFO);
+                }
             }
         }
+        return repositorio;
+    }
+
+    // El árbol se reconstruye si no es confiable y desde aquí sigue al repositorio como oyente
+    private void sincronizarArbol() {
+        if (!almacenArbol.isConfiable()) {
+            try {
+                almacenArbol.reconstruir(repositorio.listarProductos(), repositorio.listarVendedores(),
+                        repositorio.listarSolicitudes());
+                escribirLog("Árbol de entidades reconstruido.", Level.INFO);
+            } catch (IOException e) {
+                escribirLog("Error al reconstruir el árbol de entidades: " + e.getMessage(), Level.SEVERE);
+                return;
+            }
+        }
+        repositorio.agregarOyente((OyenteProductos) almacenArbol);
+        repositorio.agregarOyente((OyenteVendedores) almacenArbol);
+        repositorio.agregarOyente((OyenteSolicitudes) almacenArbol);
+    }
+
+    // El árbol solo responde si tiene todos los datos
+    private boolean arbolConfiable() {
+        return almacenArbol != null && almacenArbol.isConfiable();
+    }
+
+    public List<Vendedor> listarVendedores() {
+        return repositorio().listarVendedores();
+    }
+
+    public List<Producto> listarProductos() {
+        return repositorio().listarProductos();
+    }
+
+    public List<Solicitud> listarSolicitudes() {
+        return repositorio().listarSolicitudes();
+    }
+
+    public List<Producto> obtenerProductosDeVendedor(String idVendedor) {
+        Vendedor vendedor = repositorio().buscarVendedor(idVendedor);
+        if (vendedor != null && vendedor.getPublicaciones() != null) {
+            return new ArrayList<>(vendedor.getPublicaciones()); // Copia de los productos publicados por el vendedor
+        }
         return new ArrayList<>(); // Retorna una lista vacía si el vendedor no se encuentra
     }
 
     // Método para buscar un vendedor por ID
     public Vendedor buscarVendedorPorId(String id) {
-        List<Vendedor> listaVendedores = leerVendedoresDesdeArchivo();
-        for (Vendedor vendedor : listaVendedores) {
-            if (vendedor.getId().equals(id)) {
-                return vendedor; // Retorna el vendedor encontrado
-            }
-        }
-        return null; // Retorna null si no se encuentra el vendedor
+        return repositorio().buscarVendedor(id); // Retorna null si no se encuentra el vendedor
     }
 
     // Método para buscar un producto por ID
     public Producto buscarProductoPorId(String id) {
-        List<Producto> listaProductos = leerProductosDesdeArchivo();
-        for (Producto producto : listaProductos) {
-            if (producto.getId().equals(id)) {
-                return producto; // Retorna el producto encontrado
-            }
+        return repositorio().buscarProducto(id); // Retorna null si no se encuentra el producto
+    }
+
+    public Solicitud buscarSolicitudPorId(String id) {
+        return repositorio().buscarSolicitud(id);
+    }
+
+    // Consultas de solo lectura sobre el árbol en disco (rutaArbol), sin cargar el repositorio.
+    // Siempre devuelven objetos sueltos armados desde el árbol, nunca las instancias del
+    // repositorio, antes y después de la carga: las relaciones son vendedores superficiales (ver
+    // AlmacenArbol) y modificarlos no cambia nada. null si el ID no está o si no hay un árbol
+    // confiable; en ese caso se usa buscar*PorId
+
+    public Vendedor consultarVendedorEnDisco(String id) {
+        return arbolConfiable() ? almacenArbol.vendedor(id) : null;
+    }
+
+    public Producto consultarProductoEnDisco(String id) {
+        return arbolConfiable() ? almacenArbol.producto(id) : null;
+    }
+
+    public Solicitud consultarSolicitudEnDisco(String id) {
+        return arbolConfiable() ? almacenArbol.solicitud(id) : null;
+    }
+
+    // Búsqueda de texto en nombre y descripción, sin distinguir tildes ni mayúsculas. Los términos
+    // separados por espacios deben aparecer todos; "OR" o "|" separan alternativas
+    public List<Producto> buscarProductos(String consulta, int limite) {
+        List<Producto> encontrados = repositorio().buscarProductosPorTexto(consulta, limite);
+        escribirLog(() -> "Búsqueda '" + consulta + "': " + encontrados.size() + " productos", Level.INFO);
+        return encontrados;
+    }
+
+    // Búsqueda con filtros por categoría y estado (null o vacío = sin filtro)
+    public List<Producto> buscarProductos(String consulta, int limite, Collection<Categoria> categorias,
+            Collection<Estado> estados) {
+        List<Producto> encontrados = repositorio().buscarProductosPorTexto(consulta, limite, categorias, estados);
+        escribirLog(() -> "Búsqueda '" + consulta + "' en " + categorias + " / " + estados + ": "
+                + encontrados.size() + " productos", Level.INFO);
+        return encontrados;
+    }
+
+    // Filtros por categoría y estado; usan los conjuntos de bits de IndiceFacetas, sin recorrer
+    // los productos
+    public List<Producto> filtrarProductos(Collection<Categoria> categorias, Collection<Estado> estados) {
+        return repositorio().filtrarProductos(categorias, estados);
+    }
+
+    public int contarProductos(Collection<Categoria> categorias, Collection<Estado> estados) {
+        return repositorio().contarProductos(categorias, estados);
+    }
+
+    // Cantidades por categoría y por estado para el panel de filtros; con consulta (no vacía)
+    // cuentan todos sus resultados, sin ella todo el catálogo
+    public IndiceFacetas.Facetas obtenerFacetas(String consulta, Collection<Categoria> categorias,
+            Collection<Estado> estados) {
+        if (consulta == null || consulta.trim().isEmpty()) {
+            return repositorio().facetasProductos(categorias, estados);
         }
-        return null; // Retorna null si no se encuentra el producto
+        return repositorio().facetasBusqueda(consulta, categorias, estados);
     }
 
-    public List<Solicitud> buscarSolicitudPorEmisor(String emisorId) {
-        List<Solicitud> solicitudesEncontradas = new ArrayList<>();
-        List<Solicitud> listaSolicitudes = leerSolicitudesDesdeArchivo();
+    // Consultas por rango de precio (extremos incluidos, categoria null = todas) sobre IndicePrecios
+    public int contarProductosPorPrecio(Categoria categoria, int minimo, int maximo) {
+        return repositorio().contarProductosPorPrecio(categoria, minimo, maximo);
+    }
 
-        for (Solicitud solicitud : listaSolicitudes) {
-            if (solicitud.getEmisor() != null && solicitud.getEmisor().getId().equals(emisorId)) {
-                solicitudesEncontradas.add(solicitud);
-            }
+    public List<Producto> listarProductosPorPrecio(Categoria categoria, int minimo, int maximo) {
+        return repositorio().listarProductosPorPrecio(categoria, minimo, maximo);
+    }
+
+    // Cantidad de productos por tramo de precio; cada tramo se identifica por su precio inicial
+    public SortedMap<Integer, Integer> histogramaPrecios(Categoria categoria, int minimo, int maximo, int cubetas) {
+        return repositorio().histogramaPrecios(categoria, minimo, maximo, cubetas);
+    }
+
+    // Páginas de un rango de precios; cursor null pide la primera y getSiguiente() da el cursor
+    // de la próxima. Un cursor inválido se registra y devuelve una página vacía
+    public Pagina<Producto> paginarPorPrecio(Categoria categoria, int minimo, int maximo, boolean descendente,
+            String cursor, int limite) {
+        try {
+            return repositorio().paginarPorPrecio(categoria, minimo, maximo, descendente, cursor, limite);
+        } catch (NumberFormatException e) {
+            escribirLog("Cursor de página inválido: " + cursor, Level.WARNING);
+            return Pagina.vacia();
         }
+    }
 
-        escribirLog("Solicitudes encontradas para el emisor ID: " + emisorId, Level.INFO);
+    public Pagina<Producto> paginarPorFecha(Categoria categoria, int minimo, int maximo, boolean masRecientes,
+            String cursor, int limite) {
+        try {
+            return repositorio().paginarPorFecha(categoria, minimo, maximo, masRecientes, cursor, limite);
+        } catch (NumberFormatException e) {
+            escribirLog("Cursor de página inválido: " + cursor, Level.WARNING);
+            return Pagina.vacia();
+        }
+    }
+
+    // Sugerencias para la interfaz mientras se escribe; no se registran en el log porque se
+    // piden en cada tecla
+    public List<Producto> autocompletarProductos(String prefijo, int cantidad) {
+        return repositorio().completarProductos(prefijo, cantidad);
+    }
+
+    public List<Vendedor> autocompletarVendedores(String prefijo, int cantidad) {
+        return repositorio().completarVendedores(prefijo, cantidad);
+    }
+
+    // Las búsquedas de solicitudes usan los índices secundarios del repositorio (IndiceSolicitudes)
+    public List<Solicitud> buscarSolicitudPorEmisor(String emisorId) {
+        List<Solicitud> solicitudesEncontradas = repositorio().buscarSolicitudesPorEmisor(emisorId);
+        escribirLog(() -> "Solicitudes encontradas para el emisor ID: " + emisorId, Level.INFO);
         return solicitudesEncontradas;
     }
 
     public List<Solicitud> buscarSolicitudPorReceptor(String receptorId) {
-        List<Solicitud> solicitudesEncontradas = new ArrayList<>();
-        List<Solicitud> listaSolicitudes = leerSolicitudesDesdeArchivo();
+        List<Solicitud> solicitudesEncontradas = repositorio().buscarSolicitudesPorReceptor(receptorId);
+        escribirLog(() -> "Solicitudes encontradas para el receptor ID: " + receptorId, Level.INFO);
+        return solicitudesEncontradas;
+    }
 
-        for (Solicitud solicitud : listaSolicitudes) {
-            if (solicitud.getReceptor() != null && solicitud.getReceptor().getId().equals(receptorId)) {
-                solicitudesEncontradas.add(solicitud);
-            }
-        }
+    public List<Solicitud> buscarSolicitudesPorEstado(EstadoSolicitud estado) {
+        return repositorio().buscarSolicitudesPorEstado(estado);
+    }
 
-        escribirLog("Solicitudes encontradas para el receptor ID: " + receptorId, Level.INFO);
-        return solicitudesEncontradas;
+    // Solicitudes pendientes que el vendedor ha recibido / enviado, en O(1)
+    public int contarSolicitudesPendientesRecibidas(String idVendedor) {
+        return repositorio().contarSolicitudesPorReceptor(idVendedor, EstadoSolicitud.PENDIENTE);
+    }
+
+    public int contarSolicitudesPendientesEnviadas(String idVendedor) {
+        return repositorio().contarSolicitudesPorEmisor(idVendedor, EstadoSolicitud.PENDIENTE);
     }
 
+    // Escribe los tres archivos de texto, con cualquier motor
     public void gestionarArchivos(List<Vendedor> listaVendedores, List<Producto> listaProductos,
             List<Solicitud> listaSolicitudes) {
-        String rutaVendedores = propiedades.getProperty("rutaVendedores.txt");
-        String rutaProductos = propiedades.getProperty("rutaProductos.txt");
-        String rutaSolicitudes = propiedades.getProperty("rutaSolicitudes.txt");
-        escribirListaEnArchivo(rutaVendedores, listaVendedores);
-        escribirListaEnArchivo(rutaProductos, listaProductos);
-        escribirListaEnArchivo(rutaSolicitudes, listaSolicitudes);
+        escribirListaEnArchivo(propiedades.getProperty("rutaVendedores.txt"), listaVendedores);
+        escribirListaEnArchivo(propiedades.getProperty("rutaProductos.txt"), listaProductos);
+        escribirListaEnArchivo(propiedades.getProperty("rutaSolicitudes.txt"), listaSolicitudes);
         escribirLog("Archivos gestionados correctamente", Level.INFO);
     }
 
-    private void escribirListaEnArchivo(String ruta, List<?> lista) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(ruta))) {
-            for (Object objeto : lista) {
-                if (objeto instanceof Vendedor) {
-                    Vendedor vendedor = (Vendedor) objeto;
-                    writer.write(vendedor.getId() + "%" + vendedor.getNombre() + "%" + vendedor.getApellido() + "%"
-                            + vendedor.getCedula() + "%" + vendedor.getDireccion() + "%" + vendedor.getContraseña()
-                            + "%" + vendedor.getPublicaciones() + "%" + vendedor.getRedDeContactos() + "%");
-                } else if (objeto instanceof Producto) {
-                    Producto producto = (Producto) objeto;
-                    writer.write(producto.getId() + "%" + producto.getNombre() + "%" + producto.getDescripcion() + "%"
-                            + producto.getFechaPublicacion() + "%" + producto.getImagenRuta() + "%"
-                            + producto.getPrecio()
-                            + producto.getMeGustas() + "%" + producto.getComentarios() + "%" + producto.getEstado()
-                            + "%" + producto.getCategoria());
-                } else {
-                    Solicitud solicitud = (Solicitud) objeto;
-                    writer.write(solicitud.getId() + "%" + solicitud.getEmisor() + "%"
-                            + solicitud.getReceptor() + "%" + solicitud.getEstado());
+    // Aplica el cambio en el repositorio y lo hace durable en el motor como una sola operación (ver
+    // AlmacenMarketplace.registrar); cada cierto número de registros se escribe un punto de control.
+    // Devuelve false si el cambio no quedó durable (ver mutarSi)
+    private boolean mutar(DiarioMutaciones.Tipo tipo, Object entidad, Runnable aplicar) {
+        return mutarSi(tipo, entidad, () -> {
+            aplicar.run();
+            return true;
+        });
+    }
+
+    // Variante condicional: si 'aplicar' rechaza el cambio (conflicto de versión) no se registra nada.
+    // Si el registro falla, el cambio ya está aplicado en memoria (el diario escribe después de
+    // aplicar): solo se informa éxito si un punto de control logra hacerlo durable
+    private boolean mutarSi(DiarioMutaciones.Tipo tipo, Object entidad, BooleanSupplier aplicar) {
+        boolean aplicado;
+        IOException error = null;
+        Lock lectura = bloqueoPuntoControl.readLock();
+        lectura.lock();
+        try {
+            aplicado = almacen.registrar(tipo, entidad, aplicar);
+        } catch (IOException e) {
+            aplicado = false;
+            error = e;
+        } finally {
+            lectura.unlock();
+        }
+        if (error != null) {
+            escribirLog("Error al registrar la mutación " + tipo + " en el almacén " + almacen.getNombre() + ": "
+                    + error.getMessage() + "; se intenta un punto de control", Level.SEVERE);
+            return puntoDeControl();
+        }
+        if (!aplicado) {
+            return false;
+        }
+        if (almacen.getRegistrosPendientes() >= umbralPuntoControl) {
+            Lock escritura = bloqueoPuntoControl.writeLock();
+            escritura.lock();
+            try {
+                // Otro hilo pudo escribir el punto de control mientras este esperaba
+                if (almacen.getRegistrosPendientes() >= umbralPuntoControl) {
+                    puntoDeControl();
                 }
-                writer.newLine();
+            } finally {
+                escritura.unlock();
             }
-            logInfo("Lista escrita en archivo correctamente");
+        }
+        return true;
+    }
+
+    // Escribe el estado completo del repositorio con el motor y vacía su diario. Excluye a las
+    // mutaciones para que ninguna quede fuera tanto del punto de control como del diario.
+    // Devuelve false si no se pudo escribir
+    public boolean puntoDeControl() {
+        Repositorio repo = repositorio();
+        Lock escritura = bloqueoPuntoControl.writeLock();
+        escritura.lock();
+        try {
+            almacen.puntoDeControl(repo.listarVendedores(), repo.listarProductos(), repo.listarSolicitudes());
+            escribirLog("Punto de control escrito; diario de mutaciones vaciado.", Level.INFO);
+            return true;
         } catch (IOException e) {
-            logSevere("Error al escribir en el archivo: " + ruta);
+            escribirLog("Error al escribir el punto de control del almacén " + almacen.getNombre() + ": "
+                    + e.getMessage(), Level.SEVERE);
+            return false;
+        } finally {
+            escritura.unlock();
         }
     }
 
-    public void guardarSolicitudEnArchivo(Solicitud solicitud) {
-        String rutaSolicitudes = propiedades.getProperty("rutaSolicitudes.txt");
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(rutaSolicitudes, true))) {
-            String emisorId = solicitud.getEmisor() != null ? solicitud.getEmisor().getId() : "";
-            String receptorId = solicitud.getReceptor() != null ? solicitud.getReceptor().getId() : "";
-            writer.write(solicitud.getId() + "%" + emisorId + "%" + receptorId + "%" + solicitud.getEstado());
-            writer.newLine();
-            escribirLog("Solicitud guardada exitosamente: " + solicitud, Level.INFO);
+    private void escribirListaEnArchivo(String ruta, List<?> lista) {
+        try {
+            archivosTexto.escribirListaEnArchivo(ruta, lista);
+            logInfo("Lista escrita en archivo correctamente");
         } catch (IOException e) {
-            escribirLog("Error al guardar la solicitud: " + solicitud, Level.SEVERE);
+            logSevere("Error al escribir en el archivo: " + ruta);
         }
     }
 
-    public void guardarVendedorEnArchivo(Vendedor vendedor) {
-        String rutaVendedores = propiedades.getProperty("rutaVendedores.txt");
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(rutaVendedores, true))) {
-            String publicacionesStr = vendedor.getPublicaciones().stream()
-                    .map(Producto::getId)
-                    .reduce((p1, p2) -> p1 + "," + p2).orElse("");
+    // Los métodos de escritura devuelven false si el cambio no quedó durable
+    public boolean guardarSolicitudEnArchivo(Solicitud solicitud) {
+        Repositorio repo = repositorio();
+        boolean guardada = mutar(DiarioMutaciones.Tipo.PONER_SOLICITUD, solicitud,
+                () -> repo.guardarSolicitud(solicitud));
+        informar(guardada, () -> "Solicitud guardada exitosamente: " + solicitud,
+                () -> "No se pudo guardar la solicitud con ID: " + solicitud.getId());
+        return guardada;
+    }
 
-            String contactosStr = vendedor.getRedDeContactos().stream()
-                    .map(Vendedor::getId)
-                    .reduce((c1, c2) -> c1 + "," + c2).orElse("");
+    public boolean guardarVendedorEnArchivo(Vendedor vendedor) {
+        Repositorio repo = repositorio();
+        boolean guardado = mutar(DiarioMutaciones.Tipo.PONER_VENDEDOR, vendedor, () -> repo.guardarVendedor(vendedor));
+        informar(guardado, () -> "Vendedor guardado exitosamente: " + vendedor,
+                () -> "No se pudo guardar el vendedor con ID: " + vendedor.getId());
+        return guardado;
+    }
 
-            writer.write(vendedor.getId() + "%" + vendedor.getNombre() + "%" + vendedor.getApellido() + "%"
-                    + vendedor.getCedula() + "%" + vendedor.getDireccion() + "%" + vendedor.getContraseña() + "%"
-                    + publicacionesStr + "%" + contactosStr + "%");
-            writer.newLine();
-            escribirLog("Vendedor guardado exitosamente: " + vendedor, Level.INFO);
-        } catch (IOException e) {
-            escribirLog("Error al guardar el vendedor: " + vendedor, Level.SEVERE);
+    public boolean guardarProductoEnArchivo(Producto producto) {
+        Repositorio repo = repositorio();
+        boolean guardado = mutar(DiarioMutaciones.Tipo.PONER_PRODUCTO, producto, () -> repo.guardarProducto(producto));
+        informar(guardado, () -> "Producto guardado exitosamente: " + producto,
+                () -> "No se pudo guardar el producto con ID: " + producto.getId());
+        return guardado;
+    }
+
+    // Éxito como INFO y fallo como WARNING, armando solo el mensaje que se va a registrar
+    private void informar(boolean exito, Supplier<String> mensajeExito, Supplier<String> mensajeFallo) {
+        if (exito) {
+            escribirLog(mensajeExito, Level.INFO);
+        } else {
+            escribirLog(mensajeFallo, Level.WARNING);
         }
     }
 
-    public void guardarProductoEnArchivo(Producto producto) {
-        String rutaProductos = propiedades.getProperty("rutaProductos.txt");
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(rutaProductos))) {
-            writer.write(producto.getId() + "%" + producto.getNombre() + "%" + producto.getDescripcion() + "%"
-                    + producto.getFechaPublicacion() + "%" + producto.getImagenRuta() + "%" + producto.getPrecio()
-                    + producto.getMeGustas() + "%" + producto.getComentarios() + "%" + producto.getEstado() + "%"
-                    + producto.getCategoria());
-            writer.newLine();
-            escribirLog("Producto guardado exitosamente: " + producto, Level.INFO);
+    // Carga el estado durable con el motor configurado. Si no se puede leer se lanza
+    // UncheckedIOException en vez de seguir con datos a medias, que el próximo punto de control
+    // escribiría encima de los buenos
+    private CargadorDatos cargarDatos() {
+        CargadorDatos cargador;
+        try {
+            cargador = almacen.cargar();
+            escribirLog("Datos leídos desde el almacén " + almacen.getNombre() + " correctamente.", Level.INFO);
         } catch (IOException e) {
-            escribirLog("Error al guardar el vendedor: " + producto, Level.SEVERE);
+            escribirLog("Error al leer los datos desde el almacén " + almacen.getNombre() + ": " + e.getMessage(),
+                    Level.SEVERE);
+            throw new UncheckedIOException(e);
+        }
+        if (cargador.getLineasInvalidas() > 0 || cargador.getReferenciasRotas() > 0) {
+            escribirLog("Carga con " + cargador.getLineasInvalidas() + " línea(s) inválida(s) y "
+                    + cargador.getReferenciasRotas() + " referencia(s) sin resolver.", Level.WARNING);
+            for (String error : cargador.getErrores()) {
+                escribirLog("Línea inválida en " + error, Level.WARNING);
+            }
         }
+        return cargador;
     }
 
     public List<Vendedor> leerVendedoresDesdeArchivo() {
-        List<Vendedor> listaVendedores = new ArrayList<>();
-        String rutaVendedores = propiedades.getProperty("rutaVendedores.txt");
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(rutaVendedores))) {
-            String linea;
-            while ((linea = reader.readLine()) != null) {
-                String[] datos = linea.split("%");
-                List<Producto> publicaciones = new ArrayList<>();
-                if (datos.length > 6) {
-                    String[] idsPublicaciones = datos[6].split(",");
-                    for (String id : idsPublicaciones) {
-                        Producto producto = buscarProductoPorId(id);
-                        publicaciones.add(producto);
-                    }
-                }
-
-                List<Vendedor> contactos = new ArrayList<>();
-                if (datos.length > 7) {
-                    String[] idsContactos = datos[7].split(",");
-                    for (String id : idsContactos) {
-                        Vendedor contacto = buscarVendedorPorId(id);
-                        contactos.add(contacto);
-                    }
-                }
-
-                Vendedor vendedor = new Vendedor(
-                        datos[0], // ID
-                        datos[1], // Nombre
-                        datos[2], // Apellido
-                        datos[3], // Cedula
-                        datos[4], // Direccion
-                        datos[5], // Contraseña
-                        publicaciones, // Publicaciones
-                        contactos // Red de contactos
-                );
-                listaVendedores.add(vendedor);
-            }
-            escribirLog("Vendedores leídos desde el archivo correctamente.", Level.INFO);
-        } catch (IOException e) {
-            escribirLog("Error al leer vendedores desde el archivo: " + rutaVendedores, Level.SEVERE);
-        }
-        return listaVendedores;
+        return cargarDatos().getVendedores();
     }
 
     // Método para leer productos desde archivo
     public List<Producto> leerProductosDesdeArchivo() {
-        List<Producto> listaProductos = new ArrayList<>();
-        String rutaProductos = propiedades.getProperty("rutaProductos.txt");
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(rutaProductos))) {
-            String linea;
-            while ((linea = reader.readLine()) != null) {
-                String[] datos = linea.split("%");
-                Producto producto = new Producto(
-                        datos[0], // ID
-                        datos[1], // Nombre
-                        datos[2], // Descripcion
-                        datos[3], // Fecha Publicacion (string)
-                        datos[4], // Imagen Ruta
-                        Integer.parseInt(datos[5]), // Precio
-                        Integer.parseInt(datos[6]), // Me Gustas
-                        Estado.valueOf(datos[7]), // Estado (convertido a Enum)
-                        Categoria.valueOf(datos[8]) // Categoria (convertido a Enum)
-                );
-                listaProductos.add(producto);
-            }
-            escribirLog("Productos leídos desde el archivo correctamente.", Level.INFO);
-        } catch (IOException e) {
-            escribirLog("Error al leer productos desde el archivo: " + rutaProductos, Level.SEVERE);
-        }
-        return listaProductos;
+        return cargarDatos().getProductos();
     }
 
     // Método para leer solicitudes desde archivo
     public List<Solicitud> leerSolicitudesDesdeArchivo() {
-        List<Solicitud> listaSolicitudes = new ArrayList<>();
-        String rutaSolicitudes = propiedades.getProperty("rutaSolicitudes.txt");
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(rutaSolicitudes))) {
-            String linea;
-            while ((linea = reader.readLine()) != null) {
-                String[] datos = linea.split("%");
-                // Suponiendo que el archivo tiene el formato: id%emisorId%receptorId%estado
-                String id = datos[0];
-                String emisorId = datos[1];
-                String receptorId = datos[2];
-                EstadoSolicitud estado = EstadoSolicitud.valueOf(datos[3]); // Convertir a Enum
-
-                // Buscar los Vendedores por ID
-                Vendedor emisor = buscarVendedorPorId(emisorId);
-                Vendedor receptor = buscarVendedorPorId(receptorId);
-
-                // Crear la solicitud
-                Solicitud solicitud = new Solicitud(id, emisor, receptor, estado);
-                listaSolicitudes.add(solicitud);
-            }
-            escribirLog("Solicitudes leídas desde el archivo correctamente.", Level.INFO);
-        } catch (IOException e) {
-            escribirLog("Error al leer solicitudes desde el archivo: " + rutaSolicitudes, Level.SEVERE);
-        }
-        return listaSolicitudes;
+        return cargarDatos().getSolicitudes();
     }
 
+    // Las instantáneas (formato binario de CodificadorBinario) se escriben en segundo plano:
+    // aquí solo se marca el tipo como sucio y ProgramadorInstantaneas agrupa las marcas
     public void actualizarSerializacionVendedores() {
-        List<Vendedor> listaVendedores = leerVendedoresDesdeArchivo();
-        serializarLista(listaVendedores, true);
-        serializarLista(listaVendedores, false);
-        escribirLog("Serialización de vendedores actualizada correctamente.", Level.INFO);
+        programadorInstantaneas.marcarSucio(ProgramadorInstantaneas.Entidad.VENDEDORES);
     }
 
     public void actualizarSerializacionProductos() {
-        List<Producto> listaProductos = leerProductosDesdeArchivo();
-        serializarLista(listaProductos, false);
-        serializarLista(listaProductos, true);
-        escribirLog("Serialización de productos actualizada correctamente.", Level.INFO);
+        programadorInstantaneas.marcarSucio(ProgramadorInstantaneas.Entidad.PRODUCTOS);
     }
 
     public void actualizarSerializacionSolicitudes() {
-        List<Solicitud> listaSolicitudes = leerSolicitudesDesdeArchivo();
-        serializarLista(listaSolicitudes, false);
-        serializarLista(listaSolicitudes, true);
-        escribirLog("Serialización de solicitudes actualizada correctamente.", Level.INFO);
+        programadorInstantaneas.marcarSucio(ProgramadorInstantaneas.Entidad.SOLICITUDES);
+    }
+
+    // Invocado desde el hilo de ProgramadorInstantaneas
+    private void escribirInstantanea(ProgramadorInstantaneas.Entidad entidad) {
+        switch (entidad) {
+            case VENDEDORES:
+                escribirInstantanea(propiedades.getProperty("rutaVendedores.bin"), repositorio().listarVendedores());
+                escribirLog("Serialización de vendedores actualizada correctamente.", Level.INFO);
+                break;
+            case PRODUCTOS:
+                escribirInstantanea(propiedades.getProperty("rutaProductos.bin"), repositorio().listarProductos());
+                escribirLog("Serialización de productos actualizada correctamente.", Level.INFO);
+                break;
+            case SOLICITUDES:
+                escribirInstantanea(propiedades.getProperty("rutaSolicitudes.bin"), repositorio().listarSolicitudes());
+                escribirLog("Serialización de solicitudes actualizada correctamente.", Level.INFO);
+                break;
+            case ME_GUSTAS:
+                volcarMeGustas();
+                break;
+        }
+    }
+
+    // Escribe quién dio "me gusta" a qué y después aplica a cada producto los "me gusta"
+    // acumulados (una mutación por producto y volcado, no una por "me gusta"); ver MeGustas.vaciar.
+    // Lo que no se pudo volcar queda pendiente y se reintenta en el próximo intervalo
+    private void volcarMeGustas() {
+        String ruta = propiedades.getProperty("rutaMeGustas.txt", RUTA_DIRECTORIO + "/Files/MeGustas.txt");
+        boolean reintentar;
+        try {
+            reintentar = meGustas.vaciar(() -> EscrituraAtomica.escribir(ruta, fsync,
+                    salida -> meGustas.escribir(new OutputStreamWriter(salida, StandardCharsets.UTF_8))),
+                    this::volcarDiferencia);
+        } catch (IOException e) {
+            escribirLog("Error al guardar los me gusta en " + ruta + ": " + e.getMessage(), Level.SEVERE);
+            reintentar = true;
+        }
+        if (reintentar) {
+            programadorInstantaneas.reintentar(ProgramadorInstantaneas.Entidad.ME_GUSTAS);
+        } else {
+            escribirLog("Me gusta volcados correctamente.", Level.FINE);
+        }
+    }
+
+    // Suma la diferencia al producto. true si quedó aplicada o si el producto ya no existe (se
+    // descarta); false para que MeGustas la conserve
+    private boolean volcarDiferencia(String idProducto, long diferencia) {
+        Producto[] copia = new Producto[1];
+        Producto publicado = actualizarProductoConReintentos(idProducto, p -> {
+            copia[0] = p;
+            p.setMeGustas((int) Math.max(0, p.getMeGustas() + diferencia));
+        });
+        if (publicado != null) {
+            return true;
+        }
+        // Si la copia quedó publicada aunque no durable, la diferencia ya está en el producto y
+        // devolverla la sumaría dos veces
+        Producto actual = repositorio().buscarProducto(idProducto);
+        return actual == null || actual == copia[0];
+    }
+
+    private void cargarMeGustas() {
+        File archivo = new File(propiedades.getProperty("rutaMeGustas.txt", RUTA_DIRECTORIO + "/Files/MeGustas.txt"));
+        if (!archivo.exists()) {
+            return;
+        }
+        try (Reader lector = new InputStreamReader(new FileInputStream(archivo), StandardCharsets.UTF_8)) {
+            meGustas.leer(lector);
+        } catch (IOException e) {
+            escribirLog("Error al cargar los me gusta: " + e.getMessage(), Level.SEVERE);
+        }
+    }
+
+    // Escribe las instantáneas pendientes y cierra el almacén; se ejecuta también al apagar la JVM
+    public void cerrar() {
+        programadorInstantaneas.cerrar();
+        try {
+            almacen.close();
+        } catch (IOException e) {
+            escribirLog("Error al cerrar el almacén " + almacen.getNombre() + ": " + e.getMessage(), Level.SEVERE);
+        }
+        if (almacenArbol != null) {
+            try {
+                almacenArbol.close();
+            } catch (IOException e) {
+                escribirLog("Error al cerrar el árbol de entidades: " + e.getMessage(), Level.SEVERE);
+            }
+        }
+        if (logAsincrono != null) {
+            logAsincrono.close();
+        }
+    }
+
+    private void escribirInstantanea(String ruta, List<?> lista) {
+        try {
+            EscrituraAtomica.escribir(ruta, fsync, salida -> {
+                CodificadorBinario codificador = new CodificadorBinario(salida);
+                for (Object obj : lista) {
+                    if (obj instanceof Vendedor) {
+                        codificador.escribirVendedor((Vendedor) obj);
+                    } else if (obj instanceof Producto) {
+                        codificador.escribirProducto((Producto) obj);
+                    } else if (obj instanceof Solicitud) {
+                        codificador.escribirSolicitud((Solicitud) obj);
+                    }
+                }
+                codificador.terminar();
+            });
+            escribirLog("Lista serializada exitosamente a " + ruta, Level.INFO);
+        } catch (IOException e) {
+            escribirLog("Error al serializar la lista: " + ruta, Level.SEVERE);
+        }
     }
 
     // Método para eliminar solicitud
-    public void eliminarSolicitud(String idSolicitud) {
-        List<Solicitud> listaSolicitudes = leerSolicitudesDesdeArchivo();
-        listaSolicitudes.removeIf(solicitud -> solicitud.getId().equals(idSolicitud));
-        gestionarArchivos(leerVendedoresDesdeArchivo(), leerProductosDesdeArchivo(), listaSolicitudes);
-        escribirLog("Solicitud eliminada exitosamente con ID: " + idSolicitud, Level.INFO);
+    public boolean eliminarSolicitud(String idSolicitud) {
+        Repositorio repo = repositorio();
+        boolean eliminada = mutar(DiarioMutaciones.Tipo.ELIMINAR_SOLICITUD, idSolicitud,
+                () -> repo.eliminarSolicitud(idSolicitud));
+        informar(eliminada, () -> "Solicitud eliminada exitosamente con ID: " + idSolicitud,
+                () -> "No se pudo eliminar la solicitud con ID: " + idSolicitud);
+        return eliminada;
     }
 
     // Método para cambiar el estado de una solicitud
-    public void cambiarEstadoSolicitud(String idSolicitud, EstadoSolicitud nuevoEstado) {
-        List<Solicitud> listaSolicitudes = leerSolicitudesDesdeArchivo();
-        for (Solicitud solicitud : listaSolicitudes) {
-            if (solicitud.getId().equals(idSolicitud)) {
-                solicitud.setEstado(nuevoEstado);
-                escribirLog("Estado de la solicitud cambiado exitosamente: " + solicitud, Level.INFO);
-                break;
-            }
+    public boolean cambiarEstadoSolicitud(String idSolicitud, EstadoSolicitud nuevoEstado) {
+        Repositorio repo = repositorio();
+        Solicitud solicitud = repo.buscarSolicitud(idSolicitud);
+        if (solicitud == null) {
+            return false;
         }
-        gestionarArchivos(leerVendedoresDesdeArchivo(), leerProductosDesdeArchivo(), listaSolicitudes);
+        boolean cambiado = mutar(DiarioMutaciones.Tipo.ESTADO_SOLICITUD, solicitud,
+                () -> repo.cambiarEstadoSolicitud(idSolicitud, nuevoEstado));
+        informar(cambiado, () -> "Estado de la solicitud cambiado exitosamente: " + solicitud,
+                () -> "No se pudo cambiar el estado de la solicitud con ID: " + idSolicitud);
+        return cambiado;
     }
 
     // Método para leer todas las solicitudes
     public List<Solicitud> leerTodasLasSolicitudes() {
-        return leerSolicitudesDesdeArchivo();
+        return repositorio().listarSolicitudes();
     }
 
-    // Método para modificar un vendedor
-    public void modificarVendedor(Vendedor vendedorModificado) {
-        List<Vendedor> listaVendedores = leerVendedoresDesdeArchivo();
-        for (int i = 0; i < listaVendedores.size(); i++) {
-            if (listaVendedores.get(i).getId().equals(vendedorModificado.getId())) {
-                listaVendedores.set(i, vendedorModificado);
-                break;
+    // Método para modificar un vendedor. Compare-and-set sobre la versión: devuelve false, sin
+    // esperar ni reintentar, si el vendedor no existe o cambió desde que se leyó
+    public boolean modificarVendedor(Vendedor vendedorModificado) {
+        Repositorio repo = repositorio();
+        boolean aceptado = mutarSi(DiarioMutaciones.Tipo.PONER_VENDEDOR, vendedorModificado,
+                () -> repo.reemplazarVendedor(vendedorModificado));
+        if (aceptado) {
+            escribirLog(() -> "Vendedor modificado exitosamente: " + vendedorModificado, Level.INFO);
+        } else {
+            escribirLog(() -> "Modificación rechazada (conflicto de versión o error del almacén) para el vendedor ID: "
+                    + vendedorModificado.getId(), Level.WARNING);
+        }
+        return aceptado;
+    }
+
+    // Método para modificar un producto; mismo compare-and-set que modificarVendedor
+    public boolean modificarProducto(Producto productoModificado) {
+        Repositorio repo = repositorio();
+        boolean aceptado = mutarSi(DiarioMutaciones.Tipo.PONER_PRODUCTO, productoModificado,
+                () -> repo.reemplazarProducto(productoModificado));
+        if (aceptado) {
+            escribirLog(() -> "Producto modificado exitosamente: " + productoModificado, Level.INFO);
+        } else {
+            escribirLog(() -> "Modificación rechazada (conflicto de versión o error del almacén) para el producto ID: "
+                    + productoModificado.getId(), Level.WARNING);
+        }
+        return aceptado;
+    }
+
+    // Lee el producto, aplica el cambio sobre una copia y la publica con compare-and-set; ante un
+    // conflicto vuelve a leer y reintenta. Devuelve la copia publicada, o null si no existe o si el
+    // cambio no se pudo hacer durable
+    public Producto actualizarProductoConReintentos(String idProducto, Consumer<Producto> cambio) {
+        Repositorio repo = repositorio();
+        while (true) {
+            Producto actual = repo.buscarProducto(idProducto);
+            if (actual == null) {
+                return null;
+            }
+            Producto copia = new Producto(actual);
+            cambio.accept(copia);
+            if (modificarProducto(copia)) {
+                return copia;
             }
+            if (repo.buscarProducto(idProducto) == copia) {
+                return null; // Publicada pero no durable (ver mutarSi): reintentar la aplicaría dos veces
+            }
+            Thread.onSpinWait();
         }
-        gestionarArchivos(listaVendedores, leerProductosDesdeArchivo(), leerSolicitudesDesdeArchivo());
-        escribirLog("Vendedor modificado exitosamente: " + vendedorModificado, Level.INFO);
     }
 
-    // Método para modificar un producto
-    public void modificarProducto(Producto productoModificado) {
-        List<Producto> listaProductos = leerProductosDesdeArchivo();
-        for (int i = 0; i < listaProductos.size(); i++) {
-            if (listaProductos.get(i).getId().equals(productoModificado.getId())) {
-                listaProductos.set(i, productoModificado);
-                break;
+    // Igual que actualizarProductoConReintentos, para un vendedor
+    public Vendedor actualizarVendedorConReintentos(String idVendedor, Consumer<Vendedor> cambio) {
+        Repositorio repo = repositorio();
+        while (true) {
+            Vendedor actual = repo.buscarVendedor(idVendedor);
+            if (actual == null) {
+                return null;
+            }
+            Vendedor copia = new Vendedor(actual);
+            cambio.accept(copia);
+            if (modificarVendedor(copia)) {
+                return copia;
             }
+            if (repo.buscarVendedor(idVendedor) == copia) {
+                return null; // Publicado pero no durable (ver mutarSi)
+            }
+            Thread.onSpinWait();
         }
-        gestionarArchivos(leerVendedoresDesdeArchivo(), listaProductos, leerSolicitudesDesdeArchivo());
-        escribirLog("Producto modificado exitosamente: " + productoModificado, Level.INFO);
+    }
+
+    // Los "me gusta" se cuentan en MeGustas y llegan al producto en el siguiente volcado
+
+    // "Me gusta" anónimo; false si el producto no existe
+    public boolean darMeGusta(String idProducto) {
+        if (buscarProductoPorId(idProducto) == null) {
+            return false;
+        }
+        meGustas.sumar(idProducto);
+        return true;
+    }
+
+    // false si el producto no existe o el vendedor ya le había dado "me gusta"
+    public boolean darMeGusta(String idProducto, String idVendedor) {
+        return buscarProductoPorId(idProducto) != null && meGustas.dar(idProducto, idVendedor);
+    }
+
+    public boolean quitarMeGusta(String idProducto, String idVendedor) {
+        return meGustas.quitar(idProducto, idVendedor);
+    }
+
+    public boolean dioMeGusta(String idProducto, String idVendedor) {
+        return meGustas.dioMeGusta(idProducto, idVendedor);
+    }
+
+    // Cantidad vigente: lo ya volcado al producto más lo acumulado desde el último volcado
+    public long contarMeGustas(String idProducto) {
+        Producto producto = buscarProductoPorId(idProducto);
+        return producto == null ? 0 : producto.getMeGustas() + meGustas.sinVolcar(idProducto);
     }
 
     // Método para eliminar un vendedor
-    public void eliminarVendedor(String idVendedor) {
-        List<Vendedor> listaVendedores = leerVendedoresDesdeArchivo();
-        listaVendedores.removeIf(vendedor -> vendedor.getId().equals(idVendedor));
-        gestionarArchivos(listaVendedores, leerProductosDesdeArchivo(), leerSolicitudesDesdeArchivo());
-        escribirLog("Vendedor eliminado exitosamente con ID: " + idVendedor, Level.INFO);
+    public boolean eliminarVendedor(String idVendedor) {
+        Repositorio repo = repositorio();
+        boolean eliminado = mutar(DiarioMutaciones.Tipo.ELIMINAR_VENDEDOR, idVendedor,
+                () -> repo.eliminarVendedor(idVendedor));
+        informar(eliminado, () -> "Vendedor eliminado exitosamente con ID: " + idVendedor,
+                () -> "No se pudo eliminar el vendedor con ID: " + idVendedor);
+        return eliminado;
     }
 
     // Método para eliminar un producto
-    public void eliminarProducto(String idProducto) {
-        List<Producto> listaProductos = leerProductosDesdeArchivo();
-        listaProductos.removeIf(producto -> producto.getId().equals(idProducto));
-        gestionarArchivos(leerVendedoresDesdeArchivo(), listaProductos, leerSolicitudesDesdeArchivo());
-        escribirLog("Producto eliminado exitosamente con ID: " + idProducto, Level.INFO);
+    public boolean eliminarProducto(String idProducto) {
+        Repositorio repo = repositorio();
+        boolean eliminado;
+        while (true) {
+            String idPropietario = idPropietario(repo, idProducto);
+            Lock bloqueo = bloqueoVendedor(idPropietario);
+            bloqueo.lock();
+            try {
+                if (!Objects.equals(idPropietario, idPropietario(repo, idProducto))) {
+                    continue; // Cambió de dueño mientras se esperaba el bloqueo
+                }
+                eliminado = mutar(DiarioMutaciones.Tipo.ELIMINAR_PRODUCTO, idProducto,
+                        () -> repo.eliminarProducto(idProducto));
+                meGustas.olvidar(idProducto);
+                // La publicación también desaparece de la línea del vendedor. Se registra la
+                // instancia publicada ahora, ya sin el producto, y solo si sigue siéndolo dentro del
+                // registro: si otro cambio la reemplazó, su propio registro ya la cubre
+                Vendedor propietario = repo.buscarVendedor(idPropietario);
+                if (propietario != null && !mutarSi(DiarioMutaciones.Tipo.PONER_VENDEDOR, propietario,
+                        () -> repo.buscarVendedor(idPropietario) == propietario)) {
+                    // Un rechazo por reemplazo no es un fallo; solo lo es si sigue publicada
+                    eliminado &= repo.buscarVendedor(idPropietario) != propietario;
+                }
+            } finally {
+                bloqueo.unlock();
+            }
+            break;
+        }
+        informar(eliminado, () -> "Producto eliminado exitosamente con ID: " + idProducto,
+                () -> "No se pudo eliminar el producto con ID: " + idProducto);
+        return eliminado;
+    }
+
+    private static String idPropietario(Repositorio repo, String idProducto) {
+        Vendedor propietario = repo.buscarPropietario(idProducto);
+        return propietario != null ? propietario.getId() : null;
     }
 
     public void serializarLista(List<?> lista, boolean esXML) {
@@ -493,25 +995,26 @@ public class Utilidades {
         } else if (primerElemento instanceof Vendedor) {
             ruta = esXML ? propiedades.getProperty("rutaVendedores.xml")
                     : propiedades.getProperty("rutaVendedores.bin");
+        } else if (primerElemento instanceof Solicitud) {
+            ruta = esXML ? propiedades.getProperty("rutaSolicitudes.xml")
+                    : propiedades.getProperty("rutaSolicitudes.bin");
         } else {
             escribirLog("Tipo de lista no reconocido para serialización.", Level.SEVERE);
             return;
         }
 
-        try (FileOutputStream fos = new FileOutputStream(ruta)) {
-            if (esXML) {
+        if (!esXML) {
+            escribirInstantanea(ruta, lista);
+            return;
+        }
+        try {
+            EscrituraAtomica.escribir(ruta, fsync, fos -> {
                 XMLEncoder encoder = new XMLEncoder(fos);
                 for (Object obj : lista) {
                     encoder.writeObject(obj);
                 }
                 encoder.close();
-            } else {
-                ObjectOutputStream oos = new ObjectOutputStream(fos);
-                for (Object obj : lista) {
-                    oos.writeObject(obj);
-                }
-                oos.close();
-            }
+            });
             escribirLog("Lista serializada exitosamente a " + ruta, Level.INFO);
         } catch (IOException e) {
             escribirLog("Error al serializar la lista: " + ruta, Level.SEVERE);
@@ -519,16 +1022,18 @@ public class Utilidades {
     }
 
     public void serializarObjeto(Object obj, String ruta, boolean esXML) {
-        try (FileOutputStream fos = new FileOutputStream(ruta)) {
-            if (esXML) {
-                XMLEncoder encoder = new XMLEncoder(fos);
-                encoder.writeObject(obj);
-                encoder.close();
-            } else {
-                ObjectOutputStream oos = new ObjectOutputStream(fos);
-                oos.writeObject(obj);
-                oos.close();
-            }
+        try {
+            EscrituraAtomica.escribir(ruta, fsync, fos -> {
+                if (esXML) {
+                    XMLEncoder encoder = new XMLEncoder(fos);
+                    encoder.writeObject(obj);
+                    encoder.close();
+                } else {
+                    ObjectOutputStream oos = new ObjectOutputStream(fos);
+                    oos.writeObject(obj);
+                    oos.close();
+                }
+            });
             escribirLog("Objeto serializado exitosamente a " + ruta, Level.INFO);
         } catch (IOException e) {
             escribirLog("Error al serializar el objeto: " + ruta, Level.SEVERE);
@@ -537,39 +1042,38 @@ public class Utilidades {
 
     public List<Producto> deserializarProductos(boolean esXML) {
         List<Producto> productos = new ArrayList<>();
-        String ruta = esXML ? propiedades.getProperty("ruta.productos.xml")
-                : propiedades.getProperty("ruta.productos.bin");
+        String ruta = esXML ? propiedades.getProperty("rutaProductos.xml")
+                : propiedades.getProperty("rutaProductos.bin");
 
-        try (FileInputStream fis = new FileInputStream(ruta)) {
+        try {
             if (esXML) {
-                XMLDecoder decoder = new XMLDecoder(fis);
-                while (true) {
-                    try {
-                        Object obj = decoder.readObject();
-                        if (obj instanceof Producto) {
-                            productos.add((Producto) obj);
+                try (FileInputStream fis = new FileInputStream(ruta)) {
+                    XMLDecoder decoder = new XMLDecoder(fis);
+                    while (true) {
+                        try {
+                            Object obj = decoder.readObject();
+                            if (obj instanceof Producto) {
+                                productos.add((Producto) obj);
+                            }
+                        } catch (ArrayIndexOutOfBoundsException e) {
+                            break; // Fin del archivo
                         }
-                    } catch (ArrayIndexOutOfBoundsException e) {
-                        break; // Fin del archivo
                     }
+                    decoder.close();
                 }
-                decoder.close();
             } else {
-                ObjectInputStream ois = new ObjectInputStream(fis);
-                while (true) {
-                    try {
-                        Object obj = ois.readObject();
-                        if (obj instanceof Producto) {
-                            productos.add((Producto) obj);
-                        }
-                    } catch (EOFException e) {
-                        break; // Fin del archivo
-                    }
+                CargadorDatos cargador = new CargadorDatos();
+                for (Vendedor vendedor : repositorio().listarVendedores()) {
+                    cargador.agregarVendedor(vendedor, new String[0], new String[0]);
+                }
+                try (InputStream entrada = new BufferedInputStream(new FileInputStream(ruta))) {
+                    new DecodificadorBinario(entrada, cargador).leerTodo();
                 }
-                ois.close();
+                cargador.resolverReferencias(); // Autores de los comentarios
+                productos = cargador.getProductos();
             }
             escribirLog("Productos deserializados exitosamente desde " + ruta, Level.INFO);
-        } catch (IOException | ClassNotFoundException e) {
+        } catch (IOException e) {
             escribirLog("Error al deserializar productos desde: " + ruta, Level.SEVERE);
         }
         return productos;
@@ -577,51 +1081,77 @@ public class Utilidades {
 
     public List<Vendedor> deserializarVendedores(boolean esXML) {
         List<Vendedor> vendedores = new ArrayList<>();
-        String ruta = esXML ? propiedades.getProperty("ruta.vendedores.xml")
-                : propiedades.getProperty("ruta.vendedores.bin");
+        String ruta = esXML ? propiedades.getProperty("rutaVendedores.xml")
+                : propiedades.getProperty("rutaVendedores.bin");
 
-        try (FileInputStream fis = new FileInputStream(ruta)) {
+        try {
             if (esXML) {
-                XMLDecoder decoder = new XMLDecoder(fis);
-                while (true) {
-                    try {
-                        Object obj = decoder.readObject();
-                        if (obj instanceof Vendedor) {
-                            vendedores.add((Vendedor) obj);
+                try (FileInputStream fis = new FileInputStream(ruta)) {
+                    XMLDecoder decoder = new XMLDecoder(fis);
+                    while (true) {
+                        try {
+                            Object obj = decoder.readObject();
+                            if (obj instanceof Vendedor) {
+                                vendedores.add((Vendedor) obj);
+                            }
+                        } catch (ArrayIndexOutOfBoundsException e) {
+                            break; // Fin del archivo
                         }
-                    } catch (ArrayIndexOutOfBoundsException e) {
-                        break; // Fin del archivo
                     }
+                    decoder.close();
                 }
-                decoder.close();
             } else {
-                ObjectInputStream ois = new ObjectInputStream(fis);
-                while (true) {
-                    try {
-                        Object obj = ois.readObject();
-                        if (obj instanceof Vendedor) {
-                            vendedores.add((Vendedor) obj);
-                        }
-                    } catch (EOFException e) {
-                        break; // Fin del archivo
-                    }
+                // Publicaciones y contactos se enlazan por ID; los contactos pueden formar ciclos
+                CargadorDatos cargador = new CargadorDatos();
+                for (Producto producto : repositorio().listarProductos()) {
+                    cargador.agregarProducto(producto);
                 }
-                ois.close();
+                try (InputStream entrada = new BufferedInputStream(new FileInputStream(ruta))) {
+                    new DecodificadorBinario(entrada, cargador).leerTodo();
+                }
+                cargador.resolverReferencias();
+                vendedores = cargador.getVendedores();
             }
             escribirLog("Vendedores deserializados exitosamente desde " + ruta, Level.INFO);
-        } catch (IOException | ClassNotFoundException e) {
+        } catch (IOException e) {
             escribirLog("Error al deserializar vendedores desde: " + ruta, Level.SEVERE);
         }
         return vendedores;
     }
 
+    public List<Solicitud> deserializarSolicitudes() {
+        String ruta = propiedades.getProperty("rutaSolicitudes.bin");
+        try {
+            CargadorDatos cargador = new CargadorDatos();
+            for (Vendedor vendedor : repositorio().listarVendedores()) {
+                cargador.agregarVendedor(vendedor, new String[0], new String[0]);
+            }
+            try (InputStream entrada = new BufferedInputStream(new FileInputStream(ruta))) {
+                new DecodificadorBinario(entrada, cargador).leerTodo();
+            }
+            cargador.resolverReferencias(); // Emisor y receptor
+            List<Solicitud> solicitudes = cargador.getSolicitudes();
+            escribirLog("Solicitudes deserializadas exitosamente desde " + ruta, Level.INFO);
+            return solicitudes;
+        } catch (IOException e) {
+            escribirLog("Error al deserializar solicitudes desde: " + ruta, Level.SEVERE);
+            return new ArrayList<>();
+        }
+    }
+
+    // Los comentarios se cambian sobre una copia del producto publicada con compare-and-set
+    // (actualizarProductoConReintentos), nunca sobre la instancia que ven los lectores
+
     // Método para agregar un comentario a un producto
     public void agregarComentarioAProducto(String productoId, Comentario comentario) {
-        Producto producto = buscarProductoPorId(productoId);
+        Producto producto = actualizarProductoConReintentos(productoId, copia -> {
+            if (copia.getComentarios() == null) {
+                copia.setComentarios(new ArrayList<>());
+            }
+            copia.agregarComentario(comentario);
+        });
         if (producto != null) {
-            producto.agregarComentario(comentario);
-            modificarProducto(producto); // Guardar cambios
-            escribirLog("Comentario agregado al producto ID: " + productoId, Level.INFO);
+            escribirLog(() -> "Comentario agregado al producto ID: " + productoId, Level.INFO);
         } else {
             escribirLog("Producto no encontrado para agregar comentario.", Level.WARNING);
         }
@@ -629,111 +1159,139 @@ public class Utilidades {
 
     // Método para eliminar un comentario de un producto
     public void eliminarComentarioDeProducto(String productoId, String comentarioId) {
-        Producto producto = buscarProductoPorId(productoId);
-        if (producto != null) {
-            boolean eliminado = producto.eliminarComentario(comentarioId);
-            if (eliminado) {
-                modificarProducto(producto); // Guardar cambios
-                escribirLog("Comentario eliminado del producto ID: " + productoId, Level.INFO);
-            } else {
-                escribirLog("Comentario no encontrado para eliminar en el producto ID: " + productoId, Level.WARNING);
-            }
+        if (!tieneComentario(productoId, comentarioId)) {
+            escribirLog("Comentario no encontrado para eliminar en el producto ID: " + productoId, Level.WARNING);
+            return;
+        }
+        boolean[] eliminado = new boolean[1];
+        Producto producto = actualizarProductoConReintentos(productoId,
+                copia -> eliminado[0] = copia.eliminarComentario(comentarioId));
+        if (producto != null && eliminado[0]) {
+            escribirLog(() -> "Comentario eliminado del producto ID: " + productoId, Level.INFO);
         } else {
-            escribirLog("Producto no encontrado para eliminar comentario.", Level.WARNING);
+            escribirLog("Comentario no encontrado para eliminar en el producto ID: " + productoId, Level.WARNING);
         }
     }
 
     // Método para actualizar un comentario de un producto
     public void actualizarComentarioDeProducto(String productoId, String comentarioId, String nuevoTexto) {
-        Producto producto = buscarProductoPorId(productoId);
-        if (producto != null) {
-            boolean actualizado = producto.actualizarComentario(comentarioId, nuevoTexto);
-            if (actualizado) {
-                modificarProducto(producto); // Guardar cambios
-                escribirLog("Comentario actualizado en el producto ID: " + productoId, Level.INFO);
-            } else {
-                escribirLog("Comentario no encontrado para actualizar en el producto ID: " + productoId, Level.WARNING);
-            }
+        if (!tieneComentario(productoId, comentarioId)) {
+            escribirLog("Comentario no encontrado para actualizar en el producto ID: " + productoId, Level.WARNING);
+            return;
+        }
+        boolean[] actualizado = new boolean[1];
+        Producto producto = actualizarProductoConReintentos(productoId,
+                copia -> actualizado[0] = copia.actualizarComentario(comentarioId, nuevoTexto));
+        if (producto != null && actualizado[0]) {
+            escribirLog(() -> "Comentario actualizado en el producto ID: " + productoId, Level.INFO);
         } else {
-            escribirLog("Producto no encontrado para actualizar comentario.", Level.WARNING);
+            escribirLog("Comentario no encontrado para actualizar en el producto ID: " + productoId, Level.WARNING);
         }
     }
 
-    public int contarProductosPorRangoFecha(String fechaInicio, String fechaFin) {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"); // Ajusta el patrón según tu
-                                                                                       // formato
-        LocalDateTime inicio = LocalDateTime.parse(fechaInicio, formatter);
-        LocalDateTime fin = LocalDateTime.parse(fechaFin, formatter);
-
-        List<Producto> listaProductos = leerProductosDesdeArchivo();
-        int contador = 0;
-
-        for (Producto producto : listaProductos) {
-            LocalDateTime fechaPublicacion = producto.getFechaPublicacion();
-            if ((fechaPublicacion.isEqual(inicio) || fechaPublicacion.isAfter(inicio)) &&
-                    (fechaPublicacion.isEqual(fin) || fechaPublicacion.isBefore(fin))) {
-                contador++;
+    // Consulta previa sobre el producto publicado, para no publicar una versión sin cambios
+    private boolean tieneComentario(String productoId, String comentarioId) {
+        Producto producto = buscarProductoPorId(productoId);
+        if (producto == null || producto.getComentarios() == null) {
+            return false;
+        }
+        for (Comentario comentario : producto.getComentarios()) {
+            if (comentario.getId().equals(comentarioId)) {
+                return true;
             }
         }
+        return false;
+    }
 
-        escribirLog("Cantidad de productos publicados entre " + fechaInicio + " y " + fechaFin + ": " + contador,
-                Level.INFO);
+    // Rango de fechas "yyyy-MM-dd HH:mm", ambos extremos incluidos; se resuelve con IndiceFechas
+    public int contarProductosPorRangoFecha(String fechaInicio, String fechaFin) {
+        int contador = repositorio().contarProductosPorFecha(parsearFechaRango(fechaInicio),
+                parsearFechaRango(fechaFin));
+        escribirLog(() -> "Cantidad de productos publicados entre " + fechaInicio + " y " + fechaFin + ": "
+                + contador, Level.INFO);
         return contador;
     }
 
+    public Map<Categoria, Integer> contarProductosPorRangoFechaYCategoria(String fechaInicio, String fechaFin) {
+        return repositorio().contarProductosPorFechaYCategoria(parsearFechaRango(fechaInicio),
+                parsearFechaRango(fechaFin));
+    }
+
+    // Productos del rango, del más antiguo al más reciente; categoria null = todas
+    public List<Producto> listarProductosPorRangoFecha(String fechaInicio, String fechaFin, Categoria categoria) {
+        LocalDateTime inicio = parsearFechaRango(fechaInicio);
+        LocalDateTime fin = parsearFechaRango(fechaFin);
+        return categoria == null ? repositorio().listarProductosPorFecha(inicio, fin)
+                : repositorio().listarProductosPorFecha(categoria, inicio, fin);
+    }
+
+    private static LocalDateTime parsearFechaRango(String fecha) {
+        return LocalDateTime.parse(fecha, FORMATO_RANGO_FECHA);
+    }
+
     public int contarProductosPorVendedor(String idVendedor) {
-        List<Vendedor> listaVendedores = leerVendedoresDesdeArchivo();
-
-        for (Vendedor vendedor : listaVendedores) {
-            if (vendedor.getId().equals(idVendedor)) {
-                int cantidadProductos = vendedor.getPublicaciones().size();
-                escribirLog(
-                        "Cantidad de productos publicados por el vendedor ID " + idVendedor + ": " + cantidadProductos,
-                        Level.INFO);
-                return cantidadProductos;
-            }
+        Vendedor vendedor = buscarVendedorPorId(idVendedor);
+
+        if (vendedor != null) {
+            int cantidadProductos = repositorio().contarProductosPorVendedor(idVendedor);
+            escribirLog(
+                    () -> "Cantidad de productos publicados por el vendedor ID " + idVendedor + ": " + cantidadProductos,
+                    Level.INFO);
+            return cantidadProductos;
         }
 
-        escribirLog("Vendedor no encontrado con ID: " + idVendedor, Level.WARNING);
+        escribirLog(() -> "Vendedor no encontrado con ID: " + idVendedor, Level.WARNING);
         return 0;
     }
 
+    // Agregados del catálogo por categoría, estado, vendedor y día, calculados en paralelo sobre
+    // las columnas; fechas "yyyy-MM-dd HH:mm" o null para no limitar ese extremo
+    public MotorEstadisticas.Resultado obtenerEstadisticas(String fechaInicio, String fechaFin) {
+        MotorEstadisticas.Resultado resultado = repositorio().calcularEstadisticas(
+                fechaInicio == null ? null : parsearFechaRango(fechaInicio),
+                fechaFin == null ? null : parsearFechaRango(fechaFin));
+        escribirLog(() -> "Estadísticas calculadas entre " + fechaInicio + " y " + fechaFin + ": "
+                + resultado.getTotal().getCantidad() + " productos", Level.INFO);
+        return resultado;
+    }
+
     public int contarContactosPorVendedor(String idVendedor) {
         Vendedor vendedor = buscarVendedorPorId(idVendedor);
 
         if (vendedor != null) {
             int cantidadContactos = vendedor.getRedDeContactos().size();
-            escribirLog("Cantidad de contactos para el vendedor ID " + idVendedor + ": " + cantidadContactos,
+            escribirLog(() -> "Cantidad de contactos para el vendedor ID " + idVendedor + ": " + cantidadContactos,
                     Level.INFO);
             return cantidadContactos;
         } else {
-            escribirLog("Vendedor no encontrado con ID: " + idVendedor, Level.WARNING);
+            escribirLog(() -> "Vendedor no encontrado con ID: " + idVendedor, Level.WARNING);
             return 0;
         }
     }
 
     public List<Producto> obtenerTop10ProductosPopulares() {
-        List<Producto> listaProductos = leerProductosDesdeArchivo();
-
-        // Ordenar productos por la cantidad de "me gusta"
-        listaProductos.sort((p1, p2) -> Integer.compare(p2.getMeGustas(), p1.getMeGustas()));
-
-        // Obtener los 10 primeros productos
-        List<Producto> top10 = listaProductos.stream().limit(10).collect(Collectors.toList());
-
+        List<Producto> top10 = obtenerProductosPopulares(null, 10);
         escribirLog("Top 10 productos más populares obtenidos.", Level.INFO);
         return top10;
     }
 
+    // Ranking en vivo de IndicePopulares; categoria null = todas las categorías
+    public List<Producto> obtenerProductosPopulares(Categoria categoria, int cantidad) {
+        return repositorio().obtenerPopulares(categoria, cantidad);
+    }
+
 
     public void exportarEstadisticas(String ruta, String nombreUsuario, String fechaInicio, String fechaFin, String idVendedor) {
         // Formatear la fecha actual
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy");
         String fechaActual = LocalDateTime.now().format(formatter);
     
-        // Obtener información para el reporte
-        int cantidadProductosPublicados = contarProductosPorRangoFecha(fechaInicio, fechaFin);
-        int cantidadProductosPorVendedor = contarProductosPorVendedor(idVendedor);
+        // Obtener información para el reporte; las cifras de productos salen de una sola pasada
+        // por las columnas del catálogo
+        ColumnasProductos.Estadisticas estadisticas = repositorio().estadisticasProductos(
+                parsearFechaRango(fechaInicio), parsearFechaRango(fechaFin), idVendedor);
+        int cantidadProductosPublicados = estadisticas.getEnRango();
+        int cantidadProductosPorVendedor = estadisticas.getDelVendedor();
         int cantidadContactos = contarContactosPorVendedor(idVendedor);
         List<Producto> top10Productos = obtenerTop10ProductosPopulares();
     
@@ -746,6 +1304,17 @@ public class Utilidades {
         reporte.append("Cantidad de productos publicados entre ").append(fechaInicio.formatted(formatter)).append(" y ").append(fechaFin.formatted(formatter)).append(": ").append(cantidadProductosPublicados).append("\n");
         reporte.append("Cantidad de productos publicados por el vendedor ID ").append(idVendedor).append(": ").append(cantidadProductosPorVendedor).append("\n");
         reporte.append("Cantidad de contactos para el vendedor ID ").append(idVendedor).append(": ").append(cantidadContactos).append("\n");
+        reporte.append("Productos publicados en el rango por categoría:\n");
+        for (Categoria categoria : Categoria.values()) {
+            if (estadisticas.getCantidad(categoria) > 0) {
+                reporte.append("- ").append(categoria).append(": ").append(estadisticas.getCantidad(categoria))
+                        .append(" productos, precio promedio ")
+                        .append(String.format("%.2f", estadisticas.getPrecioPromedio(categoria)))
+                        .append(" (mín. ").append(estadisticas.getPrecioMinimo(categoria))
+                        .append(", máx. ").append(estadisticas.getPrecioMaximo(categoria)).append("), ")
+                        .append(estadisticas.getMeGustas(categoria)).append(" me gusta(s)\n");
+            }
+        }
         reporte.append("Top 10 productos con más 'me gusta':\n");
     
         for (Producto producto : top10Productos) {
@@ -781,27 +1350,55 @@ public class Utilidades {
         escribirLog(mensaje, Level.SEVERE);
     }
 
+    public void logSevere(Supplier<String> mensaje) {
+        escribirLog(mensaje, Level.SEVERE);
+    }
+
     public void logWarning(String mensaje) {
         escribirLog(mensaje, Level.WARNING);
     }
 
+    public void logWarning(Supplier<String> mensaje) {
+        escribirLog(mensaje, Level.WARNING);
+    }
+
     public void logInfo(String mensaje) {
         escribirLog(mensaje, Level.INFO);
     }
 
+    public void logInfo(Supplier<String> mensaje) {
+        escribirLog(mensaje, Level.INFO);
+    }
+
     public void logConfig(String mensaje) {
         escribirLog(mensaje, Level.CONFIG);
     }
 
+    public void logConfig(Supplier<String> mensaje) {
+        escribirLog(mensaje, Level.CONFIG);
+    }
+
     public void logFine(String mensaje) {
         escribirLog(mensaje, Level.FINE);
     }
 
+    public void logFine(Supplier<String> mensaje) {
+        escribirLog(mensaje, Level.FINE);
+    }
+
     public void logFiner(String mensaje) {
         escribirLog(mensaje, Level.FINER);
     }
 
+    public void logFiner(Supplier<String> mensaje) {
+        escribirLog(mensaje, Level.FINER);
+    }
+
     public void logFinest(String mensaje) {
         escribirLog(mensaje, Level.FINEST);
     }
+
+    public void logFinest(Supplier<String> mensaje) {
+        escribirLog(mensaje, Level.FINEST);
+    }
 }
@@ -4,6 +4,7 @@ module com.marketplace {
     requires java.desktop;
     requires java.logging;
     requires javafx.graphics;
+    requires java.xml;
     requires java.xml.bind;
 
     opens com.marketplace to javafx.fxml;
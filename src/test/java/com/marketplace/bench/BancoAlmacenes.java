@@ -0,0 +1,364 @@
+package com.marketplace.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import com.marketplace.model.Categoria;
+import com.marketplace.model.Estado;
+import com.marketplace.model.EstadoSolicitud;
+import com.marketplace.model.Producto;
+import com.marketplace.model.Solicitud;
+import com.marketplace.model.Vendedor;
+import com.marketplace.util.AlmacenBinario;
+import com.marketplace.util.AlmacenMapeado;
+import com.marketplace.util.AlmacenMarketplace;
+import com.marketplace.util.AlmacenMemoria;
+import com.marketplace.util.AlmacenPaginado;
+import com.marketplace.util.AlmacenTexto;
+import com.marketplace.util.CargadorDatos;
+import com.marketplace.util.DiarioMutaciones;
+
+// Banco de conformidad y rendimiento de los motores de AlmacenMarketplace: cada motor recibe la
+// misma carga de trabajo (altas, punto de control, modificaciones y bajas sobre el diario), se
+// reabre y lo que carga se compara con el modelo. Los datos usan solo lo que todos los formatos
+// conservan: sin comentarios, sin nulos y con fechas en segundos enteros. La conformidad también
+// corre en el build, con una carga chica, desde BancoAlmacenesTest.
+//
+//     java -cp ... com.marketplace.bench.BancoAlmacenes [productos] [fsync]
+public final class BancoAlmacenes {
+
+    private interface Fabrica {
+        AlmacenMarketplace abrir(Path directorio, boolean fsync);
+    }
+
+    static final String[] MOTORES = { "texto", "binario", "paginado", "mapeado", "memoria" };
+
+    // Modelo de referencia: lo que el motor debería devolver al recargar
+    private final Map<String, Producto> productos = new LinkedHashMap<>();
+    private final Map<String, Vendedor> vendedores = new LinkedHashMap<>();
+    private final Map<String, Solicitud> solicitudes = new LinkedHashMap<>();
+    private final Map<String, Vendedor> propietarios = new HashMap<>();
+    private final long[] latencias;
+    private int registradas;
+
+    private BancoAlmacenes(int operaciones) {
+        this.latencias = new long[operaciones];
+    }
+
+    public static void main(String[] args) throws IOException {
+        int cantidad = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        boolean fsync = args.length > 1 && Boolean.parseBoolean(args[1]);
+        System.out.printf("%-9s %10s %9s %9s %10s %10s %10s %9s  %s%n", "motor", "altas/s", "p50 us", "p99 us",
+                "control ms", "cambios/s", "carga ms", "disco KB", "conformidad");
+        for (String motor : MOTORES) {
+            verificar(motor, cantidad, fsync);
+        }
+    }
+
+    // Corre la carga de trabajo sobre el motor en un directorio temporal; devuelve "OK" o la primera
+    // diferencia con el modelo
+    static String verificar(String motor, int cantidad, boolean fsync) throws IOException {
+        Path directorio = Files.createTempDirectory("banco-" + motor);
+        try {
+            return new BancoAlmacenes(2 * cantidad).ejecutar(motor, fabrica(motor), directorio, cantidad, fsync);
+        } finally {
+            borrar(directorio);
+        }
+    }
+
+    private static Fabrica fabrica(String motor) {
+        switch (motor) {
+            case "texto":
+                return (directorio, fsync) -> new AlmacenTexto(directorio.resolve("Vendedores.txt").toString(),
+                        directorio.resolve("Productos.txt").toString(), directorio.resolve("Solicitudes.txt").toString(),
+                        new DiarioMutaciones(directorio.resolve("Diario.txt").toString(), fsync, 0), fsync);
+            case "binario":
+                return (directorio, fsync) -> new AlmacenBinario(directorio.resolve("Marketplace.bin").toString(),
+                        new DiarioMutaciones(directorio.resolve("Marketplace.bin.diario").toString(), fsync, 0), fsync);
+            case "paginado":
+                return (directorio, fsync) -> new AlmacenPaginado(directorio.resolve("Marketplace").toString(), 1024,
+                        new DiarioMutaciones(directorio.resolve("Marketplace.diario").toString(), fsync, 0), fsync);
+            case "mapeado":
+                return (directorio, fsync) -> new AlmacenMapeado(directorio.resolve("Mapeado").toString(),
+                        new DiarioMutaciones(directorio.resolve("Mapeado.diario").toString(), fsync, 0), fsync);
+            default:
+                return (directorio, fsync) -> new AlmacenMemoria();
+        }
+    }
+
+    private String ejecutar(String motor, Fabrica fabrica, Path directorio, int cantidad, boolean fsync)
+            throws IOException {
+        Random azar = new Random(42);
+        List<Producto> nuevos = generarProductos(azar, cantidad);
+        List<Vendedor> nuevosVendedores = generarVendedores(azar, nuevos, Math.max(1, cantidad / 20));
+        List<Solicitud> nuevasSolicitudes = generarSolicitudes(azar, nuevosVendedores, Math.max(1, cantidad / 10));
+        for (Vendedor vendedor : nuevosVendedores) {
+            for (Producto producto : vendedor.getPublicaciones()) {
+                propietarios.put(producto.getId(), vendedor);
+            }
+        }
+
+        double altas;
+        double control;
+        double cambios;
+        try (AlmacenMarketplace almacen = fabrica.abrir(directorio, fsync)) {
+            long inicio = System.nanoTime();
+            for (Producto producto : nuevos) {
+                registrar(almacen, DiarioMutaciones.Tipo.PONER_PRODUCTO, producto,
+                        () -> productos.put(producto.getId(), producto));
+            }
+            for (Vendedor vendedor : nuevosVendedores) {
+                registrar(almacen, DiarioMutaciones.Tipo.PONER_VENDEDOR, vendedor,
+                        () -> vendedores.put(vendedor.getId(), vendedor));
+            }
+            for (Solicitud solicitud : nuevasSolicitudes) {
+                registrar(almacen, DiarioMutaciones.Tipo.PONER_SOLICITUD, solicitud,
+                        () -> solicitudes.put(solicitud.getId(), solicitud));
+            }
+            altas = registradas / ((System.nanoTime() - inicio) / 1e9);
+
+            inicio = System.nanoTime();
+            almacen.puntoDeControl(new ArrayList<>(vendedores.values()), new ArrayList<>(productos.values()),
+                    new ArrayList<>(solicitudes.values()));
+            control = (System.nanoTime() - inicio) / 1e6;
+
+            // Cambios después del punto de control: al recargar salen del diario
+            int antes = registradas;
+            inicio = System.nanoTime();
+            modificar(almacen, azar, cantidad / 10);
+            cambios = (registradas - antes) / ((System.nanoTime() - inicio) / 1e9);
+        }
+
+        long inicio = System.nanoTime();
+        CargadorDatos cargado;
+        try (AlmacenMarketplace almacen = fabrica.abrir(directorio, fsync)) {
+            cargado = almacen.cargar();
+        }
+        double carga = (System.nanoTime() - inicio) / 1e6;
+        String conformidad = motor.equals("memoria") ? (cargado.getProductos().isEmpty() ? "OK (no persiste)" : "FALLA")
+                : comparar(cargado);
+        if (conformidad.equals("OK")) {
+            // Un segundo punto de control sobre lo recargado (el motor mapeado solo reescribe lo que
+            // cambió desde el anterior) tampoco debe perder nada
+            try (AlmacenMarketplace almacen = fabrica.abrir(directorio, fsync)) {
+                CargadorDatos recargado = almacen.cargar();
+                almacen.puntoDeControl(recargado.getVendedores(), recargado.getProductos(),
+                        recargado.getSolicitudes());
+            }
+            try (AlmacenMarketplace almacen = fabrica.abrir(directorio, fsync)) {
+                conformidad = comparar(almacen.cargar());
+            }
+            if (!conformidad.equals("OK")) {
+                conformidad += " (tras el segundo punto de control)";
+            }
+        }
+        long[] medidas = Arrays.copyOf(latencias, Math.min(registradas, latencias.length));
+        Arrays.sort(medidas);
+        System.out.printf("%-9s %10.0f %9.1f %9.1f %10.0f %10.0f %10.0f %9d  %s%n", motor, altas,
+                percentil(medidas, 0.50) / 1e3, percentil(medidas, 0.99) / 1e3, control, cambios, carga,
+                tamano(directorio) >> 10, conformidad);
+        return conformidad;
+    }
+
+    private void modificar(AlmacenMarketplace almacen, Random azar, int cantidad) throws IOException {
+        List<String> idsProductos = new ArrayList<>(productos.keySet());
+        List<String> idsSolicitudes = new ArrayList<>(solicitudes.keySet());
+        for (int i = 0; i < cantidad; i++) {
+            Producto producto = productos.get(idsProductos.get(azar.nextInt(idsProductos.size())));
+            if (producto == null) {
+                continue;
+            }
+            switch (i % 4) {
+                case 0:
+                case 1:
+                    Producto copia = new Producto(producto);
+                    copia.setPrecio(azar.nextInt(1_000_000));
+                    copia.setMeGustas(producto.getMeGustas() + 1);
+                    registrar(almacen, DiarioMutaciones.Tipo.PONER_PRODUCTO, copia,
+                            () -> productos.put(copia.getId(), copia));
+                    break;
+                case 2:
+                    Solicitud solicitud = solicitudes.get(idsSolicitudes.get(azar.nextInt(idsSolicitudes.size())));
+                    if (solicitud != null) {
+                        registrar(almacen, DiarioMutaciones.Tipo.ESTADO_SOLICITUD, solicitud,
+                                () -> solicitud.setEstado(EstadoSolicitud.values()[azar.nextInt(EstadoSolicitud.values().length)]));
+                    }
+                    break;
+                default:
+                    String id = producto.getId();
+                    registrar(almacen, DiarioMutaciones.Tipo.ELIMINAR_PRODUCTO, id, () -> productos.remove(id));
+                    // La publicación también desaparece del vendedor, como en Utilidades.eliminarProducto
+                    Vendedor propietario = propietarios.remove(id);
+                    registrar(almacen, DiarioMutaciones.Tipo.PONER_VENDEDOR, propietario,
+                            () -> propietario.getPublicaciones().removeIf(p -> p.getId().equals(id)));
+                    break;
+            }
+        }
+    }
+
+    private void registrar(AlmacenMarketplace almacen, DiarioMutaciones.Tipo tipo, Object entidad, Runnable aplicar)
+            throws IOException {
+        long inicio = System.nanoTime();
+        almacen.registrar(tipo, entidad, () -> {
+            aplicar.run();
+            return true;
+        });
+        if (registradas < latencias.length) {
+            latencias[registradas] = System.nanoTime() - inicio;
+        }
+        registradas++;
+    }
+
+    // Primera diferencia con el modelo, u "OK"
+    private String comparar(CargadorDatos cargado) {
+        Map<String, Producto> leidos = new LinkedHashMap<>();
+        for (Producto producto : cargado.getProductos()) {
+            leidos.put(producto.getId(), producto);
+        }
+        if (leidos.size() != productos.size()) {
+            return "FALLA: " + leidos.size() + " productos, se esperaban " + productos.size();
+        }
+        for (Producto esperado : productos.values()) {
+            Producto leido = leidos.get(esperado.getId());
+            if (leido == null || !Objects.equals(esperado.getNombre(), leido.getNombre())
+                    || !Objects.equals(esperado.getDescripcion(), leido.getDescripcion())
+                    || !Objects.equals(esperado.getFechaPublicacion(), leido.getFechaPublicacion())
+                    || !Objects.equals(esperado.getImagenRuta(), leido.getImagenRuta())
+                    || esperado.getPrecio() != leido.getPrecio() || esperado.getMeGustas() != leido.getMeGustas()
+                    || esperado.getEstado() != leido.getEstado() || esperado.getCategoria() != leido.getCategoria()) {
+                return "FALLA: producto " + esperado.getId();
+            }
+        }
+        Map<String, Vendedor> leidosVendedores = new LinkedHashMap<>();
+        for (Vendedor vendedor : cargado.getVendedores()) {
+            leidosVendedores.put(vendedor.getId(), vendedor);
+        }
+        if (leidosVendedores.size() != vendedores.size()) {
+            return "FALLA: " + leidosVendedores.size() + " vendedores, se esperaban " + vendedores.size();
+        }
+        for (Vendedor esperado : vendedores.values()) {
+            Vendedor leido = leidosVendedores.get(esperado.getId());
+            if (leido == null || !Objects.equals(esperado.getNombre(), leido.getNombre())
+                    || !Objects.equals(esperado.getContraseña(), leido.getContraseña())
+                    || !ids(esperado.getPublicaciones()).equals(ids(leido.getPublicaciones()))
+                    || !idsVendedores(esperado.getRedDeContactos()).equals(idsVendedores(leido.getRedDeContactos()))) {
+                return "FALLA: vendedor " + esperado.getId();
+            }
+        }
+        List<Solicitud> leidas = cargado.getSolicitudes();
+        if (leidas.size() != solicitudes.size()) {
+            return "FALLA: " + leidas.size() + " solicitudes, se esperaban " + solicitudes.size();
+        }
+        for (Solicitud leida : leidas) {
+            Solicitud esperada = solicitudes.get(leida.getId());
+            if (esperada == null || esperada.getEstado() != leida.getEstado()
+                    || !esperada.getEmisor().getId().equals(leida.getEmisor().getId())
+                    || !esperada.getReceptor().getId().equals(leida.getReceptor().getId())) {
+                return "FALLA: solicitud " + leida.getId();
+            }
+        }
+        return "OK";
+    }
+
+    private static List<String> ids(List<Producto> lista) {
+        List<String> ids = new ArrayList<>();
+        for (Producto producto : lista) {
+            ids.add(producto.getId());
+        }
+        return ids;
+    }
+
+    private static List<String> idsVendedores(List<Vendedor> lista) {
+        List<String> ids = new ArrayList<>();
+        for (Vendedor vendedor : lista) {
+            ids.add(vendedor.getId());
+        }
+        return ids;
+    }
+
+    private static List<Producto> generarProductos(Random azar, int cantidad) {
+        Categoria[] categorias = Categoria.values();
+        Estado[] estados = Estado.values();
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        List<Producto> lista = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            Producto producto = new Producto();
+            producto.setId("p" + i);
+            producto.setNombre("Producto " + i);
+            producto.setDescripcion("Descripción del producto " + i);
+            producto.setFechaPublicacion(base.plusSeconds(azar.nextInt(30_000_000)));
+            producto.setImagenRuta("img/" + i + ".png");
+            producto.setPrecio(azar.nextInt(1_000_000));
+            producto.setMeGustas(azar.nextInt(100));
+            producto.setEstado(estados[azar.nextInt(estados.length)]);
+            producto.setCategoria(categorias[azar.nextInt(categorias.length)]);
+            producto.setComentarios(new ArrayList<>());
+            lista.add(producto);
+        }
+        return lista;
+    }
+
+    // Reparte los productos entre los vendedores, con algunos contactos cada uno
+    private static List<Vendedor> generarVendedores(Random azar, List<Producto> productos, int cantidad) {
+        List<Vendedor> lista = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            lista.add(new Vendedor("v" + i, "Nombre" + i, "Apellido" + i, "C" + i, "Calle " + i, "clave" + i,
+                    new ArrayList<>(), new ArrayList<>()));
+        }
+        for (int i = 0; i < productos.size(); i++) {
+            lista.get(i % cantidad).getPublicaciones().add(productos.get(i));
+        }
+        for (Vendedor vendedor : lista) {
+            for (int k = 0; k < 3; k++) {
+                Vendedor contacto = lista.get(azar.nextInt(cantidad));
+                if (contacto != vendedor && !vendedor.getRedDeContactos().contains(contacto)) {
+                    vendedor.getRedDeContactos().add(contacto);
+                }
+            }
+        }
+        return lista;
+    }
+
+    private static List<Solicitud> generarSolicitudes(Random azar, List<Vendedor> vendedores, int cantidad) {
+        List<Solicitud> lista = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            lista.add(new Solicitud("s" + i, vendedores.get(azar.nextInt(vendedores.size())),
+                    vendedores.get(azar.nextInt(vendedores.size())), EstadoSolicitud.values()[0]));
+        }
+        return lista;
+    }
+
+    private static long percentil(long[] ordenados, double fraccion) {
+        return ordenados.length == 0 ? 0 : ordenados[(int) Math.min(ordenados.length - 1, fraccion * ordenados.length)];
+    }
+
+    private static long tamano(Path directorio) throws IOException {
+        long total = 0;
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            for (Path archivo : (Iterable<Path>) archivos::iterator) {
+                total += Files.size(archivo);
+            }
+        }
+        return total;
+    }
+
+    private static void borrar(Path directorio) throws IOException {
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            for (Path archivo : (Iterable<Path>) archivos::iterator) {
+                Files.delete(archivo);
+            }
+        }
+        Files.delete(directorio);
+    }
+}
@@ -0,0 +1,25 @@
+package com.marketplace.bench;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+// Conformidad de cada motor de BancoAlmacenes con una carga chica: altas, punto de control,
+// cambios sobre el diario y recarga comparada con el modelo
+class BancoAlmacenesTest {
+
+    static Stream<String> motores() {
+        return Stream.of(BancoAlmacenes.MOTORES);
+    }
+
+    @ParameterizedTest
+    @MethodSource("motores")
+    void recargaLoMismoQueElModelo(String motor) throws IOException {
+        String conformidad = BancoAlmacenes.verificar(motor, 2_000, false);
+        assertTrue(conformidad.startsWith("OK"), motor + ": " + conformidad);
+    }
+}
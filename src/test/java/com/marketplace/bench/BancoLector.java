@@ -0,0 +1,321 @@
+package com.marketplace.bench;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import com.marketplace.model.Categoria;
+import com.marketplace.model.Estado;
+import com.marketplace.model.EstadoSolicitud;
+import com.marketplace.model.Producto;
+import com.marketplace.model.Solicitud;
+import com.marketplace.model.Vendedor;
+import com.marketplace.util.LectorRegistros;
+import com.marketplace.util.ReservaBuffers;
+
+// Banco de lectura de los archivos de registros '%': compara LectorRegistros con el lector
+// anterior (BufferedReader.readLine + String.split, reproducido aquí tal como estaba en
+// CargadorDatos). Genera los tres archivos en un directorio temporal, los lee con los dos caminos
+// alternando el orden y con un GC antes de cada corrida, y mide tiempo y bytes reservados por
+// registro. Al final comprueba que los dos caminos construyan los mismos objetos. Se corre a mano:
+// JMH no está entre las dependencias del build.
+//
+//     java -cp ... com.marketplace.bench.BancoLector [productos] [repeticiones]
+public final class BancoLector {
+
+    private interface Lectura {
+        Carga leer(Path directorio) throws IOException;
+    }
+
+    // Lo leído, con las relaciones como IDs igual que en la primera fase de CargadorDatos
+    private static final class Carga {
+        private final List<Producto> productos = new ArrayList<>();
+        private final List<Vendedor> vendedores = new ArrayList<>();
+        private final List<String[]> publicaciones = new ArrayList<>();
+        private final List<String[]> contactos = new ArrayList<>();
+        private final List<Solicitud> solicitudes = new ArrayList<>();
+        private final List<String[]> extremos = new ArrayList<>();
+        private int invalidas;
+
+        private int registros() {
+            return productos.size() + vendedores.size() + solicitudes.size();
+        }
+    }
+
+    private static final Estado[] ESTADOS = Estado.values();
+    private static final Categoria[] CATEGORIAS = Categoria.values();
+    private static final EstadoSolicitud[] ESTADOS_SOLICITUD = EstadoSolicitud.values();
+    private static final ReservaBuffers RESERVA = new ReservaBuffers(1 << 16, 4);
+
+    public static void main(String[] args) throws IOException {
+        int cantidad = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int repeticiones = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Path directorio = Files.createTempDirectory("banco-lector");
+        try {
+            generar(directorio, cantidad);
+            String[] nombres = { "readLine + split", "LectorRegistros" };
+            Lectura[] lecturas = { BancoLector::leerConSplit, BancoLector::leerConLector };
+            long[][] tiempos = new long[2][repeticiones];
+            long[][] reservados = new long[2][repeticiones];
+            Carga[] cargas = new Carga[2];
+            for (int r = 0; r < repeticiones; r++) {
+                for (int k = 0; k < 2; k++) {
+                    int camino = (r + k) % 2; // Alterna cuál corre primero
+                    System.gc();
+                    long bytes = reservadosPorHilo();
+                    long inicio = System.nanoTime();
+                    cargas[camino] = lecturas[camino].leer(directorio);
+                    tiempos[camino][r] = System.nanoTime() - inicio;
+                    reservados[camino][r] = reservadosPorHilo() - bytes;
+                }
+            }
+            int registros = cargas[0].registros();
+            System.out.printf("%d productos, %d vendedores, %d solicitudes; %d repeticiones%n",
+                    cargas[0].productos.size(), cargas[0].vendedores.size(), cargas[0].solicitudes.size(), repeticiones);
+            System.out.printf("%-18s %10s %10s %14s%n", "camino", "mejor ms", "mediana ms", "bytes/registro");
+            for (int camino = 0; camino < 2; camino++) {
+                Arrays.sort(tiempos[camino]);
+                Arrays.sort(reservados[camino]);
+                long mediana = reservados[camino][repeticiones / 2];
+                System.out.printf("%-18s %10.0f %10.0f %14s%n", nombres[camino], tiempos[camino][0] / 1e6,
+                        tiempos[camino][repeticiones / 2] / 1e6, mediana < 0 ? "n/d" : mediana / registros);
+            }
+            System.out.println("conformidad: " + comparar(cargas[0], cargas[1]));
+        } finally {
+            borrar(directorio);
+        }
+    }
+
+    // Lector anterior: una String por línea y otra por campo
+    private static Carga leerConSplit(Path directorio) throws IOException {
+        Carga carga = new Carga();
+        try (BufferedReader lector = Files.newBufferedReader(directorio.resolve("Productos.txt"))) {
+            String linea;
+            while ((linea = lector.readLine()) != null) {
+                if (linea.isEmpty()) {
+                    continue;
+                }
+                String[] datos = linea.split("%");
+                try {
+                    Producto producto = new Producto(datos[0], datos[1], datos[2], datos[3], datos[4],
+                            Integer.parseInt(datos[5]), Integer.parseInt(datos[6]), Estado.valueOf(datos[7]),
+                            Categoria.valueOf(datos[8]));
+                    carga.productos.add(producto);
+                } catch (RuntimeException e) {
+                    carga.invalidas++;
+                }
+            }
+        }
+        try (BufferedReader lector = Files.newBufferedReader(directorio.resolve("Vendedores.txt"))) {
+            String linea;
+            while ((linea = lector.readLine()) != null) {
+                if (linea.isEmpty()) {
+                    continue;
+                }
+                String[] datos = linea.split("%");
+                if (datos.length < 6) {
+                    carga.invalidas++;
+                    continue;
+                }
+                carga.vendedores.add(new Vendedor(datos[0], datos[1], datos[2], datos[3], datos[4], datos[5],
+                        new ArrayList<>(), new ArrayList<>()));
+                carga.publicaciones.add(datos.length > 6 ? datos[6].split(",") : new String[0]);
+                carga.contactos.add(datos.length > 7 ? datos[7].split(",") : new String[0]);
+            }
+        }
+        try (BufferedReader lector = Files.newBufferedReader(directorio.resolve("Solicitudes.txt"))) {
+            String linea;
+            while ((linea = lector.readLine()) != null) {
+                if (linea.isEmpty()) {
+                    continue;
+                }
+                String[] datos = linea.split("%");
+                if (datos.length < 4) {
+                    carga.invalidas++;
+                    continue;
+                }
+                try {
+                    carga.solicitudes.add(new Solicitud(datos[0], null, null, EstadoSolicitud.valueOf(datos[3])));
+                    carga.extremos.add(new String[] { datos[1], datos[2] });
+                } catch (IllegalArgumentException e) {
+                    carga.invalidas++;
+                }
+            }
+        }
+        return carga;
+    }
+
+    // Lector actual, con los mismos pasos que CargadorDatos
+    private static Carga leerConLector(Path directorio) throws IOException {
+        Carga carga = new Carga();
+        try (LectorRegistros registro = new LectorRegistros(directorio.resolve("Productos.txt").toString(), RESERVA)) {
+            while (registro.siguiente()) {
+                if (registro.vacia()) {
+                    continue;
+                }
+                try {
+                    Producto producto = new Producto();
+                    producto.setId(registro.texto(0));
+                    producto.setNombre(registro.texto(1));
+                    producto.setDescripcion(registro.texto(2));
+                    producto.setFechaPublicacion(registro.fecha(3));
+                    producto.setImagenRuta(registro.texto(4));
+                    producto.setPrecio(registro.entero(5));
+                    producto.setMeGustas(registro.entero(6));
+                    producto.setEstado(registro.enumerado(7, ESTADOS));
+                    producto.setCategoria(registro.enumerado(8, CATEGORIAS));
+                    producto.setComentarios(new ArrayList<>());
+                    carga.productos.add(producto);
+                } catch (RuntimeException e) {
+                    carga.invalidas++;
+                }
+            }
+        }
+        try (LectorRegistros registro = new LectorRegistros(directorio.resolve("Vendedores.txt").toString(), RESERVA)) {
+            while (registro.siguiente()) {
+                if (registro.vacia()) {
+                    continue;
+                }
+                if (registro.campos() < 6) {
+                    carga.invalidas++;
+                    continue;
+                }
+                carga.vendedores.add(new Vendedor(registro.texto(0), registro.texto(1), registro.texto(2),
+                        registro.texto(3), registro.texto(4), registro.texto(5), new ArrayList<>(), new ArrayList<>()));
+                carga.publicaciones.add(registro.lista(6));
+                carga.contactos.add(registro.lista(7));
+            }
+        }
+        try (LectorRegistros registro = new LectorRegistros(directorio.resolve("Solicitudes.txt").toString(), RESERVA)) {
+            while (registro.siguiente()) {
+                if (registro.vacia()) {
+                    continue;
+                }
+                if (registro.campos() < 4) {
+                    carga.invalidas++;
+                    continue;
+                }
+                try {
+                    carga.solicitudes.add(new Solicitud(registro.texto(0), null, null,
+                            registro.enumerado(3, ESTADOS_SOLICITUD)));
+                    carga.extremos.add(new String[] { registro.texto(1), registro.texto(2) });
+                } catch (IllegalArgumentException e) {
+                    carga.invalidas++;
+                }
+            }
+        }
+        return carga;
+    }
+
+    // Primera diferencia entre los dos caminos, u "OK"
+    private static String comparar(Carga esperada, Carga leida) {
+        if (esperada.invalidas != leida.invalidas) {
+            return "FALLA: " + leida.invalidas + " líneas inválidas, se esperaban " + esperada.invalidas;
+        }
+        if (esperada.productos.size() != leida.productos.size() || esperada.vendedores.size() != leida.vendedores.size()
+                || esperada.solicitudes.size() != leida.solicitudes.size()) {
+            return "FALLA: cantidades distintas";
+        }
+        for (int i = 0; i < esperada.productos.size(); i++) {
+            Producto a = esperada.productos.get(i);
+            Producto b = leida.productos.get(i);
+            if (!Objects.equals(a.getId(), b.getId()) || !Objects.equals(a.getNombre(), b.getNombre())
+                    || !Objects.equals(a.getDescripcion(), b.getDescripcion())
+                    || !Objects.equals(a.getFechaPublicacion(), b.getFechaPublicacion())
+                    || !Objects.equals(a.getImagenRuta(), b.getImagenRuta()) || a.getPrecio() != b.getPrecio()
+                    || a.getMeGustas() != b.getMeGustas() || a.getEstado() != b.getEstado()
+                    || a.getCategoria() != b.getCategoria()) {
+                return "FALLA: producto " + a.getId();
+            }
+        }
+        for (int i = 0; i < esperada.vendedores.size(); i++) {
+            Vendedor a = esperada.vendedores.get(i);
+            Vendedor b = leida.vendedores.get(i);
+            if (!Objects.equals(a.getId(), b.getId()) || !Objects.equals(a.getNombre(), b.getNombre())
+                    || !Objects.equals(a.getApellido(), b.getApellido()) || !Objects.equals(a.getCedula(), b.getCedula())
+                    || !Objects.equals(a.getDireccion(), b.getDireccion())
+                    || !Objects.equals(a.getContraseña(), b.getContraseña())
+                    || !Arrays.equals(esperada.publicaciones.get(i), leida.publicaciones.get(i))
+                    || !Arrays.equals(esperada.contactos.get(i), leida.contactos.get(i))) {
+                return "FALLA: vendedor " + a.getId();
+            }
+        }
+        for (int i = 0; i < esperada.solicitudes.size(); i++) {
+            Solicitud a = esperada.solicitudes.get(i);
+            Solicitud b = leida.solicitudes.get(i);
+            if (!Objects.equals(a.getId(), b.getId()) || a.getEstado() != b.getEstado()
+                    || !Arrays.equals(esperada.extremos.get(i), leida.extremos.get(i))) {
+                return "FALLA: solicitud " + a.getId();
+            }
+        }
+        return "OK";
+    }
+
+    // Un vendedor cada diez productos y una solicitud por vendedor, con algunas líneas CRLF,
+    // líneas vacías y una línea inválida por archivo
+    private static void generar(Path directorio, int cantidad) throws IOException {
+        Random azar = new Random(42);
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        int vendedores = Math.max(1, cantidad / 10);
+        try (BufferedWriter salida = Files.newBufferedWriter(directorio.resolve("Productos.txt"))) {
+            for (int i = 0; i < cantidad; i++) {
+                salida.write("p" + i + "%Producto " + i + "%Descripción del producto número " + i + "%"
+                        + base.plusSeconds(azar.nextInt(30_000_000)) + "%img/" + i + ".png%"
+                        + azar.nextInt(1_000_000) + "%" + azar.nextInt(500) + "%"
+                        + ESTADOS[azar.nextInt(ESTADOS.length)] + "%" + CATEGORIAS[azar.nextInt(CATEGORIAS.length)]);
+                salida.write(i % 97 == 0 ? "\r\n" : "\n");
+            }
+            salida.write("p-roto%sin%campos\n\n");
+        }
+        try (BufferedWriter salida = Files.newBufferedWriter(directorio.resolve("Vendedores.txt"))) {
+            for (int i = 0; i < vendedores; i++) {
+                StringBuilder publicaciones = new StringBuilder();
+                for (int p = i; p < cantidad; p += vendedores) {
+                    publicaciones.append(publicaciones.length() == 0 ? "" : ",").append('p').append(p);
+                }
+                salida.write("v" + i + "%Nombre" + i + "%Apellido%C" + i + "%Calle " + i + "%clave" + i + "%"
+                        + publicaciones + "%v" + azar.nextInt(vendedores) + ",v" + azar.nextInt(vendedores) + "%\n");
+            }
+            salida.write("v-roto%incompleto\n");
+        }
+        try (BufferedWriter salida = Files.newBufferedWriter(directorio.resolve("Solicitudes.txt"))) {
+            for (int i = 0; i < vendedores; i++) {
+                salida.write("s" + i + "%v" + i + "%v" + azar.nextInt(vendedores) + "%"
+                        + ESTADOS_SOLICITUD[azar.nextInt(ESTADOS_SOLICITUD.length)] + "\n");
+            }
+            salida.write("s-roto%v0%v1%DESCONOCIDO\n");
+        }
+    }
+
+    // Bytes reservados por este hilo desde que arrancó. Por reflexión, porque com.sun.management
+    // está en jdk.management y el módulo del marketplace no lo requiere; -1 si no está disponible
+    private static long reservadosPorHilo() {
+        try {
+            Method medir = Class.forName("com.sun.management.ThreadMXBean").getMethod("getThreadAllocatedBytes",
+                    long.class);
+            return (long) medir.invoke(ManagementFactory.getThreadMXBean(), Thread.currentThread().getId());
+        } catch (ReflectiveOperationException e) {
+            return -1;
+        }
+    }
+
+    private static void borrar(Path directorio) throws IOException {
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            for (Path archivo : (Iterable<Path>) archivos::iterator) {
+                Files.delete(archivo);
+            }
+        }
+        Files.delete(directorio);
+    }
+}
@@ -0,0 +1,126 @@
+package com.marketplace.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.marketplace.model.Categoria;
+import com.marketplace.model.Estado;
+import com.marketplace.model.Producto;
+import com.marketplace.util.MeGustas;
+import com.marketplace.util.Repositorio;
+
+// Banco de "me gusta" sobre un único producto popular: todos los hilos le dan "me gusta" a la vez.
+// Compara el camino anterior (cada "me gusta" reescribe el producto con compare-and-set en el
+// Repositorio, reintentando ante conflictos) con MeGustas (contador segmentado y bits por
+// vendedor, volcado por lotes). Después comprueba que los repetidos se rechacen y que un volcado
+// entregue el total exacto. No escribe en disco: mide solo la contención en memoria.
+//
+//     java -cp ... com.marketplace.bench.BancoMeGustas [hilos] [porHilo]
+public final class BancoMeGustas {
+
+    private interface Accion {
+        boolean ejecutar(int hilo, int indice);
+    }
+
+    private static final String ID_PRODUCTO = "p0";
+
+    public static void main(String[] args) throws Exception {
+        int hilos = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int porHilo = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        long esperados = (long) hilos * porHilo;
+        ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+        try {
+            System.out.printf("%-22s %8s %12s %10s %12s  %s%n", "camino", "hilos", "me gusta", "ms", "miles/s",
+                    "conformidad");
+
+            Repositorio repositorio = new Repositorio();
+            repositorio.guardarProducto(producto());
+            double ms = medir(ejecutor, hilos, porHilo, (hilo, indice) -> reescribir(repositorio));
+            long guardados = repositorio.buscarProducto(ID_PRODUCTO).getMeGustas();
+            imprimir("reescritura (CAS)", hilos, esperados, ms, guardados == esperados ? "OK"
+                    : "FALLA: " + guardados + " en el producto");
+
+            MeGustas meGustas = new MeGustas(() -> {
+            });
+            ms = medir(ejecutor, hilos, porHilo, (hilo, indice) -> meGustas.dar(ID_PRODUCTO, vendedor(hilo, indice)));
+            long contados = meGustas.sinVolcar(ID_PRODUCTO);
+            imprimir("MeGustas.dar", hilos, esperados, ms, contados == esperados ? "OK"
+                    : "FALLA: " + contados + " contados");
+
+            // Los mismos vendedores otra vez: ninguno debe sumar
+            ms = medir(ejecutor, hilos, porHilo, (hilo, indice) -> !meGustas.dar(ID_PRODUCTO, vendedor(hilo, indice)));
+            long trasRepetir = meGustas.sinVolcar(ID_PRODUCTO);
+            imprimir("MeGustas.dar repetido", hilos, esperados, ms, trasRepetir == esperados ? "OK (rechazados)"
+                    : "FALLA: " + trasRepetir + " contados");
+
+            long[] volcado = new long[1];
+            int[] entregas = new int[1];
+            meGustas.vaciar(() -> {
+            }, (id, diferencia) -> {
+                volcado[0] += diferencia;
+                entregas[0]++;
+                return true;
+            });
+            System.out.printf("volcado: %d entrega(s), diferencia %d  %s%n", entregas[0], volcado[0],
+                    entregas[0] == 1 && volcado[0] == esperados ? "OK" : "FALLA");
+        } finally {
+            ejecutor.shutdownNow();
+        }
+    }
+
+    // Camino anterior: leer, copiar con un "me gusta" más y publicar; ante un conflicto, reintentar
+    private static boolean reescribir(Repositorio repositorio) {
+        while (true) {
+            Producto actual = repositorio.buscarProducto(ID_PRODUCTO);
+            Producto copia = new Producto(actual);
+            copia.setMeGustas(actual.getMeGustas() + 1);
+            if (repositorio.reemplazarProducto(copia)) {
+                return true;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    // Milisegundos hasta que todos los hilos terminan; los hilos arrancan juntos tras una barrera
+    private static double medir(ExecutorService ejecutor, int hilos, int porHilo, Accion accion) throws Exception {
+        CyclicBarrier barrera = new CyclicBarrier(hilos + 1);
+        List<Future<Integer>> resultados = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            int hilo = h;
+            resultados.add(ejecutor.submit(() -> {
+                barrera.await();
+                int aceptados = 0;
+                for (int i = 0; i < porHilo; i++) {
+                    if (accion.ejecutar(hilo, i)) {
+                        aceptados++;
+                    }
+                }
+                return aceptados;
+            }));
+        }
+        barrera.await();
+        long inicio = System.nanoTime();
+        for (Future<Integer> resultado : resultados) {
+            resultado.get();
+        }
+        return (System.nanoTime() - inicio) / 1e6;
+    }
+
+    private static void imprimir(String camino, int hilos, long cantidad, double ms, String conformidad) {
+        System.out.printf("%-22s %8d %12d %10.0f %12.0f  %s%n", camino, hilos, cantidad, ms, cantidad / ms,
+                conformidad);
+    }
+
+    private static String vendedor(int hilo, int indice) {
+        return "v" + hilo + "_" + indice;
+    }
+
+    private static Producto producto() {
+        return new Producto(ID_PRODUCTO, "Producto popular", "d", "2024-01-02T10:00", "img", 1, 0, Estado.PUBLICADO,
+                Categoria.HOGAR);
+    }
+}
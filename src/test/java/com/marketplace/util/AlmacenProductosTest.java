@@ -0,0 +1,123 @@
+package com.marketplace.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.marketplace.model.Categoria;
+import com.marketplace.model.Estado;
+import com.marketplace.model.Producto;
+
+class AlmacenProductosTest {
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    void conservaLosCambiosAlReabrir() throws IOException {
+        String ruta = directorio.resolve("productos").toString();
+        try (AlmacenProductos almacen = new AlmacenProductos(ruta)) {
+            almacen.guardar(productos(3_000));
+            for (int i = 0; i < 1_000; i++) {
+                almacen.eliminar("p" + i);
+            }
+            almacen.actualizarPrecio("p2000", 77);
+            almacen.actualizarEstado("p2000", Estado.VENDIDO);
+            almacen.guardar(producto("p2001", "renombrado"));
+        }
+        try (AlmacenProductos almacen = new AlmacenProductos(ruta)) {
+            assertEquals(2_000, almacen.tamano());
+            assertNull(almacen.leer("p0"));
+            assertEquals(77, almacen.leer("p2000").getPrecio());
+            assertEquals(Estado.VENDIDO, almacen.leer("p2000").getEstado());
+            assertEquals("renombrado", almacen.leer("p2001").getNombre());
+            assertEquals("Producto 2999", almacen.leer("p2999").getNombre());
+        }
+    }
+
+    @Test
+    void reutilizaLasRanurasLibres() throws IOException {
+        String ruta = directorio.resolve("productos").toString();
+        try (AlmacenProductos almacen = new AlmacenProductos(ruta)) {
+            almacen.guardar(productos(1_024));
+            long tamano = Files.size(directorio.resolve("productos.ranuras"));
+            almacen.eliminar("p5");
+            almacen.guardar(producto("nuevo", "nuevo"));
+            assertEquals(tamano, Files.size(directorio.resolve("productos.ranuras")));
+            assertEquals("nuevo", almacen.leer("nuevo").getNombre());
+        }
+    }
+
+    @Test
+    void compactarDescartaLosTextosMuertos() throws IOException {
+        String ruta = directorio.resolve("productos").toString();
+        try (AlmacenProductos almacen = new AlmacenProductos(ruta)) {
+            almacen.guardar(productos(500));
+            for (int i = 0; i < 250; i++) {
+                almacen.eliminar("p" + i);
+            }
+            assertTrue(almacen.getBytesMuertos() > 0);
+            almacen.compactar();
+            assertEquals(0, almacen.getBytesMuertos());
+            assertFalse(Files.exists(directorio.resolve("productos.textos.0")));
+            List<Producto> recorridos = new ArrayList<>();
+            almacen.recorrer(recorridos::add);
+            assertEquals(250, recorridos.size());
+        }
+        try (AlmacenProductos almacen = new AlmacenProductos(ruta)) {
+            assertEquals("Producto 499", almacen.leer("p499").getNombre());
+        }
+    }
+
+    @Test
+    void trasUnCierreNoLimpioLiberaLasRanurasSinTextos() throws IOException {
+        String ruta = directorio.resolve("productos").toString();
+        AlmacenProductos caido = new AlmacenProductos(ruta);
+        caido.guardar(productos(100));
+        caido.forzar();
+        caido.guardar(producto("perdido", "perdido"));
+        caido.escribirPendientes();
+        // La caída se lleva el final del desborde, pero no las ranuras que lo referencian
+        Path textos = directorio.resolve("productos.textos.0");
+        try (FileChannel canal = FileChannel.open(textos, StandardOpenOption.WRITE)) {
+            canal.truncate(caido.getBytesTextos() - 3);
+        }
+        Files.write(directorio.resolve("productos.textos.7"), new byte[10]);
+        try (AlmacenProductos almacen = new AlmacenProductos(ruta)) {
+            assertNull(almacen.leer("perdido"));
+            assertEquals(100, almacen.tamano());
+            assertEquals("Producto 99", almacen.leer("p99").getNombre());
+            assertFalse(Files.exists(directorio.resolve("productos.textos.7")));
+            almacen.guardar(producto("otro", "otro"));
+        }
+        try (AlmacenProductos almacen = new AlmacenProductos(ruta)) {
+            assertEquals(101, almacen.tamano());
+            assertEquals("otro", almacen.leer("otro").getNombre());
+        }
+    }
+
+    private static List<Producto> productos(int cantidad) {
+        List<Producto> lista = new ArrayList<>();
+        for (int i = 0; i < cantidad; i++) {
+            lista.add(producto("p" + i, "Producto " + i));
+        }
+        return lista;
+    }
+
+    private static Producto producto(String id, String nombre) {
+        return new Producto(id, nombre, "Descripción de " + id, "2024-01-02T10:00", "img/" + id + ".png", 10, 0,
+                Estado.PUBLICADO, Categoria.HOGAR);
+    }
+}
@@ -0,0 +1,312 @@
+package com.marketplace.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.marketplace.model.Categoria;
+import com.marketplace.model.Comentario;
+import com.marketplace.model.Estado;
+import com.marketplace.model.EstadoSolicitud;
+import com.marketplace.model.Mensaje;
+import com.marketplace.model.Producto;
+import com.marketplace.model.Solicitud;
+import com.marketplace.model.Vendedor;
+
+// Ida y vuelta del formato binario y compatibilidad entre versiones. instantanea-v1.bin la escribió
+// el codificador de la versión 1 con los datos de escribirMuestra y no se regenera: si un cambio
+// del formato deja de leerla, los archivos que ya están en disco tampoco se van a poder leer. Como
+// no hubo versiones anteriores a la 1, la diferencia de versiones se prueba con flujos armados a
+// mano: cuerpos más largos y etiquetas desconocidas (un escritor más nuevo) y cuerpos cortados
+// (uno más viejo).
+class CodificadorBinarioTest {
+    private static final LocalDateTime FECHA = LocalDateTime.of(2024, 1, 2, 10, 0, 30);
+
+    @Test
+    void idaYVueltaConservaTodosLosCampos() throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        escribirMuestra(salida);
+        comprobarMuestra(leer(salida.toByteArray()));
+    }
+
+    @Test
+    void leeLaInstantaneaEscritaPorLaVersion1() throws IOException {
+        byte[] fijada = fijada();
+        comprobarMuestra(leer(fijada));
+
+        // El codificador actual sigue escribiendo exactamente lo mismo
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        escribirMuestra(salida);
+        assertArrayEquals(fijada, salida.toByteArray(), "instantanea-v1.bin ya no coincide con el codificador");
+    }
+
+    @Test
+    void ignoraCamposYRegistrosDeUnaVersionPosterior() throws IOException {
+        Cuerpo solicitud = new Cuerpo().texto("s9").texto("v1").texto("v2").varint(EstadoSolicitud.ACEPTADA.ordinal() + 1)
+                .texto("campo nuevo").varint(123_456);
+        ByteArrayOutputStream flujo = cabecera(CodificadorBinario.VERSION);
+        registro(flujo, 42, new Cuerpo().texto("registro de otra versión"));
+        registro(flujo, CodificadorBinario.SOLICITUD, solicitud);
+        flujo.write(CodificadorBinario.FIN);
+
+        Registro leido = leer(flujo.toByteArray());
+        assertEquals(1, leido.solicitudes.size());
+        Solicitud leida = leido.solicitudes.get(0);
+        assertEquals("s9", leida.getId());
+        assertEquals(EstadoSolicitud.ACEPTADA, leida.getEstado());
+        assertArrayEquals(new String[] { "v1", "v2" }, leido.extremos.get("s9"));
+    }
+
+    @Test
+    void usaValoresPorDefectoParaCamposDeUnaVersionAnterior() throws IOException {
+        // Producto cortado después del precio, solicitud con solo el ID
+        Cuerpo producto = new Cuerpo().texto("p1").texto("Mesa").texto("Roble").varint(0).texto("img.png").zigzag(-15);
+        ByteArrayOutputStream flujo = cabecera(CodificadorBinario.VERSION);
+        registro(flujo, CodificadorBinario.PRODUCTO, producto);
+        registro(flujo, CodificadorBinario.SOLICITUD, new Cuerpo().texto("s1"));
+        flujo.write(CodificadorBinario.FIN);
+
+        Registro leido = leer(flujo.toByteArray());
+        Producto leidoProducto = leido.productos.get(0);
+        assertEquals("Mesa", leidoProducto.getNombre());
+        assertEquals(-15, leidoProducto.getPrecio());
+        assertEquals(0, leidoProducto.getMeGustas());
+        assertNull(leidoProducto.getEstado());
+        assertNull(leidoProducto.getCategoria());
+        assertTrue(leidoProducto.getComentarios().isEmpty());
+        Solicitud leida = leido.solicitudes.get(0);
+        assertNull(leida.getEstado());
+        assertArrayEquals(new String[] { null, null }, leido.extremos.get("s1"));
+    }
+
+    @Test
+    void rechazaVersionesSinSoporteYArchivosAjenos() {
+        assertThrows(IOException.class, () -> leer(cabecera(CodificadorBinario.VERSION + 1).toByteArray()));
+        assertThrows(IOException.class, () -> leer(cabecera(0).toByteArray()));
+        assertThrows(IOException.class, () -> leer("PK\u0003\u0004".getBytes(StandardCharsets.ISO_8859_1)));
+    }
+
+    @Test
+    void rechazaCuerposCortadosEnMedioDeUnCampo() {
+        ByteArrayOutputStream flujo = cabecera(CodificadorBinario.VERSION);
+        Cuerpo cortado = new Cuerpo().varint(10);
+        cortado.bytes.write('a');
+        registro(flujo, CodificadorBinario.SOLICITUD, cortado);
+        assertThrows(IOException.class, () -> leer(flujo.toByteArray()));
+
+        // Un registro que promete más bytes de los que hay en el archivo
+        ByteArrayOutputStream incompleto = cabecera(CodificadorBinario.VERSION);
+        incompleto.write(CodificadorBinario.PRODUCTO);
+        incompleto.write(50);
+        incompleto.write(1);
+        assertThrows(IOException.class, () -> leer(incompleto.toByteArray()));
+    }
+
+    // Datos de instantanea-v1.bin: nulos, textos no ASCII, números negativos y grandes, fechas
+    // antes de 1970 y todos los tipos de registro
+    static void escribirMuestra(ByteArrayOutputStream salida) throws IOException {
+        Vendedor ana = new Vendedor("v1", "Ana", "Pérez", "1094", "Calle 5 #3-20", "clave", new ArrayList<>(),
+                new ArrayList<>());
+        Vendedor luis = new Vendedor("v2", "Luis", null, "", "Armenia", "ñandú", new ArrayList<>(), new ArrayList<>());
+        Producto mesa = new Producto();
+        mesa.setId("p1");
+        mesa.setNombre("Mesa de café");
+        mesa.setDescripcion("Roble macizo — 120×60 cm");
+        mesa.setFechaPublicacion(FECHA);
+        mesa.setImagenRuta("img/mesa.png");
+        mesa.setPrecio(2_000_000_000);
+        mesa.setMeGustas(-3);
+        mesa.setEstado(Estado.PUBLICADO);
+        mesa.setCategoria(Categoria.HOGAR);
+        mesa.setComentarios(new ArrayList<>(Arrays.asList(new Comentario("c1", luis, FECHA.plusDays(1), "¿Sigue disponible?"),
+                new Comentario("c2", null, null, null))));
+        Producto vacio = new Producto();
+        vacio.setId("p2");
+        vacio.setFechaPublicacion(LocalDateTime.of(1969, 7, 20, 20, 17, 40));
+        vacio.setComentarios(new ArrayList<>());
+        ana.getPublicaciones().add(mesa);
+        ana.getRedDeContactos().add(luis);
+        luis.getPublicaciones().add(vacio);
+        Mensaje mensaje = new Mensaje("Hola 👋", ana);
+        mensaje.setHoraDeEnvio(FECHA);
+
+        CodificadorBinario codificador = new CodificadorBinario(salida);
+        codificador.escribirProducto(mesa);
+        codificador.escribirProducto(vacio);
+        codificador.escribirVendedor(ana);
+        codificador.escribirVendedor(luis);
+        codificador.escribirSolicitud(new Solicitud("s1", ana, luis, EstadoSolicitud.ACEPTADA));
+        codificador.escribirSolicitud(new Solicitud("s2", luis, null, null));
+        codificador.escribirComentario(new Comentario("c3", ana, FECHA, "suelto"));
+        codificador.escribirMensaje(mensaje);
+        codificador.terminar();
+    }
+
+    private static void comprobarMuestra(Registro leido) {
+        assertEquals(1, leido.version);
+        assertEquals(2, leido.productos.size());
+        Producto mesa = leido.productos.get(0);
+        assertEquals("p1", mesa.getId());
+        assertEquals("Mesa de café", mesa.getNombre());
+        assertEquals("Roble macizo — 120×60 cm", mesa.getDescripcion());
+        assertEquals(FECHA, mesa.getFechaPublicacion());
+        assertEquals("img/mesa.png", mesa.getImagenRuta());
+        assertEquals(2_000_000_000, mesa.getPrecio());
+        assertEquals(-3, mesa.getMeGustas());
+        assertEquals(Estado.PUBLICADO, mesa.getEstado());
+        assertEquals(Categoria.HOGAR, mesa.getCategoria());
+        assertEquals(2, mesa.getComentarios().size());
+        Comentario pregunta = mesa.getComentarios().get(0);
+        assertEquals("c1", pregunta.getId());
+        assertEquals(FECHA.plusDays(1), pregunta.getFechaPublicacion());
+        assertEquals("¿Sigue disponible?", pregunta.getTexto());
+        assertEquals("v2", leido.autores.get("c1"));
+        Comentario vacio = mesa.getComentarios().get(1);
+        assertNull(vacio.getFechaPublicacion());
+        assertNull(vacio.getTexto());
+        assertNull(leido.autores.get("c2"));
+
+        Producto sinDatos = leido.productos.get(1);
+        assertNull(sinDatos.getNombre());
+        assertEquals(LocalDateTime.of(1969, 7, 20, 20, 17, 40), sinDatos.getFechaPublicacion());
+        assertNull(sinDatos.getEstado());
+        assertEquals(0, sinDatos.getPrecio());
+
+        assertEquals(2, leido.vendedores.size());
+        Vendedor ana = leido.vendedores.get(0);
+        assertEquals("Pérez", ana.getApellido());
+        assertEquals("Calle 5 #3-20", ana.getDireccion());
+        assertArrayEquals(new String[] { "p1" }, leido.publicaciones.get("v1"));
+        assertArrayEquals(new String[] { "v2" }, leido.contactos.get("v1"));
+        Vendedor luis = leido.vendedores.get(1);
+        assertNull(luis.getApellido());
+        assertEquals("", luis.getCedula());
+        assertEquals("ñandú", luis.getContraseña());
+        assertArrayEquals(new String[0], leido.contactos.get("v2"));
+
+        assertEquals(2, leido.solicitudes.size());
+        assertEquals(EstadoSolicitud.ACEPTADA, leido.solicitudes.get(0).getEstado());
+        assertArrayEquals(new String[] { "v1", "v2" }, leido.extremos.get("s1"));
+        assertNull(leido.solicitudes.get(1).getEstado());
+        assertArrayEquals(new String[] { "v2", null }, leido.extremos.get("s2"));
+
+        assertEquals("v1", leido.autores.get("c3"));
+        assertEquals(1, leido.mensajes.size());
+        assertEquals("Hola 👋", leido.mensajes.get(0).getContenido());
+        assertEquals(FECHA, leido.mensajes.get(0).getHoraDeEnvio());
+        assertEquals("v1", leido.emisores.get(0));
+    }
+
+    private static byte[] fijada() throws IOException {
+        try (InputStream entrada = CodificadorBinarioTest.class.getResourceAsStream("instantanea-v1.bin")) {
+            assertNotNull(entrada, "falta instantanea-v1.bin");
+            return entrada.readAllBytes();
+        }
+    }
+
+    private static Registro leer(byte[] bytes) throws IOException {
+        Registro registro = new Registro();
+        DecodificadorBinario decodificador = new DecodificadorBinario(new ByteArrayInputStream(bytes), registro);
+        registro.version = decodificador.getVersion();
+        decodificador.leerTodo();
+        return registro;
+    }
+
+    private static ByteArrayOutputStream cabecera(int version) {
+        ByteArrayOutputStream flujo = new ByteArrayOutputStream();
+        flujo.writeBytes(CodificadorBinario.MAGICO);
+        flujo.writeBytes(new Cuerpo().varint(version).bytes.toByteArray());
+        return flujo;
+    }
+
+    private static void registro(ByteArrayOutputStream flujo, int etiqueta, Cuerpo cuerpo) {
+        flujo.write(etiqueta);
+        flujo.writeBytes(new Cuerpo().varint(cuerpo.bytes.size()).bytes.toByteArray());
+        flujo.writeBytes(cuerpo.bytes.toByteArray());
+    }
+
+    // Cuerpo de registro armado a mano con las mismas reglas que CodificadorBinario
+    private static final class Cuerpo {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        Cuerpo varint(long valor) {
+            while ((valor & ~0x7FL) != 0) {
+                bytes.write((int) ((valor & 0x7F) | 0x80));
+                valor >>>= 7;
+            }
+            bytes.write((int) valor);
+            return this;
+        }
+
+        Cuerpo zigzag(long valor) {
+            return varint((valor << 1) ^ (valor >> 63));
+        }
+
+        Cuerpo texto(String valor) {
+            byte[] utf8 = valor.getBytes(StandardCharsets.UTF_8);
+            varint(utf8.length + 1L);
+            bytes.writeBytes(utf8);
+            return this;
+        }
+    }
+
+    // Lo que el decodificador entrega, con las relaciones como IDs
+    private static final class Registro implements DecodificadorBinario.Referencias {
+        private int version;
+        private final List<Producto> productos = new ArrayList<>();
+        private final List<Vendedor> vendedores = new ArrayList<>();
+        private final List<Solicitud> solicitudes = new ArrayList<>();
+        private final List<Mensaje> mensajes = new ArrayList<>();
+        private final List<String> emisores = new ArrayList<>();
+        private final Map<String, String[]> publicaciones = new HashMap<>();
+        private final Map<String, String[]> contactos = new HashMap<>();
+        private final Map<String, String[]> extremos = new HashMap<>();
+        private final Map<String, String> autores = new HashMap<>();
+
+        @Override
+        public void vendedor(Vendedor vendedor, String[] idsPublicaciones, String[] idsContactos) {
+            vendedores.add(vendedor);
+            publicaciones.put(vendedor.getId(), idsPublicaciones);
+            contactos.put(vendedor.getId(), idsContactos);
+        }
+
+        @Override
+        public void producto(Producto producto) {
+            productos.add(producto);
+        }
+
+        @Override
+        public void solicitud(Solicitud solicitud, String emisorId, String receptorId) {
+            solicitudes.add(solicitud);
+            extremos.put(solicitud.getId(), new String[] { emisorId, receptorId });
+        }
+
+        @Override
+        public void autorComentario(Comentario comentario, String autorId) {
+            autores.put(comentario.getId(), autorId);
+        }
+
+        @Override
+        public void emisorMensaje(Mensaje mensaje, String emisorId) {
+            mensajes.add(mensaje);
+            emisores.add(emisorId);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.marketplace.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import com.marketplace.model.Categoria;
+import com.marketplace.model.Estado;
+import com.marketplace.model.MarketPlace;
+import com.marketplace.model.Producto;
+import com.marketplace.model.Vendedor;
+
+// Varios hilos crean y eliminan productos de los mismos vendedores y agregan contactos con
+// compare-and-set sobre ellos a la vez. Después se comprueba en memoria y sobre lo que el motor
+// recarga que ningún cambio se perdió ni se aplicó dos veces: cada producto vivo es publicación de
+// un solo vendedor, los eliminados no quedan en ninguna lista y cada vendedor tiene todos sus
+// contactos. Usa la configuración de prueba (-Dmarketplace.config, ver pom.xml); los IDs llevan
+// un prefijo por corrida porque el estado durable se conserva entre corridas.
+class UtilidadesEstresTest {
+    private static final int HILOS = 16;
+    private static final int VENDEDORES = 8;
+    private static final int POR_HILO = 60;
+
+    @Test
+    void crearEliminarYActualizarEnParaleloConservaLasInvariantes() throws Exception {
+        Utilidades utilidades = Utilidades.getInstance();
+        String corrida = "e" + Long.toString(System.nanoTime(), 36) + "_";
+        MarketPlace marketPlace = new MarketPlace();
+        List<Vendedor> vendedores = new ArrayList<>();
+        for (int i = 0; i < VENDEDORES; i++) {
+            vendedores.add(vendedor(corrida + "v" + i));
+            marketPlace.crearVendedor(vendedores.get(i));
+        }
+        List<Vendedor> contactos = new ArrayList<>();
+        for (int h = 0; h < HILOS; h++) {
+            contactos.add(vendedor(corrida + "c" + h));
+            marketPlace.crearVendedor(contactos.get(h));
+        }
+
+        // Lo que debería quedar: cada cinco productos de un hilo se elimina el cuarto
+        Set<String> vivos = new HashSet<>();
+        Set<String> eliminados = new HashSet<>();
+        Map<String, Set<String>> contactosEsperados = new HashMap<>();
+        for (int h = 0; h < HILOS; h++) {
+            for (int k = 0; k < POR_HILO; k++) {
+                (k % 5 == 3 ? eliminados : vivos).add(idProducto(corrida, h, k));
+                if (k % 10 == 0) {
+                    contactosEsperados.computeIfAbsent(vendedores.get((h + k) % VENDEDORES).getId(),
+                            id -> new HashSet<>()).add(contactos.get(h).getId());
+                }
+            }
+        }
+
+        ExecutorService ejecutor = Executors.newFixedThreadPool(HILOS);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<?>> tareas = new ArrayList<>();
+        try {
+            for (int h = 0; h < HILOS; h++) {
+                int hilo = h;
+                tareas.add(ejecutor.submit(() -> {
+                    largada.await();
+                    for (int k = 0; k < POR_HILO; k++) {
+                        // Varios hilos comparten cada vendedor
+                        Vendedor vendedor = vendedores.get((hilo + k) % VENDEDORES);
+                        vendedor.crearProducto(producto(idProducto(corrida, hilo, k), k));
+                        if (k % 5 == 4) {
+                            vendedores.get((hilo + k - 1) % VENDEDORES).eliminarProducto(idProducto(corrida, hilo, k - 1));
+                        }
+                        if (k % 10 == 0) {
+                            String idContacto = contactos.get(hilo).getId();
+                            assertNotNull(utilidades.actualizarVendedorConReintentos(vendedor.getId(), copia -> {
+                                if (copia.idsRedDeContactos().stream().noneMatch(idContacto::equals)) {
+                                    copia.getRedDeContactos().add(utilidades.buscarVendedorPorId(idContacto));
+                                }
+                            }));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            largada.countDown();
+            for (Future<?> tarea : tareas) {
+                tarea.get();
+            }
+        } finally {
+            ejecutor.shutdownNow();
+        }
+
+        List<Vendedor> publicados = new ArrayList<>();
+        for (Vendedor vendedor : vendedores) {
+            publicados.add(utilidades.buscarVendedorPorId(vendedor.getId()));
+        }
+        Set<String> enMemoria = new HashSet<>();
+        for (Producto producto : utilidades.listarProductos()) {
+            enMemoria.add(producto.getId());
+        }
+        comprobar("en memoria", publicados, enMemoria, vivos, eliminados, contactosEsperados);
+
+        // Lo mismo sobre el estado durable: punto de control y recarga con un motor aparte
+        assertTrue(utilidades.puntoDeControl());
+        CargadorDatos cargado = recargar();
+        Set<String> recargados = new HashSet<>();
+        for (Producto producto : cargado.getProductos()) {
+            recargados.add(producto.getId());
+        }
+        List<Vendedor> vendedoresRecargados = new ArrayList<>();
+        for (Vendedor vendedor : cargado.getVendedores()) {
+            if (vendedor.getId().startsWith(corrida + "v")) {
+                vendedoresRecargados.add(vendedor);
+            }
+        }
+        assertEquals(VENDEDORES, vendedoresRecargados.size());
+        comprobar("recargado", vendedoresRecargados, recargados, vivos, eliminados, contactosEsperados);
+    }
+
+    private static void comprobar(String donde, List<Vendedor> vendedores, Set<String> productos, Set<String> vivos,
+            Set<String> eliminados, Map<String, Set<String>> contactosEsperados) {
+        Map<String, String> propietarios = new HashMap<>();
+        for (Vendedor vendedor : vendedores) {
+            assertNotNull(vendedor, donde);
+            for (String id : vendedor.idsPublicaciones()) {
+                String otro = propietarios.put(id, vendedor.getId());
+                assertNull(otro, () -> donde + ": " + id + " publicado por " + otro + " y " + vendedor.getId());
+            }
+            assertEquals(contactosEsperados.getOrDefault(vendedor.getId(), new HashSet<>()),
+                    new HashSet<>(vendedor.idsRedDeContactos()), () -> donde + ": contactos de " + vendedor.getId());
+        }
+        assertEquals(vivos, propietarios.keySet(), () -> donde + ": publicaciones");
+        for (String id : vivos) {
+            assertTrue(productos.contains(id), () -> donde + ": falta el producto " + id);
+        }
+        for (String id : eliminados) {
+            assertFalse(productos.contains(id), () -> donde + ": sigue el producto eliminado " + id);
+        }
+    }
+
+    private static CargadorDatos recargar() throws IOException {
+        Properties propiedades = new Properties();
+        try (FileInputStream entrada = new FileInputStream(
+                System.getProperty("marketplace.config", "resources/config.properties"))) {
+            propiedades.load(entrada);
+        }
+        try (AlmacenTexto almacen = new AlmacenTexto(propiedades.getProperty("rutaVendedores.txt"),
+                propiedades.getProperty("rutaProductos.txt"), propiedades.getProperty("rutaSolicitudes.txt"),
+                new DiarioMutaciones(propiedades.getProperty("rutaDiario.txt"), false, 0), false)) {
+            return almacen.cargar();
+        }
+    }
+
+    private static String idProducto(String corrida, int hilo, int indice) {
+        return corrida + "p" + hilo + "_" + indice;
+    }
+
+    private static Vendedor vendedor(String id) {
+        return new Vendedor(id, "Nombre", "Apellido", "C" + id, "Dirección", "clave", new ArrayList<>(),
+                new ArrayList<>());
+    }
+
+    private static Producto producto(String id, int precio) {
+        return new Producto(id, "Producto " + id, "Descripción", "2024-01-02T10:00", "img/" + id + ".png", precio, 0,
+                Estado.PUBLICADO, Categoria.HOGAR);
+    }
+}